@@ -0,0 +1,361 @@
+package br.edu.fs.simulator;
+
+import br.edu.fs.simulator.util.MyArrayList;
+import br.edu.fs.simulator.util.MyStringBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Microbenchmarks JMH das estruturas e operações mais usadas: {@code MyArrayList} contra
+ * {@code java.util.ArrayList}, anexos no {@code MyStringBuilder}, {@code DirectoryNode.findChild}
+ * com vários tamanhos de diretório, resolução de caminhos absolutos no {@link FileSystemManager}
+ * com várias profundidades (com o cache de caminhos quente e frio), {@code Journal.logOperation}
+ * e montagem de caminhos absolutos. A linha de base, com {@code -prof gc}, está em {@code BENCHMARKS.md}.
+ *
+ * Uso: mvn -B test-compile exec:exec -Djmh.args="-prof gc CoreBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoreBenchmark {
+    private static final Integer VALUE = 42;
+    private static final int LIST_SIZE = 4096;
+    private static final int BATCH = 1024;
+    private static final String PIECE = "relatorio.txt";
+
+    @State(Scope.Thread)
+    public static class Lists {
+        MyArrayList<Integer> mine;
+        ArrayList<Integer> jdk;
+        Integer middle = LIST_SIZE / 2;
+        int next;
+
+        @Setup
+        public void setUp() {
+            mine = new MyArrayList<>(LIST_SIZE);
+            jdk = new ArrayList<>(LIST_SIZE);
+            for (int i = 0; i < LIST_SIZE; i++) {
+                mine.add(i);
+                jdk.add(i);
+            }
+        }
+
+        int next() {
+            return next = (next + 1) & (LIST_SIZE - 1);
+        }
+    }
+
+    // Cada invocação cria a lista e anexa 1024 elementos, contando o crescimento.
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public MyArrayList<Integer> myArrayListAdd() {
+        MyArrayList<Integer> list = new MyArrayList<>();
+        for (int i = 0; i < BATCH; i++) {
+            list.add(VALUE);
+        }
+        return list;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public ArrayList<Integer> arrayListAdd() {
+        ArrayList<Integer> list = new ArrayList<>();
+        for (int i = 0; i < BATCH; i++) {
+            list.add(VALUE);
+        }
+        return list;
+    }
+
+    @Benchmark
+    public Integer myArrayListGet(Lists lists) {
+        return lists.mine.get(lists.next());
+    }
+
+    @Benchmark
+    public Integer arrayListGet(Lists lists) {
+        return lists.jdk.get(lists.next());
+    }
+
+    // Busca linear por um elemento no meio de uma lista de 4096.
+    @Benchmark
+    public int myArrayListIndexOf(Lists lists) {
+        return lists.mine.indexOf(lists.middle);
+    }
+
+    @Benchmark
+    public int arrayListIndexOf(Lists lists) {
+        return lists.jdk.indexOf(lists.middle);
+    }
+
+    // Os builders são limpos a cada 1024 anexos para medir o anexo, não o crescimento sem fim.
+    @State(Scope.Thread)
+    public static class Builders {
+        MyStringBuilder mine = new MyStringBuilder();
+        StringBuilder jdk = new StringBuilder();
+        int counter;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int myStringBuilderAppendString(Builders builders) {
+        MyStringBuilder builder = builders.mine;
+        builder.clear();
+        for (int i = 0; i < BATCH; i++) {
+            builder.append(PIECE);
+        }
+        return builder.length();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int stringBuilderAppendString(Builders builders) {
+        StringBuilder builder = builders.jdk;
+        builder.setLength(0);
+        for (int i = 0; i < BATCH; i++) {
+            builder.append(PIECE);
+        }
+        return builder.length();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int myStringBuilderAppendInt(Builders builders) {
+        MyStringBuilder builder = builders.mine;
+        builder.clear();
+        int base = builders.counter += BATCH;
+        for (int i = 0; i < BATCH; i++) {
+            builder.append(base + i);
+        }
+        return builder.length();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int stringBuilderAppendInt(Builders builders) {
+        StringBuilder builder = builders.jdk;
+        builder.setLength(0);
+        int base = builders.counter += BATCH;
+        for (int i = 0; i < BATCH; i++) {
+            builder.append(base + i);
+        }
+        return builder.length();
+    }
+
+    // Monta uma linha pequena e converte para String, como o journal e o shell fazem.
+    @Benchmark
+    public String myStringBuilderLine(Builders builders) {
+        MyStringBuilder builder = new MyStringBuilder();
+        builder.append("/home/usuario/").append(PIECE).append(' ').append(builders.counter++);
+        return builder.toString();
+    }
+
+    @Benchmark
+    public String stringBuilderLine(Builders builders) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("/home/usuario/").append(PIECE).append(' ').append(builders.counter++);
+        return builder.toString();
+    }
+
+    @State(Scope.Thread)
+    public static class Directory {
+        @Param({"8", "64", "1024", "16384"})
+        int fanOut;
+
+        DirectoryNode dir;
+        String[] lookups = new String[BATCH];
+        int next;
+
+        @Setup
+        public void setUp() {
+            dir = new DirectoryNode("d", null);
+            String[] names = new String[fanOut];
+            for (int i = 0; i < fanOut; i++) {
+                names[i] = "arquivo" + i + ".txt";
+                dir.addChild(new FileNode(names[i], dir));
+            }
+            // Cópias dos nomes, como chegam do shell, para não contar com a igualdade por referência.
+            for (int i = 0; i < lookups.length; i++) {
+                lookups[i] = new String(names[(int) ((i * 2654435761L) % fanOut)]);
+                lookups[i].hashCode();
+            }
+        }
+    }
+
+    @Benchmark
+    public Node findChild(Directory directory) {
+        return directory.dir.findChild(directory.lookups[directory.next++ & (BATCH - 1)]);
+    }
+
+    @Benchmark
+    public Node findChildMissing(Directory directory) {
+        return directory.dir.findChild("inexistente.txt");
+    }
+
+    /**
+     * {@code findDirectory} é privado; é exercitado pelo {@code cd} com caminho absoluto, que
+     * resolve o caminho e registra uma entrada no journal (medida à parte em {@link #journalLog}).
+     * O cache frio alterna entre mais diretórios do que cabem no cache de caminhos.
+     */
+    @State(Scope.Thread)
+    public static class Tree {
+        private static final int LEAVES = 4096;
+
+        @Param({"1", "4", "16", "64"})
+        int depth;
+
+        FileSystemManager fs;
+        FileSystemManager.Session session;
+        String[] paths = new String[LEAVES];
+        int next;
+
+        @Setup
+        public void setUp() {
+            fs = new FileSystemManager(null, null, null);
+            session = fs.newSession();
+            StringBuilder path = new StringBuilder();
+            for (int level = 1; level < depth; level++) {
+                check(fs.createDirectory(session, "nivel" + level));
+                check(fs.changeDirectory(session, "nivel" + level));
+                path.append("/nivel").append(level);
+            }
+            for (int i = 0; i < LEAVES; i++) {
+                check(fs.createDirectory(session, "folha" + i));
+                paths[i] = path + "/folha" + i;
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            fs.shutdown();
+        }
+    }
+
+    @Benchmark
+    public FsStatus cdHotCache(Tree tree) {
+        return tree.fs.changeDirectory(tree.session, tree.paths[0]);
+    }
+
+    @Benchmark
+    public FsStatus cdColdCache(Tree tree) {
+        return tree.fs.changeDirectory(tree.session, tree.paths[tree.next++ & (Tree.LEAVES - 1)]);
+    }
+
+    @State(Scope.Thread)
+    public static class Journals {
+        Journal journal;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            journal = new Journal();
+        }
+    }
+
+    @Benchmark
+    public long journalLogOperation(Journals journals) {
+        journals.journal.logOperation("WRITE", "Escrita em /home/usuario/documentos/relatorio.txt (128 caracteres no offset 0)");
+        return journals.journal.size();
+    }
+
+    @Benchmark
+    public long journalLog(Journals journals) {
+        journals.journal.log(JournalOp.WRITE, "/home/usuario/documentos/relatorio.txt", 128, 0);
+        return journals.journal.size();
+    }
+
+    @State(Scope.Thread)
+    public static class Paths {
+        @Param({"4", "16", "64"})
+        int depth;
+
+        FileNode leaf;
+        FileNode sibling;
+        boolean flip;
+
+        @Setup
+        public void setUp() {
+            DirectoryNode root = new DirectoryNode("/", null);
+            DirectoryNode current = root;
+            for (int level = 1; level < depth; level++) {
+                DirectoryNode next = new DirectoryNode("nivel" + level, current);
+                current.addChild(next);
+                current = next;
+            }
+            leaf = new FileNode("relatorio.txt", current);
+            current.addChild(leaf);
+            sibling = new FileNode("a", root);
+            root.addChild(sibling);
+        }
+
+        String nextName() {
+            flip = !flip;
+            return flip ? "b" : "a";
+        }
+    }
+
+    @Benchmark
+    public String getPathCached(Paths paths) {
+        return paths.leaf.getPath();
+    }
+
+    // Cada renomeação invalida todos os caminhos em cache; setName mede só a renomeação.
+    @Benchmark
+    public String getPathAfterRename(Paths paths) {
+        paths.sibling.setName(paths.nextName());
+        return paths.leaf.getPath();
+    }
+
+    @Benchmark
+    public void setName(Paths paths) {
+        paths.sibling.setName(paths.nextName());
+    }
+
+    @State(Scope.Thread)
+    public static class Cwd {
+        FileSystemManager fs;
+        FileSystemManager.Session session;
+
+        @Setup
+        public void setUp() {
+            fs = new FileSystemManager(null, null, null);
+            session = fs.newSession();
+            for (int level = 1; level < 16; level++) {
+                check(fs.createDirectory(session, "nivel" + level));
+                check(fs.changeDirectory(session, "nivel" + level));
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            fs.shutdown();
+        }
+    }
+
+    // Na profundidade 16.
+    @Benchmark
+    public String getCurrentPath(Cwd cwd) {
+        return cwd.fs.getCurrentPath(cwd.session);
+    }
+
+    private static void check(FsStatus status) {
+        if (!status.isOk()) {
+            throw new IllegalStateException("Benchmark setup failed: " + status);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,117 @@
+package br.edu.fs.simulator;
+
+import br.edu.fs.simulator.util.ChunkStore;
+
+import java.util.Random;
+
+/**
+ * Mede a deduplicação do conteúdo em memória, ligada e desligada: parte dos arquivos tem o corpo
+ * de um de poucos modelos (configurações geradas) e o resto é texto único. Para cada caso mostra o
+ * tempo das escritas, o heap ocupado depois de um GC, a razão lógico/físico do depósito, o tempo de
+ * copiar a árvore com {@code cp -r} e o da primeira escrita em cada arquivo depois de um snapshot.
+ *
+ * Uso: java -Xmx4g br.edu.fs.simulator.DedupBenchmark [arquivos] [modelos] [percentual_de_copias] [KiB_maximo]
+ */
+public class DedupBenchmark {
+    private static final int FILES_PER_DIR = 100;
+
+    public static void main(String[] args) {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int templates = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int percent = args.length > 2 ? Integer.parseInt(args[2]) : 80;
+        int maxChars = (args.length > 3 ? Integer.parseInt(args[3]) : 32) * 1024;
+
+        Random random = new Random(42);
+        String[] bodies = new String[templates];
+        for (int t = 0; t < templates; t++) {
+            bodies[t] = text(random, 1024 + random.nextInt(maxChars - 1024));
+        }
+        System.out.println(String.format("%,d arquivos, %d%% com o corpo de um de %d modelos, até %d KiB", files, percent, templates,
+                maxChars / 1024));
+        System.out.println(String.format("%-8s %10s %10s %12s %12s %10s %14s", "dedup", "escrita ms", "MiB/s", "heap MiB", "lógico/físico",
+                "cp -r ms", "1a escrita us"));
+        for (boolean dedup : new boolean[]{false, true}) {
+            run(dedup, files, bodies, percent, maxChars);
+        }
+    }
+
+    private static void run(boolean dedup, int files, String[] bodies, int percent, int maxChars) {
+        FileSystemManager fs = new FileSystemManager(null, null, null);
+        fs.setTextIndexBudget(0);
+        fs.setDeduplication(dedup);
+        FileSystemManager.Session session = fs.newSession();
+        Random random = new Random(7);
+        long before = usedHeap();
+        long writing = 0;
+        long chars = 0;
+        for (int f = 0; f < files; f++) {
+            if (f % FILES_PER_DIR == 0) {
+                check(fs.changeDirectory(session, "/"));
+                check(fs.createDirectory(session, "d" + f / FILES_PER_DIR));
+                check(fs.changeDirectory(session, "d" + f / FILES_PER_DIR));
+            }
+            String name = "f" + f % FILES_PER_DIR;
+            String body = random.nextInt(100) < percent ? bodies[random.nextInt(bodies.length)]
+                    : text(random, 1024 + random.nextInt(maxChars - 1024));
+            check(fs.createFile(session, name));
+            long start = System.nanoTime();
+            check(fs.writeFile(session, name, body, FileSystemManager.WRITE_REPLACE, 0));
+            writing += System.nanoTime() - start;
+            chars += body.length();
+        }
+        long heap = usedHeap() - before;
+        ChunkStore store = fs.getChunkStore();
+        String ratio = store.getPhysicalChars() == 0 ? "-" : String.format("%.2f", (double) store.getLogicalChars() / store.getPhysicalChars());
+
+        int dirs = (files + FILES_PER_DIR - 1) / FILES_PER_DIR;
+        long start = System.nanoTime();
+        check(fs.changeDirectory(session, "/"));
+        check(fs.createDirectory(session, "copia"));
+        for (int d = 0; d < dirs; d++) {
+            check(fs.copy(session, "/d" + d, "/copia/d" + d, true));
+        }
+        long copying = System.nanoTime() - start;
+
+        check(fs.createSnapshot(session, "s"));
+        long firstWrite = 0;
+        for (int f = 0; f < files; f++) {
+            if (f % FILES_PER_DIR == 0) {
+                check(fs.changeDirectory(session, "/d" + f / FILES_PER_DIR));
+            }
+            start = System.nanoTime();
+            check(fs.writeFile(session, "f" + f % FILES_PER_DIR, "0123456789", FileSystemManager.WRITE_AT_OFFSET, 100));
+            firstWrite += System.nanoTime() - start;
+        }
+        System.out.println(String.format("%-8s %,10d %,10.0f %,12.1f %12s %,10.1f %,14.2f", dedup ? "ligada" : "desligada",
+                writing / 1_000_000, chars * 2 / 1048576.0 / (writing / 1e9), heap / 1048576.0, ratio, copying / 1e6,
+                firstWrite / 1e3 / files));
+    }
+
+    // Palavras de 2 a 8 letras separadas por espaço e, de vez em quando, uma quebra de linha.
+    private static String text(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            int word = 2 + random.nextInt(7);
+            for (int i = 0; i < word; i++) {
+                sb.append((char) ('a' + random.nextInt(26)));
+            }
+            sb.append(random.nextInt(12) == 0 ? '\n' : ' ');
+        }
+        sb.setLength(length);
+        return sb.toString();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void check(FsStatus status) {
+        if (!status.isOk()) {
+            throw new IllegalStateException("Operation failed: " + status);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,103 @@
+package br.edu.fs.simulator;
+
+/**
+ * Mede o {@link FileSystemManager#find(FileSystemManager.Session, String, FindQuery, FindQuery.Listener)}
+ * numa árvore grande, com 1, 2, 4... threads até o número de processadores. A árvore tem
+ * {@code projetos} diretórios com {@code modulos} subdiretórios de {@code arquivos} arquivos cada;
+ * um arquivo em cada mil tem 4 KiB e um módulo em cada projeto é alterado depois da montagem, para
+ * que as buscas por tamanho e data tenham o que podar. A coluna "visitados" mostra quantos nós a
+ * busca examinou de fato.
+ *
+ * Uso: java -Xmx4g br.edu.fs.simulator.FindBenchmark [projetos] [modulos] [arquivos] [repeticoes]
+ */
+public class FindBenchmark {
+
+    public static void main(String[] args) {
+        int projects = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int modules = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int files = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int repetitions = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+        FileSystemManager fs = new FileSystemManager(null, null, null);
+        FileSystemManager.Session session = fs.newSession();
+        String big = "x".repeat(4096);
+        long start = System.nanoTime();
+        int created = 0;
+        for (int p = 0; p < projects; p++) {
+            check(fs.createDirectory(session, "projeto" + p));
+            check(fs.changeDirectory(session, "projeto" + p));
+            for (int m = 0; m < modules; m++) {
+                check(fs.createDirectory(session, "modulo" + m));
+                check(fs.changeDirectory(session, "modulo" + m));
+                for (int f = 0; f < files; f++) {
+                    String name = (f % 10 == 0 ? "Classe" + f + ".java" : "arquivo" + f + ".txt");
+                    check(fs.createFile(session, name));
+                    if (++created % 1000 == 0) {
+                        check(fs.writeFile(session, name, big, FileSystemManager.WRITE_REPLACE, 0));
+                    }
+                }
+                if (m == 0) {
+                    check(fs.createFile(session, "LEIA-ME.md"));
+                }
+                check(fs.changeDirectory(session, ".."));
+            }
+            check(fs.changeDirectory(session, ".."));
+        }
+        System.out.println(String.format("Árvore: %,d nós em %,d ms", fs.getNodeCount(), (System.nanoTime() - start) / 1_000_000));
+
+        sleep();
+        long mark = System.currentTimeMillis();
+        sleep();
+        for (int p = 0; p < projects; p++) {
+            check(fs.changeDirectory(session, "/projeto" + p + "/modulo" + (p % modules)));
+            check(fs.writeFile(session, "arquivo1.txt", "alterado", FileSystemManager.WRITE_REPLACE, 0));
+        }
+        check(fs.changeDirectory(session, "/"));
+
+        String[] labels = {"-name LEIA-ME.md", "-name *.java", "-name Classe[1-3]*", "-type d", "-size +1M", "-type f -size +2k",
+                "-newer (marca)"};
+        FindQuery[] queries = {
+                new FindQuery().name("LEIA-ME.md"),
+                new FindQuery().name("*.java"),
+                new FindQuery().name("Classe[1-3]*"),
+                new FindQuery().type(NodeType.DIRECTORY),
+                new FindQuery().largerThan(1 << 20),
+                new FindQuery().type(NodeType.FILE).largerThan(2048),
+                new FindQuery().newerThan(mark)};
+        long[] count = new long[1];
+        FindQuery.Listener listener = (path, type, size) -> count[0]++;
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.println("Processadores: " + processors);
+        System.out.println(String.format("%-22s %8s %12s %12s %10s", "consulta", "threads", "resultados", "visitados", "ms"));
+        for (int q = 0; q < queries.length; q++) {
+            for (int threads = 1; threads <= processors; threads = threads < processors ? Math.min(threads * 2, processors) : threads + 1) {
+                fs.setTreeParallelism(threads);
+                long best = Long.MAX_VALUE;
+                for (int r = 0; r < repetitions; r++) {
+                    count[0] = 0;
+                    long begin = System.nanoTime();
+                    check(fs.find(session, "/", queries[q], listener));
+                    best = Math.min(best, System.nanoTime() - begin);
+                }
+                System.out.println(String.format("%-22s %8d %,12d %,12d %10.1f", labels[q], threads, count[0], session.getLastNodeCount(),
+                        best / 1e6));
+            }
+        }
+        fs.setTreeParallelism(0);
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void check(FsStatus status) {
+        if (!status.isOk()) {
+            throw new IllegalStateException("Operation failed: " + status);
+        }
+    }
+}
\ No newline at end of file
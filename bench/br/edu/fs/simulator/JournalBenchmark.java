@@ -0,0 +1,76 @@
+package br.edu.fs.simulator;
+
+import br.edu.fs.simulator.util.MyArrayList;
+import br.edu.fs.simulator.util.MyStringBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Mede tempo e bytes alocados por operação registrada no journal: formatação imediata em texto
+ * (como o journal fazia antes), {@code logOperation} com detalhes montados pelo chamador e
+ * {@code log(JournalOp, ...)} estruturado. A alocação é medida na thread que registra.
+ *
+ * Uso: java br.edu.fs.simulator.JournalBenchmark [operacoes]
+ */
+public class JournalBenchmark {
+
+    public static void main(String[] args) {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        String path = "/home/usuario/documentos/relatorio.txt";
+
+        for (int round = 0; round < 3; round++) {
+            boolean report = round == 2;
+
+            MyArrayList<String> textLog = new MyArrayList<>();
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+            long bytes = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < operations; i++) {
+                MyStringBuilder entry = new MyStringBuilder();
+                entry.append("[");
+                entry.append(dateFormat.format(new Date(System.currentTimeMillis())));
+                entry.append("] ");
+                entry.append("write".toUpperCase());
+                entry.append(": ");
+                entry.append("Escrita em " + path + " (" + (i & 1023) + " caracteres no offset " + i + ")");
+                textLog.add(entry.toString());
+            }
+            print(report, "texto formatado na hora", operations, System.nanoTime() - start,
+                    threads.getCurrentThreadAllocatedBytes() - bytes);
+
+            Journal custom = new Journal();
+            bytes = threads.getCurrentThreadAllocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < operations; i++) {
+                custom.logOperation("WRITE", "Escrita em " + path + " (" + (i & 1023) + " caracteres no offset " + i + ")");
+            }
+            print(report, "logOperation (detalhes do chamador)", operations, System.nanoTime() - start,
+                    threads.getCurrentThreadAllocatedBytes() - bytes);
+
+            Journal structured = new Journal();
+            bytes = threads.getCurrentThreadAllocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < operations; i++) {
+                structured.log(JournalOp.WRITE, path, i & 1023, i);
+            }
+            print(report, "log(JournalOp) estruturado", operations, System.nanoTime() - start,
+                    threads.getCurrentThreadAllocatedBytes() - bytes);
+
+            if (report) {
+                System.out.println("Exemplo formatado sob demanda: " + structured.format(operations - 1));
+            }
+        }
+    }
+
+    private static void print(boolean report, String label, int operations, long nanos, long bytes) {
+        if (!report) {
+            return;
+        }
+        System.out.println(label + ":");
+        System.out.println("  " + operations + " operações em " + nanos / 1_000_000 + " ms (" + nanos / operations + " ns/op)");
+        System.out.println("  " + bytes / operations + " bytes alocados por operação");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,78 @@
+package br.edu.fs.simulator;
+
+/**
+ * Mede o heap ocupado por nó numa árvore grande: diretórios com {@code arquivos_por_diretorio}
+ * arquivos vazios cada, até somar {@code nos} nós. O modo {@code api} monta a árvore com o modelo
+ * público ({@link DirectoryNode}/{@link FileNode}); o modo {@code manager} usa o
+ * {@link FileSystemManager}, sem dispositivo de blocos nem journal em disco.
+ *
+ * Rode cada modo numa JVM própria e com heap suficiente, por exemplo:
+ * {@code java -Xmx4g br.edu.fs.simulator.NodeMemoryBenchmark manager 10000000}
+ *
+ * Uso: java br.edu.fs.simulator.NodeMemoryBenchmark [api|manager] [nos] [arquivos_por_diretorio]
+ */
+public class NodeMemoryBenchmark {
+
+    public static void main(String[] args) {
+        String mode = args.length > 0 ? args[0] : "manager";
+        int nodes = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        int filesPerDir = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int dirs = Math.max(1, nodes / (filesPerDir + 1));
+
+        long before = usedHeap();
+        long start = System.nanoTime();
+        InodeTable table;
+        long created;
+        if (mode.equals("api")) {
+            DirectoryNode root = new DirectoryNode("/", null);
+            for (int d = 0; d < dirs; d++) {
+                DirectoryNode dir = new DirectoryNode("dir" + d, root);
+                root.addChild(dir);
+                for (int f = 0; f < filesPerDir; f++) {
+                    dir.addChild(new FileNode("arquivo" + f + ".txt", dir));
+                }
+            }
+            table = root.table;
+            created = 1 + (long) dirs * (filesPerDir + 1);
+        } else if (mode.equals("manager")) {
+            FileSystemManager fs = new FileSystemManager(null, null, null);
+            FileSystemManager.Session session = fs.newSession();
+            for (int d = 0; d < dirs; d++) {
+                String dir = "dir" + d;
+                check(fs.createDirectory(session, dir));
+                check(fs.changeDirectory(session, dir));
+                for (int f = 0; f < filesPerDir; f++) {
+                    check(fs.createFile(session, "arquivo" + f + ".txt"));
+                }
+                check(fs.changeDirectory(session, ".."));
+            }
+            table = fs.getInodeTable();
+            created = fs.getNodeCount();
+        } else {
+            throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        long bytes = usedHeap() - before;
+
+        System.out.println(String.format("%s: %,d nós (%,d diretórios) em %,d ms", mode, created, dirs + 1, millis));
+        System.out.println(String.format("  heap: %,d KiB, %.1f bytes por nó", bytes / 1024, (double) bytes / created));
+        // Também mantém a árvore viva até depois da medição.
+        NameArena names = table.getNames();
+        System.out.println(String.format("  tabela: %,d inodes, capacidade %,d; nomes: %,d distintos em %,d bytes (%,d de lixo)",
+                table.size(), table.getCapacity(), names.size(), names.getByteCount(), names.getGarbage()));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void check(FsStatus status) {
+        if (!status.isOk()) {
+            throw new IllegalStateException("Operation failed: " + status);
+        }
+    }
+}
\ No newline at end of file
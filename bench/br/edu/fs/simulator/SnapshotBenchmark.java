@@ -0,0 +1,101 @@
+package br.edu.fs.simulator;
+
+import java.util.Arrays;
+
+/**
+ * Mede os snapshots: o tempo de {@code snapshot create} conforme a árvore cresce, o custo da
+ * primeira escrita num arquivo depois do snapshot, a memória que o snapshot passa a segurar
+ * quando parte dos arquivos muda, e o tempo de {@code diff} e {@code restore}.
+ *
+ * Uso: java -Xmx4g br.edu.fs.simulator.SnapshotBenchmark [diretorios] [arquivos_por_diretorio] [bytes_por_arquivo]
+ */
+public class SnapshotBenchmark {
+    private static final int SNAPSHOTS = 200;
+
+    public static void main(String[] args) {
+        int dirs = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int filesPerDir = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        int bytes = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        FileSystemManager fs = new FileSystemManager(null, null, null);
+        FileSystemManager.Session session = fs.newSession();
+        char[] fill = new char[bytes];
+        Arrays.fill(fill, 'x');
+        String content = new String(fill);
+        System.out.println(String.format("%12s %14s %14s", "nós", "create p50 us", "create p99 us"));
+        for (int d = 0, next = 10; d < dirs; d++) {
+            check(fs.changeDirectory(session, "/"));
+            check(fs.createDirectory(session, "d" + d));
+            check(fs.changeDirectory(session, "d" + d));
+            for (int f = 0; f < filesPerDir; f++) {
+                check(fs.createFile(session, "f" + f));
+                check(fs.writeFile(session, "f" + f, content, FileSystemManager.WRITE_REPLACE, 0));
+            }
+            if (d + 1 == next || d + 1 == dirs) {
+                long[] nanos = new long[SNAPSHOTS];
+                for (int i = 0; i < SNAPSHOTS; i++) {
+                    long start = System.nanoTime();
+                    check(fs.createSnapshot(session, "s"));
+                    nanos[i] = System.nanoTime() - start;
+                    check(fs.deleteSnapshot(session, "s"));
+                }
+                Arrays.sort(nanos);
+                System.out.println(String.format("%,12d %14.1f %14.1f", fs.getNodeCount(), nanos[SNAPSHOTS / 2] / 1000.0,
+                        nanos[SNAPSHOTS * 99 / 100] / 1000.0));
+                next *= 10;
+            }
+        }
+
+        // Escritas de 10 bytes no meio dos arquivos de um diretório: sem snapshot, primeira depois do snapshot e segunda.
+        check(fs.changeDirectory(session, "/d0"));
+        String patch = "0123456789";
+        overwrite(fs, session, filesPerDir, patch, bytes / 2);
+        long plain = overwrite(fs, session, filesPerDir, patch, bytes / 2);
+        check(fs.createSnapshot(session, "s"));
+        long first = overwrite(fs, session, filesPerDir, patch, bytes / 2);
+        long second = overwrite(fs, session, filesPerDir, patch, bytes / 2);
+        check(fs.deleteSnapshot(session, "s"));
+        System.out.println(String.format("write de 10 bytes: %.2f us sem snapshot, %.2f us na 1a depois do snapshot, %.2f us na 2a",
+                plain / 1000.0 / filesPerDir, first / 1000.0 / filesPerDir, second / 1000.0 / filesPerDir));
+
+        System.out.println(String.format("%12s %16s %10s %10s %12s", "alterados", "só do snapshot", "diff ms", "mudanças", "restore ms"));
+        SnapshotReport report = new SnapshotReport();
+        SnapshotDiff diff = new SnapshotDiff();
+        for (int percent : new int[]{0, 1, 10}) {
+            check(fs.createSnapshot(session, "s"));
+            int changed = 0;
+            for (int d = 0; d < dirs; d++) {
+                check(fs.changeDirectory(session, "/d" + d));
+                for (int f = 0; f < filesPerDir * percent / 100; f++) {
+                    check(fs.writeFile(session, "f" + f, patch, FileSystemManager.WRITE_AT_OFFSET, 0));
+                    changed++;
+                }
+            }
+            check(fs.listSnapshots(report));
+            report.next();
+            long start = System.nanoTime();
+            check(fs.diffSnapshots(session, "s", null, diff));
+            long diffing = System.nanoTime() - start;
+            start = System.nanoTime();
+            check(fs.restoreSnapshot(session, "s"));
+            long restoring = System.nanoTime() - start;
+            check(fs.deleteSnapshot(session, "s"));
+            System.out.println(String.format("%,12d %,12d KiB %10.1f %,10d %12.1f", changed, report.uniqueBytes() / 1024, diffing / 1e6,
+                    diff.size(), restoring / 1e6));
+        }
+    }
+
+    private static long overwrite(FileSystemManager fs, FileSystemManager.Session session, int files, String text, int offset) {
+        long start = System.nanoTime();
+        for (int f = 0; f < files; f++) {
+            check(fs.writeFile(session, "f" + f, text, FileSystemManager.WRITE_AT_OFFSET, offset));
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void check(FsStatus status) {
+        if (!status.isOk()) {
+            throw new IllegalStateException("Operation failed: " + status);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,119 @@
+package br.edu.fs.simulator;
+
+import br.edu.fs.simulator.util.ZipfSampler;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Mede o {@link TextIndex}: quanto ele encarece as escritas, quanta memória ocupa e quanto demora
+ * um {@code search}, comparado com a leitura de todo o conteúdo ({@code search -e}). Os arquivos
+ * têm palavras {@code w<posição>} sorteadas com distribuição de Zipf sobre o vocabulário; metade de
+ * cada arquivo é escrita de uma vez e o resto em anexos de 10 palavras.
+ *
+ * Uso: java -Xmx4g br.edu.fs.simulator.TextIndexBenchmark [arquivos] [palavras_por_arquivo] [vocabulario] [limite_MiB]
+ */
+public class TextIndexBenchmark {
+    private static final int FILES_PER_DIR = 100;
+    private static final int SEARCHES = 2000;
+
+    private static long contentBytes;
+
+    public static void main(String[] args) {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int wordsPerFile = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int vocabulary = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        long budget = (args.length > 3 ? Long.parseLong(args[3]) : 256) << 20;
+
+        FileSystemManager unindexed = new FileSystemManager(null, null, null);
+        unindexed.setTextIndexBudget(0);
+        long plain = build(unindexed, files, wordsPerFile, vocabulary);
+        unindexed = null;
+
+        FileSystemManager fs = new FileSystemManager(null, null, null);
+        fs.setTextIndexBudget(budget);
+        long indexed = build(fs, files, wordsPerFile, vocabulary);
+        TextIndex index = fs.getTextIndex();
+        System.out.println(String.format("%,d arquivos, %,d palavras cada, vocabulário de %,d (%,d bytes de conteúdo)", files, wordsPerFile,
+                vocabulary, contentBytes));
+        System.out.println(String.format("escritas: %,d ms sem índice, %,d ms com índice (%.2fx)", plain / 1_000_000, indexed / 1_000_000,
+                (double) indexed / plain));
+        System.out.println(String.format("índice: %,d termos, %,d pares termo/arquivo, %,d KiB (%.2f bytes por byte de conteúdo)",
+                index.getTermCount(), index.getPostingCount(), index.getMemoryBytes() / 1024, (double) index.getMemoryBytes() / contentBytes));
+
+        String[] labels = {"comum (w1)", "médio (w100)", "raro (w" + vocabulary / 2 + ")", "w1 w2", "w1 w100", "w100 w" + vocabulary / 2,
+                "w1 w2 w3 w4", "ausente"};
+        String[] queries = {"w1", "w100", "w" + vocabulary / 2, "w1 w2", "w1 w100", "w100 w" + vocabulary / 2, "w1 w2 w3 w4", "nada"};
+        long[] count = new long[1];
+        FindQuery.Listener listener = (path, type, size) -> count[0]++;
+        System.out.println(String.format("%-22s %12s %10s %10s", "search", "resultados", "p50 us", "p99 us"));
+        for (int q = 0; q < queries.length; q++) {
+            long[] nanos = new long[SEARCHES];
+            for (int i = 0; i < SEARCHES; i++) {
+                count[0] = 0;
+                long start = System.nanoTime();
+                fs.search(queries[q], listener);
+                nanos[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(nanos);
+            System.out.println(String.format("%-22s %,12d %10.1f %10.1f", labels[q], count[0], nanos[SEARCHES / 2] / 1000.0,
+                    nanos[SEARCHES * 99 / 100] / 1000.0));
+        }
+
+        FindQuery scan = new FindQuery().content(Pattern.compile("\\bw" + vocabulary / 2 + "\\b"));
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= processors; threads = threads < processors ? Math.min(threads * 2, processors) : threads + 1) {
+            fs.setTreeParallelism(threads);
+            long best = Long.MAX_VALUE;
+            for (int r = 0; r < 3; r++) {
+                count[0] = 0;
+                long start = System.nanoTime();
+                fs.find(fs.getDefaultSession(), "/", scan, listener);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.println(String.format("search -e \\bw%d\\b, %d thread(s): %,d resultado(s) em %.1f ms", vocabulary / 2, threads, count[0],
+                    best / 1e6));
+        }
+        fs.setTreeParallelism(0);
+    }
+
+    // Monta a árvore e devolve os nanossegundos gastos nas escritas.
+    private static long build(FileSystemManager fs, int files, int wordsPerFile, int vocabulary) {
+        FileSystemManager.Session session = fs.newSession();
+        ZipfSampler sampler = new ZipfSampler(vocabulary, 1.0);
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        long writing = 0;
+        contentBytes = 0;
+        for (int f = 0; f < files; f++) {
+            if (f % FILES_PER_DIR == 0) {
+                String dir = "d" + f / FILES_PER_DIR;
+                check(fs.changeDirectory(session, "/"));
+                check(fs.createDirectory(session, dir));
+                check(fs.changeDirectory(session, dir));
+            }
+            String name = "f" + f + ".txt";
+            check(fs.createFile(session, name));
+            for (int w = 0; w < wordsPerFile; ) {
+                int words = w == 0 ? wordsPerFile / 2 : Math.min(10, wordsPerFile - w);
+                text.setLength(0);
+                for (int i = 0; i < words; i++) {
+                    text.append(" w").append(sampler.sample(random));
+                }
+                long start = System.nanoTime();
+                check(fs.writeFile(session, name, text.toString(), w == 0 ? FileSystemManager.WRITE_REPLACE : FileSystemManager.WRITE_APPEND, 0));
+                writing += System.nanoTime() - start;
+                contentBytes += text.length();
+                w += words;
+            }
+        }
+        return writing;
+    }
+
+    private static void check(FsStatus status) {
+        if (!status.isOk()) {
+            throw new IllegalStateException("Operation failed: " + status);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,85 @@
+package br.edu.fs.simulator.disk;
+
+import java.util.Random;
+
+/**
+ * Compara o custo de alocação e a fragmentação resultante de escritas sequenciais
+ * (um arquivo por vez) e aleatórias (anexos intercalados entre vários arquivos).
+ *
+ * Uso: java br.edu.fs.simulator.disk.AllocationBenchmark [arquivos] [blocos_por_arquivo]
+ */
+public class AllocationBenchmark {
+
+    public static void main(String[] args) {
+        int files = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int blocksPerFile = args.length > 1 ? Integer.parseInt(args[1]) : 48;
+        int blockSize = BlockDevice.DEFAULT_BLOCK_SIZE;
+        int deviceBlocks = files * blocksPerFile * 2;
+
+        String piece = repeat('x', blockSize / 2);
+
+        for (int round = 0; round < 3; round++) {
+            boolean report = round == 2;
+            run("sequencial", new BlockDevice(deviceBlocks, blockSize), files, blocksPerFile, piece, false, report);
+            run("aleatória", new BlockDevice(deviceBlocks, blockSize), files, blocksPerFile, piece, true, report);
+        }
+    }
+
+    private static void run(String label, BlockDevice device, int files, int blocksPerFile, String piece,
+                            boolean random, boolean report) {
+        ExtentFile[] contents = new ExtentFile[files];
+        for (int i = 0; i < files; i++) {
+            contents[i] = new ExtentFile(device);
+        }
+        int[] order = new int[files * blocksPerFile];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = random ? i % files : i / blocksPerFile;
+        }
+        if (random) {
+            Random rnd = new Random(42);
+            for (int i = order.length - 1; i > 0; i--) {
+                int j = rnd.nextInt(i + 1);
+                int tmp = order[i];
+                order[i] = order[j];
+                order[j] = tmp;
+            }
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < order.length; i++) {
+            contents[order[i]].append(piece);
+        }
+        long writeNanos = System.nanoTime() - start;
+
+        // Libera metade dos arquivos para medir a fragmentação do espaço livre.
+        for (int i = 0; i < files; i += 2) {
+            contents[i].release();
+        }
+
+        if (!report) {
+            return;
+        }
+        long extents = 0;
+        for (int i = 1; i < files; i += 2) {
+            extents += contents[i].getExtents().size();
+        }
+        int[] runs = device.getBitmap().freeRunStats();
+        int free = device.getBitmap().getFreeCount();
+        System.out.println("Escrita " + label + ":");
+        System.out.println("  " + order.length + " blocos em " + writeNanos / 1_000_000 + " ms ("
+                + (writeNanos / order.length) + " ns/bloco)");
+        System.out.println("  extents por arquivo (média): " + (extents * 100 / (files / 2)) / 100.0);
+        System.out.println("  alocações no lugar: " + device.getAllocator().getInPlaceExtensions()
+                + ", extents criados: " + device.getAllocator().getExtentsCreated());
+        System.out.println("  espaço livre após liberar metade: " + runs[0] + " trecho(s), maior "
+                + runs[1] + " de " + free + " blocos");
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        for (int i = 0; i < count; i++) {
+            chars[i] = c;
+        }
+        return new String(chars);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,297 @@
+package br.edu.fs.simulator;
+
+import br.edu.fs.simulator.util.RingBuffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Grava entradas do journal numa thread de fundo. Os produtores só publicam a entrada numa
+ * {@link RingBuffer}; a thread de escrita drena e faz o commit em grupo quando o lote chega a
+ * {@code batchSize} entradas ou quando a entrada mais antiga espera mais que {@code maxDelayMillis}.
+ * {@link #sync()} é a barreira: retorna quando tudo o que foi publicado antes dela está no disco.
+ */
+public class AsyncJournalWriter<E> implements Closeable {
+    private static final long BLOCKED_PARK_NANOS = 50_000;
+    private static final long SPIN_PARK_NANOS = 1_000;
+
+    public enum Backpressure {
+        /** O produtor espera até haver espaço na fila. */
+        BLOCK,
+        /** A entrada é descartada e contada quando a fila está cheia. */
+        DROP
+    }
+
+    public interface Sink<E> {
+        void write(E entry) throws IOException;
+
+        /**
+         * Conclui o lote escrito até agora; com {@code force}, garante que ele chegou ao disco.
+         */
+        void commit(boolean force) throws IOException;
+    }
+
+    private final RingBuffer<E> ring;
+    private final Sink<E> sink;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final Thread thread;
+    private final Thread shutdownHook;
+    private final Object barrier = new Object();
+
+    private volatile Backpressure backpressure;
+    private volatile boolean forceOnCommit;
+    private volatile boolean running = true;
+    private volatile long syncTarget;
+    private volatile IOException failure;
+
+    // Escritos só pela thread de escrita.
+    private volatile long committed;
+    private volatile long forced;
+    private volatile long batches;
+    private volatile long forces;
+    private volatile long maxBatch;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+
+    public AsyncJournalWriter(String name, Sink<E> sink, int capacity, int batchSize, long maxDelayMillis,
+                              Backpressure backpressure, boolean forceOnCommit) {
+        if (batchSize <= 0 || batchSize > capacity) {
+            throw new IllegalArgumentException("Illegal batch size: " + batchSize);
+        }
+        this.ring = new RingBuffer<>(capacity);
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = maxDelayMillis * 1_000_000;
+        this.backpressure = backpressure;
+        this.forceOnCommit = forceOnCommit;
+        this.thread = new Thread(this::run, "journal-writer-" + name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+        // Numa saída normal da JVM a fila ainda é gravada; numa queda, só o que já foi forçado sobrevive.
+        this.shutdownHook = new Thread(this::drainOnExit, "journal-writer-" + name + "-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Publica a entrada para gravação. Retorna {@code false} se ela foi descartada (modo DROP).
+     */
+    public boolean submit(E entry) {
+        if (!running) {
+            throw new IllegalStateException("Journal writer closed");
+        }
+        while (!ring.offer(entry)) {
+            if (backpressure == Backpressure.DROP) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            blocked.incrementAndGet();
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+        }
+        if (ring.size() >= batchSize) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    /**
+     * Barreira de durabilidade: espera até que todas as entradas publicadas antes da chamada
+     * tenham sido gravadas e forçadas para o disco.
+     */
+    public void sync() throws IOException {
+        long target = ring.producedCount();
+        synchronized (barrier) {
+            if (target > syncTarget) {
+                syncTarget = target;
+            }
+        }
+        LockSupport.unpark(thread);
+        synchronized (barrier) {
+            while (forced < target && thread.isAlive()) {
+                try {
+                    barrier.wait(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for journal sync");
+                }
+            }
+        }
+        throwFailure();
+    }
+
+    public void setBackpressure(Backpressure backpressure) {
+        this.backpressure = backpressure;
+    }
+
+    public Backpressure getBackpressure() {
+        return backpressure;
+    }
+
+    public void setForceOnCommit(boolean forceOnCommit) {
+        this.forceOnCommit = forceOnCommit;
+    }
+
+    public long getSubmitted() {
+        return ring.producedCount();
+    }
+
+    public long getCommitted() {
+        return committed;
+    }
+
+    public long getForced() {
+        return forced;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getBlocked() {
+        return blocked.get();
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public long getForces() {
+        return forces;
+    }
+
+    public long getMaxBatch() {
+        return maxBatch;
+    }
+
+    public int getQueued() {
+        return ring.size();
+    }
+
+    public int getCapacity() {
+        return ring.capacity();
+    }
+
+    /**
+     * Para a thread de escrita depois de gravar e forçar tudo o que estiver na fila.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!running) {
+            return;
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // A JVM já está encerrando; o próprio hook termina de gravar.
+        }
+        stop();
+        throwFailure();
+    }
+
+    private void stop() throws InterruptedIOException {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing journal writer");
+        }
+    }
+
+    private void drainOnExit() {
+        try {
+            stop();
+        } catch (InterruptedIOException e) {
+            // Nada a fazer durante o encerramento.
+        }
+    }
+
+    private void run() {
+        long pending = 0;
+        long firstPending = 0;
+        while (true) {
+            int drained = 0;
+            E entry;
+            while (drained < batchSize && (entry = ring.poll()) != null) {
+                if (pending == 0) {
+                    firstPending = System.nanoTime();
+                }
+                try {
+                    sink.write(entry);
+                } catch (IOException e) {
+                    failure = e;
+                }
+                drained++;
+                pending++;
+            }
+
+            boolean stopping = !running && ring.isEmpty();
+            boolean syncWanted = forced < syncTarget;
+            long waited = pending == 0 ? 0 : System.nanoTime() - firstPending;
+            if (pending > 0 && (pending >= batchSize || syncWanted || stopping || waited >= maxDelayNanos)) {
+                commit(pending, forceOnCommit || syncWanted || stopping);
+                pending = 0;
+            } else if (pending == 0 && committed > forced && (syncWanted || stopping)) {
+                commit(0, true);
+            } else if (pending == 0 && syncWanted) {
+                // A barreira inclui posições reservadas que ainda não foram publicadas.
+                signalBarrier();
+            }
+
+            if (stopping) {
+                signalBarrier();
+                return;
+            }
+            if (drained == 0) {
+                if (forced < syncTarget) {
+                    LockSupport.parkNanos(SPIN_PARK_NANOS);
+                } else if (pending > 0) {
+                    LockSupport.parkNanos(Math.max(maxDelayNanos - waited, SPIN_PARK_NANOS));
+                } else if (running) {
+                    LockSupport.parkNanos(Math.max(maxDelayNanos, SPIN_PARK_NANOS));
+                }
+            }
+        }
+    }
+
+    private void commit(long entries, boolean force) {
+        try {
+            sink.commit(force);
+        } catch (IOException e) {
+            failure = e;
+        }
+        long total = committed + entries;
+        committed = total;
+        if (entries > 0) {
+            batches++;
+            if (entries > maxBatch) {
+                maxBatch = entries;
+            }
+        }
+        if (force) {
+            forces++;
+            forced = total;
+        }
+        signalBarrier();
+    }
+
+    private void signalBarrier() {
+        synchronized (barrier) {
+            barrier.notifyAll();
+        }
+    }
+
+    private void throwFailure() throws IOException {
+        IOException e = failure;
+        if (e != null) {
+            failure = null;
+            throw new IOException("Journal writer failed: " + e.getMessage(), e);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+package br.edu.fs.simulator;
+
+/**
+ * Retrato do uso do dispositivo de blocos, devolvido por {@link FileSystemManager#diskFree()}.
+ */
+public final class DeviceUsage {
+    public final int blockSize;
+    public final int blockCount;
+    public final int usedBlocks;
+    public final long capacityBytes;
+    public final int freeRuns;
+    public final int largestFreeRun;
+    // Arquivos guardados em extents, total de extents e arquivos com mais de um extent.
+    public final long files;
+    public final long extents;
+    public final long fragmentedFiles;
+    public final long allocations;
+    public final long allocatedBlocks;
+    public final long inPlaceExtensions;
+    public final long failedAllocations;
+
+    DeviceUsage(int blockSize, int blockCount, int usedBlocks, long capacityBytes, int freeRuns, int largestFreeRun,
+                long files, long extents, long fragmentedFiles, long allocations, long allocatedBlocks,
+                long inPlaceExtensions, long failedAllocations) {
+        this.blockSize = blockSize;
+        this.blockCount = blockCount;
+        this.usedBlocks = usedBlocks;
+        this.capacityBytes = capacityBytes;
+        this.freeRuns = freeRuns;
+        this.largestFreeRun = largestFreeRun;
+        this.files = files;
+        this.extents = extents;
+        this.fragmentedFiles = fragmentedFiles;
+        this.allocations = allocations;
+        this.allocatedBlocks = allocatedBlocks;
+        this.inPlaceExtensions = inPlaceExtensions;
+        this.failedAllocations = failedAllocations;
+    }
+
+    public int getFreeBlocks() {
+        return blockCount - usedBlocks;
+    }
+
+    /**
+     * Percentual do espaço livre fora do maior trecho contíguo.
+     */
+    public long getFragmentation() {
+        int free = getFreeBlocks();
+        return free == 0 ? 0 : 100L - (largestFreeRun * 100L / free);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,86 @@
+package br.edu.fs.simulator;
+
+/**
+ * Cursor sobre os filhos de um diretório, preenchido por
+ * {@link FileSystemManager#listDirectory(FileSystemManager.Session, String, DirectoryListing)}.
+ * Guarda uma cópia dos nomes tirada com o diretório travado, então pode ser percorrido sem travas;
+ * o mesmo objeto pode ser reutilizado em várias listagens. Os nomes não são copiados: a listagem
+ * guarda onde cada um está na {@link NameArena}, e só cria a String em {@link #name()}.
+ *
+ * <pre>
+ * while (listing.next()) {
+ *     listing.name(); listing.isDirectory();
+ * }
+ * </pre>
+ */
+public class DirectoryListing {
+    private String path;
+    private byte[] arena;
+    // Posição de cada nome na arena, como em NameArena.getLocation.
+    private long[] locations = new long[16];
+    private boolean[] directories = new boolean[16];
+    private int size;
+    private int position = -1;
+
+    /**
+     * Caminho absoluto do diretório listado.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Avança para o próximo filho; retorna {@code false} no fim da listagem.
+     */
+    public boolean next() {
+        if (position + 1 >= size) {
+            return false;
+        }
+        position++;
+        return true;
+    }
+
+    public String name() {
+        long location = locations[position];
+        return NameArena.decode(arena, NameArena.offsetOf(location), NameArena.lengthOf(location), NameArena.isLatin1(location));
+    }
+
+    public boolean isDirectory() {
+        return directories[position];
+    }
+
+    /**
+     * Volta para antes do primeiro filho.
+     */
+    public void rewind() {
+        position = -1;
+    }
+
+    // Chamado com o diretório travado, antes dos add.
+    void reset(String path, int expected, InodeTable table) {
+        if (locations.length < expected) {
+            locations = new long[expected];
+            directories = new boolean[expected];
+        }
+        this.arena = table.getNames().getBytes();
+        this.path = path;
+        this.size = 0;
+        this.position = -1;
+    }
+
+    void add(InodeTable table, int inode, int name) {
+        locations[size] = table.getNames().getLocation(name);
+        directories[size] = table.isDirectory(inode);
+        size++;
+    }
+
+    void add(InodeTable.Version version, int inode, int name) {
+        locations[size] = version.getTable().getNames().getLocation(name);
+        directories[size] = version.isDirectory(inode);
+        size++;
+    }
+}
\ No newline at end of file
@@ -1,61 +1,250 @@
 package br.edu.fs.simulator;
 
 import br.edu.fs.simulator.util.MyArrayList;
+import br.edu.fs.simulator.util.TextStorage;
 
 public class DirectoryNode extends Node {
-    private MyArrayList<Node> children;
 
     public DirectoryNode(String name, DirectoryNode parent) {
         super(name, parent, NodeType.DIRECTORY);
-        this.children = new MyArrayList<>();
+        table.setDirectory(inode, new InodeTable.DirectoryData(table, inode));
+    }
+
+    DirectoryNode(InodeTable table, int inode) {
+        super(table, inode);
+    }
+
+    private InodeTable.DirectoryData data() {
+        checkLive();
+        return table.getDirectory(inode);
     }
 
     public MyArrayList<Node> getChildren() {
-        return children;
+        InodeTable.DirectoryData data = data();
+        MyArrayList<Node> snapshot = new MyArrayList<>(data.getChildCount());
+        for (int i = 0; i < data.getPositions(); i++) {
+            int child = data.childAt(i);
+            if (child != InodeTable.NONE) {
+                snapshot.add(Node.of(table, child));
+            }
+        }
+        return snapshot;
+    }
+
+    public int getChildCount() {
+        return data().getChildCount();
+    }
+
+    public Node getChildAt(int index) {
+        InodeTable.DirectoryData data = data();
+        if (index >= data.getChildCount() || index < 0) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + data.getChildCount());
+        }
+        data.compact();
+        return Node.of(table, data.childAt(index));
     }
 
     public void addChild(Node child) {
         if (child == null) return;
-        if (findChild(child.getName()) != null) {
+        child.checkLive();
+        ownTable();
+        InodeTable.DirectoryData data = data();
+        if (data.findChild(child.getName()) != InodeTable.NONE) {
             System.err.println("Error: Node with name '" + child.getName() + "' already exists in this directory.");
             return;
         }
-        child.setParent(this);
-        children.add(child);
-        this.updatedAt = System.currentTimeMillis();
+        if (child.table != table) {
+            child.moveTo(table, inode);
+        }
+        data.addChild(child.inode);
+        propagate(child.inode, 1);
+        table.setModified(inode, System.currentTimeMillis());
     }
 
+    /**
+     * Tira o filho do diretório e libera o inode dele e de toda a subárvore. Objetos que ainda
+     * apontam para o nó removido ou para um descendente deixam de valer: qualquer acesso por eles
+     * lança {@link IllegalStateException}.
+     */
     public boolean removeChild(String name) {
-        for (int i = 0; i < children.size(); i++) {
-            if (children.get(i).getName().equals(name)) {
-                children.remove(i);
-                this.updatedAt = System.currentTimeMillis();
+        InodeTable.DirectoryData data = data();
+        int removed = data.findChild(name);
+        if (removed != InodeTable.NONE) {
+            data.removeChild(removed);
+            propagate(removed, -1);
+            table.setModified(inode, System.currentTimeMillis());
+            free(removed);
+            return true;
+        }
+        return false;
+    }
+
+    // Libera o nó e, se for diretório, os descendentes, com o conteúdo dos arquivos.
+    private void free(int node) {
+        if (table.isDirectory(node)) {
+            InodeTable.DirectoryData dir = table.getDirectory(node);
+            for (int i = 0; i < dir.getPositions(); i++) {
+                int child = dir.childAt(i);
+                if (child != InodeTable.NONE) {
+                    free(child);
+                }
+            }
+        } else {
+            Object content = table.getPayload(node);
+            if (content != null) {
+                ((TextStorage) content).release();
+            }
+        }
+        table.free(node);
+    }
+
+    boolean renameChild(Node child, String newName) {
+        if (child.getName().equals(newName)) {
+            return true;
+        }
+        InodeTable.DirectoryData data = data();
+        if (data.findChild(newName) != InodeTable.NONE) {
+            System.err.println("Error: Node with name '" + newName + "' already exists in this directory.");
+            return false;
+        }
+        if (containsChild(child)) {
+            data.renameChild(child.inode, newName);
+            table.setModified(inode, System.currentTimeMillis());
+        } else {
+            table.setName(child.inode, newName);
+        }
+        return true;
+    }
+
+    public Node findChild(String name) {
+        int child = data().findChild(name);
+        return child == InodeTable.NONE ? null : Node.of(table, child);
+    }
+
+    /**
+     * Arquivos desta subárvore cujo conteúdo tem todas as palavras de {@code query}, sem
+     * diferenciar maiúsculas. A primeira busca monta o {@link TextIndex} da árvore; depois,
+     * {@link FileNode#setContent} e {@link FileNode#appendContent} o mantêm atualizado.
+     */
+    public MyArrayList<FileNode> search(String query) {
+        checkLive();
+        MyArrayList<FileNode> found = new MyArrayList<>();
+        String[] terms = TextIndex.terms(query);
+        // Um diretório solto não tem filhos, e a tabela compartilhada não ganha índice.
+        if (terms.length == 0 || table == DETACHED) {
+            return found;
+        }
+        TextIndex index = table.enableTextIndex(TextIndex.DEFAULT_BUDGET);
+        index.search(terms, file -> {
+            if (isInSubtree(file)) {
+                found.add(new FileNode(table, file));
+            }
+        });
+        for (int file : index.getUnindexed()) {
+            if (isInSubtree(file) && TextIndex.containsAll((TextStorage) table.getPayload(file), terms)) {
+                found.add(new FileNode(table, file));
+            }
+        }
+        return found;
+    }
+
+    // Sobe pelos pais conferindo que cada um ainda tem o nó entre os filhos.
+    private boolean isInSubtree(int node) {
+        for (int child = node, parent = table.getParent(node); parent != InodeTable.NONE; child = parent, parent = table.getParent(parent)) {
+            if (!table.getDirectory(parent).containsChild(child)) {
+                return false;
+            }
+            if (parent == inode) {
                 return true;
             }
         }
         return false;
     }
 
-    public Node findChild(String name) {
-        for (int i = 0; i < children.size(); i++) {
-            Node child = children.get(i);
-            if (child.getName().equals(name)) {
-                return child;
+    boolean containsChild(Node child) {
+        return child.table == table && data().containsChild(child.inode);
+    }
+
+    private void propagate(int child, int sign) {
+        if (table.isDirectory(child)) {
+            InodeTable.DirectoryData dir = table.getDirectory(child);
+            addToTotals(sign * dir.getTotalBytes(), sign * dir.getFileCount(), sign * (dir.getDirectoryCount() + 1));
+        } else {
+            addToTotals(sign * table.getSize(child), sign, 0);
+        }
+    }
+
+    void addToTotals(long bytes, long files, long directories) {
+        int d = inode;
+        while (d != InodeTable.NONE) {
+            table.getDirectory(d).addToTotals(bytes, files, directories);
+            int parent = table.getParent(d);
+            if (parent != InodeTable.NONE && !table.getDirectory(parent).containsChild(d)) {
+                break;
+            }
+            d = parent;
+        }
+    }
+
+    @Override
+    void copyPayloadTo(InodeTable target, int copy) {
+        InodeTable.DirectoryData data = data();
+        InodeTable.DirectoryData copied = new InodeTable.DirectoryData(target, copy, data.getChildCount());
+        target.setDirectory(copy, copied);
+        for (int i = 0; i < data.getPositions(); i++) {
+            int child = data.childAt(i);
+            if (child != InodeTable.NONE) {
+                Node node = Node.of(table, child);
+                node.moveTo(target, copy);
+                copied.addChild(node.inode);
             }
         }
-        return null;
+        copied.addToTotals(data.getTotalBytes(), data.getFileCount(), data.getDirectoryCount());
     }
 
     @Override
     public int getSize() {
-        int totalSize = 0;
-        for (int i = 0; i < children.size(); i++) {
-            totalSize += children.get(i).getSize();
+        return (int) Math.min(getTotalBytes(), Integer.MAX_VALUE);
+    }
+
+    public long getTotalBytes() {
+        return data().getTotalBytes();
+    }
+
+    public int getFileCount() {
+        return (int) data().getFileCount();
+    }
+
+    public int getDirectoryCount() {
+        return (int) data().getDirectoryCount();
+    }
+
+    public boolean verifyTotals() {
+        InodeTable.DirectoryData data = data();
+        long bytes = 0;
+        long files = 0;
+        long directories = 0;
+        boolean consistent = true;
+        for (int i = 0; i < data.getPositions(); i++) {
+            int child = data.childAt(i);
+            if (child == InodeTable.NONE) {
+                continue;
+            }
+            if (table.isDirectory(child)) {
+                InodeTable.DirectoryData dir = table.getDirectory(child);
+                consistent &= new DirectoryNode(table, child).verifyTotals();
+                bytes += dir.getTotalBytes();
+                files += dir.getFileCount();
+                directories += dir.getDirectoryCount() + 1;
+            } else {
+                bytes += table.getSize(child);
+                files++;
+            }
         }
-        return totalSize;
+        return consistent && bytes == data.getTotalBytes() && files == data.getFileCount() && directories == data.getDirectoryCount();
     }
 
     public boolean isEmpty() {
-        return children.isEmpty();
+        return data().isEmpty();
     }
 }
\ No newline at end of file
@@ -1,32 +1,114 @@
 package br.edu.fs.simulator;
 
-import br.edu.fs.simulator.util.MyStringBuilder;
+import br.edu.fs.simulator.util.ChunkedText;
 
 public class FileNode extends Node {
-    private MyStringBuilder content;
 
     public FileNode(String name, DirectoryNode parent) {
         super(name, parent, NodeType.FILE);
-        this.content = new MyStringBuilder();
+    }
+
+    FileNode(InodeTable table, int inode) {
+        super(table, inode);
+    }
+
+    // O conteúdo só é criado na primeira escrita; arquivos vazios são só a linha da tabela.
+    private ChunkedText content() {
+        checkLive();
+        ChunkedText content = (ChunkedText) table.getPayload(inode);
+        if (content == null) {
+            content = new ChunkedText();
+            table.setPayload(inode, content);
+        }
+        return content;
     }
 
     public String getContent() {
-        return content.toString();
+        checkLive();
+        Object content = table.getPayload(inode);
+        return content == null ? "" : content.toString();
     }
 
     public void setContent(String newContent) {
-        this.content.clear();
-        this.content.append(newContent);
-        this.updatedAt = System.currentTimeMillis();
+        ChunkedText content = content();
+        int oldSize = content.length();
+        content.clear();
+        content.append(newContent);
+        touch(content, oldSize, -1);
     }
 
     public void appendContent(String additionalContent) {
-        this.content.append(additionalContent);
-        this.updatedAt = System.currentTimeMillis();
+        ChunkedText content = content();
+        int oldSize = content.length();
+        content.append(additionalContent);
+        touch(content, oldSize, oldSize);
+    }
+
+    public String read(int offset, int length) {
+        return content().read(offset, length);
+    }
+
+    public void write(int offset, String data) {
+        ChunkedText content = content();
+        int oldSize = content.length();
+        content.write(offset, data);
+        touch(content, oldSize, -1);
+    }
+
+    public void insert(int offset, String data) {
+        ChunkedText content = content();
+        int oldSize = content.length();
+        content.insert(offset, data);
+        touch(content, oldSize, -1);
+    }
+
+    public void truncate(int newSize) {
+        ChunkedText content = content();
+        int oldSize = content.length();
+        content.truncate(newSize);
+        touch(content, oldSize, -1);
+    }
+
+    public ChunkedText getContentBuffer() {
+        return content();
+    }
+
+    // appendedFrom >= 0: o conteúdo só ganhou texto a partir dali, e o índice lê só esse trecho.
+    private void touch(ChunkedText content, int oldSize, int appendedFrom) {
+        table.setModified(inode, System.currentTimeMillis());
+        table.setSize(inode, content.length());
+        propagateSize(content.length() - oldSize);
+        TextIndex index = table.getTextIndex();
+        if (index != null) {
+            if (appendedFrom >= 0) {
+                index.append(inode, content, appendedFrom);
+            } else {
+                index.replace(inode, content);
+            }
+        }
+    }
+
+    private void propagateSize(long delta) {
+        DirectoryNode parent = getParent();
+        if (delta != 0 && parent != null && parent.containsChild(this)) {
+            parent.addToTotals(delta, 0, 0);
+        }
+    }
+
+    @Override
+    void copyPayloadTo(InodeTable target, int copy) {
+        Object content = table.getPayload(inode);
+        target.setPayload(copy, content);
+        target.setSize(copy, table.getSize(inode));
+        TextIndex index = target.getTextIndex();
+        if (index != null && content != null) {
+            index.replace(copy, (ChunkedText) content);
+        }
     }
 
     @Override
     public int getSize() {
-        return content.length();
+        checkLive();
+        return (int) table.getSize(inode);
     }
 }
\ No newline at end of file
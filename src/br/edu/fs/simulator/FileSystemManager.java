@@ -1,243 +1,3262 @@
 package br.edu.fs.simulator;
 
 
+import br.edu.fs.simulator.disk.BlockDevice;
+import br.edu.fs.simulator.disk.DiskFullException;
+import br.edu.fs.simulator.disk.DiskImage;
+import br.edu.fs.simulator.disk.ExtentAllocator;
+import br.edu.fs.simulator.disk.ExtentFile;
+import br.edu.fs.simulator.disk.ExtentList;
+import br.edu.fs.simulator.disk.InodeRecords;
+import br.edu.fs.simulator.util.ChunkStore;
+import br.edu.fs.simulator.util.ChunkedText;
 import br.edu.fs.simulator.util.MyArrayList;
+import br.edu.fs.simulator.util.TextStorage;
 
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Núcleo do sistema de arquivos, seguro para várias threads. O estado de cada usuário (diretório
+ * atual) fica numa {@link Session}; os métodos sem sessão usam a sessão padrão do shell.
+ *
+ * Travas: {@code namespaceLock} é tomado em modo compartilhado por todas as operações e em modo
+ * exclusivo pelo que muda caminhos de outros nós ou precisa da árvore inteira parada (renomear,
+ * mover, copiar ou remover subárvores, montar, sincronizar, checkpoint). Cada diretório tem sua trava de leitura/escrita, que protege
+ * os filhos e o conteúdo dos seus arquivos; caminhos são percorridos de mão em mão, da raiz para
+ * baixo, sem nunca travar um ancestral depois de um descendente.
+ *
+ * Nenhuma operação escreve no console: cada uma retorna um {@link FsStatus} (e preenche o objeto
+ * de resultado recebido, quando há um); o {@link FileSystemSimulatorShell} é quem mostra as mensagens.
+ * Cada operação pública é contada e cronometrada em {@link #getMetrics()}.
+ */
 public class FileSystemManager {
 
+    private static final Directory NOT_FOUND = new Directory(null, InodeTable.NONE, "", null, 0);
+    // Conteúdo lido de arquivos que nunca foram escritos; nunca é alterado.
+    private static final TextStorage EMPTY_CONTENT = new ChunkedText();
+    private static final String[] NO_NOTICES = new String[0];
+    private static final Snapshot[] NO_SNAPSHOTS = new Snapshot[0];
+
+    private final ReentrantReadWriteLock namespaceLock = new ReentrantReadWriteLock();
+    private final Session defaultSession = new Session();
+    // Trocado (com o namespace exclusivo) quando a árvore inteira é substituída; sessões antigas voltam à raiz.
+    private volatile long treeGeneration;
     private Directory root;
-    private Directory currentDirectory;
     private Journal journal;
+    private PathCache<Directory> pathCache;
+    private BlockDevice device;
+    private DiskImage image;
+    private volatile WriteAheadLog wal;
+    private WriteAheadLog.SyncPolicy walSyncPolicy = WriteAheadLog.SyncPolicy.INTERVAL;
+    // Snapshot do dispositivo e da árvore usado como checkpoint quando não há imagem montada.
+    private Path checkpointPath;
+    private long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    // Avisos de eventos que não respondem a nenhuma chamada: recuperação na inicialização,
+    // checkpoint automático que falhou, erros ao fechar arquivos.
+    private final MyArrayList<String> notices = new MyArrayList<>();
+    // Snapshots da árvore atual, em ordem de criação; trocado (com o namespace exclusivo) a cada mudança.
+    private volatile Snapshot[] snapshots = NO_SNAPSHOTS;
+    private final FsMetrics metrics = new FsMetrics(this);
+    // Onde rodam as tarefas que percorrem subárvores (find, cp -r, rm -r).
+    private volatile ForkJoinPool treePool = ForkJoinPool.commonPool();
+    // Limite de memória do índice de termos de cada árvore (a atual e as montadas depois).
+    private volatile long textIndexBudget = TextIndex.DEFAULT_BUDGET;
+    private volatile boolean deduplication = true;
 
 
-    private static class Node {
-        String name;
-        Directory parent;
-        long creationTime;
-        long lastModifiedTime;
+    /**
+     * Estado de um usuário do sistema de arquivos. Uma sessão é usada por uma thread de cada vez;
+     * sessões diferentes podem trabalhar em paralelo sobre o mesmo gerenciador.
+     */
+    public static final class Session {
+        private Directory currentDirectory;
+        private long generation = -1;
+        // Detalhes da última falha e do último nó removido, para quem for mostrar o resultado.
+        private String errorDetail;
+        private long errorSize;
+        private NodeType lastType;
+        private long lastNodeCount;
+        // Último caminho de arquivo montado, para que create, write e cat seguidos do mesmo arquivo
+        // montem a String uma vez só. Vale enquanto o caminho do pai for a mesma String.
+        private String lastParentPath;
+        private String lastChildName;
+        private String lastChildPath;
 
-        public Node(String name, Directory parent) {
-            this.name = name;
-            this.parent = parent;
-            this.creationTime = System.currentTimeMillis();
-            this.lastModifiedTime = this.creationTime;
+        /**
+         * Mensagem da exceção por trás do último {@link FsStatus#IO_ERROR} ou {@link FsStatus#DISK_FULL}.
+         */
+        public String getErrorDetail() {
+            return errorDetail;
         }
 
-        public String getName() {
-            return name;
+        /**
+         * Tamanho do arquivo no último {@link FsStatus#INVALID_OFFSET} ou {@link FsStatus#INVALID_SIZE}.
+         */
+        public long getErrorSize() {
+            return errorSize;
         }
 
-        public String getAbsolutePath() {
-            if (parent == null) {
-                return name.equals("/") ? "/" : "/" + name;
-            }
-            String parentPath = parent.getAbsolutePath();
-            return parentPath.equals("/") ? "/" + name : parentPath + "/" + name;
+        /**
+         * Tipo do nó removido pelo último {@code delete} bem-sucedido.
+         */
+        public NodeType getLastType() {
+            return lastType;
         }
-    }
-
-    private static class FileNode extends Node {
 
+        /**
+         * Nós removidos, copiados ou movidos pelo último {@code delete}, {@code copy} ou {@code move}
+         * bem-sucedido, contando o próprio nó; depois de um {@code find}, os nós examinados, e
+         * depois de um {@code search}, os arquivos fora do índice que foram lidos.
+         */
+        public long getLastNodeCount() {
+            return lastNodeCount;
+        }
+    }
 
-        public FileNode(String name, Directory parent) {
-            super(name, parent);
+    private static final class CachedPath {
+        final String path;
+        final long epoch;
 
+        CachedPath(String path, long epoch) {
+            this.path = path;
+            this.epoch = epoch;
         }
     }
 
-    private static class Directory extends Node {
-        private MyArrayList<Node> children;
+    // Arquivos e diretórios são inodes da InodeTable; diretórios têm também este objeto, com a
+    // trava e os filhos. Arquivos que nunca foram escritos não têm conteúdo alocado.
+    private static final class Directory extends InodeTable.DirectoryData {
+        private static final AtomicLongFieldUpdater<Directory> NEWEST = AtomicLongFieldUpdater.newUpdater(Directory.class, "newestModified");
+
+        // Protege os filhos e o conteúdo dos arquivos deste diretório.
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        // Marcado (com a trava de escrita) quando o diretório é removido da árvore.
+        volatile boolean removed;
+        // Cópias do nome e do pai que estão na tabela: o caminho de um diretório é montado sem
+        // travas (sessões, cache de caminhos), e o inode de um diretório removido é reaproveitado.
+        volatile String name;
+        volatile Directory parent;
+        private volatile CachedPath cachedPath;
+        // Limite superior da data de modificação dos nós da subárvore, incluindo o próprio
+        // diretório. Só sobe: remoções não o diminuem. O find poda as subárvores por ele.
+        volatile long newestModified;
 
-        public Directory(String name, Directory parent) {
-            super(name, parent);
-            this.children = new MyArrayList<>();
+        Directory(InodeTable table, int inode, String name, Directory parent, int expectedChildren) {
+            super(table, inode, expectedChildren);
+            this.name = name;
+            this.parent = parent;
+            this.newestModified = inode == InodeTable.NONE ? 0 : table.getModified(inode);
         }
 
-        public void addChild(Node child) {
-            children.add(child);
-            child.parent = this;
+        // Com a lista de filhos que já está na linha (depois de restaurar um snapshot); os totais começam zerados.
+        Directory(InodeTable table, int inode, String name, Directory parent, InodeTable.Children children) {
+            super(table, inode, children);
+            this.name = name;
+            this.parent = parent;
+            this.newestModified = table.getModified(inode);
         }
 
-        public Node findChild(String name) {
-            for (int i = 0; i < children.size(); i++) {
-                Node child = children.get(i);
-                if (child.getName().equals(name)) {
-                    return child;
+        // false se o limite já era igual ou mais novo.
+        boolean raiseNewest(long time) {
+            long current;
+            do {
+                current = newestModified;
+                if (current >= time) {
+                    return false;
                 }
+            } while (!NEWEST.compareAndSet(this, current, time));
+            return true;
+        }
+
+        void rename(String newName) {
+            this.name = newName;
+            // Depois de atualizar nome e pai: quem ler a época nova já vê o caminho novo.
+            table.invalidatePaths();
+        }
+
+        String getAbsolutePath() {
+            long epoch = table.getPathEpoch();
+            CachedPath cached = cachedPath;
+            if (cached != null && cached.epoch == epoch) {
+                return cached.path;
             }
-            return null;
+            String path;
+            Directory p = parent;
+            if (p == null) {
+                path = name.equals("/") ? "/" : "/" + name;
+            } else {
+                path = childPath(p, name);
+            }
+            cachedPath = new CachedPath(path, epoch);
+            return path;
+        }
+
+        Directory childDirectory(int child) {
+            return (Directory) table.getDirectory(child);
+        }
+    }
+
+
+    // Registra uma modificação em time dentro de dir. Para no primeiro ancestral que já tem uma
+    // igual ou mais nova: os de cima também têm.
+    private static void touch(Directory dir, long time) {
+        Directory d = dir;
+        while (d != null && d.raiseNewest(time)) {
+            d = d.parent;
+        }
+    }
+
+    private static void addToTotals(Directory dir, long bytes, long files, long dirs) {
+        for (Directory d = dir; d != null; d = d.parent) {
+            d.addToTotals(bytes, files, dirs);
+        }
+    }
+
+    // Contribuição do filho para os totais do diretório.
+    private static void propagate(Directory dir, int child, int sign) {
+        InodeTable table = dir.table;
+        if (table.isDirectory(child)) {
+            Directory childDir = dir.childDirectory(child);
+            addToTotals(dir, sign * childDir.totalBytes, sign * childDir.fileCount, sign * (childDir.dirCount + 1));
+        } else {
+            addToTotals(dir, sign * table.getSize(child), sign, 0);
         }
+    }
+
 
-        public MyArrayList<Node> getChildren() {
-            return children;
+    // Subárvores com pelo menos tantos nós são copiadas ou liberadas numa tarefa própria do ForkJoinPool.
+    private static final long PARALLEL_SUBTREE = 4096;
+    // Quando o find lê conteúdo, subárvores com pelo menos tantos bytes também.
+    private static final long PARALLEL_BYTES = 1 << 20;
+    // arg1 do registro DELETE: remove o diretório com toda a subárvore.
+    private static final int DELETE_RECURSIVE = 1;
+
+    private static long subtreeSize(Directory dir) {
+        return dir.fileCount + dir.dirCount + 1;
+    }
+
+    // true se dir é ancestral de other (ou o próprio).
+    private static boolean contains(Directory dir, Directory other) {
+        for (Directory d = other; d != null; d = d.parent) {
+            if (d == dir) {
+                return true;
+            }
         }
+        return false;
     }
 
+    public static final String DEFAULT_WAL_FILE = "journal.wal";
+    public static final String DEFAULT_JOURNAL_FILE = "journal.log";
+    // Bytes de journal entre checkpoints automáticos; limita o que o replay precisa ler.
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 4 * WriteAheadLog.DEFAULT_SEGMENT_SIZE;
 
+    /**
+     * Sistema só em memória: nada é gravado em disco. Para persistir, use {@link #persistent(Path)}.
+     */
     public FileSystemManager() {
+        this(new BlockDevice(), null, null);
+    }
+
+    /**
+     * Sistema com o journal binário ({@value #DEFAULT_WAL_FILE}), o checkpoint e o journal de texto
+     * ({@value #DEFAULT_JOURNAL_FILE}) em {@code dir}, que é criado se não existir. O que já estiver
+     * lá é recuperado.
+     */
+    public static FileSystemManager persistent(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        return new FileSystemManager(new BlockDevice(), dir.resolve(DEFAULT_WAL_FILE), dir.resolve(DEFAULT_JOURNAL_FILE).toString());
+    }
+
+    /**
+     * @param device dispositivo onde ficam os dados dos arquivos; {@code null} mantém o conteúdo no heap.
+     *               O checkpoint é uma imagem do dispositivo: sem ele, um journal em disco nunca é
+     *               truncado, e restaurar um snapshot falha com {@link FsStatus#NO_DEVICE}.
+     */
+    public FileSystemManager(BlockDevice device) {
+        this(device, null);
+    }
+
+    /**
+     * @param walPath journal binário reaplicado na inicialização; {@code null} desativa o journal em disco.
+     */
+    public FileSystemManager(BlockDevice device, Path walPath) {
+        this(device, walPath, null);
+    }
+
+    /**
+     * @param journalFile arquivo onde o journal de texto é gravado em segundo plano; {@code null} o mantém só em memória.
+     */
+    public FileSystemManager(BlockDevice device, Path walPath, String journalFile) {
+        this.device = device;
         this.journal = new Journal();
-        this.root = new Directory("/", null);
-        this.currentDirectory = this.root;
-        this.journal.logOperation("INIT_FS", "Sistema de arquivos inicializado. Raiz em /");
+        if (journalFile != null) {
+            try {
+                journal.startAppender(journalFile, AsyncJournalWriter.Backpressure.BLOCK);
+            } catch (IOException e) {
+                notice("Erro: Não foi possível abrir '" + journalFile + "': " + e.getMessage());
+            }
+        }
+        this.root = newRoot(new InodeTable(), 8);
+        this.root.table.enableTextIndex(textIndexBudget);
+        this.pathCache = new PathCache<>(NOT_FOUND);
+        this.journal.log(JournalOp.INIT_FS, "/");
+        if (walPath != null) {
+            this.checkpointPath = walPath.resolveSibling(walPath.getFileName() + ".ckpt");
+            openWal(walPath, loadCheckpoint());
+        }
     }
 
 
+    private static Directory newRoot(InodeTable table, int expectedChildren) {
+        int inode = table.allocate(InodeTable.NONE, NodeType.DIRECTORY, "/", System.currentTimeMillis());
+        Directory dir = new Directory(table, inode, "/", null, expectedChildren);
+        table.setDirectory(inode, dir);
+        return dir;
+    }
+
     public Journal getJournal() {
         return this.journal;
     }
 
+    /**
+     * Número de threads que percorrem subárvores em {@code find}, {@code cp -r} e {@code rm -r};
+     * 0 volta ao pool comum do ForkJoin.
+     */
+    public void setTreeParallelism(int threads) {
+        ForkJoinPool old = treePool;
+        treePool = threads == 0 ? ForkJoinPool.commonPool() : new ForkJoinPool(threads);
+        if (old != ForkJoinPool.commonPool()) {
+            old.shutdown();
+        }
+    }
+
+    /**
+     * Índice de termos do conteúdo da árvore atual (um novo a cada mount).
+     */
+    public TextIndex getTextIndex() {
+        return getInodeTable().getTextIndex();
+    }
+
+    /**
+     * Blocos deduplicados do conteúdo da árvore atual e dos snapshots, ou {@code null} se o
+     * conteúdo dos arquivos fica no dispositivo de blocos.
+     */
+    public ChunkStore getChunkStore() {
+        return device == null ? getInodeTable().getChunkStore() : null;
+    }
+
+    /**
+     * Limite de memória do índice de termos, para a árvore atual e as próximas.
+     */
+    public void setTextIndexBudget(long bytes) {
+        textIndexBudget = bytes;
+        getTextIndex().setBudget(bytes);
+    }
+
+    /**
+     * Liga ou desliga a deduplicação do conteúdo em memória. Vale para os arquivos escritos pela
+     * primeira vez depois da chamada; os que já existem continuam como estão.
+     */
+    public void setDeduplication(boolean enabled) {
+        deduplication = enabled;
+    }
+
+    // Tabela de inodes da árvore atual; trocada quando a árvore é substituída (mount, checkpoint).
+    InodeTable getInodeTable() {
+        namespaceLock.readLock().lock();
+        try {
+            return root.table;
+        } finally {
+            namespaceLock.readLock().unlock();
+        }
+    }
+
+    public FsMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Retorna e esquece os avisos acumulados desde a última chamada.
+     */
+    public String[] takeNotices() {
+        synchronized (notices) {
+            if (notices.isEmpty()) {
+                return NO_NOTICES;
+            }
+            String[] taken = new String[notices.size()];
+            for (int i = 0; i < taken.length; i++) {
+                taken[i] = notices.get(i);
+            }
+            notices.clear();
+            return taken;
+        }
+    }
+
+    private void notice(String message) {
+        synchronized (notices) {
+            notices.add(message);
+        }
+    }
+
+    // Falha de E/S: o detalhe vai para a sessão que pediu a operação; sem sessão (operação
+    // automática), vira aviso.
+    private FsStatus ioError(Session session, String prefix, Exception e) {
+        if (session != null) {
+            session.errorDetail = e.getMessage();
+        } else {
+            notice(prefix + e.getMessage());
+        }
+        return FsStatus.IO_ERROR;
+    }
+
+    /**
+     * Cria uma sessão nova, começando na raiz.
+     */
+    public Session newSession() {
+        return new Session();
+    }
+
+    public Session getDefaultSession() {
+        return defaultSession;
+    }
+
     public String getCurrentPath() {
-        return currentDirectory.getAbsolutePath();
+        return getCurrentPath(defaultSession);
     }
 
-    public void createDirectory(String name) {
-        if (name == null || name.isEmpty() || name.contains("/") || name.contains(" ")) {
-            System.out.println("Erro: Nome de diretório inválido.");
+    public String getCurrentPath(Session session) {
+        namespaceLock.readLock().lock();
+        try {
+            return cwd(session).getAbsolutePath();
+        } finally {
+            namespaceLock.readLock().unlock();
+        }
+    }
+
+    PathCache<Directory> getPathCache() {
+        return this.pathCache;
+    }
+
+    // Diretório atual da sessão; volta para a raiz se a árvore foi trocada. Chamado com o namespace travado.
+    private Directory cwd(Session session) {
+        if (session.generation != treeGeneration) {
+            session.currentDirectory = root;
+            session.generation = treeGeneration;
+        }
+        return session.currentDirectory;
+    }
+
+    private static void lock(Directory dir, boolean write) {
+        if (write) {
+            dir.lock.writeLock().lock();
+        } else {
+            dir.lock.readLock().lock();
+        }
+    }
+
+    private static void unlock(Directory dir, boolean write) {
+        if (write) {
+            dir.lock.writeLock().unlock();
+        } else {
+            dir.lock.readLock().unlock();
+        }
+    }
+
+    // Trava o namespace (compartilhado) e o diretório atual da sessão. Se outra sessão removeu o
+    // diretório, registra a falha, destrava tudo e retorna null (CWD_REMOVED).
+    private Directory enterCwd(Session session, boolean write, String failOperation) {
+        namespaceLock.readLock().lock();
+        Directory dir = cwd(session);
+        lock(dir, write);
+        if (dir.removed) {
+            leave(dir, write);
+            journal.logOperation(failOperation, "Diretório atual removido: " + dir.getAbsolutePath());
+            return null;
+        }
+        return dir;
+    }
+
+    private void leave(Directory dir, boolean write) {
+        unlock(dir, write);
+        namespaceLock.readLock().unlock();
+    }
+
+    // Como enterCwd, para o diretório onde fica o último componente do caminho. Se ele não existe
+    // ou foi removido, registra a falha e retorna null (CWD_REMOVED se o caminho é só um nome,
+    // NOT_FOUND se não).
+    private Directory enterParent(Session session, String path, boolean write, String failOperation) {
+        if (path.indexOf('/') < 0) {
+            return enterCwd(session, write, failOperation);
+        }
+        namespaceLock.readLock().lock();
+        Directory dir = parentDirectory(session, path);
+        if (dir != null) {
+            lock(dir, write);
+            if (dir.removed) {
+                unlock(dir, write);
+                dir = null;
+            }
+        }
+        if (dir == null) {
+            namespaceLock.readLock().unlock();
+            journal.logOperation(failOperation, "Diretório não encontrado: " + parentOf(path));
+        }
+        return dir;
+    }
+
+    public FsStatus createDirectory(String name) {
+        return createDirectory(defaultSession, name);
+    }
+
+    public FsStatus createDirectory(Session session, String name) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.MKDIR, start, doCreateDirectory(session, name), name);
+    }
+
+    private FsStatus doCreateDirectory(Session session, String name) {
+        if (!isValidName(name)) {
             journal.logOperation("MKDIR_FAIL", "Tentativa de criar diretório com nome inválido: " + (name == null ? "null" : name));
-            return;
+            return FsStatus.INVALID_NAME;
         }
-        if (currentDirectory.findChild(name) != null) {
-            System.out.println("Erro: Diretório '" + name + "' já existe.");
-            journal.logOperation("MKDIR_FAIL", "Diretório já existe: " + currentDirectory.getAbsolutePath() + (currentDirectory.getAbsolutePath().equals("/") ? "" : "/") + name);
-            return;
+        maybeCheckpoint();
+        Directory dir = enterCwd(session, true, "MKDIR_FAIL");
+        if (dir == null) {
+            return FsStatus.CWD_REMOVED;
         }
+        try {
+            if (dir.findChild(name) != InodeTable.NONE) {
+                journal.logOperation("MKDIR_FAIL", "Diretório já existe: " + childPath(dir, name));
+                return FsStatus.ALREADY_EXISTS;
+            }
 
-        Directory newDir = new Directory(name, currentDirectory);
-        currentDirectory.addChild(newDir);
-        System.out.println("Diretório '" + name + "' criado.");
-        // Log da operação no Journal
-        journal.logOperation("MKDIR", "Diretório criado: " + newDir.getAbsolutePath());
+            String path = childPath(dir, name);
+            if (!logAhead(session, WriteAheadLog.Op.MKDIR, path, 0, 0, null, "MKDIR_FAIL")) {
+                return FsStatus.IO_ERROR;
+            }
+            applyCreateDirectory(dir, name, System.currentTimeMillis());
+            // Log da operação no Journal
+            journal.log(JournalOp.MKDIR, path);
+            return FsStatus.OK;
+        } finally {
+            leave(dir, true);
+        }
     }
 
-    public void createFile(String name) {
-        if (name == null || name.isEmpty() || name.contains("/") || name.contains(" ")) {
-            System.out.println("Erro: Nome de arquivo inválido.");
+    public FsStatus createFile(String name) {
+        return createFile(defaultSession, name);
+    }
+
+    public FsStatus createFile(Session session, String name) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.CREATE, start, doCreateFile(session, name), name);
+    }
+
+    private FsStatus doCreateFile(Session session, String name) {
+        if (!isValidName(name)) {
             journal.logOperation("CREATE_FILE_FAIL", "Tentativa de criar arquivo com nome inválido: " + (name == null ? "null" : name));
-            return;
+            return FsStatus.INVALID_NAME;
         }
-        if (currentDirectory.findChild(name) != null) {
-            System.out.println("Erro: Arquivo ou diretório '" + name + "' já existe.");
-            journal.logOperation("CREATE_FILE_FAIL", "Arquivo/Diretório já existe: " + currentDirectory.getAbsolutePath() + (currentDirectory.getAbsolutePath().equals("/") ? "" : "/") + name);
-            return;
+        maybeCheckpoint();
+        Directory dir = enterCwd(session, true, "CREATE_FILE_FAIL");
+        if (dir == null) {
+            return FsStatus.CWD_REMOVED;
+        }
+        try {
+            if (dir.findChild(name) != InodeTable.NONE) {
+                journal.logOperation("CREATE_FILE_FAIL", "Arquivo/Diretório já existe: " + childPath(dir, name));
+                return FsStatus.ALREADY_EXISTS;
+            }
+
+            String path = childPath(session, dir, name);
+            if (!logAhead(session, WriteAheadLog.Op.CREATE, path, 0, 0, null, "CREATE_FILE_FAIL")) {
+                return FsStatus.IO_ERROR;
+            }
+            applyCreateFile(dir, name, System.currentTimeMillis());
+            // Log da operação no Journal
+            journal.log(JournalOp.CREATE_FILE, path);
+            return FsStatus.OK;
+        } finally {
+            leave(dir, true);
         }
+    }
 
-        FileNode newFile = new FileNode(name, currentDirectory);
-        currentDirectory.addChild(newFile);
-        System.out.println("Arquivo '" + name + "' criado.");
-        // Log da operação no Journal
-        journal.logOperation("CREATE_FILE", "Arquivo criado: " + newFile.getAbsolutePath());
+    public FsStatus listDirectory(String path, DirectoryListing listing) {
+        return listDirectory(defaultSession, path, listing);
     }
 
-    public void listDirectory(String path) {
-        Directory targetDir = path.equals(".") || path.isEmpty() ? currentDirectory : findDirectory(path);
-        if (targetDir == null) {
-            System.out.println("Erro: Diretório '" + path + "' não encontrado.");
-            journal.logOperation("LS_FAIL", "Diretório não encontrado para listagem: " + path);
-            return;
+    /**
+     * Preenche {@code listing} com os filhos do diretório, na ordem de criação.
+     */
+    public FsStatus listDirectory(Session session, String path, DirectoryListing listing) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.LS, start, doListDirectory(session, path, listing), path);
+    }
+
+    private FsStatus doListDirectory(Session session, String path, DirectoryListing listing) {
+        namespaceLock.readLock().lock();
+        try {
+            Directory targetDir = path.equals(".") || path.isEmpty() ? cwd(session) : findDirectory(session, path);
+            if (targetDir != null) {
+                targetDir.lock.readLock().lock();
+                if (targetDir.removed) {
+                    targetDir.lock.readLock().unlock();
+                    targetDir = null;
+                }
+            }
+            if (targetDir == null) {
+                journal.logOperation("LS_FAIL", "Diretório não encontrado para listagem: " + path);
+                return FsStatus.NOT_FOUND;
+            }
+
+            try {
+                InodeTable table = targetDir.table;
+                listing.reset(targetDir.getAbsolutePath(), targetDir.getChildCount(), table);
+                for (int i = 0; i < targetDir.getPositions(); i++) {
+                    int child = targetDir.childAt(i);
+                    if (child != InodeTable.NONE) {
+                        listing.add(table, child, targetDir.nameAt(i));
+                    }
+                }
+                journal.log(JournalOp.LS, targetDir.getAbsolutePath());
+                return FsStatus.OK;
+            } finally {
+                targetDir.lock.readLock().unlock();
+            }
+        } finally {
+            namespaceLock.readLock().unlock();
         }
+    }
 
-        System.out.println("Conteúdo de " + targetDir.getAbsolutePath() + ":");
-        MyArrayList<Node> children = targetDir.getChildren();
-        if (children.isEmpty()) {
-            System.out.println("(vazio)");
-        } else {
-            for (int i = 0; i < children.size(); i++) {
-                Node child = children.get(i);
-                String type = (child instanceof Directory) ? "d" : "f";
-                System.out.println(type + " " + child.getName());
+    public FsStatus diskUsage(String path, UsageReport report) {
+        return diskUsage(defaultSession, path, report);
+    }
+
+    public FsStatus diskUsage(Session session, String path, UsageReport report) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.DU, start, doDiskUsage(session, path, report), path);
+    }
+
+    private FsStatus doDiskUsage(Session session, String path, UsageReport report) {
+        namespaceLock.readLock().lock();
+        try {
+            Directory targetDir = path.equals(".") || path.isEmpty() ? cwd(session) : findDirectory(session, path);
+            if (targetDir == null || targetDir.removed) {
+                return FsStatus.NOT_FOUND;
+            }
+
+            targetDir.lock.readLock().lock();
+            try {
+                InodeTable table = targetDir.table;
+                report.reset(targetDir.getChildCount() + 1);
+                for (int i = 0; i < targetDir.getPositions(); i++) {
+                    int child = targetDir.childAt(i);
+                    if (child != InodeTable.NONE && table.isDirectory(child)) {
+                        addUsage(report, targetDir.childDirectory(child));
+                    }
+                }
+            } finally {
+                targetDir.lock.readLock().unlock();
             }
+            addUsage(report, targetDir);
+            return FsStatus.OK;
+        } finally {
+            namespaceLock.readLock().unlock();
         }
-        journal.logOperation("LS", "Listado diretório: " + targetDir.getAbsolutePath());
     }
 
-    public void changeDirectory(String path) {
-        if (path.equals("..")) {
-            if (currentDirectory.parent != null) {
-                currentDirectory = currentDirectory.parent;
-                journal.logOperation("CD", "Mudou para diretório pai: " + currentDirectory.getAbsolutePath());
-            } else {
-                System.out.println("Erro: Já está no diretório raiz.");
-                journal.logOperation("CD_FAIL", "Tentativa de ir para pai da raiz.");
+    private static void addUsage(UsageReport report, Directory dir) {
+        report.add(dir.getAbsolutePath(), dir.totalBytes, dir.fileCount, dir.dirCount);
+    }
+
+    public FsStatus search(String query, FindQuery.Listener listener) {
+        return search(defaultSession, query, listener);
+    }
+
+    /**
+     * Arquivos cujo conteúdo tem todas as palavras de {@code query} (letras e dígitos, sem
+     * diferenciar maiúsculas), respondidos pelo {@link TextIndex} sem ler o conteúdo. Só os
+     * arquivos que ficaram fora do índice são lidos; {@link Session#getLastNodeCount()} diz quantos.
+     */
+    public FsStatus search(Session session, String query, FindQuery.Listener listener) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.SEARCH, start, doSearch(session, query, listener), query);
+    }
+
+    private FsStatus doSearch(Session session, String query, FindQuery.Listener listener) {
+        String[] terms = TextIndex.terms(query);
+        if (terms.length == 0) {
+            journal.logOperation("SEARCH_FAIL", "Busca sem palavras: " + query);
+            return FsStatus.INVALID_NAME;
+        }
+        SearchHits hits = new SearchHits();
+        namespaceLock.readLock().lock();
+        try {
+            InodeTable table = root.table;
+            TextIndex index = table.getTextIndex();
+            // Com o índice travado nenhum desses inodes é liberado, então o caminho é o do arquivo.
+            index.search(terms, file -> hits.add(table.getPath(file), table.getSize(file)));
+            int[] unindexed = index.getUnindexed();
+            for (int file : unindexed) {
+                String path = scanUnindexed(table, file, terms);
+                if (path != null) {
+                    hits.add(path, table.getSize(file));
+                }
             }
-            return;
+            session.lastNodeCount = unindexed.length;
+            journal.log(JournalOp.SEARCH, query, hits.count);
+        } finally {
+            namespaceLock.readLock().unlock();
         }
+        hits.deliver(listener);
+        return FsStatus.OK;
+    }
 
-        Directory targetDir = findDirectory(path);
-        if (targetDir != null) {
-            currentDirectory = targetDir;
-            journal.logOperation("CD", "Mudou para diretório: " + currentDirectory.getAbsolutePath());
-        } else {
-            System.out.println("Erro: Diretório '" + path + "' não encontrado.");
-            journal.logOperation("CD_FAIL", "Diretório não encontrado: " + path);
+    // Caminho do arquivo fora do índice, se ele tem todos os termos. Lido com o diretório travado;
+    // pode ter sido removido (ou o inode reaproveitado) depois de getUnindexed.
+    private static String scanUnindexed(InodeTable table, int file, String[] terms) {
+        int parent = table.getParent(file);
+        Directory dir = parent == InodeTable.NONE ? null : (Directory) table.getDirectory(parent);
+        if (dir == null) {
+            return null;
+        }
+        dir.lock.readLock().lock();
+        try {
+            if (dir.removed || !dir.containsChild(file) || table.isDirectory(file)
+                    || !TextIndex.containsAll(content(table, file), terms)) {
+                return null;
+            }
+            return table.getPath(file);
+        } finally {
+            dir.lock.readLock().unlock();
         }
     }
 
+    // Resultados de search e find, guardados até as travas serem soltas: quem recebe pode ser
+    // lento (uma sessão remota escrevendo no socket) e não deve segurar renomeações e snapshots.
+    private static final class SearchHits {
+        private String[] paths = new String[16];
+        private NodeType[] types = new NodeType[16];
+        private long[] sizes = new long[16];
+        private int count;
 
-    private Directory findDirectory(String path) {
-        if (path.equals("/")) {
-            return root;
+        void add(String path, long size) {
+            add(path, NodeType.FILE, size);
         }
-        if (path.startsWith("/")) {
-            String[] parts = path.substring(1).split("/");
-            Directory current = root;
-            for (String part : parts) {
-                if (part.isEmpty()) continue;
-                Node child = current.findChild(part);
-                if (child instanceof Directory) {
-                    current = (Directory) child;
-                } else {
-                    return null;
+
+        void add(String path, NodeType type, long size) {
+            if (count == paths.length) {
+                paths = Arrays.copyOf(paths, count * 2);
+                types = Arrays.copyOf(types, count * 2);
+                sizes = Arrays.copyOf(sizes, count * 2);
+            }
+            paths[count] = path;
+            types[count] = type;
+            sizes[count] = size;
+            count++;
+        }
+
+        void deliver(FindQuery.Listener listener) {
+            for (int i = 0; i < count; i++) {
+                listener.found(paths[i], types[i], sizes[i]);
+            }
+        }
+    }
+
+    public FsStatus find(String path, FindQuery query, FindQuery.Listener listener) {
+        return find(defaultSession, path, query, listener);
+    }
+
+    /**
+     * Procura a partir do diretório indicado (incluído) os nós que satisfazem a consulta e os
+     * entrega a {@code listener} no fim, já sem nenhuma trava. Subárvores grandes são percorridas em
+     * paralelo; cada diretório fica travado para leitura só enquanto seus filhos são examinados.
+     * {@link Session#getLastNodeCount()} fica com o número de nós examinados.
+     */
+    public FsStatus find(Session session, String path, FindQuery query, FindQuery.Listener listener) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.FIND, start, doFind(session, path, query, listener), path);
+    }
+
+    private FsStatus doFind(Session session, String path, FindQuery query, FindQuery.Listener listener) {
+        FindRun run;
+        namespaceLock.readLock().lock();
+        try {
+            Directory startDir = path.equals(".") || path.isEmpty() ? cwd(session) : findDirectory(session, path);
+            if (startDir == null || startDir.removed) {
+                journal.logOperation("FIND_FAIL", "Diretório não encontrado para busca: " + path);
+                return FsStatus.NOT_FOUND;
+            }
+            InodeTable table = startDir.table;
+            NameArena names = table.getNames();
+            String literal = query.getLiteralName();
+            run = new FindRun(query, names, literal == null ? NameArena.NONE : names.find(literal));
+            // Um nome sem curingas que não está na arena não é de nenhum nó.
+            if (literal == null || run.literal != NameArena.NONE) {
+                if (run.matches(table, startDir.inode, table.getNameId(startDir.inode), true, startDir.totalBytes, names.getBytes())) {
+                    run.deliver(new String[] {startDir.getAbsolutePath()}, new NodeType[] {NodeType.DIRECTORY},
+                            new long[] {startDir.totalBytes}, 1);
+                }
+                if (query.mayMatchBelow(startDir.fileCount, startDir.dirCount, startDir.totalBytes, startDir.newestModified)) {
+                    treePool.invoke(new FindTask(run, startDir));
                 }
             }
-            return current;
-        } else {
-            String[] parts = path.split("/");
-            Directory current = currentDirectory;
-            for (String part : parts) {
-                if (part.isEmpty()) continue;
-                Node child = current.findChild(part);
-                if (child instanceof Directory) {
-                    current = (Directory) child;
+            session.lastNodeCount = run.visited.get();
+            journal.log(JournalOp.FIND, startDir.getAbsolutePath(), run.getMatches());
+        } finally {
+            namespaceLock.readLock().unlock();
+        }
+        run.hits.deliver(listener);
+        return FsStatus.OK;
+    }
+
+    // Estado de uma busca, dividido entre as tarefas.
+    private static final class FindRun {
+        final FindQuery query;
+        final NameArena names;
+        // Id do nome procurado, quando o padrão não tem curingas: basta comparar ids.
+        final int literal;
+        final AtomicLong visited = new AtomicLong();
+        final SearchHits hits = new SearchHits();
+
+        FindRun(FindQuery query, NameArena names, int literal) {
+            this.query = query;
+            this.names = names;
+            this.literal = literal;
+        }
+
+        // Do mais barato ao mais caro: atributos da linha, nome na arena, conteúdo.
+        boolean matches(InodeTable table, int node, int nameId, boolean directory, long size, byte[] arena) {
+            if (!query.matchesAttributes(directory, size, table.getModified(node))) {
+                return false;
+            }
+            if (query.hasNamePattern() && !(literal != NameArena.NONE ? nameId == literal : query.matchesName(names, arena, nameId))) {
+                return false;
+            }
+            return !query.readsContent() || query.matchesContent(content(table, node));
+        }
+
+        synchronized void deliver(String[] paths, NodeType[] types, long[] sizes, int count) {
+            for (int i = 0; i < count; i++) {
+                hits.add(paths[i], types[i], sizes[i]);
+            }
+        }
+
+        synchronized long getMatches() {
+            return hits.count;
+        }
+    }
+
+    // Examina os filhos de um diretório com ele travado para leitura e depois desce nos
+    // subdiretórios que ainda podem ter resultados; os grandes viram tarefas próprias. Nunca há mais
+    // de uma trava de diretório por vez, e os resultados são juntados em lotes, já sem essa trava.
+    private static final class FindTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int BATCH = 128;
+
+        private final FindRun run;
+        private final Directory dir;
+        private String[] paths = new String[BATCH];
+        private NodeType[] types = new NodeType[BATCH];
+        private long[] sizes = new long[BATCH];
+        private int found;
+        private long visited;
+
+        FindTask(FindRun run, Directory dir) {
+            this.run = run;
+            this.dir = dir;
+        }
+
+        @Override
+        protected void compute() {
+            MyArrayList<FindTask> forked = new MyArrayList<>();
+            walk(dir, forked);
+            flush();
+            run.visited.addAndGet(visited);
+            for (int i = 0; i < forked.size(); i++) {
+                forked.get(i).join();
+            }
+        }
+
+        private void walk(Directory d, MyArrayList<FindTask> forked) {
+            MyArrayList<Directory> below = null;
+            d.lock.readLock().lock();
+            try {
+                if (d.removed) {
+                    return;
+                }
+                InodeTable table = d.table;
+                byte[] arena = run.names.getBytes();
+                for (int i = 0; i < d.getPositions(); i++) {
+                    int child = d.childAt(i);
+                    if (child == InodeTable.NONE) {
+                        continue;
+                    }
+                    visited++;
+                    boolean isDirectory = table.isDirectory(child);
+                    Directory sub = isDirectory ? d.childDirectory(child) : null;
+                    long size = isDirectory ? sub.totalBytes : table.getSize(child);
+                    if (run.matches(table, child, d.nameAt(i), isDirectory, size, arena)) {
+                        add(childPath(d, run.names.get(d.nameAt(i))), isDirectory ? NodeType.DIRECTORY : NodeType.FILE, size);
+                    }
+                    if (isDirectory && run.query.mayMatchBelow(sub.fileCount, sub.dirCount, sub.totalBytes, sub.newestModified)) {
+                        if (below == null) {
+                            below = new MyArrayList<>();
+                        }
+                        below.add(sub);
+                    }
+                }
+            } finally {
+                d.lock.readLock().unlock();
+            }
+            if (found >= BATCH) {
+                flush();
+            }
+            if (below == null) {
+                return;
+            }
+            for (int i = 0; i < below.size(); i++) {
+                Directory sub = below.get(i);
+                if (subtreeSize(sub) >= PARALLEL_SUBTREE || run.query.readsContent() && sub.totalBytes >= PARALLEL_BYTES) {
+                    FindTask task = new FindTask(run, sub);
+                    task.fork();
+                    forked.add(task);
                 } else {
-                    return null;
+                    walk(sub, forked);
                 }
             }
-            return current;
+        }
+
+        private void add(String path, NodeType type, long size) {
+            if (found == paths.length) {
+                int capacity = found * 2;
+                String[] grownPaths = new String[capacity];
+                NodeType[] grownTypes = new NodeType[capacity];
+                long[] grownSizes = new long[capacity];
+                System.arraycopy(paths, 0, grownPaths, 0, found);
+                System.arraycopy(types, 0, grownTypes, 0, found);
+                System.arraycopy(sizes, 0, grownSizes, 0, found);
+                paths = grownPaths;
+                types = grownTypes;
+                sizes = grownSizes;
+            }
+            paths[found] = path;
+            types[found] = type;
+            sizes[found] = size;
+            found++;
+        }
+
+        private void flush() {
+            if (found > 0) {
+                run.deliver(paths, types, sizes, found);
+                for (int i = 0; i < found; i++) {
+                    paths[i] = null;
+                }
+                found = 0;
+            }
         }
     }
 
-    public void delete(String path) {
+    /**
+     * Número de nós da árvore, contando a raiz.
+     */
+    public long getNodeCount() {
+        namespaceLock.readLock().lock();
+        try {
+            return root.fileCount + root.dirCount + 1;
+        } finally {
+            namespaceLock.readLock().unlock();
+        }
+    }
 
-        Node nodeToRemove = currentDirectory.findChild(path);
+    /**
+     * Bytes de todos os arquivos da árvore.
+     */
+    public long getTotalBytes() {
+        namespaceLock.readLock().lock();
+        try {
+            return root.totalBytes;
+        } finally {
+            namespaceLock.readLock().unlock();
+        }
+    }
 
-        if (nodeToRemove == null) {
-            System.out.println("Erro: Arquivo ou diretório '" + path + "' não encontrado.");
-            journal.logOperation("RM_FAIL", "Não encontrado para remover: " + currentDirectory.getAbsolutePath() + (currentDirectory.getAbsolutePath().equals("/") ? "" : "/") + path);
-            return;
+    /**
+     * Recalcula os totais de toda a árvore e compara com os valores agregados e com o tamanho
+     * gravado em cada inode de arquivo. Cada inconsistência é registrada no journal ({@code FSCK_FAIL}).
+     * Retorna o número de inconsistências (0 = árvore consistente).
+     */
+    public int checkConsistency() {
+        namespaceLock.writeLock().lock();
+        try {
+            long[] totals = new long[3];
+            return checkConsistency(root, totals);
+        } finally {
+            namespaceLock.writeLock().unlock();
         }
+    }
 
-        if (nodeToRemove instanceof Directory) {
-            Directory dirToRemove = (Directory) nodeToRemove;
-            if (!dirToRemove.getChildren().isEmpty()) {
-                System.out.println("Erro: Diretório '" + path + "' não está vazio.");
-                journal.logOperation("RM_FAIL", "Tentativa de remover diretório não vazio: " + dirToRemove.getAbsolutePath());
-                return;
+    private int checkConsistency(Directory dir, long[] totals) {
+        int errors = 0;
+        long bytes = 0;
+        long files = 0;
+        long dirs = 0;
+        InodeTable table = dir.table;
+        for (int i = 0; i < dir.getPositions(); i++) {
+            int child = dir.childAt(i);
+            if (child == InodeTable.NONE) {
+                continue;
+            }
+            if (table.isDirectory(child)) {
+                errors += checkConsistency(dir.childDirectory(child), totals);
+                bytes += totals[0];
+                files += totals[1];
+                dirs += totals[2] + 1;
+            } else {
+                long size = content(table, child).length();
+                if (size != table.getSize(child)) {
+                    journal.logOperation("FSCK_FAIL", "Tamanho inconsistente em " + childPath(dir, table.getName(child)) + ": conteúdo "
+                            + size + ", inode " + table.getSize(child));
+                    errors++;
+                }
+                bytes += size;
+                files++;
             }
         }
+        if (bytes != dir.totalBytes || files != dir.fileCount || dirs != dir.dirCount) {
+            journal.logOperation("FSCK_FAIL", "Inconsistência em " + dir.getAbsolutePath() + ": esperado " + bytes + "/" + files + "/" + dirs
+                    + ", agregado " + dir.totalBytes + "/" + dir.fileCount + "/" + dir.dirCount);
+            errors++;
+        }
+        totals[0] = bytes;
+        totals[1] = files;
+        totals[2] = dirs;
+        return errors;
+    }
+
+    public FsStatus changeDirectory(String path) {
+        return changeDirectory(defaultSession, path);
+    }
 
+    public FsStatus changeDirectory(Session session, String path) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.CD, start, doChangeDirectory(session, path), path);
+    }
 
-        String removedPath = nodeToRemove.getAbsolutePath();
-        boolean removed = currentDirectory.children.remove(nodeToRemove);
+    private FsStatus doChangeDirectory(Session session, String path) {
+        namespaceLock.readLock().lock();
+        try {
+            Directory current = cwd(session);
+            if (path.equals("..")) {
+                if (current.parent != null) {
+                    session.currentDirectory = current.parent;
+                    journal.log(JournalOp.CD_PARENT, session.currentDirectory.getAbsolutePath());
+                    return FsStatus.OK;
+                }
+                journal.logOperation("CD_FAIL", "Tentativa de ir para pai da raiz.");
+                return FsStatus.AT_ROOT;
+            }
 
-        if (removed) {
-            System.out.println((nodeToRemove instanceof Directory ? "Diretório" : "Arquivo") + " '" + path + "' removido.");
-            journal.logOperation("RM", (nodeToRemove instanceof Directory ? "Diretório removido: " : "Arquivo removido: ") + removedPath);
-        } else {
-            System.out.println("Erro ao tentar remover '" + path + "'.");
-            journal.logOperation("RM_FAIL", "Erro interno ao remover: " + removedPath);
+            Directory targetDir = findDirectory(session, path);
+            if (targetDir != null && !targetDir.removed) {
+                session.currentDirectory = targetDir;
+                journal.log(JournalOp.CD, targetDir.getAbsolutePath());
+                return FsStatus.OK;
+            }
+            journal.logOperation("CD_FAIL", "Diretório não encontrado: " + path);
+            return FsStatus.NOT_FOUND;
+        } finally {
+            namespaceLock.readLock().unlock();
         }
     }
 
+    // Chamado com o namespace travado. A chave do cache é a forma canônica do caminho, a mesma
+    // de getAbsolutePath, que as invalidações usam.
+    private Directory findDirectory(Session session, String path) {
+        if (path.equals("/")) {
+            return root;
+        }
+        String key = canonicalPath(path.startsWith("/") ? path : childPath(cwd(session), path));
+        if (key.equals("/")) {
+            return root;
+        }
+
+        Directory cached = pathCache.get(key);
+        if (cached != null) {
+            return cached == NOT_FOUND ? null : cached;
+        }
+        long version = pathCache.version();
+        Directory resolved = resolveAbsolute(key);
+        pathCache.put(key, resolved == null ? NOT_FOUND : resolved, version);
+        return resolved;
+    }
 
+    // Diretório onde fica o último componente do caminho: o diretório atual, se o caminho é só um
+    // nome. Chamado com o namespace travado; o diretório retornado pode ter sido removido.
+    private Directory parentDirectory(Session session, String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? cwd(session) : findDirectory(session, parentOf(path));
+    }
 
+    // Falha de parentDirectory (null ou removido), com o namespace travado em modo exclusivo.
+    private FsStatus missingParent(Session session, String path, String failOperation) {
+        if (path.indexOf('/') < 0) {
+            journal.logOperation(failOperation, "Diretório atual removido: " + cwd(session).getAbsolutePath());
+            return FsStatus.CWD_REMOVED;
+        }
+        journal.logOperation(failOperation, "Diretório não encontrado: " + parentOf(path));
+        return FsStatus.NOT_FOUND;
+    }
+
+    private static String parentOf(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash <= 0 ? "/" : path.substring(0, slash);
+    }
+
+    private static String baseName(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    // Caminho absoluto sem barras repetidas nem no fim, sem "." e com cada ".." aplicado ao
+    // componente anterior (acima da raiz, continua na raiz). Devolve o próprio caminho se ele já
+    // está nessa forma, que é o caso comum.
+    static String canonicalPath(String path) {
+        if (isCanonical(path)) {
+            return path;
+        }
+        int length = path.length();
+        StringBuilder canonical = new StringBuilder(length);
+        int[] starts = new int[length / 2 + 1];
+        int depth = 0;
+        int start = 0;
+        while (start <= length) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (isDots(path, start, end, 2)) {
+                if (depth > 0) {
+                    canonical.setLength(starts[--depth]);
+                }
+            } else if (end > start && !isDots(path, start, end, 1)) {
+                starts[depth++] = canonical.length();
+                canonical.append('/').append(path, start, end);
+            }
+            start = end + 1;
+        }
+        return canonical.length() == 0 ? "/" : canonical.toString();
+    }
+
+    private static boolean isCanonical(String path) {
+        int length = path.length();
+        if (length == 0 || path.charAt(0) != '/') {
+            return false;
+        }
+        if (length == 1) {
+            return true;
+        }
+        int start = 1;
+        while (start <= length) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end == start || isDots(path, start, end, 1) || isDots(path, start, end, 2)) {
+                return false;
+            }
+            start = end + 1;
+        }
+        return true;
+    }
+
+    // O componente path[start, end) é "." (dots = 1) ou ".." (dots = 2).
+    private static boolean isDots(String path, int start, int end, int dots) {
+        if (end - start != dots) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (path.charAt(i) != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Nome que pode ser dado a um nó: sem barra nem espaço, e nem "." nem "..", que nos caminhos
+    // são o próprio diretório e o pai.
+    private static boolean isValidName(String name) {
+        return name != null && !name.isEmpty() && !name.contains("/") && !name.contains(" ") && !name.equals(".") && !name.equals("..");
+    }
+
+    // Tira as barras do fim ("dir/" -> "dir"); a raiz continua "/".
+    private static String trimSlashes(String path) {
+        int end = path.length();
+        while (end > 1 && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return end == path.length() ? path : path.substring(0, end);
+    }
+
+    private static String childPath(Directory dir, String name) {
+        String parentPath = dir.getAbsolutePath();
+        return parentPath.equals("/") ? "/" + name : parentPath + "/" + name;
+    }
+
+    private static String childPath(Session session, Directory dir, String name) {
+        String parentPath = dir.getAbsolutePath();
+        if (parentPath != session.lastParentPath || !name.equals(session.lastChildName)) {
+            session.lastChildPath = parentPath.equals("/") ? "/" + name : parentPath + "/" + name;
+            session.lastParentPath = parentPath;
+            session.lastChildName = name;
+        }
+        return session.lastChildPath;
+    }
+
+    // Percorre o caminho de mão em mão: trava o filho para leitura antes de soltar o pai.
+    private Directory resolveAbsolute(String path) {
+        Directory current = root;
+        current.lock.readLock().lock();
+        try {
+            int length = path.length();
+            int start = 1;
+            while (start < length) {
+                int end = path.indexOf('/', start);
+                if (end < 0) {
+                    end = length;
+                }
+                if (end > start) {
+                    int child = current.findChild(path, start, end);
+                    if (child == InodeTable.NONE || !current.table.isDirectory(child)) {
+                        return null;
+                    }
+                    Directory next = current.childDirectory(child);
+                    next.lock.readLock().lock();
+                    current.lock.readLock().unlock();
+                    current = next;
+                }
+                start = end + 1;
+            }
+            return current;
+        } finally {
+            current.lock.readLock().unlock();
+        }
+    }
+
+    public FsStatus rename(String oldName, String newName) {
+        return rename(defaultSession, oldName, newName);
+    }
+
+    /**
+     * {@code oldName} pode ser um caminho; {@code newName} é só o novo nome, no mesmo diretório.
+     * Renomear um diretório muda o caminho de toda a subárvore, então a operação trava o
+     * namespace inteiro.
+     */
+    public FsStatus rename(Session session, String oldName, String newName) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.RENAME, start, doRename(session, oldName, newName), oldName);
+    }
+
+    private FsStatus doRename(Session session, String oldName, String newName) {
+        if (!isValidName(newName)) {
+            journal.logOperation("RENAME_FAIL", "Tentativa de renomear para nome inválido: " + (newName == null ? "null" : newName));
+            return FsStatus.INVALID_NAME;
+        }
+        maybeCheckpoint();
+        maybeCompactNames();
+        String target = trimSlashes(oldName);
+        String name = baseName(target);
+        namespaceLock.writeLock().lock();
+        try {
+            Directory dir = parentDirectory(session, target);
+            if (dir == null || dir.removed) {
+                return missingParent(session, target, "RENAME_FAIL");
+            }
+            int node = dir.findChild(name);
+            if (node == InodeTable.NONE) {
+                journal.logOperation("RENAME_FAIL", "Não encontrado para renomear: " + oldName);
+                return FsStatus.NOT_FOUND;
+            }
+            if (dir.findChild(newName) != InodeTable.NONE) {
+                journal.logOperation("RENAME_FAIL", "Destino já existe: " + newName);
+                return FsStatus.ALREADY_EXISTS;
+            }
+
+            String oldPath = childPath(dir, name);
+            if (!logAhead(session, WriteAheadLog.Op.RENAME, oldPath, 0, 0, newName, "RENAME_FAIL")) {
+                return FsStatus.IO_ERROR;
+            }
+            applyRename(dir, node, newName);
+            String newPath = childPath(dir, newName);
+            journal.log(JournalOp.RENAME, oldPath, newPath);
+            return FsStatus.OK;
+        } finally {
+            namespaceLock.writeLock().unlock();
+        }
+    }
+
+    public static final int WRITE_REPLACE = 0;
+    public static final int WRITE_APPEND = 1;
+    public static final int WRITE_AT_OFFSET = 2;
+
+    public FsStatus writeFile(String name, String data, int mode, int offset) {
+        return writeFile(defaultSession, name, data, mode, offset);
+    }
+
+    public FsStatus writeFile(Session session, String name, String data, int mode, int offset) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.WRITE, start, doWriteFile(session, name, data, mode, offset), name);
+    }
+
+    private FsStatus doWriteFile(Session session, String target, String data, int mode, int offset) {
+        maybeCheckpoint();
+        Directory dir = enterParent(session, target, true, "WRITE_FAIL");
+        if (dir == null) {
+            return target.indexOf('/') < 0 ? FsStatus.CWD_REMOVED : FsStatus.NOT_FOUND;
+        }
+        try {
+            String name = baseName(target);
+            int file = findFile(dir, name, "WRITE_FAIL");
+            if (file == InodeTable.NONE) {
+                return missingFile(dir, name);
+            }
+            String path = childPath(session, dir, name);
+            int oldSize = (int) dir.table.getSize(file);
+            if (mode == WRITE_AT_OFFSET && (offset < 0 || offset > oldSize)) {
+                session.errorSize = oldSize;
+                journal.logOperation("WRITE_FAIL", "Offset inválido em " + path + ": " + offset);
+                return FsStatus.INVALID_OFFSET;
+            }
+
+            if (mode == WRITE_REPLACE) {
+                offset = 0;
+            } else if (mode == WRITE_APPEND) {
+                offset = oldSize;
+            }
+            if (!logAhead(session, WriteAheadLog.Op.WRITE, path, mode, offset, data, "WRITE_FAIL")) {
+                return FsStatus.IO_ERROR;
+            }
+
+            try {
+                applyWrite(dir, file, data, mode, offset, System.currentTimeMillis());
+            } catch (DiskFullException e) {
+                session.errorDetail = e.getMessage();
+                journal.logOperation("WRITE_FAIL", "Sem espaço no dispositivo: " + path + " (" + e.getMessage() + ")");
+                return FsStatus.DISK_FULL;
+            }
+            journal.log(JournalOp.WRITE, path, data.length(), offset);
+            return FsStatus.OK;
+        } finally {
+            leave(dir, true);
+        }
+    }
+
+    public FsStatus truncateFile(String name, int newSize) {
+        return truncateFile(defaultSession, name, newSize);
+    }
+
+    public FsStatus truncateFile(Session session, String name, int newSize) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.TRUNCATE, start, doTruncateFile(session, name, newSize), name);
+    }
+
+    private FsStatus doTruncateFile(Session session, String target, int newSize) {
+        maybeCheckpoint();
+        Directory dir = enterParent(session, target, true, "TRUNCATE_FAIL");
+        if (dir == null) {
+            return target.indexOf('/') < 0 ? FsStatus.CWD_REMOVED : FsStatus.NOT_FOUND;
+        }
+        try {
+            String name = baseName(target);
+            int file = findFile(dir, name, "TRUNCATE_FAIL");
+            if (file == InodeTable.NONE) {
+                return missingFile(dir, name);
+            }
+            String path = childPath(session, dir, name);
+            int oldSize = (int) dir.table.getSize(file);
+            if (newSize < 0 || newSize > oldSize) {
+                session.errorSize = oldSize;
+                journal.logOperation("TRUNCATE_FAIL", "Tamanho inválido para " + path + ": " + newSize);
+                return FsStatus.INVALID_SIZE;
+            }
+            if (!logAhead(session, WriteAheadLog.Op.TRUNCATE, path, newSize, 0, null, "TRUNCATE_FAIL")) {
+                return FsStatus.IO_ERROR;
+            }
+            try {
+                applyTruncate(dir, file, newSize, System.currentTimeMillis());
+            } catch (DiskFullException e) {
+                // Só acontece quando um snapshot está com o conteúdo e o começo dele precisa ser copiado.
+                session.errorDetail = e.getMessage();
+                journal.logOperation("TRUNCATE_FAIL", "Sem espaço no dispositivo: " + path + " (" + e.getMessage() + ")");
+                return FsStatus.DISK_FULL;
+            }
+            journal.log(JournalOp.TRUNCATE, path, newSize);
+            return FsStatus.OK;
+        } finally {
+            leave(dir, true);
+        }
+    }
+
+    public FsStatus readFile(String name, Appendable out) {
+        return readFile(defaultSession, name, out);
+    }
+
+    /**
+     * Copia o conteúdo do arquivo para {@code out}, em blocos e sem montar uma String com o
+     * arquivo inteiro. A cópia é feita com o diretório travado para leitura.
+     */
+    public FsStatus readFile(Session session, String name, Appendable out) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.CAT, start, doReadFile(session, name, out), name);
+    }
+
+    private FsStatus doReadFile(Session session, String target, Appendable out) {
+        Directory dir = enterParent(session, target, false, "CAT_FAIL");
+        if (dir == null) {
+            return target.indexOf('/') < 0 ? FsStatus.CWD_REMOVED : FsStatus.NOT_FOUND;
+        }
+        try {
+            String name = baseName(target);
+            int file = findFile(dir, name, "CAT_FAIL");
+            if (file == InodeTable.NONE) {
+                return missingFile(dir, name);
+            }
+            TextStorage content = content(dir.table, file);
+            if (!copyRange(session, content, 0, content.length(), out)) {
+                return FsStatus.IO_ERROR;
+            }
+            journal.log(JournalOp.CAT, childPath(session, dir, name));
+            return FsStatus.OK;
+        } finally {
+            leave(dir, false);
+        }
+    }
+
+    public FsStatus headFile(String name, int lines, Appendable out) {
+        return headFile(defaultSession, name, lines, out);
+    }
+
+    public FsStatus headFile(Session session, String name, int lines, Appendable out) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.HEAD, start, doHeadFile(session, name, lines, out), name);
+    }
+
+    private FsStatus doHeadFile(Session session, String target, int lines, Appendable out) {
+        Directory dir = enterParent(session, target, false, "HEAD_FAIL");
+        if (dir == null) {
+            return target.indexOf('/') < 0 ? FsStatus.CWD_REMOVED : FsStatus.NOT_FOUND;
+        }
+        try {
+            String name = baseName(target);
+            int file = findFile(dir, name, "HEAD_FAIL");
+            if (file == InodeTable.NONE) {
+                return missingFile(dir, name);
+            }
+            TextStorage content = content(dir.table, file);
+            int end = 0;
+            for (int i = 0; i < lines && end < content.length(); i++) {
+                int newline = content.indexOf('\n', end);
+                end = newline < 0 ? content.length() : newline + 1;
+            }
+            if (!copyRange(session, content, 0, end, out)) {
+                return FsStatus.IO_ERROR;
+            }
+            journal.log(JournalOp.HEAD, childPath(session, dir, name), lines);
+            return FsStatus.OK;
+        } finally {
+            leave(dir, false);
+        }
+    }
+
+    public FsStatus tailFile(String name, int lines, Appendable out) {
+        return tailFile(defaultSession, name, lines, out);
+    }
+
+    public FsStatus tailFile(Session session, String name, int lines, Appendable out) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.TAIL, start, doTailFile(session, name, lines, out), name);
+    }
+
+    private FsStatus doTailFile(Session session, String target, int lines, Appendable out) {
+        Directory dir = enterParent(session, target, false, "TAIL_FAIL");
+        if (dir == null) {
+            return target.indexOf('/') < 0 ? FsStatus.CWD_REMOVED : FsStatus.NOT_FOUND;
+        }
+        try {
+            String name = baseName(target);
+            int file = findFile(dir, name, "TAIL_FAIL");
+            if (file == InodeTable.NONE) {
+                return missingFile(dir, name);
+            }
+            TextStorage content = content(dir.table, file);
+            int length = content.length();
+            int start = length;
+            if (lines > 0) {
+                // Ignora a quebra de linha final para não contar uma linha vazia.
+                int pos = length > 0 && content.charAt(length - 1) == '\n' ? length - 1 : length;
+                start = 0;
+                for (int i = 0; i < lines; i++) {
+                    int newline = content.lastIndexOf('\n', pos - 1);
+                    if (newline < 0) {
+                        start = 0;
+                        break;
+                    }
+                    start = newline + 1;
+                    pos = newline;
+                }
+            }
+            if (!copyRange(session, content, start, length - start, out)) {
+                return FsStatus.IO_ERROR;
+            }
+            journal.log(JournalOp.TAIL, childPath(session, dir, name), lines);
+            return FsStatus.OK;
+        } finally {
+            leave(dir, false);
+        }
+    }
+
+    /**
+     * Uso do dispositivo de blocos, ou {@code null} se o conteúdo dos arquivos fica no heap.
+     */
+    public DeviceUsage diskFree() {
+        namespaceLock.writeLock().lock();
+        try {
+            return diskFreeLocked();
+        } finally {
+            namespaceLock.writeLock().unlock();
+        }
+    }
+
+    private DeviceUsage diskFreeLocked() {
+        if (device == null) {
+            return null;
+        }
+        int[] runs = device.getBitmap().freeRunStats();
+        long[] fileStats = new long[3];
+        collectExtentStats(root, fileStats);
+        ExtentAllocator allocator = device.getAllocator();
+        return new DeviceUsage(device.getBlockSize(), device.getBlockCount(), device.getUsedBlocks(), device.getCapacityBytes(),
+                runs[0], runs[1], fileStats[0], fileStats[1], fileStats[2], allocator.getAllocations(),
+                allocator.getAllocatedBlocks(), allocator.getInPlaceExtensions(), allocator.getFailedAllocations());
+    }
+
+    // fileStats = {arquivos, extents, arquivos com mais de um extent}
+    private void collectExtentStats(Directory dir, long[] fileStats) {
+        InodeTable table = dir.table;
+        for (int i = 0; i < dir.getPositions(); i++) {
+            int child = dir.childAt(i);
+            if (child == InodeTable.NONE) {
+                continue;
+            }
+            if (table.isDirectory(child)) {
+                collectExtentStats(dir.childDirectory(child), fileStats);
+            } else {
+                Object content = table.getPayload(child);
+                int extents = content instanceof ExtentFile ? ((ExtentFile) content).getExtents().size() : 0;
+                fileStats[0]++;
+                fileStats[1] += extents;
+                if (extents > 1) {
+                    fileStats[2]++;
+                }
+            }
+        }
+    }
+
+    public FsStatus mount(String imagePath) {
+        return mount(defaultSession, imagePath);
+    }
+
+    /**
+     * Monta a imagem indicada, criando-a se não existir. A árvore atual em memória é descartada.
+     */
+    public FsStatus mount(Session session, String imagePath) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.MOUNT, start, doMount(session, imagePath), imagePath);
+    }
+
+    private FsStatus doMount(Session session, String imagePath) {
+        namespaceLock.writeLock().lock();
+        try {
+            return mountLocked(session, imagePath);
+        } finally {
+            namespaceLock.writeLock().unlock();
+        }
+    }
+
+    private FsStatus mountLocked(Session session, String imagePath) {
+        Path path = Paths.get(imagePath);
+        DiskImage mounted;
+        InodeRecords records;
+        try {
+            if (image != null) {
+                unmountLocked(session);
+            }
+            boolean exists = Files.exists(path);
+            if (exists) {
+                mounted = DiskImage.open(path);
+            } else {
+                BlockDevice geometry = device != null ? device : new BlockDevice(1, BlockDevice.DEFAULT_BLOCK_SIZE);
+                int blockCount = device != null ? device.getBlockCount() : BlockDevice.DEFAULT_BLOCK_COUNT;
+                mounted = DiskImage.format(path, blockCount, geometry.getBlockSize());
+            }
+            records = mounted.readInodes();
+        } catch (IOException | RuntimeException e) {
+            session.errorDetail = e.getMessage();
+            journal.logOperation("MOUNT_FAIL", imagePath + ": " + e.getMessage());
+            return FsStatus.IO_ERROR;
+        }
+
+        removeSnapshots();
+        closeWal();
+        this.image = mounted;
+        this.device = mounted.getDevice();
+        this.root = buildTree(records);
+        this.treeGeneration++;
+        this.pathCache.clear();
+        journal.logOperation("MOUNT", "Imagem montada: " + path.toAbsolutePath() + " (" + records.size() + " nós)");
+        // Operações feitas depois do último sync estão só no journal da imagem.
+        openWal(Paths.get(imagePath + ".wal"), mounted.getCheckpointLsn());
+        return FsStatus.OK;
+    }
+
+    public FsStatus sync() {
+        return sync(defaultSession);
+    }
+
+    public FsStatus sync(Session session) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.SYNC, start, doSync(session), null);
+    }
+
+    private FsStatus doSync(Session session) {
+        namespaceLock.writeLock().lock();
+        try {
+            return syncLocked(session);
+        } finally {
+            namespaceLock.writeLock().unlock();
+        }
+    }
+
+    private FsStatus syncLocked(Session session) {
+        if (image == null) {
+            journal.logOperation("SYNC_FAIL", "Nenhuma imagem montada.");
+            return FsStatus.NOT_MOUNTED;
+        }
+        return syncImage(session);
+    }
+
+    // session == null: sync automático, falhas viram avisos.
+    private FsStatus syncImage(Session session) {
+        InodeRecords records = collectAllRecords();
+        try {
+            if (wal != null) {
+                wal.sync();
+                long lsn = wal.getLastLsn();
+                image.sync(records, lsn);
+                wal.checkpoint(lsn);
+            } else {
+                image.sync(records);
+            }
+        } catch (IOException e) {
+            journal.logOperation("SYNC_FAIL", image.getPath() + ": " + e.getMessage());
+            return ioError(session, "Erro: Falha ao sincronizar a imagem: ", e);
+        }
+        journal.logOperation("SYNC", "Imagem sincronizada: " + image.getPath() + " (" + records.size() + " nós)");
+        return FsStatus.OK;
+    }
+
+    public FsStatus checkpoint() {
+        return checkpoint(defaultSession);
+    }
+
+    /**
+     * Persiste a árvore atual e apaga os segmentos do journal que ela já cobre. Com imagem montada
+     * é o próprio {@link #sync()}; sem imagem, grava um snapshot do dispositivo ao lado do journal.
+     */
+    public FsStatus checkpoint(Session session) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.CHECKPOINT, start, doCheckpoint(session), null);
+    }
+
+    private FsStatus doCheckpoint(Session session) {
+        namespaceLock.writeLock().lock();
+        try {
+            return checkpointLocked(session);
+        } finally {
+            namespaceLock.writeLock().unlock();
+        }
+    }
+
+    private FsStatus checkpointLocked(Session session) {
+        if (image != null) {
+            return syncImage(session);
+        }
+        if (wal == null || device == null) {
+            journal.logOperation("CHECKPOINT_FAIL", "Sem journal em disco ou sem dispositivo de blocos.");
+            return FsStatus.NO_DEVICE;
+        }
+        return writeCheckpoint(session);
+    }
+
+    public void setCheckpointInterval(long bytes) {
+        this.checkpointInterval = bytes;
+    }
+
+    // session == null: checkpoint automático, falhas viram avisos.
+    private FsStatus writeCheckpoint(Session session) {
+        InodeRecords records = collectAllRecords();
+        long lsn;
+        try {
+            wal.sync();
+            lsn = wal.getLastLsn();
+            DiskImage.writeSnapshot(checkpointPath, device, records, lsn);
+            wal.checkpoint(lsn);
+        } catch (IOException | RuntimeException e) {
+            journal.logOperation("CHECKPOINT_FAIL", checkpointPath + ": " + e.getMessage());
+            return ioError(session, "Erro: Falha no checkpoint: ", e);
+        }
+        journal.logOperation("CHECKPOINT", checkpointPath.toAbsolutePath() + " (" + records.size() + " nós, LSN " + lsn + ")");
+        return FsStatus.OK;
+    }
+
+    private boolean hasUncheckpointedRecords() {
+        try {
+            wal.sync();
+        } catch (IOException e) {
+            return true;
+        }
+        return wal.getBytesSinceCheckpoint() > 0;
+    }
+
+    // Checkpoint automático quando o journal cresceu demais desde o último. Chamado antes de
+    // qualquer trava: o checkpoint precisa do namespace exclusivo.
+    private void maybeCheckpoint() {
+        WriteAheadLog log = wal;
+        if (log == null || log.getBytesSinceCheckpoint() < checkpointInterval) {
+            return;
+        }
+        namespaceLock.writeLock().lock();
+        try {
+            // Outra thread pode ter feito o checkpoint enquanto esta esperava.
+            if (wal == null || wal.getBytesSinceCheckpoint() < checkpointInterval) {
+                return;
+            }
+            if (image != null) {
+                syncImage(null);
+            } else if (device != null) {
+                writeCheckpoint(null);
+            }
+        } finally {
+            namespaceLock.writeLock().unlock();
+        }
+    }
+
+    // Reescreve a arena de nomes da tabela de inodes quando ela está mais da metade ocupada por
+    // nomes de nós removidos ou renomeados. Como o checkpoint, precisa do namespace exclusivo.
+    // Não roda enquanto há snapshots: eles usam ids de nomes que a árvore já soltou.
+    private void maybeCompactNames() {
+        InodeTable table = root.table;
+        NameArena names = table.getNames();
+        if (!names.shouldCompact() || table.hasVersions()) {
+            return;
+        }
+        namespaceLock.writeLock().lock();
+        try {
+            if (names.shouldCompact() && !table.hasVersions()) {
+                names.compact();
+            }
+        } finally {
+            namespaceLock.writeLock().unlock();
+        }
+    }
+
+    // Restaura o último snapshot no dispositivo; retorna o LSN até onde ele já cobre o journal.
+    private long loadCheckpoint() {
+        if (device == null || !Files.exists(checkpointPath)) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        try (DiskImage snapshot = DiskImage.openSnapshot(checkpointPath)) {
+            InodeRecords records = snapshot.readInodes();
+            if (snapshot.getBlockCount() != device.getBlockCount() || snapshot.getBlockSize() != device.getBlockSize()) {
+                device = new BlockDevice(snapshot.getBlockCount(), snapshot.getBlockSize());
+            }
+            snapshot.copyBlocksTo(device);
+            this.root = buildTree(records);
+            this.treeGeneration++;
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            notice("Checkpoint '" + checkpointPath + "' carregado: " + records.size() + " nó(s) em " + millis + " ms.");
+            journal.logOperation("CHECKPOINT_LOAD", checkpointPath.toAbsolutePath() + " (" + records.size() + " nós, LSN "
+                    + snapshot.getCheckpointLsn() + ")");
+            return snapshot.getCheckpointLsn();
+        } catch (IOException | RuntimeException e) {
+            notice("Erro: Não foi possível carregar o checkpoint '" + checkpointPath + "': " + e.getMessage());
+            journal.logOperation("CHECKPOINT_LOAD_FAIL", checkpointPath + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    private InodeRecords collectAllRecords() {
+        InodeRecords records = new InodeRecords((int) Math.min(root.fileCount + root.dirCount + 1, Integer.MAX_VALUE));
+        records.add(-1, InodeRecords.TYPE_DIRECTORY, "/", root.table.getCreated(root.inode), root.table.getModified(root.inode), 0);
+        collectRecords(root, 0, records);
+        return records;
+    }
+
+    public FsStatus unmount() {
+        return unmount(defaultSession);
+    }
+
+    /**
+     * Grava a árvore na imagem e a fecha. Depois disso o sistema fica com uma árvore vazia em
+     * memória até o próximo mount.
+     */
+    public FsStatus unmount(Session session) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.UNMOUNT, start, doUnmount(session), null);
+    }
+
+    private FsStatus doUnmount(Session session) {
+        namespaceLock.writeLock().lock();
+        try {
+            return unmountLocked(session);
+        } finally {
+            namespaceLock.writeLock().unlock();
+        }
+    }
+
+    private FsStatus unmountLocked(Session session) {
+        if (image == null) {
+            return FsStatus.NOT_MOUNTED;
+        }
+        // Os blocos que só os snapshots usam voltam ao dispositivo antes de ele ser gravado.
+        removeSnapshots();
+        FsStatus status = syncImage(session);
+        try {
+            image.close();
+        } catch (IOException e) {
+            notice("Erro ao fechar a imagem: " + e.getMessage());
+        }
+        closeWal();
+        journal.logOperation("UNMOUNT", "Imagem desmontada: " + image.getPath());
+        image = null;
+        // A árvore e o dispositivo eram vistas da imagem mapeada, que foi fechada: o sistema volta a
+        // uma árvore vazia em memória, e nada do que vier depois chega ao arquivo da imagem.
+        device = new BlockDevice(device.getBlockCount(), device.getBlockSize());
+        Directory empty = newRoot(new InodeTable(), 8);
+        empty.table.enableTextIndex(textIndexBudget);
+        replaceRoot(empty);
+        return status;
+    }
+
+    /**
+     * Desmonta a imagem, se houver, e fecha o journal em disco. Falhas ficam em {@link #takeNotices()}.
+     */
+    public void shutdown() {
+        metrics.unregisterMBean();
+        namespaceLock.writeLock().lock();
+        try {
+            shutdownLocked();
+        } finally {
+            namespaceLock.writeLock().unlock();
+        }
+    }
+
+    private void shutdownLocked() {
+        removeSnapshots();
+        if (image != null) {
+            unmountLocked(null);
+        }
+        if (wal != null && device != null && hasUncheckpointedRecords()) {
+            // Deixa a próxima inicialização sem nada para reaplicar.
+            writeCheckpoint(null);
+        }
+        closeWal();
+        String journalFile = journal.getAppenderPath();
+        try {
+            journal.closeAppender();
+        } catch (IOException e) {
+            notice("Erro ao fechar o journal '" + journalFile + "': " + e.getMessage());
+        }
+    }
+
+    public FsStatus createSnapshot(String name) {
+        return createSnapshot(defaultSession, name);
+    }
+
+    /**
+     * Congela a árvore atual num snapshot com o nome dado, em tempo constante: nada é copiado
+     * agora, só o que mudar depois. Os snapshots ficam em memória; não sobrevivem a um mount, a um
+     * unmount nem ao fim do processo.
+     */
+    public FsStatus createSnapshot(Session session, String name) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.SNAPSHOT, start, doCreateSnapshot(name), name);
+    }
+
+    private FsStatus doCreateSnapshot(String name) {
+        if (name == null || name.isEmpty() || name.contains("/") || name.contains(" ")) {
+            journal.logOperation("SNAPSHOT_FAIL", "Nome de snapshot inválido: " + (name == null ? "null" : name));
+            return FsStatus.INVALID_NAME;
+        }
+        // O namespace exclusivo garante que nenhuma operação está no meio quando a tabela é congelada.
+        namespaceLock.writeLock().lock();
+        try {
+            if (findSnapshot(name) != null) {
+                journal.logOperation("SNAPSHOT_FAIL", "Snapshot já existe: " + name);
+                return FsStatus.ALREADY_EXISTS;
+            }
+            Snapshot snapshot = new Snapshot(name, System.currentTimeMillis(), root.table.freeze(), root.inode, root.totalBytes,
+                    root.fileCount, root.dirCount);
+            Snapshot[] grown = Arrays.copyOf(snapshots, snapshots.length + 1);
+            grown[snapshots.length] = snapshot;
+            snapshots = grown;
+            journal.log(JournalOp.SNAPSHOT, name, snapshot.getNodeCount());
+            return FsStatus.OK;
+        } finally {
+            namespaceLock.writeLock().unlock();
+        }
+    }
+
+    public FsStatus deleteSnapshot(String name) {
+        return deleteSnapshot(defaultSession, name);
+    }
+
+    /**
+     * Remove o snapshot e devolve o que só ele usava. Leituras do snapshot em andamento terminam
+     * normalmente; a memória é devolvida quando a última acabar.
+     */
+    public FsStatus deleteSnapshot(Session session, String name) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.SNAPSHOT, start, doDeleteSnapshot(name), name);
+    }
+
+    private FsStatus doDeleteSnapshot(String name) {
+        namespaceLock.writeLock().lock();
+        try {
+            Snapshot snapshot = findSnapshot(name);
+            if (snapshot == null) {
+                journal.logOperation("SNAPSHOT_FAIL", "Snapshot não encontrado: " + name);
+                return FsStatus.NOT_FOUND;
+            }
+            removeSnapshot(snapshot);
+            journal.log(JournalOp.SNAPSHOT_DELETE, name);
+            return FsStatus.OK;
+        } finally {
+            namespaceLock.writeLock().unlock();
+        }
+    }
+
+    public Snapshot getSnapshot(String name) {
+        return findSnapshot(name);
+    }
+
+    /**
+     * Preenche {@code report} com os snapshots e o quanto cada um ocupa sozinho. Toma o namespace
+     * exclusivo para comparar cada snapshot com a árvore atual parada.
+     */
+    public FsStatus listSnapshots(SnapshotReport report) {
+        namespaceLock.writeLock().lock();
+        try {
+            InodeTable table = root.table;
+            Snapshot[] current = snapshots;
+            report.reset(current.length);
+            long[] content = new long[2];
+            for (Snapshot snapshot : current) {
+                InodeTable.Version version = snapshot.version;
+                content[0] = 0;
+                content[1] = 0;
+                long structure = table.uniqueBytes(version, file -> {
+                    TextStorage data = version.getContent(file);
+                    if (data instanceof ExtentFile) {
+                        content[1] += (long) ((ExtentFile) data).getExtents().getTotalBlocks() * device.getBlockSize();
+                    } else {
+                        content[0] += ((ChunkedText) data).memoryBytes();
+                    }
+                });
+                report.add(snapshot, structure + content[0], content[1]);
+            }
+            return FsStatus.OK;
+        } finally {
+            namespaceLock.writeLock().unlock();
+        }
+    }
+
+    public FsStatus restoreSnapshot(String name) {
+        return restoreSnapshot(defaultSession, name);
+    }
+
+    /**
+     * Volta a árvore ao estado do snapshot, que continua existindo. Sessões voltam à raiz. Com
+     * journal em disco, a árvore restaurada é gravada num checkpoint (ou no sync da imagem) antes
+     * de retornar, já que o journal não tem como reproduzir a restauração; sem dispositivo de
+     * blocos para isso, retorna {@link FsStatus#NO_DEVICE} e não restaura.
+     */
+    public FsStatus restoreSnapshot(Session session, String name) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.RESTORE, start, doRestoreSnapshot(session, name), name);
+    }
+
+    private FsStatus doRestoreSnapshot(Session session, String name) {
+        namespaceLock.writeLock().lock();
+        try {
+            Snapshot snapshot = findSnapshot(name);
+            if (snapshot == null) {
+                journal.logOperation("RESTORE_FAIL", "Snapshot não encontrado: " + name);
+                return FsStatus.NOT_FOUND;
+            }
+            if (wal != null && image == null && device == null) {
+                journal.logOperation("RESTORE_FAIL", "Sem dispositivo de blocos para o checkpoint da árvore restaurada.");
+                return FsStatus.NO_DEVICE;
+            }
+            InodeTable table = root.table;
+            // A árvore atual vira uma versão temporária: se o checkpoint falhar, é para ela que se volta.
+            InodeTable.Version previous = table.freeze();
+            table.restore(snapshot.version, previous);
+            replaceRoot(attachDirectories(table, snapshot.root));
+            if (wal != null) {
+                FsStatus status = image != null ? syncImage(session) : writeCheckpoint(session);
+                if (!status.isOk()) {
+                    table.restore(previous, snapshot.version);
+                    replaceRoot(attachDirectories(table, snapshot.root));
+                    dropVersion(previous);
+                    return status;
+                }
+            }
+            dropVersion(previous);
+            journal.log(JournalOp.SNAPSHOT_RESTORE, name, snapshot.getNodeCount());
+            return FsStatus.OK;
+        } finally {
+            namespaceLock.writeLock().unlock();
+        }
+    }
+
+    public FsStatus diffSnapshots(String from, String to, SnapshotDiff diff) {
+        return diffSnapshots(defaultSession, from, to, diff);
+    }
+
+    /**
+     * Preenche {@code diff} com o que mudou do snapshot {@code from} para o {@code to}, ou para a
+     * árvore atual se {@code to} for null. Só as folhas da tabela e as linhas que os dois não
+     * compartilham são comparadas. A árvore atual é congelada numa versão temporária, então a
+     * comparação também não trava quem escreve.
+     */
+    public FsStatus diffSnapshots(Session session, String from, String to, SnapshotDiff diff) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.DIFF, start, doDiffSnapshots(from, to, diff), from);
+    }
+
+    private FsStatus doDiffSnapshots(String from, String to, SnapshotDiff diff) {
+        Snapshot before = findSnapshot(from);
+        Snapshot after = to == null ? null : findSnapshot(to);
+        if (before == null || to != null && after == null) {
+            journal.logOperation("DIFF_FAIL", "Snapshot não encontrado: " + (before == null ? from : to));
+            return FsStatus.NOT_FOUND;
+        }
+        InodeTable.Version current = null;
+        boolean pinned = before.pin() & (after == null || after.pin());
+        try {
+            if (!pinned) {
+                return FsStatus.NOT_FOUND;
+            }
+            if (after == null) {
+                namespaceLock.writeLock().lock();
+                try {
+                    if (root.table != before.version.getTable()) {
+                        return FsStatus.NOT_FOUND;
+                    }
+                    current = root.table.freeze();
+                } finally {
+                    namespaceLock.writeLock().unlock();
+                }
+            }
+            diff.reset();
+            compare(before.version, after != null ? after.version : current, diff);
+            diff.sort();
+            journal.log(JournalOp.SNAPSHOT_DIFF, from, to == null ? "a árvore atual" : to);
+            return FsStatus.OK;
+        } finally {
+            unpin(before);
+            if (after != null) {
+                unpin(after);
+            }
+            if (current != null) {
+                namespaceLock.writeLock().lock();
+                try {
+                    dropVersion(current);
+                } finally {
+                    namespaceLock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    // Inodes vivos nas duas versões são o mesmo nó: enquanto há versões, um inode usado por
+    // alguma delas não é reaproveitado.
+    private static void compare(InodeTable.Version before, InodeTable.Version after, SnapshotDiff diff) {
+        InodeTable.diff(before, after, inode -> {
+            boolean existed = !before.isFree(inode);
+            boolean exists = !after.isFree(inode);
+            if (existed && !exists) {
+                diff.count(SnapshotDiff.Change.REMOVED, 1);
+                int parent = before.getParent(inode);
+                if (parent != InodeTable.NONE && !after.isFree(parent)) {
+                    diff.add(SnapshotDiff.Change.REMOVED, before.getPath(inode), null);
+                }
+            } else if (!existed) {
+                diff.count(SnapshotDiff.Change.ADDED, 1);
+                int parent = after.getParent(inode);
+                if (parent != InodeTable.NONE && !before.isFree(parent)) {
+                    diff.add(SnapshotDiff.Change.ADDED, after.getPath(inode), null);
+                }
+            } else {
+                if (before.getParent(inode) != after.getParent(inode) || before.getNameId(inode) != after.getNameId(inode)) {
+                    diff.count(SnapshotDiff.Change.MOVED, 1);
+                    diff.add(SnapshotDiff.Change.MOVED, after.getPath(inode), before.getPath(inode));
+                }
+                if (!before.isDirectory(inode) && (before.getContent(inode) != after.getContent(inode)
+                        || before.getSize(inode) != after.getSize(inode) || before.getModified(inode) != after.getModified(inode))) {
+                    diff.count(SnapshotDiff.Change.MODIFIED, 1);
+                    diff.add(SnapshotDiff.Change.MODIFIED, after.getPath(inode), null);
+                }
+            }
+        });
+    }
+
+    public FsStatus listSnapshotDirectory(String snapshot, String path, DirectoryListing listing) {
+        return listSnapshotDirectory(defaultSession, snapshot, path, listing);
+    }
+
+    /**
+     * Lista um diretório do snapshot; caminhos relativos partem da raiz dele. Não toma nenhuma
+     * trava da árvore.
+     */
+    public FsStatus listSnapshotDirectory(Session session, String snapshot, String path, DirectoryListing listing) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.LS, start, doListSnapshotDirectory(snapshot, path, listing), path);
+    }
+
+    private FsStatus doListSnapshotDirectory(String name, String path, DirectoryListing listing) {
+        Snapshot snapshot = findSnapshot(name);
+        if (snapshot == null) {
+            return FsStatus.NOT_FOUND;
+        }
+        try {
+            InodeTable.Version version = snapshot.version;
+            int dir = snapshot.pin() ? resolve(snapshot, path) : InodeTable.NONE;
+            if (dir == InodeTable.NONE || !version.isDirectory(dir)) {
+                return FsStatus.NOT_FOUND;
+            }
+            InodeTable.Children children = version.getChildren(dir);
+            listing.reset(name + ":" + version.getPath(dir), children.getPositions(), version.getTable());
+            for (int i = 0; i < children.getPositions(); i++) {
+                int child = children.childAt(i);
+                if (child != InodeTable.NONE) {
+                    listing.add(version, child, children.nameAt(i));
+                }
+            }
+            return FsStatus.OK;
+        } finally {
+            unpin(snapshot);
+        }
+    }
+
+    public FsStatus readSnapshotFile(String snapshot, String path, Appendable out) {
+        return readSnapshotFile(defaultSession, snapshot, path, out);
+    }
+
+    /**
+     * Copia para {@code out} o conteúdo que o arquivo tinha no snapshot. Não toma nenhuma trava da árvore.
+     */
+    public FsStatus readSnapshotFile(Session session, String snapshot, String path, Appendable out) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.CAT, start, doReadSnapshotFile(session, snapshot, path, out), path);
+    }
+
+    private FsStatus doReadSnapshotFile(Session session, String name, String path, Appendable out) {
+        Snapshot snapshot = findSnapshot(name);
+        if (snapshot == null) {
+            return FsStatus.NOT_FOUND;
+        }
+        try {
+            InodeTable.Version version = snapshot.version;
+            int file = snapshot.pin() ? resolve(snapshot, path) : InodeTable.NONE;
+            if (file == InodeTable.NONE) {
+                return FsStatus.NOT_FOUND;
+            }
+            if (version.isDirectory(file)) {
+                return FsStatus.IS_DIRECTORY;
+            }
+            TextStorage content = version.getContent(file);
+            if (content != null && !copyRange(session, content, 0, content.length(), out)) {
+                return FsStatus.IO_ERROR;
+            }
+            return FsStatus.OK;
+        } finally {
+            unpin(snapshot);
+        }
+    }
+
+    // Inode do caminho dentro do snapshot, ou NONE.
+    private static int resolve(Snapshot snapshot, String path) {
+        InodeTable.Version version = snapshot.version;
+        int node = snapshot.root;
+        int length = path.length();
+        for (int from = 0; from < length; ) {
+            int to = path.indexOf('/', from);
+            if (to < 0) {
+                to = length;
+            }
+            if (to - from == 2 && path.startsWith("..", from)) {
+                if (node != snapshot.root) {
+                    node = version.getParent(node);
+                }
+            } else if (to > from && !(to - from == 1 && path.charAt(from) == '.')) {
+                if (!version.isDirectory(node)) {
+                    return InodeTable.NONE;
+                }
+                node = version.findChild(node, path, from, to);
+                if (node == InodeTable.NONE) {
+                    return InodeTable.NONE;
+                }
+            }
+            from = to + 1;
+        }
+        return node;
+    }
+
+    private Snapshot findSnapshot(String name) {
+        for (Snapshot snapshot : snapshots) {
+            if (snapshot.getName().equals(name)) {
+                return snapshot;
+            }
+        }
+        return null;
+    }
+
+    private void unpin(Snapshot snapshot) {
+        if (snapshot.unpin()) {
+            namespaceLock.writeLock().lock();
+            try {
+                dropSnapshot(snapshot);
+            } finally {
+                namespaceLock.writeLock().unlock();
+            }
+        }
+    }
+
+    // Com o namespace exclusivo. Tira o snapshot da lista; a versão sai da tabela agora ou no fim
+    // da última leitura.
+    private void removeSnapshot(Snapshot snapshot) {
+        Snapshot[] current = snapshots;
+        Snapshot[] smaller = new Snapshot[current.length - 1];
+        for (int i = 0, j = 0; i < current.length; i++) {
+            if (current[i] != snapshot) {
+                smaller[j++] = current[i];
+            }
+        }
+        snapshots = smaller;
+        if (snapshot.delete()) {
+            dropSnapshot(snapshot);
+        }
+    }
+
+    private void dropSnapshot(Snapshot snapshot) {
+        if (snapshot.dropped) {
+            return;
+        }
+        snapshot.dropped = true;
+        // Depois de um mount a tabela do snapshot não é mais a da árvore: ela vai inteira para o coletor.
+        if (snapshot.version.getTable() == root.table) {
+            dropVersion(snapshot.version);
+        }
+    }
+
+    // Com o namespace exclusivo. Libera os conteúdos que só a versão usava e a tira da tabela.
+    private void dropVersion(InodeTable.Version version) {
+        InodeTable table = version.getTable();
+        table.uniqueBytes(version, file -> version.getContent(file).release());
+        table.drop(version);
+    }
+
+    // Antes de a árvore ser descartada ou persistida de vez (mount, unmount, shutdown).
+    private void removeSnapshots() {
+        while (snapshots.length > 0) {
+            removeSnapshot(snapshots[0]);
+        }
+    }
+
+    // Depois de InodeTable.restore: recria os objetos dos diretórios, com travas e totais, a partir
+    // das listas de filhos da tabela. Em largura, para somar os totais de baixo para cima no fim.
+    private static Directory attachDirectories(InodeTable table, int rootInode) {
+        Directory top = new Directory(table, rootInode, "/", null, (InodeTable.Children) table.getPayload(rootInode));
+        table.setDirectory(rootInode, top);
+        MyArrayList<Directory> order = new MyArrayList<>();
+        order.add(top);
+        for (int k = 0; k < order.size(); k++) {
+            Directory dir = order.get(k);
+            for (int i = 0; i < dir.getPositions(); i++) {
+                int child = dir.childAt(i);
+                if (child != InodeTable.NONE && table.isDirectory(child)) {
+                    Directory sub = new Directory(table, child, table.getName(child), dir, (InodeTable.Children) table.getPayload(child));
+                    table.setDirectory(child, sub);
+                    order.add(sub);
+                }
+            }
+        }
+        for (int k = order.size() - 1; k >= 0; k--) {
+            Directory dir = order.get(k);
+            for (int i = 0; i < dir.getPositions(); i++) {
+                int child = dir.childAt(i);
+                if (child == InodeTable.NONE) {
+                    continue;
+                }
+                if (table.isDirectory(child)) {
+                    Directory sub = dir.childDirectory(child);
+                    dir.addToTotals(sub.totalBytes, sub.fileCount, sub.dirCount + 1);
+                    dir.raiseNewest(sub.newestModified);
+                } else {
+                    dir.addToTotals(table.getSize(child), 1, 0);
+                    dir.raiseNewest(table.getModified(child));
+                }
+            }
+        }
+        return top;
+    }
+
+    // Com o namespace exclusivo: a árvore inteira foi trocada; sessões voltam à raiz.
+    private void replaceRoot(Directory newRoot) {
+        this.root = newRoot;
+        this.treeGeneration++;
+        this.pathCache.clear();
+    }
+
+    public FsStatus syncJournal() {
+        return syncJournal(defaultSession);
+    }
+
+    /**
+     * Barreira de durabilidade: espera o journal binário e o de texto gravarem tudo o que já foi registrado.
+     */
+    public FsStatus syncJournal(Session session) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.JOURNAL_SYNC, start, doSyncJournal(session), null);
+    }
+
+    private FsStatus doSyncJournal(Session session) {
+        try {
+            WriteAheadLog log = wal;
+            if (log != null) {
+                log.sync();
+            }
+            journal.sync();
+        } catch (IOException e) {
+            session.errorDetail = e.getMessage();
+            journal.logOperation("JOURNAL_SYNC_FAIL", e.getMessage());
+            return FsStatus.IO_ERROR;
+        }
+        return FsStatus.OK;
+    }
+
+    public void setJournalBackpressure(AsyncJournalWriter.Backpressure backpressure) {
+        if (journal.getAppender() != null) {
+            journal.getAppender().setBackpressure(backpressure);
+        }
+    }
+
+    public boolean isMounted() {
+        return image != null;
+    }
+
+    // Pré-ordem: todo inode é gravado depois do seu diretório pai.
+    private void collectRecords(Directory dir, int dirInode, InodeRecords records) {
+        InodeTable table = dir.table;
+        for (int i = 0; i < dir.getPositions(); i++) {
+            int child = dir.childAt(i);
+            if (child == InodeTable.NONE) {
+                continue;
+            }
+            if (table.isDirectory(child)) {
+                int inode = records.add(dirInode, InodeRecords.TYPE_DIRECTORY, table.getName(child), table.getCreated(child),
+                        table.getModified(child), 0);
+                collectRecords(dir.childDirectory(child), inode, records);
+            } else {
+                records.add(dirInode, InodeRecords.TYPE_FILE, table.getName(child), table.getCreated(child), table.getModified(child),
+                        (int) table.getSize(child));
+                Object content = table.getPayload(child);
+                if (content != null) {
+                    ExtentList extents = ((ExtentFile) content).getExtents();
+                    for (int e = 0; e < extents.size(); e++) {
+                        records.addExtent(extents.startAt(e), extents.lengthAt(e));
+                    }
+                }
+            }
+        }
+    }
+
+    // Uma passada para criar os nós e outra, de trás para frente, para os totais agregados. Numa
+    // tabela nova os inodes são entregues em sequência, então o inode de cada registro é o seu índice.
+    private Directory buildTree(InodeRecords records) {
+        int count = records.size();
+        int[] childCounts = new int[count];
+        for (int i = 1; i < count; i++) {
+            childCounts[records.getParent(i)]++;
+        }
+        InodeTable table = new InodeTable();
+        Directory newRoot = newRoot(table, count > 0 ? childCounts[0] : 0);
+        if (count > 0) {
+            table.setCreated(newRoot.inode, records.getCreated(0));
+            table.setModified(newRoot.inode, records.getModified(0));
+            newRoot.newestModified = records.getModified(0);
+        }
+        for (int i = 1; i < count; i++) {
+            Directory parent = (Directory) table.getDirectory(records.getParent(i));
+            String name = records.getName(i);
+            boolean isDirectory = records.getType(i) == InodeRecords.TYPE_DIRECTORY;
+            int inode = table.allocate(parent.inode, isDirectory ? NodeType.DIRECTORY : NodeType.FILE, name, records.getCreated(i));
+            table.setModified(inode, records.getModified(i));
+            if (isDirectory) {
+                table.setDirectory(inode, new Directory(table, inode, name, parent, childCounts[i]));
+            } else if (records.getExtentCount(i) > 0 || records.getLength(i) > 0) {
+                ExtentList extents = new ExtentList();
+                for (int e = 0; e < records.getExtentCount(i); e++) {
+                    extents.add(records.getExtentStart(i, e), records.getExtentBlocks(i, e));
+                }
+                table.setPayload(inode, new ExtentFile(device, extents, records.getLength(i)));
+                table.setSize(inode, records.getLength(i));
+            }
+            parent.addChild(inode);
+        }
+        for (int i = count - 1; i > 0; i--) {
+            Directory parent = (Directory) table.getDirectory(records.getParent(i));
+            if (table.isDirectory(i)) {
+                Directory dir = (Directory) table.getDirectory(i);
+                parent.addToTotals(dir.totalBytes, dir.fileCount, dir.dirCount + 1);
+                parent.raiseNewest(dir.newestModified);
+            } else {
+                parent.addToTotals(table.getSize(i), 1, 0);
+                parent.raiseNewest(table.getModified(i));
+            }
+        }
+        table.enableTextIndex(textIndexBudget);
+        return newRoot;
+    }
+
+    public WriteAheadLog getWriteAheadLog() {
+        return wal;
+    }
+
+    public void setWalSyncPolicy(WriteAheadLog.SyncPolicy policy) {
+        this.walSyncPolicy = policy;
+        if (wal != null) {
+            wal.setSyncPolicy(policy);
+        }
+    }
+
+    private void openWal(Path walPath, long checkpointLsn) {
+        try {
+            wal = WriteAheadLog.open(walPath, walSyncPolicy);
+            WriteAheadLog.RecoveryStats stats = wal.replay(checkpointLsn, this::replayRecord);
+            double millis = stats.elapsedNanos / 1_000_000.0;
+            if (stats.applied + stats.failed > 0 || stats.discardedBytes > 0) {
+                notice("Recuperação de '" + walPath + "': " + stats.applied + " registro(s) reaplicado(s) de " + stats.segments
+                        + " segmento(s), " + stats.failed + " com falha, " + stats.discardedBytes + " byte(s) de cauda descartado(s) em "
+                        + String.format("%.1f", millis) + " ms.");
+            }
+            journal.logOperation("RECOVERY", walPath.toAbsolutePath() + ": " + stats.segments + " segmentos, " + stats.applied + " aplicados, "
+                    + stats.failed + " falhas, " + stats.skipped + " já no checkpoint, " + stats.discardedBytes + " bytes descartados, "
+                    + String.format("%.1f", millis) + " ms");
+        } catch (IOException e) {
+            notice("Erro: Não foi possível abrir o journal '" + walPath + "': " + e.getMessage());
+            journal.logOperation("RECOVERY_FAIL", walPath + ": " + e.getMessage());
+            closeWal();
+        }
+    }
+
+    private void closeWal() {
+        if (wal == null) {
+            return;
+        }
+        try {
+            wal.close();
+        } catch (IOException e) {
+            notice("Erro ao fechar o journal: " + e.getMessage());
+        }
+        wal = null;
+    }
+
+    // Grava a operação no journal antes de aplicá-la; se a gravação falhar, a operação não é feita.
+    private boolean logAhead(Session session, WriteAheadLog.Op op, String path, int arg1, int arg2, String text, String failOperation) {
+        if (wal == null) {
+            return true;
+        }
+        try {
+            wal.append(op, path, arg1, arg2, text);
+            return true;
+        } catch (IOException e) {
+            session.errorDetail = "Falha ao gravar no journal: " + e.getMessage();
+            journal.logOperation(failOperation, "Falha no journal em disco para " + path + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean replayRecord(WriteAheadLog.Record record) {
+        int slash = record.path.lastIndexOf('/');
+        if (slash < 0 || slash == record.path.length() - 1) {
+            return false;
+        }
+        Directory parent = resolveAbsolute(record.path.substring(0, slash));
+        if (parent == null) {
+            return false;
+        }
+        String name = record.path.substring(slash + 1);
+        InodeTable table = parent.table;
+        int node = parent.findChild(name);
+        boolean isFile = node != InodeTable.NONE && !table.isDirectory(node);
+        try {
+            switch (record.op) {
+                case MKDIR:
+                    if (node != InodeTable.NONE) {
+                        return false;
+                    }
+                    applyCreateDirectory(parent, name, record.timestamp);
+                    return true;
+                case CREATE:
+                    if (node != InodeTable.NONE) {
+                        return false;
+                    }
+                    applyCreateFile(parent, name, record.timestamp);
+                    return true;
+                case WRITE:
+                    if (!isFile || record.arg2 < 0 || record.arg2 > table.getSize(node)) {
+                        return false;
+                    }
+                    applyWrite(parent, node, record.text, record.arg1, record.arg2, record.timestamp);
+                    return true;
+                case TRUNCATE:
+                    if (!isFile || record.arg1 < 0 || record.arg1 > table.getSize(node)) {
+                        return false;
+                    }
+                    applyTruncate(parent, node, record.arg1, record.timestamp);
+                    return true;
+                case RENAME:
+                    if (node == InodeTable.NONE || record.text == null || parent.findChild(record.text) != InodeTable.NONE) {
+                        return false;
+                    }
+                    applyRename(parent, node, record.text);
+                    return true;
+                case DELETE:
+                    if (node != InodeTable.NONE && record.arg1 == DELETE_RECURSIVE) {
+                        return applyDeleteTree(parent, node);
+                    }
+                    if (node == InodeTable.NONE || (!isFile && !parent.childDirectory(node).isEmpty())) {
+                        return false;
+                    }
+                    return applyDelete(parent, node);
+                case COPY:
+                case MOVE: {
+                    int slash2 = record.text == null ? -1 : record.text.lastIndexOf('/');
+                    if (node == InodeTable.NONE || slash2 < 0 || slash2 == record.text.length() - 1) {
+                        return false;
+                    }
+                    Directory target = resolveAbsolute(record.text.substring(0, slash2));
+                    String newName = record.text.substring(slash2 + 1);
+                    if (target == null || target.findChild(newName) != InodeTable.NONE) {
+                        return false;
+                    }
+                    if (record.op == WriteAheadLog.Op.COPY) {
+                        applyCopy(parent, node, target, newName, record.timestamp);
+                    } else if (!isFile && contains(parent.childDirectory(node), target)) {
+                        return false;
+                    } else {
+                        applyMove(parent, node, target, newName);
+                    }
+                    return true;
+                }
+                default:
+                    return false;
+            }
+        } catch (DiskFullException e) {
+            return false;
+        }
+    }
+
+    // Aplicação das operações já validadas e gravadas no journal (também usada no replay).
+
+    private Directory applyCreateDirectory(Directory parent, String name, long time) {
+        InodeTable table = parent.table;
+        int inode = table.allocate(parent.inode, NodeType.DIRECTORY, name, time);
+        Directory dir = new Directory(table, inode, name, parent, 0);
+        table.setDirectory(inode, dir);
+        parent.addChild(inode);
+        propagate(parent, inode, 1);
+        touch(parent, time);
+        pathCache.invalidate(dir.getAbsolutePath());
+        return dir;
+    }
+
+    private int applyCreateFile(Directory parent, String name, long time) {
+        int file = parent.table.allocate(parent.inode, NodeType.FILE, name, time);
+        parent.addChild(file);
+        propagate(parent, file, 1);
+        touch(parent, time);
+        return file;
+    }
+
+    private void applyRename(Directory dir, int node, String newName) {
+        InodeTable table = dir.table;
+        String oldPath = childPath(dir, table.getName(node));
+        dir.renameChild(node, newName);
+        if (table.isDirectory(node)) {
+            dir.childDirectory(node).rename(newName);
+            pathCache.invalidateSubtree(oldPath);
+        }
+        pathCache.invalidateSubtree(childPath(dir, newName));
+    }
+
+    private void applyWrite(Directory dir, int file, String data, int mode, int offset, long time) {
+        Object shared = dir.table.getPayload(file);
+        if (mode == WRITE_REPLACE && shared != null && dir.table.isShared(file, shared)) {
+            // Um snapshot está com o conteúdo e ele vai ser todo substituído: nada a copiar.
+            TextStorage replaced = newContent(dir.table);
+            try {
+                replaced.append(data);
+            } catch (DiskFullException e) {
+                replaced.release();
+                throw e;
+            }
+            dir.table.setPayload(file, replaced);
+            indexChanged(dir.table, file, replaced, -1);
+            fileChanged(dir, file, replaced, ((TextStorage) shared).length(), time);
+            return;
+        }
+        TextStorage content = contentForWrite(dir.table, file);
+        int oldSize = content.length();
+        try {
+            if (mode == WRITE_REPLACE) {
+                // Sobrescreve e trunca depois: se faltar espaço, o conteúdo antigo continua intacto.
+                content.write(0, data);
+                content.truncate(data.length());
+            } else if (mode == WRITE_APPEND) {
+                content.append(data);
+            } else {
+                content.write(offset, data);
+            }
+        } finally {
+            indexChanged(dir.table, file, content, mode == WRITE_APPEND ? oldSize : -1);
+            fileChanged(dir, file, content, oldSize, time);
+        }
+    }
+
+    private void applyTruncate(Directory dir, int file, int newSize, long time) {
+        TextStorage content = content(dir.table, file);
+        int oldSize = content.length();
+        if (newSize == oldSize) {
+            dir.table.setModified(file, time);
+            touch(dir, time);
+            return;
+        }
+        if (dir.table.isShared(file, content)) {
+            content = copyOf(dir.table, content, newSize);
+            dir.table.setPayload(file, content);
+        } else {
+            content.truncate(newSize);
+        }
+        indexChanged(dir.table, file, content, -1);
+        fileChanged(dir, file, content, oldSize, time);
+    }
+
+    private boolean applyDelete(Directory dir, int node) {
+        InodeTable table = dir.table;
+        boolean isDirectory = table.isDirectory(node);
+        String removedPath = isDirectory ? childPath(dir, table.getName(node)) : null;
+        if (!dir.removeChild(node)) {
+            return false;
+        }
+        propagate(dir, node, -1);
+        if (isDirectory) {
+            dir.childDirectory(node).removed = true;
+            pathCache.invalidateSubtree(removedPath);
+        } else {
+            release(table, node);
+        }
+        table.free(node);
+        return true;
+    }
+
+    // Remove o nó; se for diretório, com toda a subárvore.
+    private boolean applyDeleteTree(Directory dir, int node) {
+        InodeTable table = dir.table;
+        if (!table.isDirectory(node)) {
+            return applyDelete(dir, node);
+        }
+        Directory removed = dir.childDirectory(node);
+        String removedPath = childPath(dir, table.getName(node));
+        if (!dir.removeChild(node)) {
+            return false;
+        }
+        propagate(dir, node, -1);
+        pathCache.invalidateSubtree(removedPath);
+        treePool.invoke(new ReclaimTask(removed));
+        return true;
+    }
+
+    // Copia o nó para dentro de target com o nome dado; retorna o número de nós criados. Sem espaço
+    // no dispositivo, desfaz a cópia parcial antes de lançar a exceção.
+    private long applyCopy(Directory dir, int node, Directory target, String name, long time) {
+        InodeTable table = dir.table;
+        if (!table.isDirectory(node)) {
+            int copy = table.allocate(target.inode, NodeType.FILE, name, time);
+            try {
+                copyContent(table, node, copy);
+            } catch (DiskFullException e) {
+                Object content = table.getPayload(copy);
+                if (content != null) {
+                    ((TextStorage) content).release();
+                }
+                table.free(copy);
+                throw e;
+            }
+            target.addChild(copy);
+            propagate(target, copy, 1);
+            touch(target, time);
+            return 1;
+        }
+        Directory source = dir.childDirectory(node);
+        int inode = table.allocate(target.inode, NodeType.DIRECTORY, name, time);
+        Directory copy = new Directory(table, inode, name, target, source.getChildCount());
+        table.setDirectory(inode, copy);
+        // A origem não muda durante a cópia (namespace exclusivo): os totais são os mesmos.
+        copy.addToTotals(source.totalBytes, source.fileCount, source.dirCount);
+        try {
+            treePool.invoke(new CopyTask(source, copy, time));
+        } catch (DiskFullException e) {
+            treePool.invoke(new ReclaimTask(copy));
+            throw e;
+        }
+        target.addChild(inode);
+        propagate(target, inode, 1);
+        touch(target, time);
+        pathCache.invalidateSubtree(copy.getAbsolutePath());
+        return subtreeSize(copy);
+    }
+
+    // Religa o nó a outro diretório, sem tocar na subárvore.
+    private void applyMove(Directory dir, int node, Directory target, String name) {
+        InodeTable table = dir.table;
+        String oldPath = childPath(dir, table.getName(node));
+        dir.removeChild(node);
+        propagate(dir, node, -1);
+        if (!table.nameEquals(node, name, 0, name.length())) {
+            table.setName(node, name);
+        }
+        table.setParent(node, target.inode);
+        target.addChild(node);
+        propagate(target, node, 1);
+        if (!table.isDirectory(node)) {
+            touch(target, table.getModified(node));
+        } else {
+            Directory moved = target.childDirectory(node);
+            touch(target, moved.newestModified);
+            moved.parent = target;
+            // Mesmo com o nome igual, rename invalida os caminhos em cache da subárvore.
+            moved.rename(name);
+            pathCache.invalidateSubtree(oldPath);
+        }
+        pathCache.invalidateSubtree(childPath(target, name));
+    }
+
+    // Conteúdo e tamanho do arquivo file no inode copy, recém-alocado.
+    private void copyContent(InodeTable table, int file, int copy) {
+        Object content = table.getPayload(file);
+        if (content == null) {
+            return;
+        }
+        TextStorage from = (TextStorage) content;
+        int length = from.length();
+        // Em memória a cópia só compartilha os blocos do original.
+        TextStorage to = from instanceof ChunkedText ? ((ChunkedText) from).copy(length) : newContent(table);
+        table.setPayload(copy, to);
+        for (int offset = to.length(); offset < length; offset += ChunkedText.CHUNK_SIZE) {
+            to.append(from.read(offset, Math.min(ChunkedText.CHUNK_SIZE, length - offset)));
+        }
+        table.setSize(copy, length);
+        TextIndex index = table.getTextIndex();
+        if (index != null) {
+            index.copy(file, copy);
+        }
+    }
+
+    // Libera uma subárvore já desligada da árvore: conteúdo dos arquivos, inodes (em lotes, com
+    // uma aquisição da trava da tabela por lote) e a marca de removido dos diretórios.
+    // Subdiretórios grandes viram tarefas próprias.
+    private static final class ReclaimTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Directory dir;
+        private final int[] batch = new int[256];
+        private int batchSize;
+
+        ReclaimTask(Directory dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected void compute() {
+            MyArrayList<ReclaimTask> forked = new MyArrayList<>();
+            reclaim(dir, forked);
+            dir.table.free(batch, batchSize);
+            for (int i = 0; i < forked.size(); i++) {
+                forked.get(i).join();
+            }
+        }
+
+        private void reclaim(Directory d, MyArrayList<ReclaimTask> forked) {
+            InodeTable table = d.table;
+            for (int i = 0; i < d.getPositions(); i++) {
+                int child = d.childAt(i);
+                if (child == InodeTable.NONE) {
+                    continue;
+                }
+                if (table.isDirectory(child)) {
+                    Directory sub = d.childDirectory(child);
+                    if (subtreeSize(sub) >= PARALLEL_SUBTREE) {
+                        ReclaimTask task = new ReclaimTask(sub);
+                        task.fork();
+                        forked.add(task);
+                    } else {
+                        reclaim(sub, forked);
+                    }
+                } else {
+                    release(table, child);
+                    free(table, child);
+                }
+            }
+            d.removed = true;
+            free(table, d.inode);
+        }
+
+        private void free(InodeTable table, int inode) {
+            if (batchSize == batch.length) {
+                table.free(batch, batchSize);
+                batchSize = 0;
+            }
+            batch[batchSize++] = inode;
+        }
+    }
+
+    // Copia os filhos de source para target, um diretório novo ainda fora da árvore. Cada diretório
+    // da cópia é preenchido por uma só tarefa; subdiretórios grandes viram tarefas próprias.
+    private final class CopyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Directory source;
+        private final Directory target;
+        private final long time;
+
+        CopyTask(Directory source, Directory target, long time) {
+            this.source = source;
+            this.target = target;
+            this.time = time;
+        }
+
+        @Override
+        protected void compute() {
+            MyArrayList<CopyTask> forked = new MyArrayList<>();
+            RuntimeException failure = null;
+            try {
+                copyChildren(source, target, forked);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            // Numa falha, quem desfaz a cópia não pode concorrer com subtarefas ainda rodando.
+            for (int i = 0; i < forked.size(); i++) {
+                try {
+                    forked.get(i).join();
+                } catch (RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        private void copyChildren(Directory from, Directory to, MyArrayList<CopyTask> forked) {
+            InodeTable table = from.table;
+            for (int i = 0; i < from.getPositions(); i++) {
+                int child = from.childAt(i);
+                if (child == InodeTable.NONE) {
+                    continue;
+                }
+                if (table.isDirectory(child)) {
+                    Directory sub = from.childDirectory(child);
+                    int inode = table.allocate(to.inode, NodeType.DIRECTORY, from.nameAt(i), time);
+                    Directory copy = new Directory(table, inode, sub.name, to, sub.getChildCount());
+                    table.setDirectory(inode, copy);
+                    copy.addToTotals(sub.totalBytes, sub.fileCount, sub.dirCount);
+                    to.addChild(inode);
+                    if (subtreeSize(sub) >= PARALLEL_SUBTREE) {
+                        CopyTask task = new CopyTask(sub, copy, time);
+                        task.fork();
+                        forked.add(task);
+                    } else {
+                        copyChildren(sub, copy, forked);
+                    }
+                } else {
+                    // Entra na lista antes do conteúdo: se faltar espaço, a liberação da cópia o encontra.
+                    int copy = table.allocate(to.inode, NodeType.FILE, from.nameAt(i), time);
+                    to.addChild(copy);
+                    copyContent(table, child, copy);
+                }
+            }
+        }
+    }
+
+    private TextStorage newContent(InodeTable table) {
+        if (device != null) {
+            return new ExtentFile(device);
+        }
+        return new ChunkedText(deduplication ? table.getChunkStore() : null);
+    }
+
+    // Conteúdo para leitura; arquivos que nunca foram escritos não têm armazenamento alocado.
+    private static TextStorage content(InodeTable table, int file) {
+        Object content = table.getPayload(file);
+        return content == null ? EMPTY_CONTENT : (TextStorage) content;
+    }
+
+    // Chamado com a trava de escrita do diretório do arquivo. Se um snapshot está com o conteúdo,
+    // o arquivo passa a ter uma cópia dele: em memória, novos ponteiros para os mesmos blocos; no
+    // dispositivo, o arquivo inteiro, na primeira escrita depois do snapshot.
+    private TextStorage contentForWrite(InodeTable table, int file) {
+        Object content = table.getPayload(file);
+        if (content == null) {
+            content = newContent(table);
+            table.setPayload(file, content);
+        } else if (table.isShared(file, content)) {
+            content = copyOf(table, (TextStorage) content, ((TextStorage) content).length());
+            table.setPayload(file, content);
+        }
+        return (TextStorage) content;
+    }
+
+    // Os primeiros length caracteres de from, num armazenamento novo; nada fica alocado se faltar espaço.
+    private TextStorage copyOf(InodeTable table, TextStorage from, int length) {
+        if (from instanceof ChunkedText) {
+            return ((ChunkedText) from).copy(length);
+        }
+        TextStorage to = newContent(table);
+        try {
+            for (int offset = 0; offset < length; offset += ChunkedText.CHUNK_SIZE) {
+                to.append(from.read(offset, Math.min(ChunkedText.CHUNK_SIZE, length - offset)));
+            }
+        } catch (DiskFullException e) {
+            to.release();
+            throw e;
+        }
+        return to;
+    }
+
+    // Devolve o armazenamento do arquivo, a menos que um snapshot ainda esteja com ele.
+    private static void release(InodeTable table, int file) {
+        Object content = table.getPayload(file);
+        if (content != null && !table.isShared(file, content)) {
+            ((TextStorage) content).release();
+        }
+    }
+
+    private int findFile(Directory dir, String name, String failOperation) {
+        int node = dir.findChild(name);
+        if (node != InodeTable.NONE && !dir.table.isDirectory(node)) {
+            return node;
+        }
+        if (node == InodeTable.NONE) {
+            journal.logOperation(failOperation, "Arquivo não encontrado: " + childPath(dir, name));
+        } else {
+            journal.logOperation(failOperation, "Não é um arquivo: " + childPath(dir, name));
+        }
+        return InodeTable.NONE;
+    }
+
+    // Motivo de findFile ter retornado NONE.
+    private static FsStatus missingFile(Directory dir, String name) {
+        return dir.findChild(name) == InodeTable.NONE ? FsStatus.NOT_FOUND : FsStatus.IS_DIRECTORY;
+    }
+
+    // appendedFrom >= 0: o conteúdo só ganhou texto a partir dali, e o índice lê só esse trecho.
+    private static void indexChanged(InodeTable table, int file, TextStorage content, int appendedFrom) {
+        TextIndex index = table.getTextIndex();
+        if (index == null) {
+            return;
+        }
+        if (appendedFrom >= 0) {
+            index.append(file, content, appendedFrom);
+        } else {
+            index.replace(file, content);
+        }
+    }
+
+    private void fileChanged(Directory dir, int file, TextStorage content, int oldSize, long time) {
+        InodeTable table = dir.table;
+        if (content instanceof ChunkedText) {
+            ((ChunkedText) content).seal();
+        }
+        table.setModified(file, time);
+        touch(dir, time);
+        table.setSize(file, content.length());
+        long delta = content.length() - oldSize;
+        if (delta != 0) {
+            addToTotals(dir, delta, 0, 0);
+        }
+    }
+
+    // Copia em blocos para não materializar o arquivo inteiro numa String.
+    private static boolean copyRange(Session session, TextStorage content, int offset, int length, Appendable out) {
+        char[] buffer = new char[Math.min(length, ChunkedText.CHUNK_SIZE)];
+        CharBuffer chars = CharBuffer.wrap(buffer);
+        int end = offset + length;
+        try {
+            while (offset < end) {
+                int n = Math.min(buffer.length, end - offset);
+                content.copyTo(offset, buffer, 0, n);
+                out.append(chars, 0, n);
+                offset += n;
+            }
+        } catch (IOException e) {
+            session.errorDetail = e.getMessage();
+            return false;
+        }
+        return true;
+    }
+
+    public FsStatus delete(String path) {
+        return delete(defaultSession, path);
+    }
+
+    public FsStatus delete(String path, boolean recursive) {
+        return delete(defaultSession, path, recursive);
+    }
+
+    public FsStatus delete(Session session, String path) {
+        return delete(session, path, false);
+    }
+
+    /**
+     * Remove o arquivo ou diretório indicado pelo caminho (relativo ao diretório atual ou absoluto).
+     * Sem {@code recursive}, só remove diretórios vazios; com ele, remove a subárvore inteira com o
+     * namespace travado e um único registro no journal, liberando subárvores grandes em paralelo.
+     */
+    public FsStatus delete(Session session, String path, boolean recursive) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.RM, start, doDelete(session, path, recursive), path);
+    }
+
+    private FsStatus doDelete(Session session, String path, boolean recursive) {
+        String target = trimSlashes(path);
+        String name = baseName(target);
+        if (name.isEmpty()) {
+            journal.logOperation("RM_FAIL", "Caminho inválido para remover: " + path);
+            return FsStatus.INVALID_NAME;
+        }
+        maybeCheckpoint();
+        maybeCompactNames();
+        if (recursive) {
+            return deleteTree(session, target, name);
+        }
+        Directory dir = enterParent(session, target, true, "RM_FAIL");
+        if (dir == null) {
+            return target.indexOf('/') < 0 ? FsStatus.CWD_REMOVED : FsStatus.NOT_FOUND;
+        }
+        try {
+            int nodeToRemove = dir.findChild(name);
+
+            if (nodeToRemove == InodeTable.NONE) {
+                journal.logOperation("RM_FAIL", "Não encontrado para remover: " + childPath(dir, name));
+                return FsStatus.NOT_FOUND;
+            }
+
+            // Um diretório removido é travado também: ninguém pode estar trabalhando dentro dele.
+            Directory dirToRemove = dir.table.isDirectory(nodeToRemove) ? dir.childDirectory(nodeToRemove) : null;
+            if (dirToRemove != null) {
+                dirToRemove.lock.writeLock().lock();
+            }
+            try {
+                if (dirToRemove != null && !dirToRemove.isEmpty()) {
+                    journal.logOperation("RM_FAIL", "Tentativa de remover diretório não vazio: " + dirToRemove.getAbsolutePath());
+                    return FsStatus.NOT_EMPTY;
+                }
+
+                String removedPath = childPath(session, dir, name);
+                if (!logAhead(session, WriteAheadLog.Op.DELETE, removedPath, 0, 0, null, "RM_FAIL")) {
+                    return FsStatus.IO_ERROR;
+                }
+                if (!applyDelete(dir, nodeToRemove)) {
+                    journal.logOperation("RM_FAIL", "Erro interno ao remover: " + removedPath);
+                    return FsStatus.INTERNAL_ERROR;
+                }
+                session.lastType = dirToRemove != null ? NodeType.DIRECTORY : NodeType.FILE;
+                session.lastNodeCount = 1;
+                journal.log(dirToRemove != null ? JournalOp.RM_DIR : JournalOp.RM_FILE, removedPath);
+                return FsStatus.OK;
+            } finally {
+                if (dirToRemove != null) {
+                    dirToRemove.lock.writeLock().unlock();
+                }
+            }
+        } finally {
+            leave(dir, true);
+        }
+    }
+
+    // rm -r: com o namespace exclusivo, nenhuma outra operação pode estar dentro da subárvore.
+    private FsStatus deleteTree(Session session, String path, String name) {
+        namespaceLock.writeLock().lock();
+        try {
+            Directory dir = parentDirectory(session, path);
+            if (dir == null || dir.removed) {
+                return missingParent(session, path, "RM_FAIL");
+            }
+            int node = dir.findChild(name);
+            if (node == InodeTable.NONE) {
+                journal.logOperation("RM_FAIL", "Não encontrado para remover: " + childPath(dir, name));
+                return FsStatus.NOT_FOUND;
+            }
+            boolean isDirectory = dir.table.isDirectory(node);
+            long count = isDirectory ? subtreeSize(dir.childDirectory(node)) : 1;
+            String removedPath = childPath(dir, name);
+            if (!logAhead(session, WriteAheadLog.Op.DELETE, removedPath, isDirectory ? DELETE_RECURSIVE : 0, 0, null, "RM_FAIL")) {
+                return FsStatus.IO_ERROR;
+            }
+            if (!applyDeleteTree(dir, node)) {
+                journal.logOperation("RM_FAIL", "Erro interno ao remover: " + removedPath);
+                return FsStatus.INTERNAL_ERROR;
+            }
+            session.lastType = isDirectory ? NodeType.DIRECTORY : NodeType.FILE;
+            session.lastNodeCount = count;
+            if (isDirectory) {
+                journal.log(JournalOp.RM_TREE, removedPath, count);
+            } else {
+                journal.log(JournalOp.RM_FILE, removedPath);
+            }
+            return FsStatus.OK;
+        } finally {
+            namespaceLock.writeLock().unlock();
+        }
+    }
+
+    public FsStatus copy(String source, String target, boolean recursive) {
+        return copy(defaultSession, source, target, recursive);
+    }
+
+    /**
+     * Copia um arquivo ou, com {@code recursive}, um diretório com toda a subárvore. Se o destino é
+     * um diretório existente, a cópia fica dentro dele com o mesmo nome; senão, o último componente
+     * do destino é o nome da cópia. A cópia é montada fora da árvore (subárvores grandes em
+     * paralelo) e só entra nela no fim: sem espaço no dispositivo, nada muda.
+     */
+    public FsStatus copy(Session session, String source, String target, boolean recursive) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.CP, start, doTransfer(session, source, target, false, recursive), source);
+    }
+
+    public FsStatus move(String source, String target) {
+        return move(defaultSession, source, target);
+    }
+
+    /**
+     * Move (e opcionalmente renomeia) um arquivo ou diretório; o destino é interpretado como em
+     * {@link #copy(Session, String, String, boolean)}. Só religa o nó ao novo pai: o custo não
+     * depende do tamanho da subárvore.
+     */
+    public FsStatus move(Session session, String source, String target) {
+        long start = metrics.start();
+        return metrics.record(FsMetrics.Op.MV, start, doTransfer(session, source, target, true, true), source);
+    }
+
+    private FsStatus doTransfer(Session session, String source, String target, boolean move, boolean recursive) {
+        String failOperation = move ? "MV_FAIL" : "CP_FAIL";
+        String from = trimSlashes(source);
+        String to = trimSlashes(target);
+        String name = baseName(from);
+        if (name.isEmpty() || to.isEmpty()) {
+            journal.logOperation(failOperation, "Caminho inválido: " + (name.isEmpty() ? source : target));
+            return FsStatus.INVALID_NAME;
+        }
+        maybeCheckpoint();
+        maybeCompactNames();
+        namespaceLock.writeLock().lock();
+        try {
+            Directory dir = parentDirectory(session, from);
+            if (dir == null || dir.removed) {
+                return missingParent(session, from, failOperation);
+            }
+            int node = dir.findChild(name);
+            if (node == InodeTable.NONE) {
+                journal.logOperation(failOperation, "Não encontrado: " + childPath(dir, name));
+                return FsStatus.NOT_FOUND;
+            }
+            boolean isDirectory = dir.table.isDirectory(node);
+            if (isDirectory && !recursive) {
+                journal.logOperation(failOperation, "Diretório copiado sem -r: " + childPath(dir, name));
+                return FsStatus.IS_DIRECTORY;
+            }
+
+            Directory into = findDirectory(session, to);
+            String newName = name;
+            if (into == null || into.removed) {
+                into = parentDirectory(session, to);
+                if (into == null || into.removed) {
+                    return missingParent(session, to, failOperation);
+                }
+                newName = baseName(to);
+                if (newName.contains(" ")) {
+                    journal.logOperation(failOperation, "Nome de destino inválido: " + newName);
+                    return FsStatus.INVALID_NAME;
+                }
+            }
+            if (into.findChild(newName) != InodeTable.NONE) {
+                journal.logOperation(failOperation, "Destino já existe: " + childPath(into, newName));
+                return FsStatus.ALREADY_EXISTS;
+            }
+            if (move && isDirectory && contains(dir.childDirectory(node), into)) {
+                journal.logOperation(failOperation, "Diretório movido para dentro de si mesmo: " + childPath(dir, name));
+                return FsStatus.INVALID_DESTINATION;
+            }
+
+            String fromPath = childPath(dir, name);
+            String toPath = childPath(into, newName);
+            if (!logAhead(session, move ? WriteAheadLog.Op.MOVE : WriteAheadLog.Op.COPY, fromPath, 0, 0, toPath, failOperation)) {
+                return FsStatus.IO_ERROR;
+            }
+            if (move) {
+                session.lastNodeCount = isDirectory ? subtreeSize(dir.childDirectory(node)) : 1;
+                applyMove(dir, node, into, newName);
+                journal.log(JournalOp.MV, fromPath, toPath);
+            } else {
+                try {
+                    session.lastNodeCount = applyCopy(dir, node, into, newName, System.currentTimeMillis());
+                } catch (DiskFullException e) {
+                    session.errorDetail = e.getMessage();
+                    journal.logOperation(failOperation, "Sem espaço no dispositivo: " + toPath + " (" + e.getMessage() + ")");
+                    return FsStatus.DISK_FULL;
+                }
+                journal.log(JournalOp.CP, fromPath, toPath);
+            }
+            session.lastType = isDirectory ? NodeType.DIRECTORY : NodeType.FILE;
+            return FsStatus.OK;
+        } finally {
+            namespaceLock.writeLock().unlock();
+        }
+    }
 }
\ No newline at end of file
@@ -1,127 +1,1175 @@
 package br.edu.fs.simulator;
 
 
+import br.edu.fs.simulator.util.ChunkStore;
+import br.edu.fs.simulator.util.CommandTokenizer;
+import br.edu.fs.simulator.util.DiscardPrintStream;
+import br.edu.fs.simulator.util.MyLinkedHashMap;
+import br.edu.fs.simulator.util.SimpleConsoleReader;
+
+import javax.management.JMException;
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import java.util.Scanner;
 
 
 public class FileSystemSimulatorShell {
+    private static final int SCRIPT_BUFFER_SIZE = 64 * 1024;
+    private static final int OUTPUT_BUFFER_SIZE = 256 * 1024;
+    // Acima disso o buffer de leitura é descartado depois do comando, para não reter um arquivo grande.
+    private static final int TEXT_BUFFER_LIMIT = 1024 * 1024;
 
-    private FileSystemManager fsManager;
+    private final FileSystemManager fsManager;
+    private final FileSystemManager.Session session;
+    // Só o shell que criou o gerenciador o encerra no exit; sessões do servidor apenas saem.
+    private final boolean ownsManager;
+    private final PrintStream out;
+    // Reaproveitados entre comandos.
+    private final DirectoryListing listing = new DirectoryListing();
+    private final UsageReport usage = new UsageReport();
+    private StringBuilder text = new StringBuilder();
 
 
     public FileSystemSimulatorShell() {
+        this(System.out);
+    }
+
+    public FileSystemSimulatorShell(PrintStream out) {
+        this(new FileSystemManager(), out);
+    }
+
+    private FileSystemSimulatorShell(FileSystemManager fsManager, PrintStream out) {
+        this.fsManager = fsManager;
+        this.session = fsManager.getDefaultSession();
+        this.ownsManager = true;
+        this.out = out;
+    }
 
-        this.fsManager = new FileSystemManager();
+    /**
+     * Shell de uma sessão sobre um gerenciador compartilhado (usado pelo servidor).
+     */
+    public FileSystemSimulatorShell(FileSystemManager fsManager, FileSystemManager.Session session, PrintStream out) {
+        this.fsManager = fsManager;
+        this.session = session;
+        this.ownsManager = false;
+        this.out = out;
+    }
 
-        System.out.println("File System Simulator Shell. Digite 'help' para comandos.");
+    public String getPrompt() {
+        return fsManager.getCurrentPath(session) + "> ";
     }
 
     public void start() {
+        printNotices();
+        out.println("File System Simulator Shell. Digite 'help' para comandos.");
         Scanner scanner = new Scanner(System.in);
         String line;
         boolean running = true;
 
         while (running) {
-            System.out.print(fsManager.getCurrentPath() + "> ");
-            line = scanner.nextLine().trim();
+            out.print(getPrompt());
+            out.flush();
+            if (!scanner.hasNextLine()) {
+                // Entrada encerrada (Ctrl+D ou fim de um pipe): sai como o exit.
+                out.println();
+                execute("exit");
+                break;
+            }
+            line = scanner.nextLine();
+            running = execute(line);
+        }
+        scanner.close();
+    }
 
+    /**
+     * Modo não interativo: executa as linhas de {@code reader} sem prompt até o fim da entrada ou
+     * um {@code exit}. Com {@code summary}, conta os comandos por nome e no fim imprime nele os
+     * totais e o tempo gasto (a saída dos comandos continua indo para o stream do shell).
+     */
+    public void runScript(SimpleConsoleReader reader, PrintStream summary) {
+        printNotices();
+        MyLinkedHashMap<String, long[]> counts = summary != null ? new MyLinkedHashMap<>() : null;
+        long total = 0;
+        boolean running = true;
+        long start = System.nanoTime();
+        String line;
+        while (running && (line = reader.readLine()) != null) {
+            line = line.trim();
             if (line.isEmpty()) {
                 continue;
             }
+            String[] parts = CommandTokenizer.split(line, 2);
+            String command = parts[0].toLowerCase();
+            running = execute(command, parts.length > 1 ? parts[1] : "");
+            if (counts != null && running) {
+                long[] count = counts.get(command);
+                if (count == null) {
+                    count = new long[1];
+                    counts.put(command, count);
+                }
+                count[0]++;
+                total++;
+            }
+        }
+        if (running && ownsManager) {
+            // Fim da entrada sem exit: encerra como o exit faria.
+            fsManager.shutdown();
+            printNotices();
+        }
+        long elapsed = System.nanoTime() - start;
+        out.flush();
 
-            //
+        if (summary != null) {
+            double seconds = elapsed / 1_000_000_000.0;
+            summary.println(String.format("%,d comando(s) em %.3f s (%,.0f comandos/s)", total, seconds,
+                    seconds > 0 ? total / seconds : 0));
+            for (int i = 0; i < counts.size(); i++) {
+                summary.println(String.format("  %-10s %,12d", counts.keyAt(i), counts.valueAt(i)[0]));
+            }
+            summary.flush();
+        }
+    }
 
-            String[] parts = line.split("\s+", 2);
-            String command = parts[0].toLowerCase();
-            String arg = parts.length > 1 ? parts[1] : "";
+    /**
+     * Executa uma linha de comando; retorna {@code false} quando a sessão deve terminar (exit).
+     */
+    public boolean execute(String line) {
+        line = line.trim();
+        if (line.isEmpty()) {
+            return true;
+        }
+
+        String[] parts = CommandTokenizer.split(line, 2);
+        return execute(parts[0].toLowerCase(), parts.length > 1 ? parts[1] : "");
+    }
 
-            switch (command) {
-                case "mkdir":
-                    if (!arg.isEmpty()) {
-                        fsManager.createDirectory(arg);
+    // command já em minúsculas.
+    private boolean execute(String command, String arg) {
+        switch (command) {
+            case "mkdir":
+                if (!arg.isEmpty()) {
+                    FsStatus status = fsManager.createDirectory(session, arg);
+                    if (status.isOk()) {
+                        out.println("Diretório '" + arg + "' criado.");
+                    } else if (status == FsStatus.INVALID_NAME) {
+                        out.println("Erro: Nome de diretório inválido.");
+                    } else if (status == FsStatus.ALREADY_EXISTS) {
+                        out.println("Erro: Diretório '" + arg + "' já existe.");
                     } else {
-                        System.out.println("Uso: mkdir <nome_diretorio>");
+                        printError(status, arg);
                     }
-                    break;
-                case "cd":
-                    if (!arg.isEmpty()) {
-                        fsManager.changeDirectory(arg);
+                } else {
+                    out.println("Uso: mkdir <nome_diretorio>");
+                }
+                break;
+            case "cd":
+                if (!arg.isEmpty()) {
+                    FsStatus status = fsManager.changeDirectory(session, arg);
+                    if (status == FsStatus.NOT_FOUND) {
+                        out.println("Erro: Diretório '" + arg + "' não encontrado.");
+                    } else if (!status.isOk()) {
+                        printError(status, arg);
+                    }
+                } else {
+                    out.println("Uso: cd <caminho>");
+                }
+                break;
+            case "ls":
+                listDirectory(arg.isEmpty() ? "." : arg);
+                break;
+            case "create":
+                if (!arg.isEmpty()) {
+                    FsStatus status = fsManager.createFile(session, arg);
+                    if (status.isOk()) {
+                        out.println("Arquivo '" + arg + "' criado.");
+                    } else if (status == FsStatus.INVALID_NAME) {
+                        out.println("Erro: Nome de arquivo inválido.");
                     } else {
-                        System.out.println("Uso: cd <caminho>");
+                        printError(status, arg);
                     }
+                } else {
+                    out.println("Uso: create <nome_arquivo>");
+                }
+                break;
+            case "rm":
+                handleRemove(arg);
+                break;
+            case "cp":
+            case "mv":
+                handleTransfer(command, arg);
+                break;
+            case "write":
+                handleWrite(arg);
+                break;
+            case "cat":
+                if (!arg.isEmpty()) {
+                    printText(fsManager.readFile(session, arg, text), arg);
+                } else {
+                    out.println("Uso: cat <caminho>");
+                }
+                break;
+            case "head":
+            case "tail":
+                String[] headArgs = CommandTokenizer.split(arg);
+                if (arg.isEmpty() || headArgs.length > 2) {
+                    out.println("Uso: " + command + " <caminho> [linhas]");
                     break;
-                case "ls":
-                    fsManager.listDirectory(arg.isEmpty() ? "." : arg);
-                    break;
-                case "create":
-                    if (!arg.isEmpty()) {
-                        fsManager.createFile(arg);
+                }
+                int lines = headArgs.length == 2 ? parseNumber(headArgs[1]) : 10;
+                if (lines < 0) {
+                    out.println("Erro: Número de linhas inválido: " + headArgs[1]);
+                } else if (command.equals("head")) {
+                    printText(fsManager.headFile(session, headArgs[0], lines, text), headArgs[0]);
+                } else {
+                    printText(fsManager.tailFile(session, headArgs[0], lines, text), headArgs[0]);
+                }
+                break;
+            case "truncate":
+                String[] truncateArgs = CommandTokenizer.split(arg);
+                int newSize = truncateArgs.length == 2 ? parseNumber(truncateArgs[1]) : -1;
+                if (newSize >= 0) {
+                    FsStatus status = fsManager.truncateFile(session, truncateArgs[0], newSize);
+                    if (status.isOk()) {
+                        out.println("Arquivo '" + truncateArgs[0] + "' truncado para " + newSize + " caractere(s).");
+                    } else if (status == FsStatus.INVALID_SIZE) {
+                        out.println("Erro: Tamanho " + newSize + " inválido (tamanho atual " + session.getErrorSize() + ").");
                     } else {
-                        System.out.println("Uso: create <nome_arquivo>");
+                        printError(status, truncateArgs[0]);
                     }
-                    break;
-                case "rm":
-                    if (!arg.isEmpty()) {
-                        fsManager.delete(arg);
+                } else {
+                    out.println("Uso: truncate <caminho> <tamanho>");
+                }
+                break;
+            case "rename":
+                String[] names = CommandTokenizer.split(arg);
+                if (names.length == 2) {
+                    FsStatus status = fsManager.rename(session, names[0], names[1]);
+                    if (status.isOk()) {
+                        out.println("'" + names[0] + "' renomeado para '" + names[1] + "'.");
+                    } else if (status == FsStatus.INVALID_NAME) {
+                        out.println("Erro: Novo nome inválido.");
                     } else {
-                        System.out.println("Uso: rm <caminho>");
+                        printError(status, status == FsStatus.ALREADY_EXISTS ? names[1] : names[0]);
                     }
-                    break;
-                case "pwd":
-                    System.out.println(fsManager.getCurrentPath());
-                    break;
-                case "log":
-
-                    Journal journal = fsManager.getJournal();
-                    if (journal != null) {
-                        journal.printLog();
+                } else {
+                    out.println("Uso: rename <caminho> <novo_nome>");
+                }
+                break;
+            case "du":
+                diskUsage(arg.isEmpty() ? "." : arg);
+                break;
+            case "find":
+                handleFind(arg);
+                break;
+            case "search":
+                handleSearch(arg);
+                break;
+            case "index":
+                handleIndex(arg);
+                break;
+            case "snapshot":
+                handleSnapshot(arg);
+                break;
+            case "dedup":
+                handleDedup(arg);
+                break;
+            case "df":
+                printDiskFree();
+                break;
+            case "mount":
+                if (!arg.isEmpty()) {
+                    long start = System.nanoTime();
+                    FsStatus status = fsManager.mount(session, arg);
+                    printNotices();
+                    if (status.isOk()) {
+                        out.println("Imagem '" + arg + "' montada: " + fsManager.getNodeCount() + " nó(s) em " + elapsedMillis(start) + " ms.");
+                    } else if (status == FsStatus.IO_ERROR) {
+                        out.println("Erro: Não foi possível montar '" + arg + "': " + session.getErrorDetail());
                     } else {
-                        System.out.println("Erro: Journal não está disponível.");
+                        printError(status, arg);
                     }
-                    break;
-                case "journal":
-                    if (arg.equalsIgnoreCase("flush")) {
-                        Journal j = fsManager.getJournal();
-                        if (j != null) {
-                            j.flushToFile("journal.log");
-                        } else {
-                            System.out.println("Erro: Journal não está disponível.");
-                        }
+                } else {
+                    out.println("Uso: mount <arquivo_imagem>");
+                }
+                break;
+            case "sync": {
+                long start = System.nanoTime();
+                FsStatus status = fsManager.sync(session);
+                if (status.isOk()) {
+                    out.println("Imagem sincronizada: " + fsManager.getNodeCount() + " nó(s) em " + elapsedMillis(start) + " ms.");
+                } else if (status == FsStatus.IO_ERROR) {
+                    out.println("Erro: Falha ao sincronizar a imagem: " + session.getErrorDetail());
+                } else {
+                    printError(status, arg);
+                }
+                break;
+            }
+            case "checkpoint": {
+                long start = System.nanoTime();
+                FsStatus status = fsManager.checkpoint(session);
+                if (status.isOk()) {
+                    WriteAheadLog wal = fsManager.getWriteAheadLog();
+                    out.println("Checkpoint gravado: " + fsManager.getNodeCount() + " nó(s)" + (wal != null ? ", LSN " + wal.getLastLsn() : "")
+                            + ", em " + elapsedMillis(start) + " ms.");
+                } else if (status == FsStatus.NO_DEVICE) {
+                    out.println("Erro: Não há journal em disco com dispositivo de blocos para o checkpoint (use --wal <diretório>).");
+                } else if (status == FsStatus.IO_ERROR) {
+                    out.println("Erro: Falha no checkpoint: " + session.getErrorDetail());
+                } else {
+                    printError(status, arg);
+                }
+                break;
+            }
+            case "unmount": {
+                FsStatus status = fsManager.unmount(session);
+                printNotices();
+                if (status.isOk()) {
+                    out.println("Imagem sincronizada e desmontada.");
+                } else if (status == FsStatus.IO_ERROR) {
+                    out.println("Erro: Falha ao sincronizar a imagem: " + session.getErrorDetail() + " (imagem desmontada)");
+                } else {
+                    printError(status, arg);
+                }
+                break;
+            }
+            case "fsck":
+                int errors = fsManager.checkConsistency();
+                out.println(errors == 0 ? "Totais agregados consistentes." : errors + " diretório(s) inconsistente(s) (detalhes no log).");
+                break;
+            case "cache":
+                printPathCacheStats();
+                break;
+            case "stats":
+                handleStats(arg);
+                break;
+            case "pwd":
+                out.println(fsManager.getCurrentPath(session));
+                break;
+            case "log":
+
+                Journal journal = fsManager.getJournal();
+                if (journal != null) {
+                    journal.printLog(out);
+                } else {
+                    out.println("Erro: Journal não está disponível.");
+                }
+                break;
+            case "journal":
+                if (arg.equalsIgnoreCase("flush")) {
+                    Journal j = fsManager.getJournal();
+                    if (j != null) {
+                        flushJournal(j);
                     } else {
-                        System.out.println("Uso: journal flush");
+                        out.println("Erro: Journal não está disponível.");
                     }
+                } else if (arg.equalsIgnoreCase("sync")) {
+                    syncJournal();
+                } else if (arg.equalsIgnoreCase("stats")) {
+                    printJournalStats();
+                } else if (arg.toLowerCase().startsWith("fsync ")) {
+                    setWalSyncPolicy(arg.substring(6).trim());
+                } else if (arg.toLowerCase().startsWith("backpressure ")) {
+                    setJournalBackpressure(arg.substring(13).trim());
+                } else {
+                    out.println("Uso: journal flush | sync | stats | fsync <always|interval|never> | backpressure <block|drop>");
+                }
+                break;
+            case "help":
+                printHelp();
+                break;
+            case "exit":
+                if (ownsManager) {
+                    fsManager.shutdown();
+                    printNotices();
+                }
+                out.println("Saindo do simulador.");
+                return false;
+            default:
+                out.println("Comando desconhecido: " + command);
+                break;
+        }
+        printNotices();
+        return true;
+    }
+
+    // Mensagens comuns a vários comandos; subject é o nome ou caminho que o usuário digitou.
+    private void printError(FsStatus status, String subject) {
+        switch (status) {
+            case NOT_FOUND:
+                out.println("Erro: Arquivo ou diretório '" + subject + "' não encontrado.");
+                break;
+            case ALREADY_EXISTS:
+                out.println("Erro: Arquivo ou diretório '" + subject + "' já existe.");
+                break;
+            case IS_DIRECTORY:
+                out.println("Erro: '" + subject + "' é um diretório.");
+                break;
+            case AT_ROOT:
+                out.println("Erro: Já está no diretório raiz.");
+                break;
+            case CWD_REMOVED:
+                out.println("Erro: O diretório atual foi removido.");
+                break;
+            case NOT_MOUNTED:
+                out.println("Erro: Nenhuma imagem montada.");
+                break;
+            case DISK_FULL:
+                out.println("Erro: Sem espaço no dispositivo para escrever em '" + subject + "'.");
+                break;
+            case IO_ERROR:
+                out.println("Erro: " + session.getErrorDetail());
+                break;
+            default:
+                out.println("Erro: " + status + " (" + subject + ").");
+                break;
+        }
+    }
+
+    private void listDirectory(String path) {
+        FsStatus status = fsManager.listDirectory(session, path, listing);
+        if (!status.isOk()) {
+            out.println("Erro: Diretório '" + path + "' não encontrado.");
+            return;
+        }
+        out.println("Conteúdo de " + listing.getPath() + ":");
+        if (listing.size() == 0) {
+            out.println("(vazio)");
+        }
+        while (listing.next()) {
+            out.println((listing.isDirectory() ? "d " : "f ") + listing.name());
+        }
+    }
+
+    private void diskUsage(String path) {
+        FsStatus status = fsManager.diskUsage(session, path, usage);
+        if (!status.isOk()) {
+            out.println("Erro: Diretório '" + path + "' não encontrado.");
+            return;
+        }
+        while (usage.next()) {
+            out.println(usage.bytes() + "\t" + usage.files() + " arquivo(s)\t" + usage.directories() + " diretório(s)\t" + usage.path());
+        }
+    }
+
+    // Conteúdo de cat/head/tail: o gerenciador copia para o buffer com o diretório travado e a
+    // impressão acontece depois, já sem travas.
+    private void printText(FsStatus status, String name) {
+        try {
+            if (status.isOk()) {
+                out.append(text);
+                if (text.length() > 0 && text.charAt(text.length() - 1) != '\n') {
+                    out.println();
+                }
+            } else if (status == FsStatus.NOT_FOUND) {
+                out.println("Erro: Arquivo '" + name + "' não encontrado.");
+            } else {
+                printError(status, name);
+            }
+        } finally {
+            if (text.capacity() > TEXT_BUFFER_LIMIT) {
+                text = new StringBuilder();
+            } else {
+                text.setLength(0);
+            }
+        }
+    }
+
+    private void printDiskFree() {
+        DeviceUsage usage = fsManager.diskFree();
+        if (usage == null) {
+            out.println("Conteúdo dos arquivos mantido em memória (sem dispositivo de blocos).");
+            return;
+        }
+        int free = usage.getFreeBlocks();
+        out.println("Dispositivo: " + usage.blockCount + " blocos de " + usage.blockSize + " bytes (" + usage.capacityBytes + " bytes)");
+        out.println("  usados: " + usage.usedBlocks + " blocos (" + ((long) usage.usedBlocks * usage.blockSize) + " bytes, "
+                + (usage.usedBlocks * 100L / usage.blockCount) + "%)");
+        out.println("  livres: " + free + " blocos (" + ((long) free * usage.blockSize) + " bytes)");
+        out.println("  espaço livre: " + usage.freeRuns + " trecho(s), maior trecho " + usage.largestFreeRun + " blocos, fragmentação "
+                + usage.getFragmentation() + "%");
+        if (usage.files > 0) {
+            out.println("  arquivos: " + usage.files + ", extents: " + usage.extents + " (média " + (usage.extents * 100 / usage.files) / 100.0
+                    + " por arquivo), fragmentados: " + usage.fragmentedFiles);
+        }
+        out.println("  alocações: " + usage.allocations + ", blocos alocados: " + usage.allocatedBlocks
+                + ", extensões no lugar: " + usage.inPlaceExtensions + ", falhas: " + usage.failedAllocations);
+    }
+
+    private void syncJournal() {
+        long start = System.nanoTime();
+        FsStatus status = fsManager.syncJournal(session);
+        if (!status.isOk()) {
+            out.println("Erro: Falha ao sincronizar o journal: " + session.getErrorDetail());
+            return;
+        }
+        double millis = (System.nanoTime() - start) / 1_000_000.0;
+        WriteAheadLog wal = fsManager.getWriteAheadLog();
+        out.println("Journal sincronizado em " + String.format("%.2f", millis) + " ms"
+                + (wal != null ? " (último LSN " + wal.getLastLsn() + ")." : "."));
+    }
+
+    // Com o appender ativo, as entradas já estão no arquivo dele: o flush só espera a gravação.
+    private void flushJournal(Journal journal) {
+        String appenderFile = journal.getAppenderPath();
+        String file = appenderFile != null ? appenderFile : FileSystemManager.DEFAULT_JOURNAL_FILE;
+        try {
+            long flushed = journal.flushToFile(file);
+            if (appenderFile != null) {
+                out.println("Journal synced to " + file);
+            } else if (flushed == 0) {
+                out.println("Journal (in memory) is empty. Nothing to flush to " + file);
+            } else {
+                out.println("Journal flushed to " + file);
+            }
+        } catch (IOException e) {
+            out.println("Erro: Falha ao gravar o journal em '" + file + "': " + e.getMessage());
+        }
+    }
+
+    private void printNotices() {
+        for (String notice : fsManager.takeNotices()) {
+            out.println(notice);
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private void printHelp() {
+        out.println("Comandos disponíveis:");
+        out.println("  mkdir <nome_diretorio>    - Cria um novo diretório.");
+        out.println("  cd <caminho>              - Muda o diretório atual.");
+        out.println("  ls [caminho]              - Lista o conteúdo do diretório.");
+        out.println("  create <nome_arquivo>     - Cria um novo arquivo (exemplo).");
+        out.println("  rm [-r] <caminho>         - Remove um arquivo ou diretório (-r remove a subárvore inteira).");
+        out.println("  cp [-r] <origem> <dest>   - Copia um arquivo ou, com -r, um diretório inteiro.");
+        out.println("  mv <origem> <destino>     - Move ou renomeia um arquivo ou diretório.");
+        out.println("  write [-a|-o N] <arq> <txt> - Escreve no arquivo (-a anexa, -o sobrescreve no offset N; \\n = nova linha).");
+        out.println("  cat <caminho>             - Mostra o conteúdo do arquivo.");
+        out.println("  head <arquivo> [linhas]   - Mostra as primeiras linhas do arquivo (padrão 10).");
+        out.println("  tail <arquivo> [linhas]   - Mostra as últimas linhas do arquivo (padrão 10).");
+        out.println("  truncate <arquivo> <tam>  - Trunca o arquivo para o tamanho informado.");
+        out.println("  rename <atual> <novo>     - Renomeia um arquivo ou diretório.");
+        out.println("  pwd                       - Mostra o caminho do diretório atual.");
+        out.println("  log                       - Mostra o log de operações do sistema (do Journal em memória).");
+        out.println("  journal flush             - Garante que as entradas do journal estão no journal de texto (journal.log, ou o do --wal) e limpa o journal em memória.");
+        out.println("  journal sync              - Espera até que todas as operações registradas estejam no disco.");
+        out.println("  journal stats             - Mostra filas, lotes e fsyncs dos gravadores do journal.");
+        out.println("  journal fsync <política>  - Define quando o journal em disco (journal.wal) é sincronizado: always, interval ou never.");
+        out.println("  journal backpressure <m>  - Fila do journal de texto cheia: block (espera) ou drop (descarta).");
+        out.println("  du [caminho]              - Mostra bytes, arquivos e subdiretórios agregados.");
+        out.println("  find [caminho] [-name glob] [-type f|d] [-size +N|-N] [-newer data] [-content regex]");
+        out.println("                            - Procura nós pelo nome, tipo, tamanho (k, M, G), modificação ou conteúdo.");
+        out.println("  search <palavras>         - Arquivos que contêm todas as palavras (pelo índice de termos).");
+        out.println("  search -e <regex>         - Arquivos com um trecho que casa com a expressão (lê todo o conteúdo, em paralelo).");
+        out.println("  index [budget <MiB>]      - Mostra o índice de termos ou muda o limite de memória dele.");
+        out.println("  snapshot create|delete|restore <nome> - Congela a árvore num snapshot, remove um ou volta a árvore para ele.");
+        out.println("  snapshot list             - Lista os snapshots e a memória que só cada um ocupa.");
+        out.println("  snapshot diff <nome> [outro] - Mostra o que mudou do snapshot para o outro (ou para a árvore atual).");
+        out.println("  snapshot ls|cat <nome> <caminho> - Lista um diretório ou mostra um arquivo como estava no snapshot.");
+        out.println("  dedup stats               - Mostra os blocos de conteúdo deduplicados e a razão lógico/físico.");
+        out.println("  df                        - Mostra uso e fragmentação do dispositivo de blocos.");
+        out.println("  mount <imagem>            - Monta (ou cria) uma imagem binária do sistema de arquivos.");
+        out.println("  sync                      - Grava a árvore atual na imagem montada.");
+        out.println("  checkpoint                - Persiste a árvore e apaga os segmentos do journal já cobertos por ela.");
+        out.println("  unmount                   - Sincroniza e desmonta a imagem.");
+        out.println("  fsck                      - Verifica os totais agregados da árvore.");
+        out.println("  cache                     - Mostra estatísticas do cache de caminhos.");
+        out.println("  stats [reset|on|off]      - Mostra contadores e latências por operação, nós e filas do journal.");
+        out.println("  stats slow <ms>           - Operações a partir dessa latência viram eventos JFR.");
+        out.println("  help                      - Mostra esta ajuda.");
+        out.println("  exit                      - Sai do shell.");
+    }
+
+    // rm [-r] <caminho>
+    private void handleRemove(String arg) {
+        boolean recursive = arg.startsWith("-r ");
+        String path = recursive ? arg.substring(3).trim() : arg;
+        if (path.isEmpty()) {
+            out.println("Uso: rm [-r] <caminho>");
+            return;
+        }
+        FsStatus status = fsManager.delete(session, path, recursive);
+        if (status.isOk()) {
+            boolean directory = session.getLastType() == NodeType.DIRECTORY;
+            out.println((directory ? "Diretório" : "Arquivo") + " '" + path + "' removido"
+                    + (recursive && directory ? " (" + session.getLastNodeCount() + " nó(s))." : "."));
+        } else if (status == FsStatus.NOT_EMPTY) {
+            out.println("Erro: Diretório '" + path + "' não está vazio (use rm -r).");
+        } else if (status == FsStatus.INVALID_NAME) {
+            out.println("Erro: Caminho inválido: '" + path + "'.");
+        } else if (status == FsStatus.INTERNAL_ERROR) {
+            out.println("Erro ao tentar remover '" + path + "'.");
+        } else {
+            printError(status, path);
+        }
+    }
+
+    // find [caminho] [-name <glob>] [-type f|d] [-size +N|-N] [-newer <data>]
+    private void handleFind(String arg) {
+        String[] words = CommandTokenizer.split(arg);
+        String path = ".";
+        FindQuery query = new FindQuery();
+        int i = 0;
+        if (i < words.length && !words[i].startsWith("-")) {
+            path = words[i++];
+        }
+        for (; i < words.length; i += 2) {
+            String value = i + 1 < words.length ? words[i + 1] : null;
+            if (value == null || !applyFindOption(query, words[i], value)) {
+                out.println("Uso: find [caminho] [-name glob] [-type f|d] [-size +N|-N] [-newer data] [-content regex]");
+                return;
+            }
+        }
+        handleFindResults(path, query);
+    }
+
+    private void handleFindResults(String path, FindQuery query) {
+        long[] results = new long[1];
+        long start = System.nanoTime();
+        FsStatus status = fsManager.find(session, path, query, (found, type, size) -> {
+            out.println(found);
+            results[0]++;
+        });
+        if (!status.isOk()) {
+            out.println("Erro: Diretório '" + path + "' não encontrado.");
+            return;
+        }
+        out.println(results[0] + " resultado(s) em " + elapsedMillis(start) + " ms (" + session.getLastNodeCount() + " nó(s) visitados).");
+    }
+
+    private static boolean applyFindOption(FindQuery query, String option, String value) {
+        switch (option) {
+            case "-name":
+                query.name(value);
+                return true;
+            case "-type":
+                if (!value.equals("f") && !value.equals("d")) {
+                    return false;
+                }
+                query.type(value.equals("f") ? NodeType.FILE : NodeType.DIRECTORY);
+                return true;
+            case "-size": {
+                long size = value.length() > 1 ? parseSize(value.substring(1)) : -1;
+                if (size < 0 || (value.charAt(0) != '+' && value.charAt(0) != '-')) {
+                    return false;
+                }
+                if (value.charAt(0) == '+') {
+                    query.largerThan(size);
+                } else {
+                    query.smallerThan(size);
+                }
+                return true;
+            }
+            case "-content":
+                try {
+                    query.content(Pattern.compile(value));
+                } catch (PatternSyntaxException e) {
+                    return false;
+                }
+                return true;
+            case "-newer": {
+                long millis = parseTime(value);
+                if (millis == Long.MIN_VALUE) {
+                    return false;
+                }
+                query.newerThan(millis);
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    // Bytes, com sufixo opcional k, M ou G.
+    private static long parseSize(String text) {
+        char unit = Character.toUpperCase(text.charAt(text.length() - 1));
+        int shift = unit == 'K' ? 10 : unit == 'M' ? 20 : unit == 'G' ? 30 : 0;
+        try {
+            return Long.parseLong(shift == 0 ? text : text.substring(0, text.length() - 1)) << shift;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Milissegundos desde a época, ou data (2024-05-01) ou data e hora (2024-05-01T10:30) no fuso local.
+    private static long parseTime(String text) {
+        try {
+            if (text.indexOf('-') < 0) {
+                return Long.parseLong(text);
+            }
+            LocalDateTime time = text.indexOf('T') >= 0 ? LocalDateTime.parse(text) : LocalDate.parse(text).atStartOfDay();
+            return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (NumberFormatException | DateTimeParseException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    // search <palavras> | search -e <regex>
+    private void handleSearch(String arg) {
+        if (arg.isEmpty() || arg.equals("-e")) {
+            out.println("Uso: search <palavras> | search -e <regex>");
+            return;
+        }
+        if (arg.startsWith("-e ")) {
+            Pattern pattern;
+            try {
+                pattern = Pattern.compile(arg.substring(3).trim());
+            } catch (PatternSyntaxException e) {
+                out.println("Erro: Expressão inválida: " + e.getDescription() + ".");
+                return;
+            }
+            handleFindResults("/", new FindQuery().content(pattern));
+            return;
+        }
+        long[] results = new long[1];
+        long start = System.nanoTime();
+        FsStatus status = fsManager.search(session, arg, (found, type, size) -> {
+            out.println(found);
+            results[0]++;
+        });
+        long micros = (System.nanoTime() - start) / 1000;
+        if (status == FsStatus.INVALID_NAME) {
+            out.println("Erro: A busca precisa de pelo menos uma palavra (letras ou dígitos).");
+            return;
+        }
+        long scanned = session.getLastNodeCount();
+        out.println(results[0] + " resultado(s) em " + micros + " us"
+                + (scanned > 0 ? " (" + scanned + " arquivo(s) fora do índice lidos)." : "."));
+    }
+
+    // index [budget <MiB>]
+    private void handleIndex(String arg) {
+        TextIndex index = fsManager.getTextIndex();
+        if (arg.toLowerCase().startsWith("budget ")) {
+            int mebibytes = parseNumber(arg.substring(7).trim());
+            if (mebibytes < 0) {
+                out.println("Uso: index budget <MiB>");
+            } else {
+                fsManager.setTextIndexBudget((long) mebibytes << 20);
+                out.println("Limite do índice: " + mebibytes + " MiB (vale para as próximas escritas).");
+            }
+            return;
+        } else if (!arg.isEmpty()) {
+            out.println("Uso: index [budget <MiB>]");
+            return;
+        }
+        out.println("Índice de termos: " + index.getTermCount() + " termo(s), " + index.getPostingCount() + " par(es) termo/arquivo, "
+                + index.getIndexedFileCount() + " arquivo(s) indexado(s), " + index.getUnindexedCount() + " fora do índice");
+        out.println("Memória: " + index.getMemoryBytes() / 1024 + " KiB de " + index.getBudget() / 1024 + " KiB");
+    }
+
+    private void handleDedup(String arg) {
+        if (!arg.isEmpty() && !arg.equalsIgnoreCase("stats")) {
+            out.println("Uso: dedup stats");
+            return;
+        }
+        ChunkStore store = fsManager.getChunkStore();
+        if (store == null) {
+            out.println("Conteúdo dos arquivos no dispositivo de blocos; a deduplicação vale só para o conteúdo em memória.");
+            return;
+        }
+        long logical = store.getLogicalChars();
+        long physical = store.getPhysicalChars();
+        out.println("Blocos: " + store.getChunkCount() + " distinto(s), " + store.getReferenceCount() + " referência(s) de arquivos e snapshots, "
+                + store.getSharedInterns() + " escrita(s) de bloco que já existia");
+        out.println("Lógico: " + logical + " caractere(s) (" + logical * 2 / 1024 + " KiB), físico: " + physical + " caractere(s) ("
+                + physical * 2 / 1024 + " KiB)");
+        out.println("Razão lógico/físico: " + (physical == 0 ? "1.00" : String.format("%.2f", (double) logical / physical))
+                + ", economia de " + (logical - physical) * 2 / 1024 + " KiB");
+    }
+
+    // snapshot create|delete|restore <nome> | list | diff <nome> [outro] | ls <nome> [caminho] | cat <nome> <caminho>
+    private void handleSnapshot(String arg) {
+        String[] args = CommandTokenizer.split(arg);
+        String action = args.length > 0 ? args[0].toLowerCase() : "";
+        if (action.equals("list") && args.length == 1) {
+            listSnapshots();
+        } else if ((action.equals("create") || action.equals("delete") || action.equals("restore")) && args.length == 2) {
+            long start = System.nanoTime();
+            FsStatus status = action.equals("create") ? fsManager.createSnapshot(session, args[1])
+                    : action.equals("delete") ? fsManager.deleteSnapshot(session, args[1]) : fsManager.restoreSnapshot(session, args[1]);
+            if (status.isOk()) {
+                if (action.equals("create")) {
+                    out.println("Snapshot '" + args[1] + "' criado: " + fsManager.getSnapshot(args[1]).getNodeCount() + " nó(s) em "
+                            + elapsedMillis(start) + " ms.");
+                } else if (action.equals("delete")) {
+                    out.println("Snapshot '" + args[1] + "' removido.");
+                } else {
+                    out.println("Árvore restaurada do snapshot '" + args[1] + "': " + fsManager.getNodeCount() + " nó(s) em "
+                            + elapsedMillis(start) + " ms.");
+                }
+            } else if (status == FsStatus.NOT_FOUND) {
+                out.println("Erro: Snapshot '" + args[1] + "' não encontrado.");
+            } else if (status == FsStatus.ALREADY_EXISTS) {
+                out.println("Erro: Snapshot '" + args[1] + "' já existe.");
+            } else if (status == FsStatus.INVALID_NAME) {
+                out.println("Erro: Nome de snapshot inválido.");
+            } else if (status == FsStatus.NO_DEVICE) {
+                out.println("Erro: Restaurar exige um checkpoint, e não há dispositivo de blocos para ele.");
+            } else {
+                printError(status, args[1]);
+            }
+        } else if (action.equals("diff") && (args.length == 2 || args.length == 3)) {
+            diffSnapshots(args[1], args.length == 3 ? args[2] : null);
+        } else if (action.equals("ls") && (args.length == 2 || args.length == 3)) {
+            FsStatus status = fsManager.listSnapshotDirectory(session, args[1], args.length == 3 ? args[2] : "/", listing);
+            if (!status.isOk()) {
+                out.println("Erro: Snapshot ou diretório não encontrado: " + args[1] + (args.length == 3 ? " " + args[2] : ""));
+                return;
+            }
+            out.println("Conteúdo de " + listing.getPath() + ":");
+            if (listing.size() == 0) {
+                out.println("(vazio)");
+            }
+            while (listing.next()) {
+                out.println((listing.isDirectory() ? "d " : "f ") + listing.name());
+            }
+        } else if (action.equals("cat") && args.length == 3) {
+            FsStatus status = fsManager.readSnapshotFile(session, args[1], args[2], text);
+            if (status == FsStatus.NOT_FOUND) {
+                out.println("Erro: Snapshot ou arquivo não encontrado: " + args[1] + " " + args[2]);
+            } else {
+                printText(status, args[2]);
+            }
+        } else {
+            out.println("Uso: snapshot create|delete|restore <nome> | list | diff <nome> [outro] | ls <nome> [caminho] | cat <nome> <caminho>");
+        }
+    }
+
+    private void listSnapshots() {
+        SnapshotReport report = new SnapshotReport();
+        fsManager.listSnapshots(report);
+        if (report.size() == 0) {
+            out.println("Nenhum snapshot.");
+            return;
+        }
+        while (report.next()) {
+            Snapshot snapshot = report.snapshot();
+            out.println(String.format("%-12s %s  %,d nó(s), %,d bytes; só dele: %,d KiB em memória%s", snapshot.getName(),
+                    Instant.ofEpochMilli(snapshot.getCreated()).atZone(ZoneId.systemDefault()).toLocalDateTime().withNano(0),
+                    snapshot.getNodeCount(), snapshot.getBytes(), (report.uniqueBytes() + 1023) / 1024,
+                    report.uniqueDiskBytes() > 0 ? String.format(", %,d bytes no dispositivo", report.uniqueDiskBytes()) : ""));
+        }
+    }
+
+    private void diffSnapshots(String from, String to) {
+        SnapshotDiff diff = new SnapshotDiff();
+        FsStatus status = fsManager.diffSnapshots(session, from, to, diff);
+        if (!status.isOk()) {
+            out.println("Erro: Snapshot '" + (fsManager.getSnapshot(from) == null ? from : to) + "' não encontrado.");
+            return;
+        }
+        out.println("Diferenças de '" + from + "' para " + (to == null ? "a árvore atual" : "'" + to + "'") + ":");
+        if (diff.size() == 0) {
+            out.println("(nenhuma)");
+        }
+        while (diff.next()) {
+            switch (diff.change()) {
+                case ADDED:
+                    out.println("A " + diff.path());
                     break;
-                case "help":
-                    printHelp();
+                case REMOVED:
+                    out.println("D " + diff.path());
                     break;
-                case "exit":
-                    running = false;
-                    System.out.println("Saindo do simulador.");
+                case MODIFIED:
+                    out.println("M " + diff.path());
                     break;
                 default:
-                    System.out.println("Comando desconhecido: " + command);
+                    out.println("R " + diff.oldPath() + " -> " + diff.path());
                     break;
             }
         }
-        scanner.close();
+        out.println(diff.count(SnapshotDiff.Change.ADDED) + " nó(s) criado(s), " + diff.count(SnapshotDiff.Change.REMOVED) + " removido(s), "
+                + diff.count(SnapshotDiff.Change.MODIFIED) + " arquivo(s) alterado(s), " + diff.count(SnapshotDiff.Change.MOVED)
+                + " movido(s) ou renomeado(s).");
     }
 
-    private void printHelp() {
-        System.out.println("Comandos disponíveis:");
-        System.out.println("  mkdir <nome_diretorio>    - Cria um novo diretório.");
-        System.out.println("  cd <caminho>              - Muda o diretório atual.");
-        System.out.println("  ls [caminho]              - Lista o conteúdo do diretório.");
-        System.out.println("  create <nome_arquivo>     - Cria um novo arquivo (exemplo).");
-        System.out.println("  rm <caminho>              - Remove um arquivo ou diretório (exemplo).");
-        System.out.println("  pwd                       - Mostra o caminho do diretório atual.");
-        System.out.println("  log                       - Mostra o log de operações do sistema (do Journal em memória).");
-        System.out.println("  journal flush             - Escreve todas as entradas do journal para journal.log e limpa o journal em memória.");
-        System.out.println("  help                      - Mostra esta ajuda.");
-        System.out.println("  exit                      - Sai do shell.");
+    // cp [-r] <origem> <destino> | mv <origem> <destino>
+    private void handleTransfer(String command, String arg) {
+        boolean copy = command.equals("cp");
+        boolean recursive = copy && arg.startsWith("-r ");
+        String[] paths = CommandTokenizer.split(recursive ? arg.substring(3) : arg);
+        if (paths.length != 2) {
+            out.println(copy ? "Uso: cp [-r] <origem> <destino>" : "Uso: mv <origem> <destino>");
+            return;
+        }
+        FsStatus status = copy ? fsManager.copy(session, paths[0], paths[1], recursive) : fsManager.move(session, paths[0], paths[1]);
+        if (status.isOk()) {
+            long nodes = session.getLastNodeCount();
+            out.println("'" + paths[0] + "' " + (copy ? "copiado" : "movido") + " para '" + paths[1] + "'"
+                    + (nodes > 1 ? " (" + nodes + " nó(s))." : "."));
+        } else if (status == FsStatus.IS_DIRECTORY) {
+            out.println("Erro: '" + paths[0] + "' é um diretório (use cp -r).");
+        } else if (status == FsStatus.INVALID_DESTINATION) {
+            out.println("Erro: Não é possível mover '" + paths[0] + "' para dentro de si mesmo.");
+        } else if (status == FsStatus.INVALID_NAME) {
+            out.println("Erro: Caminho inválido.");
+        } else {
+            printError(status, status == FsStatus.ALREADY_EXISTS || status == FsStatus.DISK_FULL ? paths[1] : paths[0]);
+        }
+    }
+
+    // write [-a | -o <offset>] <caminho> <texto>
+    private void handleWrite(String arg) {
+        int mode = FileSystemManager.WRITE_REPLACE;
+        int offset = 0;
+        String rest = arg;
+        if (rest.startsWith("-a ")) {
+            mode = FileSystemManager.WRITE_APPEND;
+            rest = rest.substring(3).trim();
+        } else if (rest.startsWith("-o ")) {
+            String[] offsetParts = CommandTokenizer.split(rest.substring(3), 2);
+            offset = offsetParts.length == 2 ? parseNumber(offsetParts[0]) : -1;
+            if (offset < 0) {
+                out.println("Uso: write [-a | -o <offset>] <caminho> <texto>");
+                return;
+            }
+            mode = FileSystemManager.WRITE_AT_OFFSET;
+            rest = offsetParts[1];
+        }
+        String[] parts = CommandTokenizer.split(rest, 2);
+        if (rest.isEmpty() || parts.length < 2) {
+            out.println("Uso: write [-a | -o <offset>] <caminho> <texto>");
+            return;
+        }
+        String data = parts[1].replace("\\n", "\n");
+        FsStatus status = fsManager.writeFile(session, parts[0], data, mode, offset);
+        if (status.isOk()) {
+            out.println(data.length() + " caractere(s) escrito(s) em '" + parts[0] + "'.");
+        } else if (status == FsStatus.NOT_FOUND) {
+            out.println("Erro: Arquivo '" + parts[0] + "' não encontrado.");
+        } else if (status == FsStatus.INVALID_OFFSET) {
+            out.println("Erro: Offset " + offset + " fora do arquivo (tamanho " + session.getErrorSize() + ").");
+        } else {
+            printError(status, parts[0]);
+        }
+    }
+
+    private void setWalSyncPolicy(String name) {
+        WriteAheadLog.SyncPolicy policy;
+        try {
+            policy = WriteAheadLog.SyncPolicy.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            out.println("Erro: Política inválida: " + name + " (use always, interval ou never).");
+            return;
+        }
+        fsManager.setWalSyncPolicy(policy);
+        out.println("Política de fsync do journal: " + name.toLowerCase() + ".");
+    }
+
+    private void setJournalBackpressure(String name) {
+        AsyncJournalWriter.Backpressure backpressure;
+        try {
+            backpressure = AsyncJournalWriter.Backpressure.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            out.println("Erro: Modo inválido: " + name + " (use block ou drop).");
+            return;
+        }
+        fsManager.setJournalBackpressure(backpressure);
+        out.println("Fila cheia do journal de texto: " + name.toLowerCase() + ".");
+    }
+
+    private void printJournalStats() {
+        WriteAheadLog wal = fsManager.getWriteAheadLog();
+        if (wal != null) {
+            printWriterStats("Journal binário (" + wal.getPath() + ", fsync " + wal.getSyncPolicy().name().toLowerCase() + ")", wal.getWriter());
+            out.println("  último LSN: " + wal.getLastLsn() + ", bytes gravados: " + wal.getBytesWritten());
+            try {
+                out.println("  segmentos: " + wal.getSegmentCount() + " (" + wal.size() + " bytes), desde o último checkpoint: "
+                        + wal.getBytesSinceCheckpoint() + " bytes");
+            } catch (IOException e) {
+                out.println("  segmentos: erro ao medir (" + e.getMessage() + ")");
+            }
+        }
+        Journal journal = fsManager.getJournal();
+        out.println("Journal em memória: " + journal.retainedCount() + " de " + journal.size() + " entrada(s) retidas.");
+        if (journal.getAppender() != null) {
+            printWriterStats("Journal de texto (" + journal.getAppenderPath() + ")", journal.getAppender());
+        }
     }
 
+    private void printWriterStats(String title, AsyncJournalWriter<?> writer) {
+        out.println(title + ":");
+        out.println("  publicadas: " + writer.getSubmitted() + ", gravadas: " + writer.getCommitted() + ", duráveis: " + writer.getForced()
+                + ", na fila: " + writer.getQueued() + "/" + writer.getCapacity());
+        long batches = writer.getBatches();
+        out.println("  lotes: " + batches + " (média " + (batches == 0 ? 0 : writer.getCommitted() / batches) + ", maior " + writer.getMaxBatch()
+                + "), fsyncs: " + writer.getForces());
+        out.println("  descartadas: " + writer.getDropped() + ", esperas por espaço: " + writer.getBlocked()
+                + ", modo: " + writer.getBackpressure().name().toLowerCase());
+    }
+
+    private static int parseNumber(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void printPathCacheStats() {
+        PathCache<?> cache = fsManager.getPathCache();
+        long lookups = cache.getHits() + cache.getNegativeHits() + cache.getMisses();
+        out.println("Cache de caminhos: " + cache.size() + "/" + cache.capacity() + " entradas");
+        out.println("  acertos:           " + cache.getHits());
+        out.println("  acertos negativos: " + cache.getNegativeHits());
+        out.println("  faltas:            " + cache.getMisses());
+        out.println("  despejos:          " + cache.getEvictions());
+        out.println("  invalidações:      " + cache.getInvalidations());
+        if (lookups > 0) {
+            out.println("  taxa de acerto:    " + ((cache.getHits() + cache.getNegativeHits()) * 100 / lookups) + "%");
+        }
+    }
+
+    // stats [reset | on | off | slow <ms>]
+    private void handleStats(String arg) {
+        FsMetrics metrics = fsManager.getMetrics();
+        if (arg.equalsIgnoreCase("reset")) {
+            metrics.reset();
+            out.println("Métricas zeradas.");
+            return;
+        } else if (arg.equalsIgnoreCase("on") || arg.equalsIgnoreCase("off")) {
+            metrics.setEnabled(arg.equalsIgnoreCase("on"));
+            out.println("Métricas " + (metrics.isEnabled() ? "ligadas." : "desligadas."));
+            return;
+        } else if (arg.toLowerCase().startsWith("slow ")) {
+            int millis = parseNumber(arg.substring(5).trim());
+            if (millis < 0) {
+                out.println("Uso: stats slow <ms>");
+            } else {
+                metrics.setSlowThresholdMillis(millis);
+                out.println("Operações a partir de " + millis + " ms geram eventos JFR.");
+            }
+            return;
+        } else if (!arg.isEmpty()) {
+            out.println("Uso: stats [reset | on | off | slow <ms>]");
+            return;
+        }
+
+        if (!metrics.isEnabled()) {
+            out.println("Métricas desligadas (use 'stats on').");
+        }
+        out.println(String.format("%-13s %10s %8s %10s %10s %10s %10s", "operação", "qtde", "falhas", "média us", "p50 us", "p99 us", "máx us"));
+        for (FsMetrics.Op op : FsMetrics.Op.values()) {
+            long count = metrics.getCount(op);
+            if (count == 0) {
+                continue;
+            }
+            out.println(String.format("%-13s %10d %8d %10.1f %10.1f %10.1f %10.1f", op.name().toLowerCase(), count, metrics.getFailures(op),
+                    metrics.getMeanNanos(op) / 1000.0, metrics.getPercentileNanos(op, 0.50) / 1000.0,
+                    metrics.getPercentileNanos(op, 0.99) / 1000.0, metrics.getMaxNanos(op) / 1000.0));
+        }
+        out.println("Nós: " + metrics.getNodeCount() + ", bytes: " + metrics.getTotalBytes());
+        out.println("Journal: " + metrics.getJournalEntries() + " entrada(s), fila do journal de texto: " + metrics.getJournalQueueDepth()
+                + ", fila do journal binário: " + metrics.getWalQueueDepth());
+        out.println("Limite de lentidão (eventos JFR): " + metrics.getSlowThresholdMillis() + " ms");
+    }
+
+    private static FileSystemManager newManager(boolean heap, String walDir) {
+        if (heap) {
+            return new FileSystemManager(null, null, null);
+        }
+        if (walDir == null) {
+            return new FileSystemManager();
+        }
+        try {
+            return FileSystemManager.persistent(Paths.get(walDir));
+        } catch (IOException e) {
+            System.err.println("Erro: Não foi possível criar o diretório '" + walDir + "': " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Uso: FileSystemSimulatorShell [--script <arquivo> | --script -] [--quiet] [--heap] [--wal <diretório>]
+     * Sem argumentos abre o shell interativo, só em memória; {@code --script -} lê os comandos da
+     * entrada padrão, o que também é feito sem argumentos quando não há terminal (entrada num pipe). {@code --wal} grava o journal binário, o checkpoint e o journal de texto no
+     * diretório dado e recupera a árvore que já estiver lá. {@code --heap} guarda o conteúdo dos
+     * arquivos no heap, deduplicado, em vez do dispositivo de blocos; como o checkpoint é uma
+     * imagem do dispositivo, esse modo não tem journal em disco e não aceita {@code --wal}.
+     */
     public static void main(String[] args) {
-        FileSystemSimulatorShell shell = new FileSystemSimulatorShell();
-        shell.start();
+        String script = null;
+        boolean quiet = false;
+        boolean heap = false;
+        String walDir = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--script") && i + 1 < args.length) {
+                script = args[++i];
+            } else if (args[i].equals("--quiet")) {
+                quiet = true;
+            } else if (args[i].equals("--heap")) {
+                heap = true;
+            } else if (args[i].equals("--wal") && i + 1 < args.length) {
+                walDir = args[++i];
+            } else {
+                System.err.println("Usage: FileSystemSimulatorShell [--script <file> | --script -] [--quiet] [--heap] [--wal <dir>]");
+                return;
+            }
+        }
+        if (heap && walDir != null) {
+            System.err.println("Erro: --heap não tem journal em disco; não use junto com --wal.");
+            return;
+        }
+        if (script == null && !quiet && System.console() != null) {
+            FileSystemManager fsManager = newManager(heap, walDir);
+            if (fsManager == null) {
+                return;
+            }
+            FileSystemSimulatorShell shell = new FileSystemSimulatorShell(fsManager, System.out);
+            try {
+                shell.fsManager.getMetrics().registerMBean("shell");
+            } catch (JMException e) {
+                System.err.println("Aviso: métricas não registradas no JMX: " + e.getMessage());
+            }
+            shell.start();
+            return;
+        }
+
+        SimpleConsoleReader reader;
+        try {
+            reader = script == null || script.equals("-")
+                    ? new SimpleConsoleReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), SCRIPT_BUFFER_SIZE)
+                    : new SimpleConsoleReader(new InputStreamReader(Files.newInputStream(Paths.get(script)), StandardCharsets.UTF_8), SCRIPT_BUFFER_SIZE);
+        } catch (IOException e) {
+            System.err.println("Erro: Não foi possível abrir o script: " + e.getMessage());
+            return;
+        }
+        // Uma única saída com buffer grande: sem prompt e sem uma escrita no terminal por linha.
+        PrintStream buffered = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), OUTPUT_BUFFER_SIZE),
+                false, StandardCharsets.UTF_8);
+        FileSystemManager manager = newManager(heap, walDir);
+        if (manager == null) {
+            reader.close();
+            return;
+        }
+        try {
+            if (quiet) {
+                FileSystemSimulatorShell shell = new FileSystemSimulatorShell(manager, new DiscardPrintStream());
+                shell.runScript(reader, buffered);
+            } else {
+                FileSystemSimulatorShell shell = new FileSystemSimulatorShell(manager, buffered);
+                shell.runScript(reader, null);
+            }
+        } finally {
+            reader.close();
+            buffered.flush();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,222 @@
+package br.edu.fs.simulator;
+
+import br.edu.fs.simulator.util.TextStorage;
+import br.edu.fs.simulator.util.TextStorageChars;
+
+import java.util.regex.Pattern;
+
+/**
+ * Critérios de {@link FileSystemManager#find(FileSystemManager.Session, String, FindQuery, FindQuery.Listener)}.
+ * Um nó é encontrado quando satisfaz todos os critérios definidos:
+ *
+ * <pre>
+ * new FindQuery().name("*.java").type(NodeType.FILE).largerThan(1024)
+ * </pre>
+ *
+ * O tamanho de um diretório é o total de bytes da subárvore, como no {@code du}. Tipo, tamanho e
+ * data também servem para podar: a busca não desce num diretório cujos totais (arquivos,
+ * subdiretórios, bytes, modificação mais recente) mostram que nada abaixo dele pode ser encontrado.
+ * O conteúdo ({@link #content(Pattern)}) é o critério mais caro e só é lido quando os outros passam.
+ */
+public final class FindQuery {
+
+    /**
+     * Recebe os nós encontrados à medida que a busca avança, em lotes. As chamadas podem vir de
+     * threads diferentes, mas nunca ao mesmo tempo, e são feitas sem nenhuma trava do sistema de
+     * arquivos. A ordem depende de como a árvore foi dividida entre as threads.
+     */
+    public interface Listener {
+        void found(String path, NodeType type, long size);
+    }
+
+    private char[] glob;
+    // O padrão inteiro, quando ele não tem curingas.
+    private String literal;
+    private NodeType type;
+    private long largerThan = -1;
+    private long smallerThan = Long.MAX_VALUE;
+    private long newerThan = Long.MIN_VALUE;
+    private Pattern content;
+
+    /**
+     * Nome (só o último componente do caminho) no formato glob: {@code *}, {@code ?} e classes
+     * como {@code [a-z]} ou {@code [!0-9]}.
+     */
+    public FindQuery name(String pattern) {
+        this.glob = pattern.toCharArray();
+        boolean wildcards = pattern.indexOf('*') >= 0 || pattern.indexOf('?') >= 0 || pattern.indexOf('[') >= 0;
+        this.literal = wildcards ? null : pattern;
+        return this;
+    }
+
+    public FindQuery type(NodeType type) {
+        this.type = type;
+        return this;
+    }
+
+    public FindQuery largerThan(long size) {
+        this.largerThan = size;
+        return this;
+    }
+
+    public FindQuery smallerThan(long size) {
+        this.smallerThan = size;
+        return this;
+    }
+
+    /**
+     * Modificados depois de {@code millis} (desde a época).
+     */
+    public FindQuery newerThan(long millis) {
+        this.newerThan = millis;
+        return this;
+    }
+
+    /**
+     * Só arquivos com algum trecho que casa com a expressão. O conteúdo é lido em blocos, sem
+     * montar uma String com o arquivo inteiro.
+     */
+    public FindQuery content(Pattern pattern) {
+        this.content = pattern;
+        return this;
+    }
+
+    String getLiteralName() {
+        return literal;
+    }
+
+    boolean hasNamePattern() {
+        return glob != null;
+    }
+
+    boolean readsContent() {
+        return content != null;
+    }
+
+    // Procurar por conteúdo restringe a arquivos.
+    private NodeType effectiveType() {
+        return content != null ? NodeType.FILE : type;
+    }
+
+    boolean matchesAttributes(boolean directory, long size, long modified) {
+        NodeType type = effectiveType();
+        if (type != null && (type == NodeType.DIRECTORY) != directory) {
+            return false;
+        }
+        return size > largerThan && size < smallerThan && modified > newerThan;
+    }
+
+    /**
+     * {@code false} se nenhum nó abaixo de um diretório com esses totais pode ser encontrado.
+     * Nenhum arquivo ou subdiretório tem mais bytes que o total do pai, nem modificação mais nova
+     * que a dele.
+     */
+    boolean mayMatchBelow(long files, long directories, long bytes, long newest) {
+        NodeType type = effectiveType();
+        if (type == NodeType.FILE ? files == 0 : type == NodeType.DIRECTORY ? directories == 0 : files + directories == 0) {
+            return false;
+        }
+        return bytes > largerThan && newest > newerThan;
+    }
+
+    /**
+     * Compara o padrão com um nome da {@link NameArena}, lendo os bytes direto da arena quando o
+     * nome é Latin-1.
+     */
+    boolean matchesName(NameArena names, byte[] arena, int id) {
+        long location = names.getLocation(id);
+        if (NameArena.isLatin1(location)) {
+            return matches(glob, arena, NameArena.offsetOf(location), null, NameArena.lengthOf(location));
+        }
+        String name = names.get(id);
+        return matches(glob, null, 0, name, name.length());
+    }
+
+    boolean matchesName(String name) {
+        return matches(glob, null, 0, name, name.length());
+    }
+
+    boolean matchesContent(TextStorage text) {
+        return content.matcher(new TextStorageChars(text)).find();
+    }
+
+    // O texto é latin1[offset, offset + length) ou, se latin1 é null, text.
+    private static char charAt(byte[] latin1, int offset, String text, int i) {
+        return latin1 != null ? (char) (latin1[offset + i] & 0xFF) : text.charAt(i);
+    }
+
+    // Sem recursão: um * que não deu certo é retomado um caractere adiante no texto.
+    private static boolean matches(char[] pattern, byte[] latin1, int offset, String text, int length) {
+        int p = 0;
+        int t = 0;
+        int star = -1;
+        int starText = 0;
+        while (t < length) {
+            if (p < pattern.length) {
+                char pc = pattern[p];
+                if (pc == '*') {
+                    star = p++;
+                    starText = t;
+                    continue;
+                }
+                char c = charAt(latin1, offset, text, t);
+                int end;
+                if (pc == '[' && (end = classEnd(pattern, p)) > 0) {
+                    if (classMatches(pattern, p, end, c)) {
+                        p = end + 1;
+                        t++;
+                        continue;
+                    }
+                } else if (pc == '?' || pc == c) {
+                    p++;
+                    t++;
+                    continue;
+                }
+            }
+            if (star < 0) {
+                return false;
+            }
+            p = star + 1;
+            t = ++starText;
+        }
+        while (p < pattern.length && pattern[p] == '*') {
+            p++;
+        }
+        return p == pattern.length;
+    }
+
+    // Posição do ']' que fecha a classe aberta em start, ou -1 (o '[' é então um caractere comum).
+    // Um ']' logo depois da abertura (ou do '!') faz parte da classe.
+    private static int classEnd(char[] pattern, int start) {
+        int i = start + 1;
+        if (i < pattern.length && (pattern[i] == '!' || pattern[i] == '^')) {
+            i++;
+        }
+        if (i < pattern.length && pattern[i] == ']') {
+            i++;
+        }
+        while (i < pattern.length && pattern[i] != ']') {
+            i++;
+        }
+        return i < pattern.length ? i : -1;
+    }
+
+    private static boolean classMatches(char[] pattern, int start, int end, char c) {
+        int i = start + 1;
+        boolean negate = pattern[i] == '!' || pattern[i] == '^';
+        if (negate) {
+            i++;
+        }
+        boolean found = false;
+        while (i < end) {
+            if (i + 2 < end && pattern[i + 1] == '-') {
+                found |= c >= pattern[i] && c <= pattern[i + 2];
+                i += 3;
+            } else {
+                found |= c == pattern[i];
+                i++;
+            }
+        }
+        return found != negate;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,304 @@
+package br.edu.fs.simulator;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Contadores e histogramas de latência por operação do {@link FileSystemManager}, mais medidores
+ * (nós, bytes, filas do journal) lidos na hora. Cada operação pública chama {@link #start()} e
+ * {@link #record}; com as métricas desligadas, {@code start()} devolve 0 sem ler o relógio e
+ * {@code record} retorna na primeira comparação.
+ *
+ * O histograma é log-linear: 8 faixas por potência de 2 de nanossegundos, então um percentil tem
+ * no máximo 12,5% de erro. Operações que passam do limite de lentidão também viram eventos
+ * {@link SlowOperationEvent} no JDK Flight Recorder, se houver uma gravação com o evento ligado.
+ *
+ * A mesma instância é o MXBean registrado por {@link #registerMBean(String)}.
+ */
+public class FsMetrics implements FsMetricsMXBean {
+    public static final long DEFAULT_SLOW_THRESHOLD_MILLIS = 10;
+
+    public enum Op {
+        MKDIR, CREATE, LS, DU, CD, RENAME, WRITE, TRUNCATE, CAT, HEAD, TAIL, RM, CP, MV, FIND, SEARCH,
+        MOUNT, SYNC, CHECKPOINT, UNMOUNT, JOURNAL_SYNC, SNAPSHOT, RESTORE, DIFF;
+
+        private static final Op[] VALUES = values();
+    }
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Até 2^40 ns (~18 minutos); acima disso tudo cai no último balde.
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final FileSystemManager fs;
+    private final AtomicLongArray buckets = new AtomicLongArray(Op.VALUES.length * BUCKETS);
+    private final AtomicLongArray failures = new AtomicLongArray(Op.VALUES.length);
+    private final AtomicLongArray totalNanos = new AtomicLongArray(Op.VALUES.length);
+    private final AtomicLongArray maxNanos = new AtomicLongArray(Op.VALUES.length);
+    private volatile boolean enabled = !"false".equalsIgnoreCase(System.getProperty("fs.metrics"));
+    private volatile long slowThresholdNanos = DEFAULT_SLOW_THRESHOLD_MILLIS * 1_000_000;
+    private ObjectName registeredName;
+
+    FsMetrics(FileSystemManager fs) {
+        this.fs = fs;
+    }
+
+    /**
+     * Início de uma operação medida; 0 quando as métricas estão desligadas.
+     */
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Registra a operação iniciada em {@code start} e devolve o status recebido, para ser usado
+     * direto no {@code return}. {@code subject} (nome ou caminho) só é lido se a operação for lenta.
+     */
+    FsStatus record(Op op, long start, FsStatus status, String subject) {
+        if (start == 0) {
+            return status;
+        }
+        long nanos = System.nanoTime() - start;
+        int index = op.ordinal();
+        buckets.incrementAndGet(index * BUCKETS + bucketOf(nanos));
+        totalNanos.addAndGet(index, nanos);
+        if (!status.isOk()) {
+            failures.incrementAndGet(index);
+        }
+        long max = maxNanos.get(index);
+        while (nanos > max && !maxNanos.compareAndSet(index, max, nanos)) {
+            max = maxNanos.get(index);
+        }
+        if (nanos >= slowThresholdNanos) {
+            SlowOperationEvent event = new SlowOperationEvent();
+            if (event.isEnabled()) {
+                event.operation = op.name();
+                event.subject = subject;
+                event.status = status.name();
+                event.latency = nanos;
+                event.commit();
+            }
+        }
+        return status;
+    }
+
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) Math.max(0, nanos);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // Maior valor que cai no balde.
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lower + width - 1;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public long getSlowThresholdMillis() {
+        return slowThresholdNanos / 1_000_000;
+    }
+
+    @Override
+    public void setSlowThresholdMillis(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Illegal threshold: " + millis);
+        }
+        this.slowThresholdNanos = millis * 1_000_000;
+    }
+
+    public long getCount(Op op) {
+        long count = 0;
+        int base = op.ordinal() * BUCKETS;
+        for (int b = 0; b < BUCKETS; b++) {
+            count += buckets.get(base + b);
+        }
+        return count;
+    }
+
+    public long getFailures(Op op) {
+        return failures.get(op.ordinal());
+    }
+
+    public long getMeanNanos(Op op) {
+        long count = getCount(op);
+        return count == 0 ? 0 : totalNanos.get(op.ordinal()) / count;
+    }
+
+    public long getMaxNanos(Op op) {
+        return maxNanos.get(op.ordinal());
+    }
+
+    /**
+     * Percentil {@code p} (entre 0 e 1) da latência, arredondado para cima até o fim do balde.
+     */
+    public long getPercentileNanos(Op op, double p) {
+        int base = op.ordinal() * BUCKETS;
+        long count = getCount(op);
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p * count));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += buckets.get(base + b);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(b), getMaxNanos(op));
+            }
+        }
+        return getMaxNanos(op);
+    }
+
+    @Override
+    public long getOperations() {
+        long total = 0;
+        for (Op op : Op.VALUES) {
+            total += getCount(op);
+        }
+        return total;
+    }
+
+    @Override
+    public long getFailedOperations() {
+        long total = 0;
+        for (int i = 0; i < Op.VALUES.length; i++) {
+            total += failures.get(i);
+        }
+        return total;
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Op op : Op.VALUES) {
+            counts.put(op.name(), getCount(op));
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getFailureCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Op op : Op.VALUES) {
+            counts.put(op.name(), getFailures(op));
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getP50Micros() {
+        return percentiles(0.50);
+    }
+
+    @Override
+    public Map<String, Double> getP99Micros() {
+        return percentiles(0.99);
+    }
+
+    @Override
+    public Map<String, Double> getMaxMicros() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Op op : Op.VALUES) {
+            values.put(op.name(), getMaxNanos(op) / 1000.0);
+        }
+        return values;
+    }
+
+    private Map<String, Double> percentiles(double p) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Op op : Op.VALUES) {
+            values.put(op.name(), getPercentileNanos(op, p) / 1000.0);
+        }
+        return values;
+    }
+
+    @Override
+    public long getNodeCount() {
+        return fs.getNodeCount();
+    }
+
+    @Override
+    public long getTotalBytes() {
+        return fs.getTotalBytes();
+    }
+
+    @Override
+    public long getJournalEntries() {
+        return fs.getJournal().size();
+    }
+
+    @Override
+    public int getJournalQueueDepth() {
+        AsyncJournalWriter<?> appender = fs.getJournal().getAppender();
+        return appender == null ? 0 : appender.getQueued();
+    }
+
+    @Override
+    public int getWalQueueDepth() {
+        WriteAheadLog wal = fs.getWriteAheadLog();
+        return wal == null ? 0 : wal.getWriter().getQueued();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        for (int i = 0; i < Op.VALUES.length; i++) {
+            failures.set(i, 0);
+            totalNanos.set(i, 0);
+            maxNanos.set(i, 0);
+        }
+    }
+
+    /**
+     * Registra as métricas no servidor de MBeans da plataforma como
+     * {@code br.edu.fs.simulator:type=FileSystemManager,name=<name>}.
+     */
+    public synchronized void registerMBean(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName("br.edu.fs.simulator:type=FileSystemManager,name=" + ObjectName.quote(name));
+        server.registerMBean(this, objectName);
+        unregisterMBean();
+        registeredName = objectName;
+    }
+
+    public synchronized void unregisterMBean() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (JMException e) {
+            // Já foi removido por outra pessoa; nada a fazer.
+        }
+        registeredName = null;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,47 @@
+package br.edu.fs.simulator;
+
+import java.util.Map;
+
+/**
+ * Interface JMX das métricas de um {@link FileSystemManager}. Os mapas são indexados pelo nome
+ * da operação ({@link FsMetrics.Op}); latências em microssegundos.
+ */
+public interface FsMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * Operações a partir desta latência geram eventos JFR {@code br.edu.fs.simulator.SlowOperation}.
+     */
+    long getSlowThresholdMillis();
+
+    void setSlowThresholdMillis(long millis);
+
+    long getOperations();
+
+    long getFailedOperations();
+
+    Map<String, Long> getOperationCounts();
+
+    Map<String, Long> getFailureCounts();
+
+    Map<String, Double> getP50Micros();
+
+    Map<String, Double> getP99Micros();
+
+    Map<String, Double> getMaxMicros();
+
+    long getNodeCount();
+
+    long getTotalBytes();
+
+    long getJournalEntries();
+
+    int getJournalQueueDepth();
+
+    int getWalQueueDepth();
+
+    void reset();
+}
\ No newline at end of file
@@ -0,0 +1,30 @@
+package br.edu.fs.simulator;
+
+/**
+ * Resultado das operações do {@link FileSystemManager}. Detalhes de uma falha (mensagem de uma
+ * exceção, tamanho atual do arquivo) ficam na {@link FileSystemManager.Session} que a executou.
+ */
+public enum FsStatus {
+    OK,
+    INVALID_NAME,
+    ALREADY_EXISTS,
+    NOT_FOUND,
+    IS_DIRECTORY,
+    NOT_EMPTY,
+    AT_ROOT,
+    CWD_REMOVED,
+    INVALID_OFFSET,
+    INVALID_SIZE,
+    DISK_FULL,
+    NOT_MOUNTED,
+    NO_DEVICE,
+    // Diretório movido para dentro de si mesmo.
+    INVALID_DESTINATION,
+    // Falha de E/S no journal, na imagem ou no snapshot; a mensagem fica em Session.getErrorDetail().
+    IO_ERROR,
+    INTERNAL_ERROR;
+
+    public boolean isOk() {
+        return this == OK;
+    }
+}
\ No newline at end of file
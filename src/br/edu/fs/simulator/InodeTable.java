@@ -0,0 +1,1295 @@
+package br.edu.fs.simulator;
+
+import br.edu.fs.simulator.util.ChunkStore;
+import br.edu.fs.simulator.util.TextStorage;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Tabela de inodes da árvore em memória. Os metadados de cada nó (pai, tipo, datas, tamanho e
+ * nome) ficam em vetores primitivos indexados pelo número do inode, sem um objeto por nó: só
+ * diretórios têm um objeto próprio ({@link DirectoryData}, com a trava, os filhos e os totais
+ * agregados), e um arquivo é uma linha da tabela mais o conteúdo, que pode nem existir enquanto
+ * está vazio. É o modelo usado tanto pelo {@link FileSystemManager} quanto pela API pública ({@link Node}).
+ *
+ * Os vetores são divididos em folhas que nunca são realocadas, então uma linha não muda de lugar
+ * quando a tabela cresce. Alocar e liberar inodes é sincronizado; ler e alterar uma linha fica a
+ * cargo de quem usa a tabela (o gerenciador faz isso com a trava do diretório pai). Inodes
+ * liberados são reaproveitados.
+ *
+ * {@link #freeze()} congela o estado atual numa {@link Version} em tempo constante: a versão fica
+ * com o vetor de folhas do momento, e daí em diante a primeira escrita numa folha, ou na lista de
+ * filhos de um diretório ({@link Children}, que é o que a linha do diretório guarda), troca o
+ * objeto por uma cópia antes de alterá-lo. Só o caminho até o que mudou é copiado; o resto continua
+ * compartilhado entre a tabela e as versões, que podem ser lidas sem travas. O conteúdo dos arquivos
+ * não é copiado aqui: quem o altera pergunta antes a {@link #isShared(int, Object)}. Enquanto
+ * houver versões, um inode que alguma delas usa não é reaproveitado, então o mesmo número é o mesmo
+ * nó em todas.
+ *
+ * Cada linha guarda o id do seu nome numa {@link NameArena}, onde nomes repetidos são guardados
+ * uma vez só. O conteúdo dos arquivos pode ter um {@link TextIndex}, que quem altera o conteúdo
+ * mantém atualizado; liberar um inode o tira do índice.
+ */
+public class InodeTable {
+    public static final int NONE = -1;
+
+    private static final byte FREE = 0;
+    private static final byte FILE = 1;
+    private static final byte DIRECTORY = 2;
+
+    // A página 0 tem 64 linhas; a página p > 0 começa no inode 2^(p+5) e tem 2^(p+5) linhas.
+    private static final int FIRST_PAGE_BITS = 6;
+    static final int MAX_PAGES = 32 - FIRST_PAGE_BITS;
+    // As folhas seguem as páginas até 1024 linhas; daí em diante todas têm 1024, para que copiar a
+    // folha numa escrita custe sempre o mesmo.
+    private static final int LEAF_BITS = 10;
+    private static final int LEAF_ROWS = 1 << LEAF_BITS;
+    private static final int SMALL_LEAVES = LEAF_BITS - FIRST_PAGE_BITS + 1;
+    // Bytes de uma linha de folha (referências de 4 bytes), para as estimativas de memória.
+    private static final int ROW_BYTES = 4 + 1 + 8 + 8 + 8 + 4 + 4 + 4;
+    private static final Version[] NO_VERSIONS = new Version[0];
+
+    private static final class Leaf {
+        // Geração da tabela em que a folha foi criada; só as da geração atual são alteradas.
+        final long generation;
+        final int start;
+        final int[] parent;
+        final byte[] type;
+        final long[] created;
+        final long[] modified;
+        // Arquivos: tamanho do conteúdo. Diretórios: não usado (os totais ficam no DirectoryData).
+        final long[] size;
+        // Id na NameArena.
+        final int[] name;
+        // Conteúdo (TextStorage) de arquivos, ou a lista de filhos (Children) de diretórios.
+        final Object[] payload;
+        // Quantas vezes a linha foi liberada; um Node guarda o valor de quando foi criado.
+        final int[] serial;
+
+        Leaf(int index, long generation) {
+            int rows = leafRows(index);
+            this.generation = generation;
+            this.start = leafStart(index);
+            this.parent = new int[rows];
+            this.type = new byte[rows];
+            this.created = new long[rows];
+            this.modified = new long[rows];
+            this.size = new long[rows];
+            this.name = new int[rows];
+            this.payload = new Object[rows];
+            this.serial = new int[rows];
+        }
+
+        Leaf(Leaf from, long generation) {
+            this.generation = generation;
+            this.start = from.start;
+            this.parent = from.parent.clone();
+            this.type = from.type.clone();
+            this.created = from.created.clone();
+            this.modified = from.modified.clone();
+            this.size = from.size.clone();
+            this.name = from.name.clone();
+            this.payload = from.payload.clone();
+            this.serial = from.serial.clone();
+        }
+
+        long memoryBytes() {
+            return 16 + 8 * 16 + (long) type.length * ROW_BYTES;
+        }
+    }
+
+    private Leaf[] leaves = new Leaf[8];
+    // Geração em que o vetor de folhas foi criado: um vetor de geração anterior pode estar numa versão.
+    private long leavesGeneration;
+    // Incrementada a cada freeze.
+    private long generation;
+    private volatile Version[] versions = NO_VERSIONS;
+    // Objetos dos diretórios, nas páginas que dobram de tamanho. Não fazem parte das versões.
+    private final DirectoryData[][] directories = new DirectoryData[MAX_PAGES][];
+    // Inodes já entregues alguma vez; os liberados voltam por freeInodes.
+    private int highWater;
+    private int live;
+    private int[] freeInodes = new int[16];
+    private int freeCount;
+
+    private final NameArena names = new NameArena();
+    // Blocos do conteúdo dos arquivos em memória, deduplicados.
+    private final ChunkStore chunkStore = new ChunkStore();
+    // Só existe depois de enableTextIndex.
+    private volatile TextIndex textIndex;
+
+    // Incrementado a cada renomeação ou movimentação; invalida caminhos em cache.
+    private final AtomicLong pathEpoch = new AtomicLong();
+
+    /**
+     * Recebe os inodes encontrados por {@link #diff(Version, Version, RowVisitor)} e afins.
+     */
+    interface RowVisitor {
+        void visit(int inode);
+    }
+
+    static int pageOf(int inode) {
+        return inode < (1 << FIRST_PAGE_BITS) ? 0 : 32 - FIRST_PAGE_BITS - Integer.numberOfLeadingZeros(inode);
+    }
+
+    static int pageStart(int page) {
+        return page == 0 ? 0 : 1 << (page + FIRST_PAGE_BITS - 1);
+    }
+
+    static int pageRows(int page) {
+        return page == 0 ? 1 << FIRST_PAGE_BITS : pageStart(page);
+    }
+
+    private static int leafOf(int inode) {
+        return inode < LEAF_ROWS ? pageOf(inode) : (inode >>> LEAF_BITS) + SMALL_LEAVES - 1;
+    }
+
+    private static int leafStart(int leaf) {
+        return leaf < SMALL_LEAVES ? pageStart(leaf) : (leaf - SMALL_LEAVES + 1) << LEAF_BITS;
+    }
+
+    private static int leafRows(int leaf) {
+        return leaf < SMALL_LEAVES ? pageRows(leaf) : LEAF_ROWS;
+    }
+
+    private Leaf leaf(int inode) {
+        return leaves[leafOf(inode)];
+    }
+
+    // Folha do inode pronta para ser alterada: se alguma versão pode estar com ela, troca por uma cópia.
+    private Leaf writable(int inode) {
+        int index = leafOf(inode);
+        Leaf leaf = leaves[index];
+        return leaf.generation == generation ? leaf : copyLeaf(index);
+    }
+
+    private synchronized Leaf copyLeaf(int index) {
+        Leaf leaf = leaves[index];
+        if (leaf.generation != generation) {
+            leaf = new Leaf(leaf, generation);
+            ownLeaves()[index] = leaf;
+        }
+        return leaf;
+    }
+
+    // Vetor de folhas que pode ser alterado: o de uma versão é copiado antes.
+    private Leaf[] ownLeaves() {
+        if (leavesGeneration != generation) {
+            leaves = leaves.clone();
+            leavesGeneration = generation;
+        }
+        return leaves;
+    }
+
+    /**
+     * Cria uma linha com o pai, o tipo e o nome dados; o nó ainda não aparece entre os filhos do pai
+     * (veja {@link DirectoryData#addChild(int)}).
+     */
+    public synchronized int allocate(int parentInode, NodeType nodeType, String name, long time) {
+        int inode = allocateRow(parentInode, nodeType, time);
+        setNameId(inode, names.intern(name));
+        return inode;
+    }
+
+    /**
+     * Como {@link #allocate(int, NodeType, String, long)}, com um nome que já está na arena (o de
+     * outro inode, numa cópia); não decodifica nem procura o texto.
+     */
+    public synchronized int allocate(int parentInode, NodeType nodeType, int nameId, long time) {
+        int inode = allocateRow(parentInode, nodeType, time);
+        names.retain(nameId);
+        setNameId(inode, nameId);
+        return inode;
+    }
+
+    private int allocateRow(int parentInode, NodeType nodeType, long time) {
+        int inode;
+        if (freeCount > 0) {
+            inode = freeInodes[--freeCount];
+        } else {
+            if (highWater == Integer.MAX_VALUE) {
+                throw new IllegalStateException("Inode table is full");
+            }
+            inode = highWater++;
+            int p = pageOf(inode);
+            if (directories[p] == null) {
+                directories[p] = new DirectoryData[pageRows(p)];
+            }
+            int index = leafOf(inode);
+            if (index >= leaves.length) {
+                leaves = Arrays.copyOf(leaves, leaves.length * 2);
+                leavesGeneration = generation;
+            }
+            if (leaves[index] == null) {
+                ownLeaves()[index] = new Leaf(index, generation);
+            }
+        }
+        Leaf leaf = writable(inode);
+        int row = inode - leaf.start;
+        leaf.parent[row] = parentInode;
+        leaf.type[row] = nodeType == NodeType.DIRECTORY ? DIRECTORY : FILE;
+        leaf.created[row] = time;
+        leaf.modified[row] = time;
+        leaf.size[row] = 0;
+        leaf.payload[row] = null;
+        live++;
+        return inode;
+    }
+
+    private void setNameId(int inode, int nameId) {
+        Leaf leaf = writable(inode);
+        leaf.name[inode - leaf.start] = nameId;
+    }
+
+    /**
+     * Devolve o inode para reuso. Quem chama já o tirou da lista de filhos do pai.
+     */
+    public synchronized void free(int inode) {
+        freeRow(inode);
+    }
+
+    /**
+     * Libera {@code inodes[0, count)} de uma vez, com uma só aquisição da trava da tabela.
+     */
+    public synchronized void free(int[] inodes, int count) {
+        for (int i = 0; i < count; i++) {
+            freeRow(inodes[i]);
+        }
+    }
+
+    private void freeRow(int inode) {
+        Leaf leaf = writable(inode);
+        int row = inode - leaf.start;
+        if (leaf.type[row] == FREE) {
+            throw new IllegalStateException("Inode " + inode + " is already free");
+        }
+        names.release(leaf.name[row]);
+        if (textIndex != null && leaf.type[row] == FILE) {
+            textIndex.remove(inode);
+        }
+        leaf.type[row] = FREE;
+        leaf.parent[row] = NONE;
+        leaf.payload[row] = null;
+        leaf.serial[row]++;
+        int p = pageOf(inode);
+        directories[p][inode - pageStart(p)] = null;
+        // O inode de uma versão só volta para a fila quando ela for descartada (rebuildFreeList).
+        if (!inAnyVersion(inode)) {
+            pushFree(inode);
+        }
+        live--;
+    }
+
+    private void pushFree(int inode) {
+        if (freeCount == freeInodes.length) {
+            int[] grown = new int[freeCount * 2];
+            System.arraycopy(freeInodes, 0, grown, 0, freeCount);
+            freeInodes = grown;
+        }
+        freeInodes[freeCount++] = inode;
+    }
+
+    private boolean inAnyVersion(int inode) {
+        for (Version version : versions) {
+            if (!version.isFree(inode)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void rebuildFreeList() {
+        freeCount = 0;
+        for (int inode = highWater - 1; inode >= 0; inode--) {
+            if (isFree(inode) && !inAnyVersion(inode)) {
+                pushFree(inode);
+            }
+        }
+    }
+
+    /**
+     * Número de inodes em uso.
+     */
+    public synchronized int size() {
+        return live;
+    }
+
+    /**
+     * Linhas já alocadas nas folhas, em uso ou livres.
+     */
+    public synchronized long getCapacity() {
+        long rows = 0;
+        for (Leaf leaf : leaves) {
+            if (leaf != null) {
+                rows += leaf.type.length;
+            }
+        }
+        return rows;
+    }
+
+    public NameArena getNames() {
+        return names;
+    }
+
+    public ChunkStore getChunkStore() {
+        return chunkStore;
+    }
+
+    /**
+     * Índice de termos do conteúdo, ou null se não foi ligado.
+     */
+    public TextIndex getTextIndex() {
+        return textIndex;
+    }
+
+    /**
+     * Liga o índice de termos, incluindo nele os arquivos que já têm conteúdo; se já estava
+     * ligado, só o devolve.
+     */
+    public synchronized TextIndex enableTextIndex(long budget) {
+        if (textIndex == null) {
+            TextIndex index = new TextIndex(budget);
+            for (int inode = 0; inode < highWater; inode++) {
+                Leaf leaf = leaf(inode);
+                int row = inode - leaf.start;
+                if (leaf.type[row] == FILE && leaf.payload[row] != null) {
+                    index.replace(inode, (TextStorage) leaf.payload[row]);
+                }
+            }
+            textIndex = index;
+        }
+        return textIndex;
+    }
+
+    public boolean isFree(int inode) {
+        Leaf leaf = leaf(inode);
+        return leaf.type[inode - leaf.start] == FREE;
+    }
+
+    /**
+     * Muda cada vez que o inode é liberado: quem guardou o valor sabe se a linha ainda é do mesmo nó.
+     */
+    public int getSerial(int inode) {
+        Leaf leaf = leaf(inode);
+        return leaf.serial[inode - leaf.start];
+    }
+
+    public boolean isDirectory(int inode) {
+        Leaf leaf = leaf(inode);
+        return leaf.type[inode - leaf.start] == DIRECTORY;
+    }
+
+    public NodeType getType(int inode) {
+        return isDirectory(inode) ? NodeType.DIRECTORY : NodeType.FILE;
+    }
+
+    public int getParent(int inode) {
+        Leaf leaf = leaf(inode);
+        return leaf.parent[inode - leaf.start];
+    }
+
+    /**
+     * Só troca o pai registrado na linha; a lista de filhos é responsabilidade de {@link DirectoryData}.
+     */
+    public void setParent(int inode, int parentInode) {
+        if (getParent(inode) != parentInode) {
+            Leaf leaf = writable(inode);
+            leaf.parent[inode - leaf.start] = parentInode;
+            pathEpoch.incrementAndGet();
+        }
+    }
+
+    public long getCreated(int inode) {
+        Leaf leaf = leaf(inode);
+        return leaf.created[inode - leaf.start];
+    }
+
+    public void setCreated(int inode, long time) {
+        Leaf leaf = writable(inode);
+        leaf.created[inode - leaf.start] = time;
+    }
+
+    public long getModified(int inode) {
+        Leaf leaf = leaf(inode);
+        return leaf.modified[inode - leaf.start];
+    }
+
+    public void setModified(int inode, long time) {
+        Leaf leaf = writable(inode);
+        leaf.modified[inode - leaf.start] = time;
+    }
+
+    /**
+     * Tamanho de um arquivo; para diretórios, o total de bytes da subárvore.
+     */
+    public long getSize(int inode) {
+        Leaf leaf = leaf(inode);
+        int row = inode - leaf.start;
+        return leaf.type[row] == DIRECTORY ? getDirectory(inode).getTotalBytes() : leaf.size[row];
+    }
+
+    public void setSize(int inode, long size) {
+        Leaf leaf = writable(inode);
+        leaf.size[inode - leaf.start] = size;
+    }
+
+    /**
+     * Conteúdo de um arquivo (ou null, se nunca foi escrito); de um diretório, a lista de filhos.
+     */
+    public Object getPayload(int inode) {
+        Leaf leaf = leaf(inode);
+        return leaf.payload[inode - leaf.start];
+    }
+
+    public void setPayload(int inode, Object payload) {
+        Leaf leaf = writable(inode);
+        leaf.payload[inode - leaf.start] = payload;
+    }
+
+    public DirectoryData getDirectory(int inode) {
+        int p = pageOf(inode);
+        return directories[p][inode - pageStart(p)];
+    }
+
+    /**
+     * Associa o objeto do diretório ao inode e põe a lista de filhos dele na linha.
+     */
+    public void setDirectory(int inode, DirectoryData directory) {
+        int p = pageOf(inode);
+        directories[p][inode - pageStart(p)] = directory;
+        if (getPayload(inode) != directory.list) {
+            setPayload(inode, directory.list);
+        }
+    }
+
+    public String getName(int inode) {
+        return names.get(getNameId(inode));
+    }
+
+    public int getNameId(int inode) {
+        Leaf leaf = leaf(inode);
+        return leaf.name[inode - leaf.start];
+    }
+
+    /**
+     * Renomeia a linha.
+     */
+    public void setName(int inode, String name) {
+        Leaf leaf = writable(inode);
+        int row = inode - leaf.start;
+        int old = leaf.name[row];
+        leaf.name[row] = names.intern(name);
+        names.release(old);
+        pathEpoch.incrementAndGet();
+    }
+
+    /**
+     * Compara o nome do inode com {@code text[from, to)}, sem criar Strings.
+     */
+    public boolean nameEquals(int inode, String text, int from, int to) {
+        return names.equals(getNameId(inode), text, from, to);
+    }
+
+    /**
+     * Anexa o nome do inode a {@code out}.
+     */
+    public void appendName(int inode, StringBuilder out) {
+        names.appendTo(getNameId(inode), out);
+    }
+
+    int nameHash(int inode) {
+        return NameArena.spread(names.getHash(getNameId(inode)));
+    }
+
+    public long getPathEpoch() {
+        return pathEpoch.get();
+    }
+
+    // Para quem guarda cópias de nomes e pais fora da tabela (os diretórios do FileSystemManager).
+    void invalidatePaths() {
+        pathEpoch.incrementAndGet();
+    }
+
+    /**
+     * Caminho absoluto do inode, subindo pelos pais.
+     */
+    public String getPath(int inode) {
+        return path(leaves, names, inode);
+    }
+
+    private static String path(Leaf[] leaves, NameArena names, int inode) {
+        if (parentIn(leaves, inode) == NONE) {
+            return "/";
+        }
+        int depth = 0;
+        for (int i = inode; parentIn(leaves, i) != NONE; i = parentIn(leaves, i)) {
+            depth++;
+        }
+        int[] chain = new int[depth];
+        int length = 0;
+        for (int i = inode, d = depth - 1; d >= 0; i = parentIn(leaves, i), d--) {
+            chain[d] = i;
+            length += names.getLength(nameIn(leaves, i)) + 1;
+        }
+        StringBuilder path = new StringBuilder(length);
+        for (int i : chain) {
+            path.append('/');
+            names.appendTo(nameIn(leaves, i), path);
+        }
+        return path.toString();
+    }
+
+    private static int parentIn(Leaf[] leaves, int inode) {
+        Leaf leaf = leaves[leafOf(inode)];
+        return leaf.parent[inode - leaf.start];
+    }
+
+    private static int nameIn(Leaf[] leaves, int inode) {
+        Leaf leaf = leaves[leafOf(inode)];
+        return leaf.name[inode - leaf.start];
+    }
+
+    /**
+     * Congela o estado atual numa versão, sem copiar nada. Quem chama garante que ninguém está
+     * alterando a tabela durante a chamada (o gerenciador usa o namespace exclusivo).
+     */
+    public synchronized Version freeze() {
+        Version version = new Version(this, leaves, highWater, live);
+        generation++;
+        Version[] grown = Arrays.copyOf(versions, versions.length + 1);
+        grown[versions.length] = version;
+        versions = grown;
+        return version;
+    }
+
+    /**
+     * Esquece a versão: as folhas e listas que só ela usava ficam para o coletor de lixo, e os
+     * inodes que só ela usava voltam a ser reaproveitados. O conteúdo dos arquivos que só ela
+     * usava é de quem chama (veja {@link #uniqueBytes(Version, RowVisitor)}).
+     */
+    public synchronized void drop(Version version) {
+        Version[] current = versions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == version) {
+                Version[] smaller = new Version[current.length - 1];
+                System.arraycopy(current, 0, smaller, 0, i);
+                System.arraycopy(current, i + 1, smaller, i, smaller.length - i);
+                versions = smaller;
+                rebuildFreeList();
+                return;
+            }
+        }
+    }
+
+    public boolean hasVersions() {
+        return versions.length > 0;
+    }
+
+    /**
+     * true se alguma versão tem {@code payload} (um conteúdo ou lista de filhos) na linha do
+     * inode; nesse caso ele não pode ser alterado no lugar.
+     */
+    public boolean isShared(int inode, Object payload) {
+        for (Version version : versions) {
+            if (inode < version.highWater && version.payload(inode) == payload) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Volta a tabela ao estado de {@code target}. {@code current} é uma versão congelada agora há
+     * pouco, sem alterações depois dela: as linhas que diferem entre as duas acertam as
+     * referências dos nomes e o índice de termos. Os objetos dos diretórios são apagados; quem
+     * chama os recria ({@link DirectoryData#DirectoryData(InodeTable, int, Children)}).
+     */
+    public synchronized void restore(Version target, Version current) {
+        TextIndex terms = textIndex;
+        diff(current, target, inode -> {
+            if (!target.isFree(inode)) {
+                names.retain(target.getNameId(inode));
+            }
+            if (!current.isFree(inode)) {
+                names.release(current.getNameId(inode));
+            }
+            if (terms != null) {
+                TextStorage content = target.isFree(inode) || target.isDirectory(inode) ? null : target.getContent(inode);
+                if (content != null) {
+                    terms.replace(inode, content);
+                } else {
+                    terms.remove(inode);
+                }
+            }
+        });
+        int count = leafOf(highWater - 1) + 1;
+        Leaf[] restored = Arrays.copyOf(target.leaves, Math.max(leaves.length, target.leaves.length));
+        for (int index = 0; index < count; index++) {
+            if (restored[index] == null) {
+                restored[index] = new Leaf(index, generation);
+            }
+        }
+        leaves = restored;
+        leavesGeneration = generation;
+        live = target.live;
+        for (DirectoryData[] page : directories) {
+            if (page != null) {
+                Arrays.fill(page, null);
+            }
+        }
+        rebuildFreeList();
+        pathEpoch.incrementAndGet();
+    }
+
+    /**
+     * Entrega a {@code out}, em ordem, os inodes cuja linha difere entre as duas versões (inclusive
+     * os que só existem numa delas). Folhas compartilhadas são puladas sem olhar as linhas.
+     */
+    static void diff(Version a, Version b, RowVisitor out) {
+        int rows = Math.max(a.highWater, b.highWater);
+        if (rows == 0) {
+            return;
+        }
+        for (int index = 0, last = leafOf(rows - 1); index <= last; index++) {
+            Leaf x = a.leafAt(index);
+            Leaf y = b.leafAt(index);
+            if (x == y) {
+                continue;
+            }
+            int start = leafStart(index);
+            int end = Math.min(start + leafRows(index), rows);
+            for (int inode = start; inode < end; inode++) {
+                if (!sameRow(x, y, inode - start)) {
+                    out.visit(inode);
+                }
+            }
+        }
+    }
+
+    private static boolean sameRow(Leaf x, Leaf y, int row) {
+        byte type = x == null ? FREE : x.type[row];
+        if (type != (y == null ? FREE : y.type[row])) {
+            return false;
+        }
+        return type == FREE || x.parent[row] == y.parent[row] && x.name[row] == y.name[row] && x.payload[row] == y.payload[row]
+                && x.size[row] == y.size[row] && x.modified[row] == y.modified[row] && x.created[row] == y.created[row];
+    }
+
+    /**
+     * Memória estimada das folhas e listas de filhos que só {@code version} usa: é o que descartá-la
+     * devolve. Os arquivos cujo conteúdo só ela usa vão para {@code files}. Quem chama garante que a
+     * tabela não está sendo alterada.
+     */
+    public synchronized long uniqueBytes(Version version, RowVisitor files) {
+        long bytes = 0;
+        if (!heldElsewhere(version, version.leaves)) {
+            bytes += 16 + 4L * version.leaves.length;
+        }
+        for (int index = 0; index < version.leaves.length; index++) {
+            Leaf leaf = version.leaves[index];
+            if (leaf == null || heldElsewhere(version, index, leaf)) {
+                continue;
+            }
+            bytes += leaf.memoryBytes();
+            for (int row = 0; row < leaf.type.length; row++) {
+                Object payload = leaf.payload[row];
+                int inode = leaf.start + row;
+                if (payload == null || heldElsewhere(version, inode, payload)) {
+                    continue;
+                }
+                if (leaf.type[row] == DIRECTORY) {
+                    bytes += ((Children) payload).memoryBytes();
+                } else {
+                    files.visit(inode);
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private boolean heldElsewhere(Version version, Leaf[] array) {
+        if (leaves == array) {
+            return true;
+        }
+        for (Version other : versions) {
+            if (other != version && other.leaves == array) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean heldElsewhere(Version version, int index, Leaf leaf) {
+        if (index < leaves.length && leaves[index] == leaf) {
+            return true;
+        }
+        for (Version other : versions) {
+            if (other != version && other.leafAt(index) == leaf) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean heldElsewhere(Version version, int inode, Object payload) {
+        if (inode < highWater && getPayload(inode) == payload) {
+            return true;
+        }
+        for (Version other : versions) {
+            if (other != version && inode < other.highWater && other.payload(inode) == payload) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Estado congelado da tabela, de {@link #freeze()}. Nada do que ela alcança é alterado depois,
+     * então pode ser lida por qualquer thread sem travas; os nomes continuam na arena da tabela.
+     */
+    public static final class Version {
+        private final InodeTable table;
+        private final Leaf[] leaves;
+        private final int highWater;
+        private final int live;
+
+        private Version(InodeTable table, Leaf[] leaves, int highWater, int live) {
+            this.table = table;
+            this.leaves = leaves;
+            this.highWater = highWater;
+            this.live = live;
+        }
+
+        public InodeTable getTable() {
+            return table;
+        }
+
+        /**
+         * Número de inodes em uso quando a versão foi congelada.
+         */
+        public int size() {
+            return live;
+        }
+
+        private Leaf leafAt(int index) {
+            return index < leaves.length ? leaves[index] : null;
+        }
+
+        Object payload(int inode) {
+            Leaf leaf = leaves[leafOf(inode)];
+            return leaf.payload[inode - leaf.start];
+        }
+
+        public boolean isFree(int inode) {
+            if (inode >= highWater) {
+                return true;
+            }
+            Leaf leaf = leaves[leafOf(inode)];
+            return leaf.type[inode - leaf.start] == FREE;
+        }
+
+        public boolean isDirectory(int inode) {
+            Leaf leaf = leaves[leafOf(inode)];
+            return leaf.type[inode - leaf.start] == DIRECTORY;
+        }
+
+        public int getParent(int inode) {
+            return parentIn(leaves, inode);
+        }
+
+        public int getNameId(int inode) {
+            return nameIn(leaves, inode);
+        }
+
+        public String getName(int inode) {
+            return table.names.get(getNameId(inode));
+        }
+
+        public long getModified(int inode) {
+            Leaf leaf = leaves[leafOf(inode)];
+            return leaf.modified[inode - leaf.start];
+        }
+
+        /**
+         * Tamanho de um arquivo; 0 para diretórios.
+         */
+        public long getSize(int inode) {
+            Leaf leaf = leaves[leafOf(inode)];
+            int row = inode - leaf.start;
+            return leaf.type[row] == FILE ? leaf.size[row] : 0;
+        }
+
+        /**
+         * Conteúdo de um arquivo, ou null se ele estava vazio e nunca foi escrito.
+         */
+        public TextStorage getContent(int inode) {
+            return (TextStorage) payload(inode);
+        }
+
+        Children getChildren(int directory) {
+            return (Children) payload(directory);
+        }
+
+        /**
+         * Filho de {@code directory} chamado {@code text[from, to)}, ou {@link #NONE}.
+         */
+        public int findChild(int directory, String text, int from, int to) {
+            return getChildren(directory).find(table.names, text, from, to);
+        }
+
+        public String getPath(int inode) {
+            return path(leaves, table.names, inode);
+        }
+    }
+
+    /**
+     * Filhos e totais agregados de um diretório. Os filhos ficam numa {@link Children}, que é o que
+     * a linha do diretório guarda e as versões compartilham: se alguma versão está com ela, a
+     * primeira mudança troca a lista por uma cópia. Mudanças na lista exigem acesso exclusivo ao
+     * diretório; os totais são atualizados atomicamente porque operações em subárvores diferentes
+     * sobem pelos mesmos ancestrais. Os totais não entram nas versões.
+     */
+    public static class DirectoryData {
+        private static final AtomicLongFieldUpdater<DirectoryData> TOTAL_BYTES = AtomicLongFieldUpdater.newUpdater(DirectoryData.class, "totalBytes");
+        private static final AtomicLongFieldUpdater<DirectoryData> FILE_COUNT = AtomicLongFieldUpdater.newUpdater(DirectoryData.class, "fileCount");
+        private static final AtomicLongFieldUpdater<DirectoryData> DIR_COUNT = AtomicLongFieldUpdater.newUpdater(DirectoryData.class, "dirCount");
+
+        protected final InodeTable table;
+        protected final int inode;
+        private Children list;
+        // Totais da subárvore, sem contar o próprio diretório.
+        volatile long totalBytes;
+        volatile long fileCount;
+        volatile long dirCount;
+
+        public DirectoryData(InodeTable table, int inode) {
+            this(table, inode, 0);
+        }
+
+        public DirectoryData(InodeTable table, int inode, int expectedChildren) {
+            this.table = table;
+            this.inode = inode;
+            this.list = new Children(table == null ? 0 : table.generation, expectedChildren);
+        }
+
+        /**
+         * Adota a lista de filhos que já está na linha, como depois de {@link InodeTable#restore}.
+         * Os totais começam zerados.
+         */
+        protected DirectoryData(InodeTable table, int inode, Children list) {
+            this.table = table;
+            this.inode = inode;
+            this.list = list;
+        }
+
+        public InodeTable getTable() {
+            return table;
+        }
+
+        public int getInode() {
+            return inode;
+        }
+
+        public int getChildCount() {
+            return list.size;
+        }
+
+        public boolean isEmpty() {
+            return list.size == 0;
+        }
+
+        /**
+         * Número de posições da lista de filhos, contando as vagas; percorra com {@link #childAt(int)}.
+         */
+        public int getPositions() {
+            return list.used;
+        }
+
+        /**
+         * Inode na posição dada (ordem de criação), ou {@link #NONE} se o filho dali foi removido.
+         */
+        public int childAt(int position) {
+            return list.children[position];
+        }
+
+        /**
+         * Id na {@link NameArena} do filho na posição dada.
+         */
+        public int nameAt(int position) {
+            return list.names[position];
+        }
+
+        public int findChild(String name) {
+            return findChild(name, 0, name.length());
+        }
+
+        /**
+         * Procura o filho chamado {@code text[from, to)}, por exemplo um componente de um caminho.
+         */
+        public int findChild(String text, int from, int to) {
+            return list.find(table.names, text, from, to);
+        }
+
+        public boolean containsChild(int child) {
+            return list.positionOfInode(table, child) >= 0;
+        }
+
+        /**
+         * Põe o inode na lista de filhos, com o nome que já está na linha, e o registra como filho
+         * deste diretório. Retorna false se já existe um filho com esse nome. Não mexe nos totais.
+         */
+        public boolean addChild(int child) {
+            int h = table.nameHash(child);
+            int name = table.getNameId(child);
+            if (list.positionOfName(h, name) >= 0) {
+                return false;
+            }
+            table.setParent(child, inode);
+            writable().insert(child, name, h);
+            return true;
+        }
+
+        /**
+         * Tira o inode da lista de filhos. Não mexe nos totais nem libera o inode.
+         */
+        public boolean removeChild(int child) {
+            int position = list.positionOfInode(table, child);
+            if (position < 0) {
+                return false;
+            }
+            writable().removeAt(position);
+            return true;
+        }
+
+        /**
+         * Renomeia um filho; como numa remoção seguida de inclusão, ele passa para o fim da ordem.
+         * Retorna false se o novo nome já existe.
+         */
+        public boolean renameChild(int child, String newName) {
+            if (findChild(newName) != NONE) {
+                return false;
+            }
+            int position = list.positionOfInode(table, child);
+            if (position < 0) {
+                return false;
+            }
+            Children children = writable();
+            children.removeAt(position);
+            table.setName(child, newName);
+            children.insert(child, table.getNameId(child), table.nameHash(child));
+            return true;
+        }
+
+        /**
+         * Remove as posições vagas: depois disso as posições vão de 0 a {@code getChildCount() - 1}.
+         */
+        public void compact() {
+            if (list.used != list.size) {
+                writable().compact();
+            }
+        }
+
+        // Lista que pode ser alterada: se alguma versão está com ela, a troca por uma cópia.
+        private Children writable() {
+            Children children = list;
+            if (children.generation != table.generation && table.isShared(inode, children)) {
+                children = new Children(children, table.generation);
+                list = children;
+                table.setPayload(inode, children);
+            }
+            return children;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        public long getFileCount() {
+            return fileCount;
+        }
+
+        public long getDirectoryCount() {
+            return dirCount;
+        }
+
+        /**
+         * Soma aos totais deste diretório apenas; quem chama sobe pelos ancestrais.
+         */
+        public void addToTotals(long bytes, long files, long dirs) {
+            if (bytes != 0) {
+                TOTAL_BYTES.addAndGet(this, bytes);
+            }
+            if (files != 0) {
+                FILE_COUNT.addAndGet(this, files);
+            }
+            if (dirs != 0) {
+                DIR_COUNT.addAndGet(this, dirs);
+            }
+        }
+    }
+
+    /**
+     * Lista de filhos de um diretório. Os filhos ficam em ordem de criação num vetor de inodes;
+     * acima de alguns filhos há também uma tabela de espalhamento (sondagem linear, como no
+     * {@code MyLinkedHashMap}) que aponta para posições desse vetor. Junto de cada filho fica o id
+     * do nome na {@link NameArena}: uma busca por texto compara os bytes desse nome, e dois filhos
+     * com o mesmo id têm o mesmo nome. Depois que uma versão a congela, a lista não muda mais.
+     */
+    static final class Children {
+        private static final int[] NO_CHILDREN = new int[0];
+        // Até este número de filhos a busca é linear e não há tabela de espalhamento.
+        private static final int LINEAR_LIMIT = 8;
+        private static final int MIN_SLOTS = 32;
+
+        // Geração da tabela em que a lista foi criada; uma lista da geração atual não está em versões.
+        final long generation;
+        // NONE marca a posição de um filho removido; as vagas são compactadas de forma amortizada.
+        private int[] children;
+        // Id do nome e hash espalhado de cada filho, nas mesmas posições.
+        private int[] names;
+        private int[] hashes;
+        private int used;
+        private int size;
+        // Posição em children + 1, ou 0 para vazio; null enquanto há poucos filhos.
+        private int[] slots;
+        private int mask;
+
+        Children(long generation, int expectedChildren) {
+            this.generation = generation;
+            this.children = expectedChildren == 0 ? NO_CHILDREN : new int[expectedChildren];
+            this.names = expectedChildren == 0 ? NO_CHILDREN : new int[expectedChildren];
+            this.hashes = expectedChildren == 0 ? NO_CHILDREN : new int[expectedChildren];
+            if (expectedChildren > LINEAR_LIMIT) {
+                rebuildSlots(slotCapacityFor(expectedChildren));
+            }
+        }
+
+        Children(Children from, long generation) {
+            this.generation = generation;
+            this.children = from.children.clone();
+            this.names = from.names.clone();
+            this.hashes = from.hashes.clone();
+            this.used = from.used;
+            this.size = from.size;
+            this.slots = from.slots == null ? null : from.slots.clone();
+            this.mask = from.mask;
+        }
+
+        int getPositions() {
+            return used;
+        }
+
+        int childAt(int position) {
+            return children[position];
+        }
+
+        int nameAt(int position) {
+            return names[position];
+        }
+
+        int find(NameArena arena, String text, int from, int to) {
+            int position = positionOf(arena, NameArena.spread(NameArena.hash(text, from, to)), text, from, to);
+            return position < 0 ? NONE : children[position];
+        }
+
+        long memoryBytes() {
+            return 48 + 3 * 16 + 4L * (children.length + names.length + hashes.length) + (slots == null ? 0 : 16 + 4L * slots.length);
+        }
+
+        private int positionOf(NameArena arena, int h, String text, int from, int to) {
+            if (slots == null) {
+                for (int i = 0; i < used; i++) {
+                    if (children[i] != NONE && hashes[i] == h && arena.equals(names[i], text, from, to)) {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+            int slot = h & mask;
+            int entry;
+            while ((entry = slots[slot]) != 0) {
+                int position = entry - 1;
+                if (hashes[position] == h && arena.equals(names[position], text, from, to)) {
+                    return position;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        // Como os nomes não se repetem na arena, dois filhos têm o mesmo nome se têm o mesmo id.
+        private int positionOfName(int h, int name) {
+            if (slots == null) {
+                for (int i = 0; i < used; i++) {
+                    if (children[i] != NONE && names[i] == name) {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+            int slot = h & mask;
+            int entry;
+            while ((entry = slots[slot]) != 0) {
+                int position = entry - 1;
+                if (names[position] == name) {
+                    return position;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private int positionOfInode(InodeTable table, int child) {
+            if (slots == null) {
+                for (int i = 0; i < used; i++) {
+                    if (children[i] == child) {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+            int slot = table.nameHash(child) & mask;
+            int entry;
+            while ((entry = slots[slot]) != 0) {
+                if (children[entry - 1] == child) {
+                    return entry - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private void compact() {
+            int count = 0;
+            for (int i = 0; i < used; i++) {
+                if (children[i] != NONE) {
+                    children[count] = children[i];
+                    names[count] = names[i];
+                    hashes[count] = hashes[i];
+                    count++;
+                }
+            }
+            used = count;
+            if (children.length > LINEAR_LIMIT && count < children.length >> 2) {
+                int capacity = Math.max(count + (count >> 1), LINEAR_LIMIT);
+                int[] smaller = new int[capacity];
+                System.arraycopy(children, 0, smaller, 0, count);
+                children = smaller;
+                smaller = new int[capacity];
+                System.arraycopy(names, 0, smaller, 0, count);
+                names = smaller;
+                smaller = new int[capacity];
+                System.arraycopy(hashes, 0, smaller, 0, count);
+                hashes = smaller;
+            }
+            if (count > LINEAR_LIMIT) {
+                rebuildSlots(slotCapacityFor(count));
+            } else {
+                slots = null;
+            }
+        }
+
+        private void insert(int child, int name, int h) {
+            if (used == children.length) {
+                if (used > size) {
+                    compact();
+                }
+                if (used == children.length) {
+                    int capacity = children.length + (children.length >> 1) + 2;
+                    int[] grown = new int[capacity];
+                    System.arraycopy(children, 0, grown, 0, used);
+                    children = grown;
+                    grown = new int[capacity];
+                    System.arraycopy(names, 0, grown, 0, used);
+                    names = grown;
+                    grown = new int[capacity];
+                    System.arraycopy(hashes, 0, grown, 0, used);
+                    hashes = grown;
+                }
+            }
+            int position = used++;
+            children[position] = child;
+            names[position] = name;
+            hashes[position] = h;
+            size++;
+            if (slots == null) {
+                if (size > LINEAR_LIMIT) {
+                    rebuildSlots(slotCapacityFor(size));
+                }
+            } else if (size * 2 > slots.length) {
+                rebuildSlots(slots.length << 1);
+            } else {
+                int slot = h & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = position + 1;
+            }
+        }
+
+        private void removeAt(int position) {
+            if (slots != null) {
+                int slot = hashes[position] & mask;
+                while (slots[slot] != position + 1) {
+                    slot = (slot + 1) & mask;
+                }
+                deleteSlot(slot);
+            }
+            children[position] = NONE;
+            size--;
+            while (used > 0 && children[used - 1] == NONE) {
+                used--;
+            }
+            if (used - size > (used >> 1) && used > LINEAR_LIMIT) {
+                compact();
+            }
+        }
+
+        // Remoção com deslocamento para trás, sem lápides.
+        private void deleteSlot(int slot) {
+            int hole = slot;
+            int next = slot;
+            while (true) {
+                next = (next + 1) & mask;
+                int entry = slots[next];
+                if (entry == 0) {
+                    break;
+                }
+                int ideal = hashes[entry - 1] & mask;
+                boolean movable = hole <= next
+                        ? (ideal <= hole || ideal > next)
+                        : (ideal <= hole && ideal > next);
+                if (movable) {
+                    slots[hole] = entry;
+                    hole = next;
+                }
+            }
+            slots[hole] = 0;
+        }
+
+        private void rebuildSlots(int capacity) {
+            slots = new int[capacity];
+            mask = capacity - 1;
+            for (int i = 0; i < used; i++) {
+                if (children[i] == NONE) {
+                    continue;
+                }
+                int slot = hashes[i] & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = i + 1;
+            }
+        }
+
+        private static int slotCapacityFor(int entries) {
+            int capacity = MIN_SLOTS;
+            while (capacity < entries * 2) {
+                capacity <<= 1;
+            }
+            return capacity;
+        }
+    }
+}
\ No newline at end of file
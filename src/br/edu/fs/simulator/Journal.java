@@ -1,79 +1,402 @@
 package br.edu.fs.simulator;
 
-import br.edu.fs.simulator.util.MyArrayList;
 import br.edu.fs.simulator.util.MyStringBuilder;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.PrintStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 
+/**
+ * Journal de texto das operações. As entradas ficam em blocos de vetores primitivos (opcode,
+ * timestamp, caminho, argumentos) e só viram texto em {@link #printLog}, {@link #flushToFile}
+ * e na thread do appender; registrar uma operação não aloca nada além do bloco, a cada
+ * {@code BLOCK_SIZE} entradas. A memória é limitada: só os blocos mais recentes ficam retidos e
+ * os mais antigos são descartados (o appender continua gravando todos no arquivo).
+ *
+ * Pode receber entradas de várias threads: o registro é feito sob o monitor do journal, que
+ * também ordena os marcadores entregues ao appender. Leituras de entradas antigas não travam.
+ */
 public class Journal {
-    private MyArrayList<String> logEntries;
-    private SimpleDateFormat dateFormat;
     private static final String DEFAULT_DATE_FORMAT = "yyyy-MM-dd HH:mm:ss.SSS";
+    private static final int BLOCK_SHIFT = 10;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+    private static final int DEFAULT_RETAINED_ENTRIES = 64 * BLOCK_SIZE;
+    private static final byte DROPPED_FLAG = (byte) 0x80;
+    private static final int APPENDER_CAPACITY = 8192;
+    private static final int APPENDER_BATCH_SIZE = 512;
+    private static final long APPENDER_MAX_DELAY_MILLIS = 200;
+    // O appender recebe só este marcador; a entrada em si é lida dos blocos na ordem de registro.
+    private static final Object APPENDED = new Object();
+
+    private static final class Block {
+        final long firstIndex;
+        volatile Block next;
+        final byte[] ops = new byte[BLOCK_SIZE];
+        final long[] timestamps = new long[BLOCK_SIZE];
+        final String[] paths = new String[BLOCK_SIZE];
+        final long[] argsA = new long[BLOCK_SIZE];
+        final long[] argsB = new long[BLOCK_SIZE];
+        final String[] extras = new String[BLOCK_SIZE];
+
+        Block(long firstIndex) {
+            this.firstIndex = firstIndex;
+        }
+    }
+
+    private final DateTimeFormatter dateFormat;
+    private final int retainedBlocks;
+    // Lista encadeada de blocos: novos entram no fim, os mais antigos saem do início. O appender
+    // guarda a própria referência ao bloco que está gravando, então nada se perde para ele.
+    private volatile Block head;
+    private volatile Block tail;
+    // Índices absolutos: size é o total já registrado e first a entrada mais antiga ainda em memória.
+    private volatile long size;
+    private volatile long first;
+
+    private volatile AsyncJournalWriter<Object> appender;
+    private String appenderPath;
+    private BufferedWriter appenderWriter;
 
     public Journal() {
-        this.logEntries = new MyArrayList<>();
-        this.dateFormat = new SimpleDateFormat(DEFAULT_DATE_FORMAT);
+        this(DEFAULT_RETAINED_ENTRIES);
+    }
+
+    /**
+     * @param maxRetainedEntries quantas entradas recentes manter em memória (arredondado para blocos)
+     */
+    public Journal(int maxRetainedEntries) {
+        if (maxRetainedEntries <= 0) {
+            throw new IllegalArgumentException("Illegal retained entries: " + maxRetainedEntries);
+        }
+        this.dateFormat = DateTimeFormatter.ofPattern(DEFAULT_DATE_FORMAT).withZone(ZoneId.systemDefault());
+        this.retainedBlocks = (maxRetainedEntries + BLOCK_SIZE - 1) >>> BLOCK_SHIFT;
+        this.head = new Block(0);
+        this.tail = head;
     }
 
 
-    public void logOperation(String command, String details) {
+    /**
+     * @return {@code false}, sem registrar nada, se {@code command} ou {@code details} for nulo
+     */
+    public boolean logOperation(String command, String details) {
         if (command == null || details == null) {
-            System.err.println("Warning: Journal.logOperation chamado com command ou details nulo.");
+            return false;
+        }
+        append(JournalOp.CUSTOM, details, 0, 0, command);
+        return true;
+    }
 
-            return;
+    public void log(JournalOp op, String path) {
+        append(op, path, 0, 0, null);
+    }
+
+    public void log(JournalOp op, String path, long a) {
+        append(op, path, a, 0, null);
+    }
+
+    public void log(JournalOp op, String path, long a, long b) {
+        append(op, path, a, b, null);
+    }
+
+    public void log(JournalOp op, String path, String extra) {
+        append(op, path, 0, 0, extra);
+    }
+
+    /**
+     * Total de entradas registradas desde a criação, incluindo as que já saíram da memória.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Índice da entrada mais antiga ainda em memória.
+     */
+    public long firstRetained() {
+        return first;
+    }
+
+    public long retainedCount() {
+        return size - first;
+    }
+
+    public JournalOp getOp(long index) {
+        return JournalOp.fromCode(block(index).ops[(int) index & BLOCK_MASK] & ~DROPPED_FLAG);
+    }
+
+    public long getTimestamp(long index) {
+        return block(index).timestamps[(int) index & BLOCK_MASK];
+    }
+
+    public String getPath(long index) {
+        return block(index).paths[(int) index & BLOCK_MASK];
+    }
+
+    /**
+     * Monta o texto da entrada {@code index}, no mesmo formato de sempre: "[data] COMANDO: detalhes".
+     */
+    public String format(long index) {
+        MyStringBuilder out = new MyStringBuilder(96);
+        formatTo(block(index), (int) index & BLOCK_MASK, out);
+        return out.toString();
+    }
+
+    private void formatTo(Block b, int i, MyStringBuilder out) {
+        JournalOp op = JournalOp.fromCode(b.ops[i] & ~DROPPED_FLAG);
+        out.append('[');
+        out.append(dateFormat.format(Instant.ofEpochMilli(b.timestamps[i])));
+        out.append("] ");
+        out.append(op == JournalOp.CUSTOM ? b.extras[i].toUpperCase() : op.getCommand());
+        out.append(": ");
+        String template = op.getTemplate();
+        int length = template.length();
+        for (int c = 0; c < length; c++) {
+            char ch = template.charAt(c);
+            if (ch != '%' || c + 1 == length) {
+                out.append(ch);
+                continue;
+            }
+            switch (template.charAt(++c)) {
+                case 'p':
+                    out.append(b.paths[i]);
+                    break;
+                case 'a':
+                    out.append(b.argsA[i]);
+                    break;
+                case 'b':
+                    out.append(b.argsB[i]);
+                    break;
+                case 'x':
+                    out.append(b.extras[i]);
+                    break;
+                default:
+                    out.append('%');
+                    out.append(template.charAt(c));
+                    break;
+            }
         }
+    }
 
-        MyStringBuilder entryBuilder = new MyStringBuilder();
-        entryBuilder.append("[");
-        entryBuilder.append(dateFormat.format(new Date(System.currentTimeMillis())));
-        entryBuilder.append("] ");
-        entryBuilder.append(command.toUpperCase());
-        entryBuilder.append(": ");
-        entryBuilder.append(details);
+    private synchronized void append(JournalOp op, String path, long a, long b, String extra) {
+        long index = size;
+        Block block = tail;
+        if (index - block.firstIndex == BLOCK_SIZE) {
+            block = new Block(index);
+            tail.next = block;
+            tail = block;
+            Block oldest = head;
+            if ((index - oldest.firstIndex) >>> BLOCK_SHIFT >= retainedBlocks) {
+                head = oldest.next;
+                first = Math.max(first, head.firstIndex);
+            }
+        }
+        int i = (int) index & BLOCK_MASK;
+        block.ops[i] = (byte) op.ordinal();
+        block.timestamps[i] = System.currentTimeMillis();
+        block.paths[i] = path;
+        block.argsA[i] = a;
+        block.argsB[i] = b;
+        block.extras[i] = extra;
+        size = index + 1;
 
+        if (appender != null && !appender.submit(APPENDED)) {
+            // Descartada pelo appender (fila cheia no modo DROP): continua só em memória.
+            block.ops[i] |= DROPPED_FLAG;
+        }
+    }
 
-        logEntries.add(entryBuilder.toString());
+    private Block block(long index) {
+        if (index < first || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Retained: [" + first + ", " + size + ")");
+        }
+        Block b = head;
+        while (index - b.firstIndex >= BLOCK_SIZE) {
+            b = b.next;
+        }
+        return b;
     }
 
-    public void flushToFile(String filePath) {
-        if (filePath == null || filePath.trim().isEmpty()) {
-            System.err.println("Error: File path for journal flushing cannot be null or empty.");
-            return;
+    /**
+     * Esquece as entradas em memória; as próximas continuam numeradas a partir de {@link #size()}.
+     */
+    public synchronized void clear() {
+        first = size;
+        head = tail;
+    }
+
+    /**
+     * Passa a gravar cada nova entrada em {@code filePath} numa thread de fundo, com commit em grupo.
+     */
+    public synchronized void startAppender(String filePath, AsyncJournalWriter.Backpressure backpressure) throws IOException {
+        if (appender != null) {
+            closeAppender();
         }
+        FileOutputStream out = new FileOutputStream(filePath, true);
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.appender = new AsyncJournalWriter<>("log", new AppenderSink(writer, out, tail, size), APPENDER_CAPACITY,
+                APPENDER_BATCH_SIZE, APPENDER_MAX_DELAY_MILLIS, backpressure, true);
+        this.appenderPath = filePath;
+        this.appenderWriter = writer;
+    }
 
-        if (logEntries.isEmpty()) {
-            System.out.println("Journal (in memory) is empty. Nothing to flush to " + filePath);
+    public AsyncJournalWriter<Object> getAppender() {
+        return appender;
+    }
+
+    public String getAppenderPath() {
+        return appenderPath;
+    }
+
+    /**
+     * Espera até que todas as entradas registradas até aqui estejam no arquivo do appender.
+     */
+    public void sync() throws IOException {
+        if (appender != null) {
+            appender.sync();
+        }
+    }
+
+    /**
+     * Fecha o appender, se houver. Mesmo com erro ele deixa de ser usado.
+     */
+    public synchronized void closeAppender() throws IOException {
+        if (appender == null) {
             return;
         }
+        try {
+            appender.close();
+            appenderWriter.close();
+        } finally {
+            appender = null;
+            appenderPath = null;
+            appenderWriter = null;
+        }
+    }
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath, true))) {
-            for (int i = 0; i < logEntries.size(); i++) {
-                writer.write(logEntries.get(i));
-                writer.newLine();
-            }
+    /**
+     * Acrescenta a {@code filePath} as entradas em memória e as tira da memória. Se o appender já
+     * grava nesse arquivo, só espera que ele alcance a última entrada.
+     *
+     * @return quantas entradas saíram da memória
+     */
+    public synchronized long flushToFile(String filePath) throws IOException {
+        if (filePath == null || filePath.trim().isEmpty()) {
+            throw new IllegalArgumentException("Journal file path cannot be null or empty");
+        }
 
-            System.out.println("Journal flushed to " + filePath);
-        } catch (IOException e) {
-            System.err.println("Error flushing journal to file '" + filePath + "': " + e.getMessage());
+        long end = size;
+        long flushed = end - first;
+        if (appender != null && filePath.equals(appenderPath)) {
+            // O appender já grava as entradas nesse arquivo; basta esperar pela barreira.
+            appender.sync();
+            clear();
+            return flushed;
+        }
 
+        if (flushed == 0) {
+            return 0;
         }
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath, true))) {
+            MyStringBuilder line = new MyStringBuilder(128);
+            long start = first;
+            Block b = block(start);
+            for (long i = start; i < end; i++) {
+                if (i - b.firstIndex == BLOCK_SIZE) {
+                    b = b.next;
+                }
+                writeEntry(b, (int) i & BLOCK_MASK, line, writer);
+            }
+            // Só o que foi gravado sai da memória: um novo flush não repete essas entradas.
+            first = Math.max(first, end);
+            if (end == size) {
+                head = tail;
+            }
+        }
+        return flushed;
     }
 
 
     public void printLog() {
+        printLog(System.out);
+    }
 
-        if (logEntries.isEmpty()) {
-            System.out.println("Journal is currently empty (in memory).");
+    public synchronized void printLog(PrintStream out) {
+
+        long start = first;
+        long end = size;
+        if (end == start) {
+            out.println("Journal is currently empty (in memory).");
             return;
         }
-        System.out.println("--- Journal Entries (In Memory) ---");
+        out.println("--- Journal Entries (In Memory) ---");
+        if (start > 0) {
+            out.println("(" + start + " older entries no longer in memory)");
+        }
+
+        MyStringBuilder line = new MyStringBuilder(128);
+        Block b = block(start);
+        for (long i = start; i < end; i++) {
+            if (i - b.firstIndex == BLOCK_SIZE) {
+                b = b.next;
+            }
+            line.clear();
+            formatTo(b, (int) i & BLOCK_MASK, line);
+            out.println(line.toString());
+        }
+        out.println("----------------------------------");
+    }
+
+    private void writeEntry(Block b, int i, MyStringBuilder line, Writer writer) throws IOException {
+        line.clear();
+        formatTo(b, i, line);
+        writer.write(line.toString());
+        writer.write(System.lineSeparator());
+    }
+
+    // Executado só pela thread do appender: formata as entradas na ordem em que foram registradas.
+    private final class AppenderSink implements AsyncJournalWriter.Sink<Object> {
+        private final BufferedWriter writer;
+        private final FileOutputStream out;
+        private final MyStringBuilder line = new MyStringBuilder(128);
+        private Block block;
+        private long cursor;
+
+        AppenderSink(BufferedWriter writer, FileOutputStream out, Block block, long start) {
+            this.writer = writer;
+            this.out = out;
+            this.block = block;
+            this.cursor = start;
+        }
 
-        for (int i = 0; i < logEntries.size(); i++) {
-            System.out.println(logEntries.get(i));
+        @Override
+        public void write(Object marker) throws IOException {
+            while (true) {
+                if (cursor - block.firstIndex == BLOCK_SIZE) {
+                    block = block.next;
+                }
+                int i = (int) cursor++ & BLOCK_MASK;
+                if ((block.ops[i] & DROPPED_FLAG) == 0) {
+                    writeEntry(block, i, line, writer);
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void commit(boolean force) throws IOException {
+            writer.flush();
+            if (force) {
+                out.getChannel().force(false);
+            }
         }
-        System.out.println("----------------------------------");
     }
 }
\ No newline at end of file
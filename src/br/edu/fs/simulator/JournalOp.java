@@ -0,0 +1,56 @@
+package br.edu.fs.simulator;
+
+/**
+ * Operações registradas no {@link Journal}. O texto só é montado quando a entrada é exibida ou
+ * gravada: no modelo, {@code %p} é o caminho, {@code %a} e {@code %b} os argumentos numéricos e
+ * {@code %x} o texto extra.
+ */
+public enum JournalOp {
+    /** Entrada livre de {@link Journal#logOperation(String, String)}: comando no extra, detalhes no caminho. */
+    CUSTOM(null, "%p"),
+    INIT_FS("INIT_FS", "Sistema de arquivos inicializado. Raiz em %p"),
+    MKDIR("MKDIR", "Diretório criado: %p"),
+    CREATE_FILE("CREATE_FILE", "Arquivo criado: %p"),
+    LS("LS", "Listado diretório: %p"),
+    CD("CD", "Mudou para diretório: %p"),
+    CD_PARENT("CD", "Mudou para diretório pai: %p"),
+    RENAME("RENAME", "%p -> %x"),
+    WRITE("WRITE", "Escrita em %p (%a caracteres no offset %b)"),
+    TRUNCATE("TRUNCATE", "Arquivo truncado: %p -> %a"),
+    CAT("CAT", "Lido arquivo: %p"),
+    HEAD("HEAD", "Lidas %a linha(s) de %p"),
+    TAIL("TAIL", "Lidas %a linha(s) de %p"),
+    RM_FILE("RM", "Arquivo removido: %p"),
+    RM_DIR("RM", "Diretório removido: %p"),
+    RM_TREE("RM", "Diretório removido com %a nó(s): %p"),
+    CP("CP", "%p copiado para %x"),
+    MV("MV", "%p -> %x"),
+    FIND("FIND", "Busca em %p: %a resultado(s)"),
+    SEARCH("SEARCH", "Busca por '%p': %a resultado(s)"),
+    SNAPSHOT("SNAPSHOT", "Snapshot criado: %p (%a nó(s))"),
+    SNAPSHOT_DELETE("SNAPSHOT", "Snapshot removido: %p"),
+    SNAPSHOT_RESTORE("RESTORE", "Árvore restaurada do snapshot %p (%a nó(s))"),
+    SNAPSHOT_DIFF("DIFF", "Snapshot %p comparado com %x");
+
+    private static final JournalOp[] VALUES = values();
+
+    private final String command;
+    private final String template;
+
+    JournalOp(String command, String template) {
+        this.command = command;
+        this.template = template;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    String getTemplate() {
+        return template;
+    }
+
+    static JournalOp fromCode(int code) {
+        return VALUES[code];
+    }
+}
\ No newline at end of file
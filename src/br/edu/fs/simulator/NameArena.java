@@ -0,0 +1,453 @@
+package br.edu.fs.simulator;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Nomes de arquivos e diretórios guardados uma vez só, como bytes, e identificados por um número.
+ * Nomes só com caracteres até U+00FF ocupam um byte por caractere (Latin-1); os outros vão em
+ * UTF-8, com cada metade de um par substituto codificada à parte (como no CESU-8), para que
+ * qualquer String volte idêntica. As comparações são feitas direto nos bytes, sem criar Strings.
+ *
+ * Cada id conta quantos inodes o usam. Um nome que fica sem referências continua na tabela de
+ * espalhamento e é reaproveitado se aparecer de novo; só {@link #compact()} o descarta e libera o
+ * id. Incluir e soltar nomes é sincronizado; ler um nome cujo id veio de um inode não precisa de
+ * trava.
+ */
+public final class NameArena {
+    public static final int NONE = -1;
+
+    // Marca um id livre (fora da tabela de espalhamento) na coluna de referências.
+    private static final int FREE = -1;
+    private static final int COMPACT_MIN_GARBAGE = 1 << 16;
+
+    // Mesmas páginas da InodeTable: um id não muda de lugar quando a arena cresce.
+    private static final class Page {
+        // Offset nos 32 bits altos; nos baixos, o tamanho em bytes vezes 2, mais 1 se for UTF-8.
+        final long[] location;
+        final int[] references;
+
+        Page(int rows) {
+            this.location = new long[rows];
+            this.references = new int[rows];
+        }
+    }
+
+    private final Page[] pages = new Page[InodeTable.MAX_PAGES];
+    private int highWater;
+    private int[] freeIds = new int[16];
+    private int freeCount;
+    // Ids com referências, e ids na tabela de espalhamento (com ou sem referências).
+    private int live;
+    private int entries;
+    // Id + 1, ou 0 para vazio; sondagem linear, no máximo metade ocupada, porque cada sondagem
+    // compara o nome inteiro.
+    private int[] slots = new int[64];
+
+    // Trocado inteiro quando cresce, depois de copiado; quem lê pega a referência uma vez só.
+    private volatile byte[] bytes = new byte[256];
+    private int bytesLength;
+    // Bytes de nomes sem referências.
+    private int garbage;
+
+    /**
+     * Id do nome, incluído se ainda não existe; conta mais uma referência a ele.
+     */
+    public synchronized int intern(String name) {
+        int h = name.hashCode();
+        int id = lookup(h, name);
+        if (id != NONE) {
+            retain(id);
+            return id;
+        }
+        id = newId();
+        int p = InodeTable.pageOf(id);
+        Page page = pages[p];
+        int row = id - InodeTable.pageStart(p);
+        page.location[row] = encode(name);
+        page.references[row] = 1;
+        live++;
+        addSlot(id, h);
+        return id;
+    }
+
+    /**
+     * Id do nome, ou {@link #NONE} se ele não está na arena; não conta referência.
+     */
+    public synchronized int find(String name) {
+        return lookup(name.hashCode(), name);
+    }
+
+    /**
+     * Conta mais uma referência a um nome que já está na arena, sem procurá-lo pelo texto.
+     */
+    public synchronized void retain(int id) {
+        int p = InodeTable.pageOf(id);
+        Page page = pages[p];
+        int row = id - InodeTable.pageStart(p);
+        if (page.references[row] == FREE) {
+            throw new IllegalStateException("Name " + id + " is free");
+        }
+        if (page.references[row]++ == 0) {
+            garbage -= lengthOf(page.location[row]);
+            live++;
+        }
+    }
+
+    /**
+     * Solta uma referência ao nome. Sem referências, ele vira lixo até a próxima compactação.
+     */
+    public synchronized void release(int id) {
+        int p = InodeTable.pageOf(id);
+        Page page = pages[p];
+        int row = id - InodeTable.pageStart(p);
+        if (page.references[row] <= 0) {
+            throw new IllegalStateException("Name " + id + " has no references");
+        }
+        if (--page.references[row] == 0) {
+            garbage += lengthOf(page.location[row]);
+            live--;
+        }
+    }
+
+    public String get(int id) {
+        long location = getLocation(id);
+        return decode(bytes, offsetOf(location), lengthOf(location), isLatin1(location));
+    }
+
+    /**
+     * Tamanho do nome em caracteres.
+     */
+    public int getLength(int id) {
+        long location = getLocation(id);
+        int length = lengthOf(location);
+        if (isLatin1(location)) {
+            return length;
+        }
+        byte[] arena = bytes;
+        int chars = 0;
+        for (int i = offsetOf(location), end = i + length; i < end; i++) {
+            if ((arena[i] & 0xC0) != 0x80) {
+                chars++;
+            }
+        }
+        return chars;
+    }
+
+    /**
+     * O mesmo valor de {@code get(id).hashCode()}, calculado sobre os bytes.
+     */
+    public int getHash(int id) {
+        return hashOf(bytes, getLocation(id));
+    }
+
+    /**
+     * Compara o nome com {@code text[from, to)}.
+     */
+    public boolean equals(int id, String text, int from, int to) {
+        return matches(bytes, getLocation(id), text, from, to);
+    }
+
+    public void appendTo(int id, StringBuilder out) {
+        long location = getLocation(id);
+        byte[] arena = bytes;
+        int offset = offsetOf(location);
+        int end = offset + lengthOf(location);
+        if (!isLatin1(location)) {
+            out.append(decode(arena, offset, end - offset, false));
+            return;
+        }
+        while (offset < end) {
+            out.append((char) (arena[offset++] & 0xFF));
+        }
+    }
+
+    // Para quem guarda referências a nomes sem copiá-los (DirectoryListing): os bytes de um nome
+    // nunca mudam depois de gravados, e crescer ou compactar a arena cria um vetor novo, então o
+    // trecho (vetor, posição) lido com o nó travado continua válido.
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    long getLocation(int id) {
+        int p = InodeTable.pageOf(id);
+        return pages[p].location[id - InodeTable.pageStart(p)];
+    }
+
+    static int offsetOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    static int lengthOf(long location) {
+        return (int) location >>> 1;
+    }
+
+    static boolean isLatin1(long location) {
+        return (location & 1) == 0;
+    }
+
+    static String decode(byte[] arena, int offset, int length, boolean latin1) {
+        if (latin1) {
+            return new String(arena, offset, length, StandardCharsets.ISO_8859_1);
+        }
+        char[] chars = new char[length];
+        int count = 0;
+        for (int i = offset, end = offset + length; i < end; ) {
+            int b = arena[i++] & 0xFF;
+            if (b >= 0xE0) {
+                chars[count++] = (char) (((b & 0x0F) << 12) | ((arena[i++] & 0x3F) << 6) | (arena[i++] & 0x3F));
+            } else if (b >= 0x80) {
+                chars[count++] = (char) (((b & 0x1F) << 6) | (arena[i++] & 0x3F));
+            } else {
+                chars[count++] = (char) b;
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    /**
+     * Número de nomes distintos em uso.
+     */
+    public synchronized int size() {
+        return live;
+    }
+
+    /**
+     * Bytes ocupados na arena, contando o lixo.
+     */
+    public synchronized int getByteCount() {
+        return bytesLength;
+    }
+
+    /**
+     * Bytes de nomes que nenhum nó usa mais.
+     */
+    public synchronized int getGarbage() {
+        return garbage;
+    }
+
+    /**
+     * Se mais da metade da arena (e pelo menos {@code COMPACT_MIN_GARBAGE} bytes) é lixo.
+     * Lido sem trava, é só uma dica: quem compacta confere de novo com acesso exclusivo.
+     */
+    public boolean shouldCompact() {
+        return garbage >= COMPACT_MIN_GARBAGE && garbage > bytesLength / 2;
+    }
+
+    /**
+     * Descarta os nomes sem referências e reescreve a arena só com os outros; os ids em uso não
+     * mudam. Exige que ninguém esteja lendo a arena.
+     */
+    public synchronized void compact() {
+        byte[] arena = bytes;
+        int liveBytes = bytesLength - garbage;
+        byte[] compacted = new byte[Math.max(256, liveBytes + liveBytes / 4)];
+        int[] table = new int[slotCapacityFor(live)];
+        int length = 0;
+        for (int id = 0; id < highWater; id++) {
+            int p = InodeTable.pageOf(id);
+            Page page = pages[p];
+            int row = id - InodeTable.pageStart(p);
+            int references = page.references[row];
+            if (references > 0) {
+                long location = page.location[row];
+                System.arraycopy(arena, offsetOf(location), compacted, length, lengthOf(location));
+                page.location[row] = (long) length << 32 | (location & 0xFFFFFFFFL);
+                length += lengthOf(location);
+                insertSlot(table, id, hashOf(compacted, page.location[row]));
+            } else if (references == 0) {
+                page.references[row] = FREE;
+                pushFree(id);
+            }
+        }
+        bytes = compacted;
+        bytesLength = length;
+        garbage = 0;
+        entries = live;
+        slots = table;
+    }
+
+    // Mesmo espalhamento do MyLinkedHashMap sobre o hashCode de String.
+    static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * hashCode de {@code text[from, to)}, sem criar a substring.
+     */
+    static int hash(String text, int from, int to) {
+        if (from == 0 && to == text.length()) {
+            // O texto inteiro: aproveita o hash que a String guarda.
+            return text.hashCode();
+        }
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + text.charAt(i);
+        }
+        return h;
+    }
+
+    private static int hashOf(byte[] arena, long location) {
+        int offset = offsetOf(location);
+        int end = offset + lengthOf(location);
+        if (!isLatin1(location)) {
+            return decode(arena, offset, end - offset, false).hashCode();
+        }
+        int h = 0;
+        while (offset < end) {
+            h = 31 * h + (arena[offset++] & 0xFF);
+        }
+        return h;
+    }
+
+    // Chamado sincronizado.
+    private int lookup(int h, String name) {
+        int[] table = slots;
+        byte[] arena = bytes;
+        int mask = table.length - 1;
+        int slot = spread(h) & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            if (matches(arena, getLocation(entry - 1), name, 0, name.length())) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NONE;
+    }
+
+    private static boolean matches(byte[] arena, long location, String text, int from, int to) {
+        int offset = offsetOf(location);
+        int end = offset + lengthOf(location);
+        if (isLatin1(location)) {
+            if (end - offset != to - from) {
+                return false;
+            }
+            for (int i = from; offset < end; i++, offset++) {
+                if ((arena[offset] & 0xFF) != text.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        int i = from;
+        while (offset < end) {
+            if (i == to) {
+                return false;
+            }
+            int b = arena[offset++] & 0xFF;
+            int c;
+            if (b >= 0xE0) {
+                c = ((b & 0x0F) << 12) | ((arena[offset++] & 0x3F) << 6) | (arena[offset++] & 0x3F);
+            } else if (b >= 0x80) {
+                c = ((b & 0x1F) << 6) | (arena[offset++] & 0x3F);
+            } else {
+                c = b;
+            }
+            if (c != text.charAt(i++)) {
+                return false;
+            }
+        }
+        return i == to;
+    }
+
+    // Chamado sincronizado; grava o nome no fim da arena e retorna a posição dele.
+    private long encode(String name) {
+        boolean latin1 = true;
+        int length = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            latin1 &= c <= 0xFF;
+            length += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+        if (latin1) {
+            length = name.length();
+        }
+        byte[] arena = bytes;
+        if (bytesLength + length > arena.length) {
+            long needed = (long) bytesLength + length;
+            if (needed > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Name arena is full");
+            }
+            byte[] grown = new byte[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, (long) arena.length * 2))];
+            System.arraycopy(arena, 0, grown, 0, bytesLength);
+            arena = grown;
+        }
+        int offset = bytesLength;
+        int position = offset;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (latin1 || c < 0x80) {
+                arena[position++] = (byte) c;
+            } else if (c < 0x800) {
+                arena[position++] = (byte) (0xC0 | (c >> 6));
+                arena[position++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                arena[position++] = (byte) (0xE0 | (c >> 12));
+                arena[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                arena[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        bytesLength = position;
+        if (arena != bytes) {
+            // Publica o vetor novo só depois de gravar o nome nele.
+            bytes = arena;
+        }
+        return (long) offset << 32 | length << 1 | (latin1 ? 0 : 1);
+    }
+
+    private int newId() {
+        if (freeCount > 0) {
+            return freeIds[--freeCount];
+        }
+        if (highWater == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Name arena is full");
+        }
+        int id = highWater++;
+        int p = InodeTable.pageOf(id);
+        if (pages[p] == null) {
+            pages[p] = new Page(InodeTable.pageRows(p));
+        }
+        return id;
+    }
+
+    private void pushFree(int id) {
+        if (freeCount == freeIds.length) {
+            int[] grown = new int[freeCount * 2];
+            System.arraycopy(freeIds, 0, grown, 0, freeCount);
+            freeIds = grown;
+        }
+        freeIds[freeCount++] = id;
+    }
+
+    private void addSlot(int id, int h) {
+        if ((entries + 1) * 2 > slots.length) {
+            int[] grown = new int[slots.length * 2];
+            byte[] arena = bytes;
+            for (int entry : slots) {
+                if (entry != 0) {
+                    insertSlot(grown, entry - 1, hashOf(arena, getLocation(entry - 1)));
+                }
+            }
+            slots = grown;
+        }
+        insertSlot(slots, id, h);
+        entries++;
+    }
+
+    private static void insertSlot(int[] table, int id, int h) {
+        int mask = table.length - 1;
+        int slot = spread(h) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = id + 1;
+    }
+
+    private static int slotCapacityFor(int entries) {
+        int capacity = 64;
+        while (capacity < entries * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
\ No newline at end of file
@@ -1,85 +1,229 @@
 package br.edu.fs.simulator;
-import br.edu.fs.simulator.util.MyStringBuilder;
-import br.edu.fs.simulator.util.MyArrayList;
 
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Arrays;
+
+/**
+ * Nó da árvore na API pública: uma referência para um inode de uma {@link InodeTable}, onde ficam
+ * os metadados. Dois objetos que apontam para o mesmo inode são iguais. Um nó criado sem pai fica
+ * numa tabela compartilhada por todos os nós soltos, onde custa só uma linha, que volta para a
+ * tabela quando o nó é coletado; quando ganha o primeiro filho, passa a ter uma tabela própria, e
+ * se for incluído num diretório de outra tabela é copiado (com a subárvore) para lá.
+ *
+ * Um nó removido com {@link DirectoryNode#removeChild(String)} deixa de valer: qualquer acesso por
+ * um objeto que ainda aponta para ele lança {@link IllegalStateException}.
+ */
 public abstract class Node {
-    protected String name;
-    protected DirectoryNode parent;
-    protected long createdAt;
-    protected long updatedAt;
-    protected NodeType type;
+    static final InodeTable DETACHED = new InodeTable();
+    // Nós soltos já coletados; as linhas deles são liberadas na próxima alocação em DETACHED.
+    private static final ReferenceQueue<Node> ABANDONED = new ReferenceQueue<>();
+    // Referência de cada linha em uso em DETACHED, pelo número do inode. Protegido pela trava de DETACHED.
+    private static DetachedRow[] detachedRows = new DetachedRow[64];
+
+    protected InodeTable table;
+    protected int inode;
+    // InodeTable.getSerial da linha quando o objeto passou a apontar para ela.
+    private int serial;
+    private String cachedPath;
+    private long cachedPathEpoch = -1;
+
+    private static final class DetachedRow extends PhantomReference<Node> {
+        final int inode;
+
+        DetachedRow(Node node, int inode) {
+            super(node, ABANDONED);
+            this.inode = inode;
+        }
+    }
 
     public Node(String name, DirectoryNode parent, NodeType type) {
-        this.name = name;
-        this.parent = parent;
-        this.type = type;
-        this.createdAt = System.currentTimeMillis();
-        this.updatedAt = this.createdAt;
+        if (parent != null) {
+            parent.checkLive();
+            parent.ownTable();
+            this.table = parent.table;
+            this.inode = table.allocate(parent.inode, type, name, System.currentTimeMillis());
+        } else {
+            this.table = DETACHED;
+            this.inode = allocateDetached(this, type, name);
+        }
+        this.serial = table.getSerial(inode);
+    }
+
+    Node(InodeTable table, int inode) {
+        this.table = table;
+        this.inode = inode;
+        this.serial = table.getSerial(inode);
+    }
+
+    private static int allocateDetached(Node node, NodeType type, String name) {
+        synchronized (DETACHED) {
+            reclaimDetached();
+            int inode = DETACHED.allocate(InodeTable.NONE, type, name, System.currentTimeMillis());
+            if (inode >= detachedRows.length) {
+                detachedRows = Arrays.copyOf(detachedRows, Math.max(inode + 1, detachedRows.length * 2));
+            }
+            detachedRows[inode] = new DetachedRow(node, inode);
+            return inode;
+        }
+    }
+
+    // Com a trava de DETACHED. Os nomes soltos também são descartados, como faz o FileSystemManager.
+    private static void reclaimDetached() {
+        for (Reference<? extends Node> ref = ABANDONED.poll(); ref != null; ref = ABANDONED.poll()) {
+            DetachedRow row = (DetachedRow) ref;
+            if (detachedRows[row.inode] == row) {
+                detachedRows[row.inode] = null;
+                DETACHED.free(row.inode);
+            }
+        }
+        NameArena names = DETACHED.getNames();
+        if (names.shouldCompact()) {
+            names.compact();
+        }
+    }
+
+    // O nó saiu da tabela compartilhada: a linha é liberada já, sem esperar a coleta.
+    private static void releaseDetached(int inode) {
+        synchronized (DETACHED) {
+            DetachedRow row = detachedRows[inode];
+            detachedRows[inode] = null;
+            row.clear();
+            DETACHED.free(inode);
+        }
+    }
+
+    /**
+     * Linhas em uso na tabela dos nós soltos, depois de liberar as dos que já foram coletados.
+     */
+    static int detachedCount() {
+        synchronized (DETACHED) {
+            reclaimDetached();
+            return DETACHED.size();
+        }
+    }
+
+    // Falha se a linha foi liberada (e talvez reaproveitada) depois que este objeto passou a apontar para ela.
+    void checkLive() {
+        if (table.getSerial(inode) != serial) {
+            throw new IllegalStateException("Node was removed from its directory");
+        }
+    }
+
+    static Node of(InodeTable table, int inode) {
+        return table.isDirectory(inode) ? new DirectoryNode(table, inode) : new FileNode(table, inode);
     }
 
     public String getName() {
-        return name;
+        checkLive();
+        return table.getName(inode);
     }
 
     public void setName(String name) {
-        this.name = name;
-        this.updatedAt = System.currentTimeMillis();
+        checkLive();
+        DirectoryNode parent = getParent();
+        if (parent != null) {
+            if (!parent.renameChild(this, name)) {
+                return;
+            }
+        } else {
+            table.setName(inode, name);
+        }
+        table.setModified(inode, System.currentTimeMillis());
     }
 
     public DirectoryNode getParent() {
-        return parent;
+        checkLive();
+        int parent = table.getParent(inode);
+        return parent == InodeTable.NONE ? null : new DirectoryNode(table, parent);
     }
 
     public void setParent(DirectoryNode parent) {
-        this.parent = parent;
+        checkLive();
+        if (parent != null) {
+            parent.checkLive();
+            parent.ownTable();
+        }
+        if (parent == null) {
+            table.setParent(inode, InodeTable.NONE);
+        } else if (parent.table != table) {
+            moveTo(parent.table, parent.inode);
+        } else {
+            table.setParent(inode, parent.inode);
+        }
     }
 
     public long getCreatedAt() {
-        return createdAt;
+        checkLive();
+        return table.getCreated(inode);
     }
 
     public long getUpdatedAt() {
-        return updatedAt;
+        checkLive();
+        return table.getModified(inode);
     }
 
     public void setUpdatedAt(long updatedAt) {
-        this.updatedAt = updatedAt;
+        checkLive();
+        table.setModified(inode, updatedAt);
     }
 
     public NodeType getType() {
-        return type;
+        checkLive();
+        return table.getType(inode);
     }
 
     public String getPath() {
-        if (parent == null) {
-            return "/";
+        checkLive();
+        long epoch = table.getPathEpoch();
+        if (cachedPath != null && cachedPathEpoch == epoch) {
+            return cachedPath;
         }
-        MyStringBuilder pathBuilder = new MyStringBuilder();
-        Node current = this;
-        MyArrayList<String> pathParts = new MyArrayList<>();
+        cachedPath = table.getPath(inode);
+        cachedPathEpoch = epoch;
+        return cachedPath;
+    }
 
-        while (current != null && current.getParent() != null) {
-            pathParts.add(0, current.getName());
-            current = current.getParent();
+    // Um nó solto sai da tabela compartilhada, para uma só dele, antes de ganhar filhos.
+    void ownTable() {
+        if (table == DETACHED) {
+            moveTo(new InodeTable(), InodeTable.NONE);
         }
+    }
 
-        if (pathParts.isEmpty() && this.getName().equals("/")) {
-            return "/";
+    // Copia o nó para outra tabela, com o pai dado, e passa a apontar para a cópia. A linha de um
+    // nó solto é liberada; ninguém mais aponta para ela.
+    void moveTo(InodeTable target, int parentInode) {
+        InodeTable source = table;
+        int old = inode;
+        int copy = target.allocate(parentInode, table.getType(inode), table.getName(inode), table.getCreated(inode));
+        target.setModified(copy, table.getModified(inode));
+        copyPayloadTo(target, copy);
+        this.table = target;
+        this.inode = copy;
+        this.serial = target.getSerial(copy);
+        this.cachedPath = null;
+        if (source == DETACHED) {
+            releaseDetached(old);
         }
+    }
 
-        for (int i = 0; i < pathParts.size(); i++) {
-            pathBuilder.append("/");
-            pathBuilder.append(pathParts.get(i));
-        }
+    abstract void copyPayloadTo(InodeTable target, int copy);
 
-        if (pathBuilder.length() == 0) {
-            if (!this.name.equals("/")) return "/" + this.name;
-            else return "/";
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Node)) {
+            return false;
         }
-
-        return pathBuilder.toString();
+        Node node = (Node) other;
+        return table == node.table && inode == node.inode;
     }
 
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(table) * 31 + inode;
+    }
 
     public abstract int getSize();
 }
\ No newline at end of file
@@ -0,0 +1,224 @@
+package br.edu.fs.simulator;
+
+/**
+ * Cache limitado caminho -> diretório (dentry cache) com despejo LRU.
+ * Entradas negativas guardam o marcador {@code notFound} passado no construtor.
+ * Todos os métodos são sincronizados. Quem resolve um caminho fora do cache deve ler
+ * {@link #version()} antes e gravar com {@link #put(String, Object, long)}: se houve alguma
+ * invalidação no meio, o resultado pode estar velho e não é guardado.
+ */
+class PathCache<D> {
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private static final class Entry<D> {
+        final String path;
+        final int hash;
+        D value;
+        Entry<D> next;
+        Entry<D> before;
+        Entry<D> after;
+
+        Entry(String path, int hash, D value) {
+            this.path = path;
+            this.hash = hash;
+            this.value = value;
+        }
+    }
+
+    private final D notFound;
+    private final int capacity;
+    private final Entry<D>[] buckets;
+    private final Entry<D> head;
+    private int size;
+    private long version;
+
+    private long hits;
+    private long negativeHits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    PathCache(D notFound) {
+        this(notFound, DEFAULT_CAPACITY);
+    }
+
+    @SuppressWarnings("unchecked")
+    PathCache(D notFound, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Illegal Capacity: " + capacity);
+        }
+        this.notFound = notFound;
+        this.capacity = capacity;
+        int bucketCount = 1;
+        while (bucketCount < capacity * 2) {
+            bucketCount <<= 1;
+        }
+        this.buckets = (Entry<D>[]) new Entry<?>[bucketCount];
+        this.head = new Entry<>(null, 0, null);
+        head.before = head;
+        head.after = head;
+    }
+
+    /**
+     * Retorna o diretório em cache, {@code notFound} para uma entrada negativa
+     * ou {@code null} quando o caminho não está no cache.
+     */
+    synchronized D get(String path) {
+        Entry<D> e = find(path, hash(path));
+        if (e == null) {
+            misses++;
+            return null;
+        }
+        if (e.value == notFound) {
+            negativeHits++;
+        } else {
+            hits++;
+        }
+        unlink(e);
+        linkLast(e);
+        return e.value;
+    }
+
+    synchronized long version() {
+        return version;
+    }
+
+    synchronized void put(String path, D value, long expectedVersion) {
+        if (version == expectedVersion) {
+            put(path, value);
+        }
+    }
+
+    synchronized void put(String path, D value) {
+        int h = hash(path);
+        Entry<D> e = find(path, h);
+        if (e != null) {
+            e.value = value;
+            unlink(e);
+            linkLast(e);
+            return;
+        }
+        if (size == capacity) {
+            removeEntry(head.after);
+            evictions++;
+        }
+        e = new Entry<>(path, h, value);
+        int b = h & (buckets.length - 1);
+        e.next = buckets[b];
+        buckets[b] = e;
+        linkLast(e);
+        size++;
+    }
+
+    synchronized void invalidate(String path) {
+        version++;
+        Entry<D> e = find(path, hash(path));
+        if (e != null) {
+            removeEntry(e);
+            invalidations++;
+        }
+    }
+
+    /**
+     * Remove o caminho e todas as entradas abaixo dele (usado em rm e renomeação).
+     */
+    synchronized void invalidateSubtree(String path) {
+        version++;
+        String prefix = path.endsWith("/") ? path : path + "/";
+        Entry<D> e = head.after;
+        while (e != head) {
+            Entry<D> next = e.after;
+            if (e.path.equals(path) || e.path.startsWith(prefix)) {
+                removeEntry(e);
+                invalidations++;
+            }
+            e = next;
+        }
+    }
+
+    synchronized void clear() {
+        version++;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = null;
+        }
+        head.before = head;
+        head.after = head;
+        size = 0;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getNegativeHits() {
+        return negativeHits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    synchronized long getEvictions() {
+        return evictions;
+    }
+
+    synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    private Entry<D> find(String path, int h) {
+        Entry<D> e = buckets[h & (buckets.length - 1)];
+        while (e != null) {
+            if (e.hash == h && e.path.equals(path)) {
+                return e;
+            }
+            e = e.next;
+        }
+        return null;
+    }
+
+    private void removeEntry(Entry<D> e) {
+        int b = e.hash & (buckets.length - 1);
+        Entry<D> prev = null;
+        Entry<D> current = buckets[b];
+        while (current != null && current != e) {
+            prev = current;
+            current = current.next;
+        }
+        if (current == null) {
+            return;
+        }
+        if (prev == null) {
+            buckets[b] = e.next;
+        } else {
+            prev.next = e.next;
+        }
+        unlink(e);
+        size--;
+    }
+
+    private void linkLast(Entry<D> e) {
+        e.before = head.before;
+        e.after = head;
+        head.before.after = e;
+        head.before = e;
+    }
+
+    private void unlink(Entry<D> e) {
+        e.before.after = e.after;
+        e.after.before = e.before;
+    }
+
+    private static int hash(String path) {
+        int h = path.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
\ No newline at end of file
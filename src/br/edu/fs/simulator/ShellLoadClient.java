@@ -0,0 +1,148 @@
+package br.edu.fs.simulator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cliente de carga do {@link ShellServer}: abre várias conexões em modo {@code MODE FRAMED}, cada
+ * uma no próprio diretório, e repete create, write, cat, ls e rm. Cada comando espera a resposta
+ * completa antes do próximo; o relatório mostra operações por segundo somadas e a latência
+ * (p50, p99 e máxima) de ida e volta.
+ *
+ * Uso: java br.edu.fs.simulator.ShellLoadClient [host] [porta] [conexoes] [iteracoes_por_conexao]
+ */
+public class ShellLoadClient {
+    private static final int OPS_PER_ITERATION = 5;
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "127.0.0.1";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : ShellServer.DEFAULT_PORT;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 2_000;
+
+        long[][] latencies = new long[connections][];
+        CountDownLatch ready = new CountDownLatch(connections);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        ExecutorService executor = ShellServer.newVirtualThreadExecutor();
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(connections);
+        }
+        String prefix = "load" + Long.toString(System.nanoTime() & 0xFFFFFF, 36);
+
+        for (int c = 0; c < connections; c++) {
+            int id = c;
+            executor.execute(() -> {
+                boolean counted = false;
+                try (Connection conn = new Connection(host, port)) {
+                    String dir = prefix + "-" + id;
+                    conn.send("mkdir " + dir);
+                    conn.send("cd " + dir);
+                    long[] samples = new long[iterations * OPS_PER_ITERATION];
+                    ready.countDown();
+                    counted = true;
+                    start.await();
+                    int n = 0;
+                    for (int i = 0; i < iterations; i++) {
+                        String name = "f" + (i & 63);
+                        samples[n++] = conn.send("create " + name);
+                        samples[n++] = conn.send("write -a " + name + " conteudo " + i);
+                        samples[n++] = conn.send("cat " + name);
+                        samples[n++] = conn.send("ls");
+                        samples[n++] = conn.send("rm " + name);
+                    }
+                    latencies[id] = samples;
+                    conn.send("cd ..");
+                    conn.send("rm " + dir);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                    if (!counted) {
+                        ready.countDown();
+                    }
+                }
+            });
+        }
+        ready.await();
+        long begin = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+            // espera as conexões terminarem
+        }
+        long elapsed = System.nanoTime() - begin;
+        if (failure.get() != null) {
+            throw new IllegalStateException("Connection failed", failure.get());
+        }
+
+        long[] all = new long[connections * iterations * OPS_PER_ITERATION];
+        int pos = 0;
+        for (long[] samples : latencies) {
+            System.arraycopy(samples, 0, all, pos, samples.length);
+            pos += samples.length;
+        }
+        Arrays.sort(all);
+        System.out.println(connections + " conexões, " + iterations + " iterações (" + OPS_PER_ITERATION + " comandos) cada");
+        System.out.println(String.format("  %,.0f ops/s", all.length * 1_000_000_000.0 / elapsed));
+        System.out.println(String.format("  latência p50 %.1f us, p99 %.1f us, máx %.1f us", percentile(all, 0.50) / 1000.0,
+                percentile(all, 0.99) / 1000.0, all[all.length - 1] / 1000.0));
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /**
+     * Conexão em modo enquadrado: cada resposta termina com uma linha {@code \u0004}.
+     */
+    private static final class Connection implements AutoCloseable {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final Writer out;
+
+        Connection(String host, int port) throws IOException {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            // A saudação e o primeiro prompt vêm antes do modo ser escolhido; o prompt não tem
+            // quebra de linha, então a confirmação chega grudada nele.
+            send(ShellServer.FRAMED_MODE);
+        }
+
+        /**
+         * Envia um comando, descarta a resposta e devolve o tempo de ida e volta em nanossegundos.
+         */
+        long send(String command) throws IOException {
+            long begin = System.nanoTime();
+            out.write(command);
+            out.write('\n');
+            out.flush();
+            String line;
+            do {
+                line = in.readLine();
+                if (line == null) {
+                    throw new IOException("Connection closed by server");
+                }
+            } while (line.isEmpty() || line.charAt(line.length() - 1) != ShellServer.END_OF_RESPONSE);
+            return System.nanoTime() - begin;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,224 @@
+package br.edu.fs.simulator;
+
+import br.edu.fs.simulator.util.SimpleConsoleReader;
+
+import javax.management.JMException;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servidor TCP do shell: cada conexão é uma sessão própria (diretório atual independente) sobre
+ * um único {@link FileSystemManager} compartilhado, atendida por uma thread virtual quando a JVM
+ * oferece (Java 21+) ou por um pool de threads comum caso contrário.
+ *
+ * A saída de cada comando é acumulada num buffer da sessão e enviada de uma vez, já fora dos
+ * locks do gerenciador. Se a primeira linha recebida for {@code MODE FRAMED}, cada resposta termina com uma
+ * linha contendo apenas {@code \u0004} em vez do prompt, o que facilita clientes automatizados.
+ *
+ * Uso: java br.edu.fs.simulator.ShellServer [porta] [--wal <diretório>]
+ * Sem {@code --wal}, o sistema fica só em memória.
+ */
+public class ShellServer {
+    public static final int DEFAULT_PORT = 7070;
+    public static final String FRAMED_MODE = "MODE FRAMED";
+    public static final char END_OF_RESPONSE = '\u0004';
+
+    private final FileSystemManager fsManager;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private final AtomicInteger sessions = new AtomicInteger();
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private volatile ServerSocket serverSocket;
+
+    public ShellServer(FileSystemManager fsManager) {
+        this.fsManager = fsManager;
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Uma thread virtual por tarefa (Java 21+), ou {@code null} se a JVM não oferecer. A chamada é
+     * feita por reflexão para que o código continue compilando e rodando em JDKs anteriores.
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public void bind(int port) throws IOException {
+        ServerSocket socket = new ServerSocket();
+        socket.setReuseAddress(true);
+        socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        serverSocket = socket;
+    }
+
+    /**
+     * Aceita conexões até {@link #close()}.
+     */
+    public void serve() {
+        while (!serverSocket.isClosed()) {
+            Socket client;
+            try {
+                client = serverSocket.accept();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Error accepting connection: " + e.getMessage());
+                }
+                continue;
+            }
+            executor.execute(() -> handle(client));
+        }
+    }
+
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            System.err.println("Error closing server socket: " + e.getMessage());
+        }
+        // Fecha as conexões abertas para liberar as sessões bloqueadas na leitura.
+        for (Socket client : clients) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                // já fechada
+            }
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handle(Socket client) {
+        int id = sessions.incrementAndGet();
+        ByteArrayOutputStream response = new ByteArrayOutputStream(1024);
+        PrintStream responseOut = new PrintStream(response, false, StandardCharsets.UTF_8);
+        clients.add(client);
+        try (Socket socket = client) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 16 * 1024);
+            FileSystemSimulatorShell shell = new FileSystemSimulatorShell(fsManager, fsManager.newSession(), responseOut);
+            boolean framed = false;
+
+            out.write(("Sessão " + id + ". Digite 'help' para comandos.\n" + shell.getPrompt()).getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            boolean first = true;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (first && line.trim().equals(FRAMED_MODE)) {
+                    framed = true;
+                    first = false;
+                    out.write(END_OF_RESPONSE);
+                    out.write('\n');
+                    out.flush();
+                    continue;
+                }
+                first = false;
+
+                boolean running = shell.execute(line);
+                responseOut.flush();
+                response.writeTo(out);
+                response.reset();
+                if (!running) {
+                    break;
+                }
+                if (framed) {
+                    out.write(END_OF_RESPONSE);
+                    out.write('\n');
+                } else {
+                    out.write(shell.getPrompt().getBytes(StandardCharsets.UTF_8));
+                }
+                out.flush();
+            }
+            out.flush();
+        } catch (IOException e) {
+            // Conexão encerrada pelo cliente no meio de uma resposta.
+        } catch (RuntimeException e) {
+            System.err.println("Session " + id + " failed: " + e);
+        } finally {
+            clients.remove(client);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = DEFAULT_PORT;
+        String walDir = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--wal") && i + 1 < args.length) {
+                walDir = args[++i];
+            } else {
+                port = Integer.parseInt(args[i]);
+            }
+        }
+
+        FileSystemManager fsManager = walDir != null ? FileSystemManager.persistent(Paths.get(walDir)) : new FileSystemManager();
+        for (String notice : fsManager.takeNotices()) {
+            System.out.println(notice);
+        }
+        try {
+            fsManager.getMetrics().registerMBean("server");
+        } catch (JMException e) {
+            System.err.println("Aviso: métricas não registradas no JMX: " + e.getMessage());
+        }
+        ShellServer server = new ShellServer(fsManager);
+        server.bind(port);
+        Thread acceptor = new Thread(server::serve, "shell-server-accept");
+        acceptor.start();
+        System.out.println("Servidor do shell em " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort()
+                + (server.usesVirtualThreads() ? " (threads virtuais)" : " (pool de threads)") + ". Digite 'quit' para encerrar.");
+
+        // Encerramento pelo console do servidor. Sem console (entrada fechada) o servidor segue até
+        // a JVM ser encerrada; nesse caso os gravadores do journal esvaziam as filas no próprio hook.
+        SimpleConsoleReader reader = new SimpleConsoleReader();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.trim().equals("quit")) {
+                server.close();
+                fsManager.shutdown();
+                for (String notice : fsManager.takeNotices()) {
+                    System.out.println(notice);
+                }
+                System.out.println("Servidor encerrado.");
+                return;
+            }
+        }
+        acceptor.join();
+    }
+}
\ No newline at end of file
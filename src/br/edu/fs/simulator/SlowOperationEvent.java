@@ -0,0 +1,32 @@
+package br.edu.fs.simulator;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Evento do JDK Flight Recorder para uma operação do {@link FileSystemManager} que passou do
+ * limite de {@link FsMetrics#getSlowThresholdMillis()}. A latência vem da medição das métricas,
+ * não da duração do evento, que é criado depois da operação terminar.
+ */
+@Name("br.edu.fs.simulator.SlowOperation")
+@Label("Operação lenta")
+@Category("Simulador de sistema de arquivos")
+@Description("Operação do FileSystemManager acima do limite de lentidão das métricas")
+class SlowOperationEvent extends Event {
+    @Label("Operação")
+    String operation;
+
+    @Label("Nome ou caminho")
+    String subject;
+
+    @Label("Status")
+    String status;
+
+    @Label("Latência")
+    @Timespan(Timespan.NANOSECONDS)
+    long latency;
+}
\ No newline at end of file
@@ -0,0 +1,78 @@
+package br.edu.fs.simulator;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cópia somente leitura da árvore, criada em tempo constante por
+ * {@link FileSystemManager#createSnapshot(FileSystemManager.Session, String)}. Guarda uma
+ * {@link InodeTable.Version}: a árvore continua sendo alterada, e o que ela muda depois disso é
+ * copiado na hora da mudança. Ler um snapshot não usa travas da árvore, então não atrasa quem escreve.
+ */
+public final class Snapshot {
+    private final String name;
+    private final long created;
+    final InodeTable.Version version;
+    final int root;
+    private final long bytes;
+    private final long files;
+    private final long directories;
+    // Leituras em andamento: um snapshot removido durante uma leitura só é descartado no fim dela.
+    private final AtomicInteger readers = new AtomicInteger();
+    private volatile boolean deleted;
+    // Marcado (com o namespace exclusivo) quando a versão sai da tabela.
+    boolean dropped;
+
+    Snapshot(String name, long created, InodeTable.Version version, int root, long bytes, long files, long directories) {
+        this.name = name;
+        this.created = created;
+        this.version = version;
+        this.root = root;
+        this.bytes = bytes;
+        this.files = files;
+        this.directories = directories;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * Nós da árvore no momento do snapshot, contando a raiz.
+     */
+    public int getNodeCount() {
+        return version.size();
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getFileCount() {
+        return files;
+    }
+
+    public long getDirectoryCount() {
+        return directories;
+    }
+
+    // Começa uma leitura; false se o snapshot já foi removido. Sempre seguido de unpin.
+    boolean pin() {
+        readers.incrementAndGet();
+        return !deleted;
+    }
+
+    // true se era a última leitura de um snapshot removido: quem chama o descarta.
+    boolean unpin() {
+        return readers.decrementAndGet() == 0 && deleted;
+    }
+
+    // true se não há leituras e quem chama já pode descartá-lo.
+    boolean delete() {
+        deleted = true;
+        return readers.get() == 0;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,100 @@
+package br.edu.fs.simulator;
+
+import java.util.Arrays;
+
+/**
+ * Diferenças entre dois snapshots (ou um snapshot e a árvore atual), preenchidas por
+ * {@link FileSystemManager#diffSnapshots(FileSystemManager.Session, String, String, SnapshotDiff)}
+ * e percorridas em ordem de caminho. De uma subárvore criada ou removida inteira só aparece a raiz;
+ * os totais contam todos os nós. Um nó movido ou renomeado aparece uma vez, com os dois caminhos.
+ */
+public class SnapshotDiff {
+    public enum Change {
+        ADDED, REMOVED, MODIFIED, MOVED
+    }
+
+    private Change[] changes = new Change[16];
+    private String[] paths = new String[16];
+    private String[] oldPaths = new String[16];
+    private Integer[] order = new Integer[0];
+    private final long[] counts = new long[Change.values().length];
+    private int size;
+    private int position = -1;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean next() {
+        if (position + 1 >= size) {
+            return false;
+        }
+        position++;
+        return true;
+    }
+
+    public Change change() {
+        return changes[order[position]];
+    }
+
+    /**
+     * Caminho do nó: o de depois, exceto para {@link Change#REMOVED}.
+     */
+    public String path() {
+        return paths[order[position]];
+    }
+
+    /**
+     * Caminho de antes de um {@link Change#MOVED}; null nos outros casos.
+     */
+    public String oldPath() {
+        return oldPaths[order[position]];
+    }
+
+    /**
+     * Nós com a mudança dada, inclusive os que estão dentro de subárvores criadas ou removidas.
+     */
+    public long count(Change change) {
+        return counts[change.ordinal()];
+    }
+
+    public void rewind() {
+        position = -1;
+    }
+
+    void reset() {
+        Arrays.fill(paths, 0, size, null);
+        Arrays.fill(oldPaths, 0, size, null);
+        Arrays.fill(counts, 0);
+        this.size = 0;
+        this.position = -1;
+    }
+
+    void count(Change change, long nodes) {
+        counts[change.ordinal()] += nodes;
+    }
+
+    void add(Change change, String path, String oldPath) {
+        if (size == paths.length) {
+            changes = Arrays.copyOf(changes, size * 2);
+            paths = Arrays.copyOf(paths, size * 2);
+            oldPaths = Arrays.copyOf(oldPaths, size * 2);
+        }
+        changes[size] = change;
+        paths[size] = path;
+        oldPaths[size] = oldPath;
+        size++;
+    }
+
+    // Chamado depois dos add; ordena por caminho sem mexer nos vetores.
+    void sort() {
+        order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int byPath = paths[a].compareTo(paths[b]);
+            return byPath != 0 ? byPath : changes[a].compareTo(changes[b]);
+        });
+    }
+}
\ No newline at end of file
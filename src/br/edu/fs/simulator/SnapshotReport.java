@@ -0,0 +1,71 @@
+package br.edu.fs.simulator;
+
+import java.util.Arrays;
+
+/**
+ * Snapshots existentes, em ordem de criação, preenchidos por
+ * {@link FileSystemManager#listSnapshots(SnapshotReport)}. Além do que cada um tinha ao ser
+ * criado, traz quanto ele ocupa sozinho: a memória das folhas da tabela, listas de filhos e
+ * conteúdos que nem a árvore atual nem outro snapshot compartilham, e os bytes do dispositivo
+ * que só ele segura. É o que removê-lo devolveria.
+ */
+public class SnapshotReport {
+    private Snapshot[] snapshots = new Snapshot[4];
+    private long[] uniqueBytes = new long[4];
+    private long[] uniqueDiskBytes = new long[4];
+    private int size;
+    private int position = -1;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean next() {
+        if (position + 1 >= size) {
+            return false;
+        }
+        position++;
+        return true;
+    }
+
+    public Snapshot snapshot() {
+        return snapshots[position];
+    }
+
+    /**
+     * Memória estimada (heap) que só este snapshot usa.
+     */
+    public long uniqueBytes() {
+        return uniqueBytes[position];
+    }
+
+    /**
+     * Bytes de blocos do dispositivo que só este snapshot usa.
+     */
+    public long uniqueDiskBytes() {
+        return uniqueDiskBytes[position];
+    }
+
+    public void rewind() {
+        position = -1;
+    }
+
+    void reset(int expected) {
+        if (snapshots.length < expected) {
+            snapshots = new Snapshot[expected];
+            uniqueBytes = new long[expected];
+            uniqueDiskBytes = new long[expected];
+        } else {
+            Arrays.fill(snapshots, 0, size, null);
+        }
+        this.size = 0;
+        this.position = -1;
+    }
+
+    void add(Snapshot snapshot, long uniqueBytes, long uniqueDiskBytes) {
+        this.snapshots[size] = snapshot;
+        this.uniqueBytes[size] = uniqueBytes;
+        this.uniqueDiskBytes[size] = uniqueDiskBytes;
+        size++;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,687 @@
+package br.edu.fs.simulator;
+
+import br.edu.fs.simulator.util.TextStorage;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice invertido do conteúdo dos arquivos de uma {@link InodeTable}: para cada termo, os inodes
+ * dos arquivos em que ele aparece. Termos são as sequências de letras e dígitos, em minúsculas e
+ * cortadas em {@value #MAX_TERM} caracteres; ficam numa {@link NameArena} própria, em que as
+ * referências de um termo são os arquivos que o contêm.
+ *
+ * As listas de inodes de cada termo são vetores de int ordenados. Um termo que só aparece num
+ * arquivo, que é o caso da maioria, guarda o inode numa coluna, sem vetor. Cada arquivo guarda
+ * também quantas vezes cada termo aparece nele: um anexo só lê o texto novo (e a palavra que ele
+ * emenda), e uma reescrita só mexe nas listas dos termos que entraram ou saíram.
+ *
+ * O índice tem um limite de memória. Um arquivo que o ultrapassaria fica de fora
+ * ({@link #getUnindexed()}), e a busca lê o conteúdo dele, até que seja reescrito com o índice
+ * abaixo do limite. Atualizações são exclusivas; buscas podem rodar juntas.
+ */
+public final class TextIndex {
+    public static final int MAX_TERM = 64;
+    public static final long DEFAULT_BUDGET = 64L << 20;
+
+    private static final int CHUNK = 4096;
+    // Estimativas do heap: cabeçalho de vetor e, por termo distinto, as colunas da arena.
+    private static final int ARRAY_HEADER = 16;
+    private static final int ARENA_BYTES_PER_TERM = 16;
+
+    /**
+     * Recebe os inodes encontrados por {@link TextIndex#search(String[], Hits)}, com o índice
+     * travado para leitura: nenhum deles é liberado enquanto a busca não termina.
+     */
+    interface Hits {
+        void found(int file);
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NameArena terms = new NameArena();
+    // Por id de termo: em quantos arquivos ele aparece, o inode quando é um só e a lista quando são mais.
+    private int[] postingCounts = new int[64];
+    private int[] singles = new int[64];
+    private int[][] postings = new int[64][];
+    // Por inode: termos do arquivo, ou null (sem termos ou fora do índice).
+    private FileTerms[] files = new FileTerms[64];
+    // Inodes dos arquivos que ficaram fora do índice.
+    private long[] unindexed = new long[1];
+    private int unindexedCount;
+    private int indexedFiles;
+    private long postingEntries;
+    // Listas e mapas dos arquivos; as colunas e a arena são somadas em getMemoryBytes.
+    private long bytes;
+    private long budget;
+
+    TextIndex(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Termos de um texto (por exemplo, de uma consulta), sem repetições, na ordem em que aparecem.
+     */
+    public static String[] terms(String text) {
+        String[] found = new String[4];
+        int count = 0;
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (isTermChar(c)) {
+                if (term.length() < MAX_TERM) {
+                    term.append(Character.toLowerCase(c));
+                }
+            } else if (term.length() > 0) {
+                String next = term.toString();
+                term.setLength(0);
+                boolean repeated = false;
+                for (int j = 0; j < count && !repeated; j++) {
+                    repeated = found[j].equals(next);
+                }
+                if (!repeated) {
+                    if (count == found.length) {
+                        found = Arrays.copyOf(found, count * 2);
+                    }
+                    found[count++] = next;
+                }
+            }
+        }
+        return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Se o conteúdo tem todos os termos; usado para os arquivos fora do índice.
+     */
+    public static boolean containsAll(TextStorage content, String[] wanted) {
+        boolean[] seen = new boolean[wanted.length];
+        int missing = wanted.length;
+        TermReader reader = new TermReader(content, 0, content.length(), false);
+        for (String term = reader.next(); term != null && missing > 0; term = reader.next()) {
+            for (int i = 0; i < wanted.length; i++) {
+                if (!seen[i] && wanted[i].equals(term)) {
+                    seen[i] = true;
+                    missing--;
+                }
+            }
+        }
+        return missing == 0;
+    }
+
+    private static boolean isTermChar(char c) {
+        return Character.isLetterOrDigit(c);
+    }
+
+    // Caractere a caractere, como no TermReader (String.toLowerCase depende da localidade).
+    private static String lowerCase(String word) {
+        char[] chars = word.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Reindexa o arquivo inteiro depois de uma mudança qualquer no conteúdo.
+     */
+    public void replace(int file, TextStorage content) {
+        lock.writeLock().lock();
+        try {
+            FileTerms old = fileTerms(file);
+            setUnindexed(file, false);
+            if (getMemoryBytes() >= budget) {
+                exclude(file, old);
+                return;
+            }
+            FileTerms next = new FileTerms();
+            addTerms(new TermReader(content, 0, content.length(), false), next, InodeTable.NONE);
+            if (old != null) {
+                for (int slot = 0; slot < old.keys.length; slot++) {
+                    int id = old.keys[slot] - 1;
+                    if (id >= 0) {
+                        if (next.get(id) == 0) {
+                            removePosting(id, file);
+                        }
+                        terms.release(id);
+                    }
+                }
+            }
+            for (int slot = 0; slot < next.keys.length; slot++) {
+                int id = next.keys[slot] - 1;
+                if (id >= 0 && (old == null || old.get(id) == 0)) {
+                    addPosting(id, file);
+                }
+            }
+            setFileTerms(file, old, next.size == 0 ? null : next);
+            if (getMemoryBytes() > budget) {
+                exclude(file, files[file]);
+            }
+            maybeCompact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Inclui o texto anexado a partir de {@code from}; se ele continua a última palavra do
+     * conteúdo anterior, essa palavra sai do índice e entra a emendada.
+     */
+    public void append(int file, TextStorage content, int from) {
+        lock.writeLock().lock();
+        try {
+            if (isUnindexed(file)) {
+                return;
+            }
+            FileTerms map = fileTerms(file);
+            if (getMemoryBytes() >= budget) {
+                exclude(file, map);
+                return;
+            }
+            FileTerms before = map;
+            if (map == null) {
+                map = new FileTerms();
+            }
+            long mapBytes = map.bytes();
+            int start = from;
+            boolean skip = false;
+            if (from > 0 && from < content.length() && isTermChar(content.charAt(from)) && isTermChar(content.charAt(from - 1))) {
+                int s = from;
+                while (s > 0 && from - s < MAX_TERM && isTermChar(content.charAt(s - 1))) {
+                    s--;
+                }
+                if (from - s >= MAX_TERM) {
+                    // A palavra já tinha o tamanho máximo: o termo dela não muda com o anexo.
+                    skip = true;
+                } else {
+                    int id = terms.find(lowerCase(content.read(s, from - s)));
+                    if (id != NameArena.NONE && map.get(id) > 0) {
+                        decrement(map, id, file);
+                    }
+                    start = s;
+                }
+            }
+            addTerms(new TermReader(content, start, content.length(), skip), map, file);
+            if (before == null) {
+                setFileTerms(file, null, map.size == 0 ? null : map);
+            } else {
+                bytes += map.bytes() - mapBytes;
+                if (map.size == 0) {
+                    setFileTerms(file, map, null);
+                }
+            }
+            if (getMemoryBytes() > budget) {
+                exclude(file, files[file]);
+            }
+            maybeCompact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * O arquivo {@code to} recebeu uma cópia do conteúdo de {@code from}.
+     */
+    public void copy(int from, int to) {
+        lock.writeLock().lock();
+        try {
+            FileTerms source = fileTerms(from);
+            if (isUnindexed(from) || (source != null && getMemoryBytes() + source.bytes() > budget)) {
+                exclude(to, fileTerms(to));
+                return;
+            }
+            FileTerms old = fileTerms(to);
+            if (old != null) {
+                exclude(to, old);
+                setUnindexed(to, false);
+            }
+            if (source == null) {
+                return;
+            }
+            FileTerms copy = source.copy();
+            for (int slot = 0; slot < copy.keys.length; slot++) {
+                int id = copy.keys[slot] - 1;
+                if (id >= 0) {
+                    terms.retain(id);
+                    addPosting(id, to);
+                }
+            }
+            setFileTerms(to, null, copy);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tira o arquivo do índice; chamado quando o inode é liberado.
+     */
+    public void remove(int file) {
+        lock.writeLock().lock();
+        try {
+            FileTerms old = fileTerms(file);
+            if (old != null) {
+                dropTerms(file, old);
+                setFileTerms(file, old, null);
+            }
+            setUnindexed(file, false);
+            maybeCompact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Entrega a {@code hits}, em ordem de inode, os arquivos do índice que têm todos os termos
+     * (já normalizados, como em {@link #terms(String)}). Os arquivos fora do índice não entram.
+     */
+    void search(String[] wanted, Hits hits) {
+        if (wanted.length == 0) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            int[] ids = new int[wanted.length];
+            for (int i = 0; i < wanted.length; i++) {
+                ids[i] = terms.find(wanted[i]);
+                if (ids[i] == NameArena.NONE || ids[i] >= postingCounts.length || postingCounts[ids[i]] == 0) {
+                    return;
+                }
+            }
+            // A menor lista guia a interseção; as outras só respondem se contêm cada candidato.
+            for (int i = 1; i < ids.length; i++) {
+                for (int j = i; j > 0 && postingCounts[ids[j]] < postingCounts[ids[j - 1]]; j--) {
+                    int swap = ids[j];
+                    ids[j] = ids[j - 1];
+                    ids[j - 1] = swap;
+                }
+            }
+            int first = ids[0];
+            int count = postingCounts[first];
+            int[] from = new int[ids.length];
+            for (int c = 0; c < count; c++) {
+                int file = count == 1 ? singles[first] : postings[first][c];
+                boolean all = true;
+                for (int i = 1; i < ids.length && all; i++) {
+                    int position = find(ids[i], file, from[i]);
+                    all = position >= 0;
+                    from[i] = position >= 0 ? position + 1 : -position - 1;
+                }
+                if (all) {
+                    hits.found(file);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Posição do inode na lista do termo, procurando a partir de from; negativa como em binarySearch.
+    private int find(int id, int file, int from) {
+        int count = postingCounts[id];
+        if (count == 1) {
+            return singles[id] == file ? 0 : singles[id] < file ? -2 : -1;
+        }
+        return Arrays.binarySearch(postings[id], Math.min(from, count), count, file);
+    }
+
+    /**
+     * Inodes dos arquivos que ficaram fora do índice.
+     */
+    public int[] getUnindexed() {
+        lock.readLock().lock();
+        try {
+            int[] result = new int[unindexedCount];
+            int n = 0;
+            for (int word = 0; word < unindexed.length && n < result.length; word++) {
+                for (long bits = unindexed[word]; bits != 0; bits &= bits - 1) {
+                    result[n++] = word * 64 + Long.numberOfTrailingZeros(bits);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Pares (termo, arquivo) no índice.
+     */
+    public long getPostingCount() {
+        lock.readLock().lock();
+        try {
+            return postingEntries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getIndexedFileCount() {
+        lock.readLock().lock();
+        try {
+            return indexedFiles;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getUnindexedCount() {
+        lock.readLock().lock();
+        try {
+            return unindexedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Estimativa do heap ocupado pelo índice: listas, termos de cada arquivo, colunas e arena.
+     */
+    public long getMemoryBytes() {
+        lock.readLock().lock();
+        try {
+            long columns = 12L * postingCounts.length + 4L * files.length + 8L * unindexed.length;
+            return bytes + columns + terms.getByteCount() + (long) ARENA_BYTES_PER_TERM * terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Muda o limite de memória. Vale para as próximas atualizações: baixar o limite não tira
+     * arquivos do índice, e subir não inclui os que ficaram de fora.
+     */
+    public void setBudget(long budget) {
+        lock.writeLock().lock();
+        try {
+            this.budget = budget;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addTerms(TermReader reader, FileTerms map, int file) {
+        for (String term = reader.next(); term != null; term = reader.next()) {
+            int id = terms.find(term);
+            if (id != NameArena.NONE && map.get(id) > 0) {
+                map.add(id, 1);
+                continue;
+            }
+            // Cada termo do mapa tem uma referência na arena, contada na primeira ocorrência.
+            id = terms.intern(term);
+            map.add(id, 1);
+            if (file != InodeTable.NONE) {
+                addPosting(id, file);
+            }
+        }
+    }
+
+    private void decrement(FileTerms map, int id, int file) {
+        if (map.add(id, -1) == 0) {
+            map.remove(id);
+            removePosting(id, file);
+            terms.release(id);
+        }
+    }
+
+    // Tira o arquivo do índice e o marca como fora dele.
+    private void exclude(int file, FileTerms map) {
+        if (map != null) {
+            dropTerms(file, map);
+            setFileTerms(file, map, null);
+        }
+        setUnindexed(file, true);
+    }
+
+    private void dropTerms(int file, FileTerms map) {
+        for (int slot = 0; slot < map.keys.length; slot++) {
+            int id = map.keys[slot] - 1;
+            if (id >= 0) {
+                removePosting(id, file);
+                terms.release(id);
+            }
+        }
+    }
+
+    private FileTerms fileTerms(int file) {
+        return file < files.length ? files[file] : null;
+    }
+
+    private void setFileTerms(int file, FileTerms old, FileTerms next) {
+        if (file >= files.length) {
+            files = Arrays.copyOf(files, Math.max(files.length * 2, file + 1));
+        }
+        files[file] = next;
+        bytes += (next == null ? 0 : next.bytes()) - (old == null ? 0 : old.bytes());
+        indexedFiles += (next != null ? 1 : 0) - (old != null ? 1 : 0);
+    }
+
+    private boolean isUnindexed(int file) {
+        int word = file >>> 6;
+        return word < unindexed.length && (unindexed[word] & 1L << file) != 0;
+    }
+
+    private void setUnindexed(int file, boolean value) {
+        if (isUnindexed(file) == value) {
+            return;
+        }
+        int word = file >>> 6;
+        if (word >= unindexed.length) {
+            unindexed = Arrays.copyOf(unindexed, Math.max(unindexed.length * 2, word + 1));
+        }
+        unindexed[word] ^= 1L << file;
+        unindexedCount += value ? 1 : -1;
+    }
+
+    private void addPosting(int id, int file) {
+        if (id >= postingCounts.length) {
+            int capacity = Math.max(postingCounts.length * 2, id + 1);
+            postingCounts = Arrays.copyOf(postingCounts, capacity);
+            singles = Arrays.copyOf(singles, capacity);
+            postings = Arrays.copyOf(postings, capacity);
+        }
+        int count = postingCounts[id];
+        if (count == 0) {
+            singles[id] = file;
+        } else if (count == 1) {
+            int other = singles[id];
+            int[] list = new int[4];
+            list[0] = Math.min(other, file);
+            list[1] = Math.max(other, file);
+            postings[id] = list;
+            bytes += ARRAY_HEADER + 4L * list.length;
+        } else {
+            int[] list = postings[id];
+            int position = -Arrays.binarySearch(list, 0, count, file) - 1;
+            if (count == list.length) {
+                int[] grown = new int[count + (count >> 1)];
+                System.arraycopy(list, 0, grown, 0, position);
+                System.arraycopy(list, position, grown, position + 1, count - position);
+                bytes += 4L * (grown.length - list.length);
+                postings[id] = list = grown;
+            } else {
+                System.arraycopy(list, position, list, position + 1, count - position);
+            }
+            list[position] = file;
+        }
+        postingCounts[id] = count + 1;
+        postingEntries++;
+    }
+
+    private void removePosting(int id, int file) {
+        int count = postingCounts[id] - 1;
+        if (count >= 1) {
+            int[] list = postings[id];
+            int position = Arrays.binarySearch(list, 0, count + 1, file);
+            System.arraycopy(list, position + 1, list, position, count - position);
+            if (count == 1) {
+                singles[id] = list[0];
+                postings[id] = null;
+                bytes -= ARRAY_HEADER + 4L * list.length;
+            } else if (count < list.length / 4 && list.length > 8) {
+                postings[id] = Arrays.copyOf(list, count * 2);
+                bytes -= 4L * (list.length - count * 2);
+            }
+        }
+        postingCounts[id] = count;
+        postingEntries--;
+    }
+
+    // Com o índice travado para escrita ninguém lê a arena, como compact exige.
+    private void maybeCompact() {
+        if (terms.shouldCompact()) {
+            terms.compact();
+        }
+    }
+
+    // Termos de um arquivo e quantas vezes cada um aparece: id + 1 (0 é vazio) e contagem, com
+    // sondagem linear e no máximo 3/4 ocupado.
+    private static final class FileTerms {
+        int[] keys = new int[8];
+        int[] counts = new int[8];
+        int size;
+
+        private static int slot(int id, int mask) {
+            return NameArena.spread(id * 0x9E3779B9) & mask;
+        }
+
+        int get(int id) {
+            int mask = keys.length - 1;
+            for (int i = slot(id, mask); keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == id + 1) {
+                    return counts[i];
+                }
+            }
+            return 0;
+        }
+
+        // Soma delta à contagem (incluindo o termo se preciso) e devolve a nova contagem.
+        int add(int id, int delta) {
+            int mask = keys.length - 1;
+            int i = slot(id, mask);
+            while (keys[i] != 0 && keys[i] != id + 1) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == 0) {
+                if ((size + 1) * 4 > keys.length * 3) {
+                    grow();
+                    return add(id, delta);
+                }
+                keys[i] = id + 1;
+                size++;
+            }
+            return counts[i] += delta;
+        }
+
+        // Sem marcas de removido: os seguintes da mesma sequência recuam para o buraco.
+        void remove(int id) {
+            int mask = keys.length - 1;
+            int i = slot(id, mask);
+            while (keys[i] != id + 1) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = 0;
+            counts[i] = 0;
+            size--;
+            for (int j = (i + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+                int home = slot(keys[j] - 1, mask);
+                boolean stays = i <= j ? i < home && home <= j : i < home || home <= j;
+                if (!stays) {
+                    keys[i] = keys[j];
+                    counts[i] = counts[j];
+                    keys[j] = 0;
+                    counts[j] = 0;
+                    i = j;
+                }
+            }
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new int[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != 0) {
+                    int i = slot(oldKeys[j] - 1, mask);
+                    while (keys[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    counts[i] = oldCounts[j];
+                }
+            }
+        }
+
+        FileTerms copy() {
+            FileTerms copy = new FileTerms();
+            copy.keys = keys.clone();
+            copy.counts = counts.clone();
+            copy.size = size;
+            return copy;
+        }
+
+        long bytes() {
+            return 24 + 2L * (ARRAY_HEADER + 4L * keys.length);
+        }
+    }
+
+    // Lê os termos de content[from, to) em blocos, sem montar o texto inteiro. Com skip, o texto
+    // começa no meio de uma palavra que já tem um termo e que só é pulada.
+    private static final class TermReader {
+        private final TextStorage content;
+        private final int end;
+        private final char[] buffer;
+        private final StringBuilder term = new StringBuilder();
+        private int offset;
+        private int position;
+        private int limit;
+        private boolean skipping;
+
+        TermReader(TextStorage content, int from, int to, boolean skip) {
+            this.content = content;
+            this.offset = from;
+            this.end = to;
+            this.buffer = new char[Math.max(1, Math.min(CHUNK, to - from))];
+            this.skipping = skip;
+        }
+
+        String next() {
+            term.setLength(0);
+            while (true) {
+                if (position == limit) {
+                    if (offset == end) {
+                        return term.length() > 0 ? term.toString() : null;
+                    }
+                    int n = Math.min(buffer.length, end - offset);
+                    content.copyTo(offset, buffer, 0, n);
+                    offset += n;
+                    position = 0;
+                    limit = n;
+                }
+                char c = buffer[position++];
+                if (isTermChar(c)) {
+                    if (!skipping && term.length() < MAX_TERM) {
+                        term.append(Character.toLowerCase(c));
+                    }
+                } else {
+                    skipping = false;
+                    if (term.length() > 0) {
+                        return term.toString();
+                    }
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
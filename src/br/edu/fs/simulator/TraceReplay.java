@@ -0,0 +1,231 @@
+package br.edu.fs.simulator;
+
+import br.edu.fs.simulator.disk.BlockDevice;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Reproduz um {@link WorkloadTrace} direto no {@link FileSystemManager}, numa única sessão. A
+ * preparação da árvore roda sem medição; depois cada operação da carga é cronometrada. O relatório
+ * traz a vazão, a latência por tipo de operação (p50, p90, p99, p99,9 e máxima), as falhas por
+ * status e as estatísticas da árvore no fim.
+ *
+ * Com {@code --rounds n} o trace é reproduzido n vezes, cada uma num sistema de arquivos novo, e
+ * só a última é relatada (as anteriores aquecem o JIT). {@code --wal} liga o journal binário num
+ * diretório temporário; {@code --heap} guarda o conteúdo no heap em vez do dispositivo de blocos.
+ *
+ * Uso: java br.edu.fs.simulator.TraceReplay [arquivo] [--rounds n] [--blocks n] [--heap] [--wal]
+ */
+public class TraceReplay {
+    private static final double[] PERCENTILES = {0.50, 0.90, 0.99, 0.999};
+
+    private final WorkloadTrace trace;
+    private final String[] payloads;
+    private final StringBuilder text = new StringBuilder();
+    private final DirectoryListing listing = new DirectoryListing();
+
+    // Latências (ns) e falhas por operação da última rodada.
+    private long[][] samples;
+    private int[] counts;
+    private long[][] failures;
+    private long setupNanos;
+    private long loadNanos;
+
+    TraceReplay(WorkloadTrace trace) {
+        this.trace = trace;
+        int maxLength = 0;
+        for (int i = 0; i < trace.size(); i++) {
+            maxLength = Math.max(maxLength, trace.getLength(i));
+        }
+        this.payloads = new String[maxLength + 1];
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = Paths.get(WorkloadGenerator.DEFAULT_TRACE_FILE);
+        int rounds = 3;
+        int blocks = BlockDevice.DEFAULT_BLOCK_COUNT;
+        boolean heap = false;
+        boolean wal = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--rounds": rounds = Integer.parseInt(args[++i]); break;
+                case "--blocks": blocks = Integer.parseInt(args[++i]); break;
+                case "--heap": heap = true; break;
+                case "--wal": wal = true; break;
+                default:
+                    if (args[i].startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                    }
+                    file = Paths.get(args[i]);
+            }
+        }
+
+        long start = System.nanoTime();
+        WorkloadTrace trace = WorkloadTrace.load(file);
+        long loadMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println(String.format("Trace %s: %,d operações (%,d de preparação), %,d strings, %,d bytes, carregado em %d ms",
+                file, trace.size(), trace.getSetupOps(), trace.getStringCount(), trace.getFileSize(), loadMillis));
+
+        TraceReplay replay = new TraceReplay(trace);
+        for (int round = 1; round <= rounds; round++) {
+            Path walDir = wal ? Files.createTempDirectory("replay-wal") : null;
+            FileSystemManager fs = new FileSystemManager(heap ? null : new BlockDevice(blocks, BlockDevice.DEFAULT_BLOCK_SIZE),
+                    walDir == null ? null : walDir.resolve(FileSystemManager.DEFAULT_WAL_FILE), null);
+            try {
+                replay.run(fs);
+                if (round == rounds) {
+                    replay.report(fs);
+                }
+            } finally {
+                fs.shutdown();
+                if (walDir != null) {
+                    deleteRecursively(walDir);
+                }
+            }
+        }
+    }
+
+    void run(FileSystemManager fs) {
+        int types = WorkloadTrace.Op.values().length;
+        int setup = trace.getSetupOps();
+        int[] expected = new int[types];
+        for (int i = setup; i < trace.size(); i++) {
+            expected[trace.getOpCode(i)]++;
+        }
+        samples = new long[types][];
+        for (int t = 0; t < types; t++) {
+            samples[t] = new long[expected[t]];
+        }
+        counts = new int[types];
+        failures = new long[types][FsStatus.values().length];
+
+        FileSystemManager.Session session = fs.newSession();
+        long begin = System.nanoTime();
+        for (int i = 0; i < setup; i++) {
+            apply(fs, session, i);
+        }
+        setupNanos = System.nanoTime() - begin;
+
+        begin = System.nanoTime();
+        for (int i = setup; i < trace.size(); i++) {
+            int code = trace.getOpCode(i);
+            long opStart = System.nanoTime();
+            FsStatus status = apply(fs, session, i);
+            samples[code][counts[code]++] = System.nanoTime() - opStart;
+            if (!status.isOk()) {
+                failures[code][status.ordinal()]++;
+            }
+        }
+        loadNanos = System.nanoTime() - begin;
+    }
+
+    private FsStatus apply(FileSystemManager fs, FileSystemManager.Session session, int index) {
+        String argument = trace.getArgument(index);
+        switch (trace.getOp(index)) {
+            case CD:
+                return fs.changeDirectory(session, argument);
+            case MKDIR:
+                return fs.createDirectory(session, argument);
+            case CREATE:
+                return fs.createFile(session, argument);
+            case WRITE:
+                return fs.writeFile(session, argument, payload(trace.getLength(index)), FileSystemManager.WRITE_APPEND, 0);
+            case CAT:
+                text.setLength(0);
+                return fs.readFile(session, argument, text);
+            case LS:
+                return fs.listDirectory(session, argument, listing);
+            case RM:
+                return fs.delete(session, argument);
+            default:
+                throw new IllegalStateException("Unknown trace operation at " + index);
+        }
+    }
+
+    private String payload(int length) {
+        String data = payloads[length];
+        if (data == null) {
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                chars[i] = (char) ('a' + i % 26);
+            }
+            data = payloads[length] = new String(chars);
+        }
+        return data;
+    }
+
+    void report(FileSystemManager fs) {
+        int operations = trace.size() - trace.getSetupOps();
+        System.out.println(String.format("Preparação: %,d operações em %d ms", trace.getSetupOps(), setupNanos / 1_000_000));
+        System.out.println(String.format("Carga: %,d operações em %d ms (%,.0f ops/s)", operations, loadNanos / 1_000_000,
+                operations * 1_000_000_000.0 / Math.max(1, loadNanos)));
+        System.out.println(String.format("  %-7s %10s %8s %10s %10s %10s %10s %10s", "op", "qtde", "falhas",
+                "p50 us", "p90 us", "p99 us", "p99.9 us", "máx us"));
+        FsStatus[] statuses = FsStatus.values();
+        for (WorkloadTrace.Op op : WorkloadTrace.Op.values()) {
+            int code = op.ordinal();
+            if (counts[code] == 0) {
+                continue;
+            }
+            long[] sorted = samples[code];
+            Arrays.sort(sorted, 0, counts[code]);
+            long failed = 0;
+            for (long f : failures[code]) {
+                failed += f;
+            }
+            StringBuilder line = new StringBuilder(String.format("  %-7s %,10d %,8d", op, counts[code], failed));
+            for (double p : PERCENTILES) {
+                line.append(String.format(" %10.1f", percentile(sorted, counts[code], p) / 1000.0));
+            }
+            line.append(String.format(" %10.1f", sorted[counts[code] - 1] / 1000.0));
+            System.out.println(line);
+            for (int s = 0; s < statuses.length; s++) {
+                if (failures[code][s] > 0) {
+                    System.out.println(String.format("          %s: %,d", statuses[s], failures[code][s]));
+                }
+            }
+        }
+
+        UsageReport usage = new UsageReport();
+        if (fs.diskUsage("/", usage).isOk()) {
+            // O diretório pedido vem por último.
+            while (usage.next()) {
+                if (usage.path().equals("/")) {
+                    System.out.println(String.format("Árvore final: %,d nós, %,d diretórios, %,d arquivos, %,d bytes",
+                            fs.getNodeCount(), usage.directories() + 1, usage.files(), usage.bytes()));
+                }
+            }
+        }
+        DeviceUsage device = fs.diskFree();
+        if (device != null) {
+            System.out.println(String.format("Dispositivo: %,d de %,d blocos usados, %,d extents, fragmentação %d%%",
+                    device.usedBlocks, device.blockCount, device.extents, device.getFragmentation()));
+        }
+        int problems = fs.checkConsistency();
+        if (problems != 0) {
+            System.out.println("fsck: " + problems + " inconsistência(s); veja o log");
+        }
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        System.out.println(String.format("Heap em uso após GC: %,d KiB", (runtime.totalMemory() - runtime.freeMemory()) / 1024));
+    }
+
+    private static long percentile(long[] sorted, int count, double p) {
+        int index = (int) Math.ceil(p * count) - 1;
+        return sorted[Math.max(0, Math.min(index, count - 1))];
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,70 @@
+package br.edu.fs.simulator;
+
+import java.util.Arrays;
+
+/**
+ * Totais agregados de um diretório e dos seus subdiretórios imediatos, preenchidos por
+ * {@link FileSystemManager#diskUsage(FileSystemManager.Session, String, UsageReport)}. Os
+ * subdiretórios vêm primeiro e o diretório pedido por último, como no {@code du}.
+ */
+public class UsageReport {
+    private String[] paths = new String[16];
+    private long[] bytes = new long[16];
+    private long[] files = new long[16];
+    private long[] directories = new long[16];
+    private int size;
+    private int position = -1;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean next() {
+        if (position + 1 >= size) {
+            return false;
+        }
+        position++;
+        return true;
+    }
+
+    public String path() {
+        return paths[position];
+    }
+
+    public long bytes() {
+        return bytes[position];
+    }
+
+    public long files() {
+        return files[position];
+    }
+
+    public long directories() {
+        return directories[position];
+    }
+
+    public void rewind() {
+        position = -1;
+    }
+
+    void reset(int expected) {
+        if (paths.length < expected) {
+            paths = new String[expected];
+            bytes = new long[expected];
+            files = new long[expected];
+            directories = new long[expected];
+        } else {
+            Arrays.fill(paths, 0, size, null);
+        }
+        this.size = 0;
+        this.position = -1;
+    }
+
+    void add(String path, long bytes, long files, long directories) {
+        this.paths[size] = path;
+        this.bytes[size] = bytes;
+        this.files[size] = files;
+        this.directories[size] = directories;
+        size++;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,361 @@
+package br.edu.fs.simulator;
+
+import br.edu.fs.simulator.util.ZipfSampler;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Gera traces sintéticos para o {@link TraceReplay}. Primeiro monta uma árvore inicial com o
+ * formato pedido (quantidade de diretórios, filhos por diretório, profundidade máxima e o quanto
+ * a árvore tende a crescer para baixo) e arquivos em cada diretório; depois sorteia as operações
+ * da carga segundo o mix. O diretório de cada operação segue uma distribuição de Zipf sobre uma
+ * ordem aleatória dos diretórios, então os populares ficam espalhados pela árvore.
+ *
+ * Operações do mix: create, mkdir, lookup (ls com caminho absoluto), read (cat), write (anexo),
+ * delete e burst (uma rajada de creates no mesmo diretório). O gerador acompanha o diretório
+ * atual e só emite CD quando ele muda.
+ *
+ * Uso: java br.edu.fs.simulator.WorkloadGenerator [--preset mixed|deep|wide|burst] [--out arquivo]
+ *          [--ops n] [--dirs n] [--fanout n] [--depth n] [--deepen p] [--files n]
+ *          [--mix create=20,lookup=40,...] [--names sequential|random|prefixed] [--zipf s]
+ *          [--write-size n] [--burst n] [--seed n]
+ */
+public class WorkloadGenerator {
+    public static final String DEFAULT_TRACE_FILE = "workload.trace";
+
+    private static final String[] MIX_NAMES = {"create", "mkdir", "lookup", "read", "write", "delete", "burst"};
+    private static final int CREATE = 0;
+    private static final int MKDIR = 1;
+    private static final int LOOKUP = 2;
+    private static final int READ = 3;
+    private static final int WRITE = 4;
+    private static final int DELETE = 5;
+    private static final int BURST = 6;
+
+    // Parâmetros; os presets só trocam os valores padrão.
+    int operations = 1_000_000;
+    int dirs = 4096;
+    int fanout = 16;
+    int depth = 8;
+    double deepen = 0.3;
+    int files = 8;
+    int[] mix = {20, 1, 40, 20, 10, 8, 0};
+    String names = "sequential";
+    double zipf = 0.99;
+    int writeSize = 256;
+    int burst = 256;
+    long seed = 42;
+
+    private Random random;
+    private WorkloadTrace.Builder trace;
+    // Modelo da árvore: caminho, profundidade, filhos e arquivos vivos de cada diretório.
+    private String[] paths;
+    private int[] depths;
+    private int[] children;
+    private int[][] fileIds;
+    private int[] fileCounts;
+    private int dirCount;
+    private int nextId;
+    private int cwd;
+    private int[] popularity;
+    private ZipfSampler sampler;
+    private int setupOps;
+
+    public static void main(String[] args) throws IOException {
+        WorkloadGenerator generator = new WorkloadGenerator();
+        Path out = Paths.get(DEFAULT_TRACE_FILE);
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--preset": generator.preset(value); break;
+                case "--out": out = Paths.get(value); break;
+                case "--ops": generator.operations = Integer.parseInt(value); break;
+                case "--dirs": generator.dirs = Integer.parseInt(value); break;
+                case "--fanout": generator.fanout = Integer.parseInt(value); break;
+                case "--depth": generator.depth = Integer.parseInt(value); break;
+                case "--deepen": generator.deepen = Double.parseDouble(value); break;
+                case "--files": generator.files = Integer.parseInt(value); break;
+                case "--mix": generator.mix = parseMix(value); break;
+                case "--names": generator.names = value; break;
+                case "--zipf": generator.zipf = Double.parseDouble(value); break;
+                case "--write-size": generator.writeSize = Integer.parseInt(value); break;
+                case "--burst": generator.burst = Integer.parseInt(value); break;
+                case "--seed": generator.seed = Long.parseLong(value); break;
+                default: throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+
+        long start = System.nanoTime();
+        WorkloadTrace.Builder built = generator.generate();
+        long bytes = built.write(out);
+        System.out.println("Trace gravado em " + out + " em " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        System.out.println("  " + generator.dirCount + " diretórios, " + built.size() + " operações ("
+                + generator.setupOps + " de preparação)");
+        System.out.println(String.format("  %,d bytes (%.1f bytes/operação)", bytes, (double) bytes / built.size()));
+    }
+
+    void preset(String name) {
+        switch (name) {
+            case "mixed":
+                break;
+            case "deep":
+                dirs = 4096;
+                fanout = 4;
+                depth = 64;
+                deepen = 0.9;
+                files = 4;
+                break;
+            case "wide":
+                dirs = 16;
+                fanout = 16;
+                depth = 2;
+                deepen = 0;
+                files = 4096;
+                mix = new int[]{25, 0, 40, 20, 10, 5, 0};
+                break;
+            case "burst":
+                mix = new int[]{30, 2, 30, 10, 5, 3, 20};
+                burst = 512;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown preset: " + name);
+        }
+    }
+
+    static int[] parseMix(String spec) {
+        int[] weights = new int[MIX_NAMES.length];
+        for (String part : spec.split(",")) {
+            int eq = part.indexOf('=');
+            String key = eq < 0 ? part : part.substring(0, eq);
+            int index = Arrays.asList(MIX_NAMES).indexOf(key.trim());
+            if (eq < 0 || index < 0) {
+                throw new IllegalArgumentException("Illegal mix entry: " + part);
+            }
+            weights[index] = Integer.parseInt(part.substring(eq + 1).trim());
+        }
+        return weights;
+    }
+
+    WorkloadTrace.Builder generate() {
+        if (dirs < 1 || fanout < 1 || depth < 1 || files < 0 || operations < 0 || writeSize < 1 || burst < 1) {
+            throw new IllegalArgumentException("Illegal workload parameters");
+        }
+        int totalWeight = 0;
+        for (int weight : mix) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("Illegal mix weight: " + weight);
+            }
+            totalWeight += weight;
+        }
+        if (totalWeight == 0) {
+            throw new IllegalArgumentException("Empty operation mix");
+        }
+
+        random = new Random(seed);
+        trace = new WorkloadTrace.Builder();
+        paths = new String[Math.max(16, dirs)];
+        depths = new int[paths.length];
+        children = new int[paths.length];
+        fileIds = new int[paths.length][];
+        fileCounts = new int[paths.length];
+        paths[0] = "/";
+        dirCount = 1;
+        cwd = 0;
+
+        buildTree();
+        trace.endSetup();
+        setupOps = trace.size();
+
+        // Ordem de popularidade: uma permutação dos diretórios; os criados durante a carga entram no fim.
+        popularity = new int[paths.length];
+        for (int i = 0; i < dirCount; i++) {
+            popularity[i] = i;
+        }
+        for (int i = dirCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = popularity[i];
+            popularity[i] = popularity[j];
+            popularity[j] = tmp;
+        }
+
+        int emitted = 0;
+        while (emitted < operations) {
+            int roll = random.nextInt(totalWeight);
+            int kind = 0;
+            while (roll >= mix[kind]) {
+                roll -= mix[kind];
+                kind++;
+            }
+            emitted += emit(kind, pickDirectory(), operations - emitted);
+        }
+        return trace;
+    }
+
+    private void buildTree() {
+        // Diretórios que ainda aceitam filhos, e o último criado (de onde a árvore desce).
+        int[] open = new int[paths.length];
+        int openCount = 1;
+        int last = 0;
+        for (int created = 1; created < dirs && openCount > 0; created++) {
+            int parent;
+            if (random.nextDouble() < deepen && isOpen(last)) {
+                parent = last;
+            } else {
+                parent = open[random.nextInt(openCount)];
+            }
+            int dir = makeDirectory(parent);
+            if (!isOpen(parent)) {
+                for (int i = 0; i < openCount; i++) {
+                    if (open[i] == parent) {
+                        open[i] = open[--openCount];
+                        break;
+                    }
+                }
+            }
+            if (isOpen(dir)) {
+                open[openCount++] = dir;
+            }
+            last = dir;
+        }
+        for (int dir = 0; dir < dirCount; dir++) {
+            for (int i = 0; i < files; i++) {
+                createFile(dir);
+            }
+        }
+    }
+
+    private boolean isOpen(int dir) {
+        return depths[dir] < depth && children[dir] < fanout;
+    }
+
+    private int pickDirectory() {
+        if (sampler == null || sampler.getPopulation() != dirCount) {
+            sampler = new ZipfSampler(dirCount, zipf);
+        }
+        return popularity[sampler.sample(random) - 1];
+    }
+
+    // Retorna quantas operações da carga foram emitidas (sem contar os CDs).
+    private int emit(int kind, int dir, int remaining) {
+        switch (kind) {
+            case CREATE:
+                createFile(dir);
+                return 1;
+            case MKDIR:
+                if (depths[dir] >= depth) {
+                    createFile(dir);
+                } else {
+                    makeDirectory(dir);
+                }
+                return 1;
+            case BURST:
+                int count = Math.min(burst, remaining);
+                for (int i = 0; i < count; i++) {
+                    createFile(dir);
+                }
+                return count;
+            default:
+                break;
+        }
+        if (kind == LOOKUP || fileCounts[dir] == 0) {
+            trace.add(WorkloadTrace.Op.LS, paths[dir]);
+            return 1;
+        }
+        int slot = random.nextInt(fileCounts[dir]);
+        String name = fileName(fileIds[dir][slot]);
+        changeDirectory(dir);
+        if (kind == READ) {
+            trace.add(WorkloadTrace.Op.CAT, name);
+        } else if (kind == WRITE) {
+            trace.add(WorkloadTrace.Op.WRITE, name, 1 + random.nextInt(writeSize));
+        } else {
+            trace.add(WorkloadTrace.Op.RM, name);
+            fileIds[dir][slot] = fileIds[dir][--fileCounts[dir]];
+        }
+        return 1;
+    }
+
+    private int makeDirectory(int parent) {
+        if (dirCount == paths.length) {
+            int capacity = paths.length * 2;
+            paths = Arrays.copyOf(paths, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+            children = Arrays.copyOf(children, capacity);
+            fileIds = Arrays.copyOf(fileIds, capacity);
+            fileCounts = Arrays.copyOf(fileCounts, capacity);
+            if (popularity != null) {
+                popularity = Arrays.copyOf(popularity, capacity);
+            }
+        }
+        String name = directoryName(nextId++);
+        changeDirectory(parent);
+        trace.add(WorkloadTrace.Op.MKDIR, name);
+        int dir = dirCount++;
+        paths[dir] = parent == 0 ? "/" + name : paths[parent] + "/" + name;
+        depths[dir] = depths[parent] + 1;
+        children[parent]++;
+        if (popularity != null) {
+            popularity[dir] = dir;
+        }
+        return dir;
+    }
+
+    private void createFile(int dir) {
+        int id = nextId++;
+        changeDirectory(dir);
+        trace.add(WorkloadTrace.Op.CREATE, fileName(id));
+        int[] ids = fileIds[dir];
+        if (ids == null) {
+            ids = fileIds[dir] = new int[Math.max(4, files)];
+        } else if (fileCounts[dir] == ids.length) {
+            ids = fileIds[dir] = Arrays.copyOf(ids, ids.length * 2);
+        }
+        ids[fileCounts[dir]++] = id;
+    }
+
+    private void changeDirectory(int dir) {
+        if (cwd != dir) {
+            trace.add(WorkloadTrace.Op.CD, paths[dir]);
+            cwd = dir;
+        }
+    }
+
+    private String directoryName(int id) {
+        return name("d", id);
+    }
+
+    // Nomes são funções do identificador, então o modelo guarda só inteiros.
+    private String fileName(int id) {
+        return name("f", id);
+    }
+
+    private String name(String kind, int id) {
+        switch (names) {
+            case "sequential":
+                return kind + id;
+            case "random": {
+                // Prefixo pseudoaleatório de 4 a 20 caracteres derivado do id; o sufixo garante nomes únicos.
+                long bits = (id + seed) * 0x9E3779B97F4A7C15L;
+                int length = 4 + (int) ((bits >>> 59) & 15);
+                StringBuilder name = new StringBuilder(length + 8);
+                for (int i = 0; i < length; i++) {
+                    bits = bits * 6364136223846793005L + 1442695040888963407L;
+                    name.append((char) ('a' + (int) ((bits >>> 33) % 26)));
+                }
+                return name.append('-').append(kind).append(Integer.toString(id, 36)).toString();
+            }
+            case "prefixed":
+                return "relatorio-financeiro-trimestral-" + kind + String.format("%010d", id);
+            default:
+                throw new IllegalArgumentException("Unknown name distribution: " + names);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,234 @@
+package br.edu.fs.simulator;
+
+import br.edu.fs.simulator.util.MyLinkedHashMap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Sequência de operações do {@link FileSystemManager} gerada pelo {@link WorkloadGenerator} e
+ * reproduzida pelo {@link TraceReplay}. Caminhos e nomes ficam numa tabela de strings e cada
+ * operação ocupa poucos bytes, então carregar um trace custa quase nada perto de reproduzi-lo.
+ *
+ * Arquivo:  [magic: int][versão: int][strings: varint]{[tamanho: varint][UTF-8]}
+ *           [operações de preparação: varint][operações: varint]{registro}
+ * Registro: [op: byte][índice da string: varint], e no WRITE mais [caracteres: varint]
+ *
+ * As primeiras operações montam a árvore inicial; o replay as executa antes de medir a carga.
+ * CD e LS recebem caminhos absolutos; as demais, nomes no diretório atual.
+ */
+public final class WorkloadTrace {
+    private static final int MAGIC = 0x46535754; // "FSWT"
+    private static final int VERSION = 1;
+
+    public enum Op {
+        CD, MKDIR, CREATE, WRITE, CAT, LS, RM;
+
+        private static final Op[] VALUES = values();
+
+        static Op fromCode(int code) {
+            return code >= 0 && code < VALUES.length ? VALUES[code] : null;
+        }
+    }
+
+    private final String[] strings;
+    private final byte[] ops;
+    private final int[] args;
+    private final int[] lengths;
+    private final int setupOps;
+    private final long fileSize;
+
+    private WorkloadTrace(String[] strings, byte[] ops, int[] args, int[] lengths, int setupOps, long fileSize) {
+        this.strings = strings;
+        this.ops = ops;
+        this.args = args;
+        this.lengths = lengths;
+        this.setupOps = setupOps;
+        this.fileSize = fileSize;
+    }
+
+    /**
+     * Lê o trace inteiro e decodifica as operações em arrays, para o replay não decodificar nada.
+     */
+    public static WorkloadTrace load(Path file) throws IOException {
+        byte[] data = Files.readAllBytes(file);
+        ByteBuffer in = ByteBuffer.wrap(data);
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a workload trace: " + file);
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported trace version: " + version);
+            }
+            String[] strings = new String[readCount(in)];
+            for (int i = 0; i < strings.length; i++) {
+                int length = readCount(in);
+                strings[i] = new String(data, in.position(), length, StandardCharsets.UTF_8);
+                in.position(in.position() + length);
+            }
+            int setupOps = readCount(in);
+            int count = readCount(in);
+            if (setupOps > count) {
+                throw new IOException("Corrupt trace header: " + setupOps + " setup operations of " + count);
+            }
+            byte[] ops = new byte[count];
+            int[] args = new int[count];
+            int[] lengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                Op op = Op.fromCode(in.get());
+                int arg = readCount(in);
+                if (op == null || arg >= strings.length) {
+                    throw new IOException("Corrupt trace record " + i);
+                }
+                ops[i] = (byte) op.ordinal();
+                args[i] = arg;
+                if (op == Op.WRITE) {
+                    lengths[i] = readCount(in);
+                }
+            }
+            return new WorkloadTrace(strings, ops, args, lengths, setupOps, data.length);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Truncated workload trace: " + file, e);
+        }
+    }
+
+    private static int readCount(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint at " + in.position());
+    }
+
+    public int size() {
+        return ops.length;
+    }
+
+    public int getSetupOps() {
+        return setupOps;
+    }
+
+    public int getStringCount() {
+        return strings.length;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public Op getOp(int index) {
+        return Op.VALUES[ops[index]];
+    }
+
+    public int getOpCode(int index) {
+        return ops[index];
+    }
+
+    public String getArgument(int index) {
+        return strings[args[index]];
+    }
+
+    /**
+     * Caracteres escritos por um WRITE; 0 nas outras operações.
+     */
+    public int getLength(int index) {
+        return lengths[index];
+    }
+
+    /**
+     * Monta um trace em memória e o grava com {@link #write(Path)}.
+     */
+    public static final class Builder {
+        private final MyLinkedHashMap<String, Integer> strings = new MyLinkedHashMap<>(1024);
+        private byte[] records = new byte[64 * 1024];
+        private int position;
+        private int count;
+        private int setupOps;
+
+        public Builder add(Op op, String argument) {
+            return add(op, argument, 0);
+        }
+
+        public Builder add(Op op, String argument, int length) {
+            Integer index = strings.get(argument);
+            if (index == null) {
+                index = strings.size();
+                strings.put(argument, index);
+            }
+            if (records.length - position < 11) {
+                records = Arrays.copyOf(records, records.length * 2);
+            }
+            records[position++] = (byte) op.ordinal();
+            writeCount(index);
+            if (op == Op.WRITE) {
+                writeCount(length);
+            }
+            count++;
+            return this;
+        }
+
+        /**
+         * Marca as operações adicionadas até aqui como preparação da árvore.
+         */
+        public void endSetup() {
+            setupOps = count;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        private void writeCount(int value) {
+            while ((value & ~0x7F) != 0) {
+                records[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            records[position++] = (byte) value;
+        }
+
+        /**
+         * Grava o trace e retorna o tamanho do arquivo em bytes.
+         */
+        public long write(Path file) throws IOException {
+            try (OutputStream stream = Files.newOutputStream(file);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeCount(out, strings.size());
+                for (int i = 0; i < strings.size(); i++) {
+                    byte[] bytes = strings.keyAt(i).getBytes(StandardCharsets.UTF_8);
+                    writeCount(out, bytes.length);
+                    out.write(bytes);
+                }
+                writeCount(out, setupOps);
+                writeCount(out, count);
+                out.write(records, 0, position);
+            }
+            return Files.size(file);
+        }
+
+        private static void writeCount(DataOutputStream out, int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,554 @@
+package br.edu.fs.simulator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Journal binário de escrita antecipada (WAL). Cada operação é registrada antes de ser aplicada;
+ * a gravação no arquivo é feita em lotes por um {@link AsyncJournalWriter}.
+ *
+ * Registro: [tamanho do corpo: int][CRC32C do corpo: int][corpo]
+ * Corpo:    [op: byte][lsn: long][timestamp: long][arg1: int][arg2: int][caminho: int + UTF-8][texto: int + UTF-8]
+ *
+ * O LSN (número de sequência) cresce a cada registro. Quem faz o checkpoint guarda o último LSN
+ * persistido e, no replay, os registros até ele são ignorados.
+ *
+ * O log é dividido em segmentos de tamanho fixo, {@code <arquivo>.<primeiro LSN>}; a thread de
+ * escrita abre um novo quando o atual enche e {@link #checkpoint(long)} apaga os segmentos cujos
+ * registros já estão todos no checkpoint, então o replay nunca lê mais que o log desde ele.
+ */
+public class WriteAheadLog implements Closeable {
+    private static final int HEADER_SIZE = 8;
+    private static final int FIXED_BODY_SIZE = 1 + 8 + 8 + 4 + 4 + 4 + 4;
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+    private static final long DEFAULT_SYNC_INTERVAL_MILLIS = 100;
+    private static final int RING_CAPACITY = 4096;
+    private static final int BATCH_SIZE = 256;
+    private static final int BATCH_BUFFER_SIZE = 64 * 1024;
+    public static final long DEFAULT_SEGMENT_SIZE = 4L * 1024 * 1024;
+
+    public enum Op {
+        MKDIR, CREATE, WRITE, TRUNCATE, RENAME, DELETE, COPY, MOVE;
+
+        private static final Op[] VALUES = values();
+
+        static Op fromCode(int code) {
+            return code >= 0 && code < VALUES.length ? VALUES[code] : null;
+        }
+    }
+
+    public enum SyncPolicy {
+        /** fsync depois de cada registro. */
+        ALWAYS,
+        /** fsync em grupo, por lote ou a cada intervalo; {@link #sync()} força na hora. */
+        INTERVAL,
+        /** Deixa o sistema operacional decidir quando gravar. */
+        NEVER
+    }
+
+    /**
+     * Registro decodificado durante o replay. A mesma instância é reutilizada a cada chamada.
+     */
+    public static final class Record {
+        public Op op;
+        public long lsn;
+        public long timestamp;
+        public int arg1;
+        public int arg2;
+        public String path;
+        public String text;
+    }
+
+    public interface Handler {
+        /**
+         * Aplica o registro; retorna {@code false} se ele não pôde ser aplicado.
+         */
+        boolean apply(Record record);
+    }
+
+    public static final class RecoveryStats {
+        public int applied;
+        public int failed;
+        public int skipped;
+        public long validBytes;
+        public long discardedBytes;
+        public int segments;
+        public long elapsedNanos;
+    }
+
+    private final Path path;
+    private final String segmentPrefix;
+    private final long segmentSize;
+    private final CRC32C crc = new CRC32C();
+    private final Object channelLock = new Object();
+    private final AsyncJournalWriter<byte[]> writer;
+    private volatile SyncPolicy syncPolicy;
+
+    // Segmentos em disco, em ordem de LSN; o último é o aberto em channel (se houver). Protegidos por channelLock.
+    private long[] segmentStarts = new long[8];
+    private int segmentCount;
+    private FileChannel channel;
+    private long position;
+    private long flushedLsn;
+
+    // Acessados pela thread de escrita (ou antes dela receber registros, no replay).
+    private final ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_BUFFER_SIZE);
+    private long batchFirstLsn;
+    private long batchLastLsn;
+    private volatile long nextLsn = 1;
+    private volatile long bytesWritten;
+    private volatile long bytesSinceCheckpoint;
+    private byte[] scratch = new byte[256];
+
+    private WriteAheadLog(Path path, SyncPolicy syncPolicy, long segmentSize) {
+        this.path = path;
+        this.segmentPrefix = path.getFileName().toString() + ".";
+        this.segmentSize = segmentSize;
+        this.syncPolicy = syncPolicy;
+        this.writer = new AsyncJournalWriter<>("wal", new ChannelSink(), RING_CAPACITY, BATCH_SIZE, DEFAULT_SYNC_INTERVAL_MILLIS,
+                AsyncJournalWriter.Backpressure.BLOCK, syncPolicy != SyncPolicy.NEVER);
+    }
+
+    public static WriteAheadLog open(Path path, SyncPolicy syncPolicy) throws IOException {
+        return open(path, syncPolicy, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Abre o log com base em {@code path}; os segmentos são arquivos irmãos {@code <path>.<LSN>}.
+     */
+    public static WriteAheadLog open(Path path, SyncPolicy syncPolicy, long segmentSize) throws IOException {
+        if (segmentSize < HEADER_SIZE + FIXED_BODY_SIZE) {
+            throw new IllegalArgumentException("Illegal segment size: " + segmentSize);
+        }
+        WriteAheadLog wal = new WriteAheadLog(path.toAbsolutePath(), syncPolicy, segmentSize);
+        synchronized (wal.channelLock) {
+            wal.scanSegments();
+        }
+        return wal;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public SyncPolicy getSyncPolicy() {
+        return syncPolicy;
+    }
+
+    public void setSyncPolicy(SyncPolicy syncPolicy) {
+        this.syncPolicy = syncPolicy;
+        writer.setForceOnCommit(syncPolicy != SyncPolicy.NEVER);
+    }
+
+    /**
+     * LSN do último registro gravado (ou reaplicado); 0 se nenhum. Depois de {@link #sync()}
+     * inclui todos os registros já publicados.
+     */
+    public long getLastLsn() {
+        return nextLsn - 1;
+    }
+
+    /**
+     * Codifica o registro e o publica para a thread de escrita, que atribui o LSN e o CRC na
+     * ordem da fila. Com a política ALWAYS, espera o commit em grupo que o torna durável.
+     */
+    public void append(Op op, String path, int arg1, int arg2, String text) throws IOException {
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        byte[] textBytes = text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = FIXED_BODY_SIZE + pathBytes.length + (textBytes == null ? 0 : textBytes.length);
+        if (bodyLength > MAX_RECORD_SIZE) {
+            throw new IOException("Journal record too large: " + bodyLength + " bytes");
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + bodyLength);
+        record.putInt(bodyLength);
+        record.putInt(0);
+        record.put((byte) op.ordinal());
+        record.putLong(0);
+        record.putLong(System.currentTimeMillis());
+        record.putInt(arg1);
+        record.putInt(arg2);
+        record.putInt(pathBytes.length);
+        record.put(pathBytes);
+        record.putInt(textBytes == null ? -1 : textBytes.length);
+        if (textBytes != null) {
+            record.put(textBytes);
+        }
+        writer.submit(record.array());
+        if (syncPolicy == SyncPolicy.ALWAYS) {
+            writer.sync();
+        }
+    }
+
+    /**
+     * Barreira: retorna quando todos os registros publicados antes da chamada estão no disco.
+     */
+    public void sync() throws IOException {
+        writer.sync();
+    }
+
+    public AsyncJournalWriter<byte[]> getWriter() {
+        return writer;
+    }
+
+    /**
+     * Reaplica em ordem os registros íntegros com LSN maior que {@code checkpointLsn}, segmento
+     * por segmento. Para no primeiro registro incompleto ou com CRC inválido (cauda rasgada por
+     * uma queda), descarta o restante do segmento e os segmentos seguintes. Deve ser chamado
+     * antes do primeiro {@link #append}.
+     */
+    public RecoveryStats replay(long checkpointLsn, Handler handler) throws IOException {
+        long start = System.nanoTime();
+        RecoveryStats stats = new RecoveryStats();
+        nextLsn = Math.max(nextLsn, checkpointLsn + 1);
+        Record record = new Record();
+        CRC32C check = new CRC32C();
+
+        synchronized (channelLock) {
+            closeSegment();
+            scanSegments();
+            stats.segments = segmentCount;
+            for (int s = 0; s < segmentCount; s++) {
+                long size;
+                long offset;
+                try (FileChannel segment = FileChannel.open(segmentPath(segmentStarts[s]), StandardOpenOption.READ,
+                        StandardOpenOption.WRITE)) {
+                    size = segment.size();
+                    offset = size == 0 ? 0 : replaySegment(segment, size, checkpointLsn, handler, stats, record, check);
+                    if (offset < size) {
+                        segment.truncate(offset);
+                        segment.force(false);
+                    }
+                }
+                stats.validBytes += offset;
+                if (offset < size) {
+                    stats.discardedBytes += size - offset;
+                    for (int later = s + 1; later < segmentCount; later++) {
+                        Path discarded = segmentPath(segmentStarts[later]);
+                        stats.discardedBytes += Files.size(discarded);
+                        Files.delete(discarded);
+                    }
+                    segmentCount = s + 1;
+                    break;
+                }
+            }
+            flushedLsn = nextLsn - 1;
+            // Registros reaplicados ainda não estão em nenhum checkpoint.
+            bytesSinceCheckpoint = stats.applied + stats.failed > 0 ? stats.validBytes : 0;
+            deleteSegmentsUpTo(checkpointLsn);
+            if (segmentCount > 0) {
+                // Continua acrescentando no último segmento que sobrou.
+                channel = FileChannel.open(segmentPath(segmentStarts[segmentCount - 1]), StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+                position = channel.size();
+            }
+        }
+        stats.elapsedNanos = System.nanoTime() - start;
+        return stats;
+    }
+
+    // Retorna até onde o segmento é válido.
+    private long replaySegment(FileChannel segment, long size, long checkpointLsn, Handler handler, RecoveryStats stats,
+                               Record record, CRC32C check) throws IOException {
+        MappedByteBuffer log = segment.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        long offset = 0;
+        while (offset + HEADER_SIZE <= size) {
+            int bodyLength = log.getInt((int) offset);
+            int expectedCrc = log.getInt((int) offset + 4);
+            if (bodyLength < FIXED_BODY_SIZE || bodyLength > MAX_RECORD_SIZE || offset + HEADER_SIZE + bodyLength > size) {
+                break;
+            }
+            if (scratch.length < bodyLength) {
+                scratch = new byte[Math.max(scratch.length * 2, bodyLength)];
+            }
+            log.position((int) offset + HEADER_SIZE);
+            log.get(scratch, 0, bodyLength);
+            check.reset();
+            check.update(scratch, 0, bodyLength);
+            if ((int) check.getValue() != expectedCrc || !decode(ByteBuffer.wrap(scratch, 0, bodyLength), record)) {
+                break;
+            }
+            if (record.lsn <= checkpointLsn) {
+                stats.skipped++;
+            } else if (handler.apply(record)) {
+                stats.applied++;
+            } else {
+                stats.failed++;
+            }
+            nextLsn = Math.max(nextLsn, record.lsn + 1);
+            offset += HEADER_SIZE + bodyLength;
+        }
+        return offset;
+    }
+
+    /**
+     * Marca o estado até {@code checkpointLsn} como persistido em outro lugar: fecha o segmento
+     * atual (o próximo registro abre outro) e apaga os segmentos que só têm registros até esse
+     * LSN. O LSN continua crescendo.
+     */
+    public void checkpoint(long checkpointLsn) throws IOException {
+        writer.sync();
+        synchronized (channelLock) {
+            closeSegment();
+            deleteSegmentsUpTo(checkpointLsn);
+            bytesSinceCheckpoint = 0;
+        }
+    }
+
+    // Chamado com channelLock.
+    private void deleteSegmentsUpTo(long checkpointLsn) throws IOException {
+        int kept = 0;
+        for (int s = 0; s < segmentCount; s++) {
+            boolean open = channel != null && s == segmentCount - 1;
+            long lastLsn = s + 1 < segmentCount ? segmentStarts[s + 1] - 1 : flushedLsn;
+            if (!open && lastLsn <= checkpointLsn) {
+                Files.deleteIfExists(segmentPath(segmentStarts[s]));
+            } else {
+                segmentStarts[kept++] = segmentStarts[s];
+            }
+        }
+        segmentCount = kept;
+    }
+
+    // Chamado com channelLock: lista os segmentos existentes em ordem de LSN.
+    private void scanSegments() throws IOException {
+        segmentCount = 0;
+        Path directory = path.getParent();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, segmentPrefix + "*")) {
+            for (Path file : files) {
+                long lsn = parseSegmentLsn(file.getFileName().toString());
+                if (lsn < 0) {
+                    continue;
+                }
+                if (segmentCount == segmentStarts.length) {
+                    long[] grown = new long[segmentStarts.length * 2];
+                    System.arraycopy(segmentStarts, 0, grown, 0, segmentCount);
+                    segmentStarts = grown;
+                }
+                int i = segmentCount++;
+                while (i > 0 && segmentStarts[i - 1] > lsn) {
+                    segmentStarts[i] = segmentStarts[i - 1];
+                    i--;
+                }
+                segmentStarts[i] = lsn;
+            }
+        }
+    }
+
+    private long parseSegmentLsn(String name) {
+        if (name.length() != segmentPrefix.length() + 16 || !name.startsWith(segmentPrefix)) {
+            return -1;
+        }
+        long lsn = 0;
+        for (int i = segmentPrefix.length(); i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            lsn = lsn * 10 + (c - '0');
+        }
+        return lsn;
+    }
+
+    private Path segmentPath(long firstLsn) {
+        return path.resolveSibling(segmentPrefix + String.format("%016d", firstLsn));
+    }
+
+    // Chamado com channelLock.
+    private void openSegment(long firstLsn) throws IOException {
+        channel = FileChannel.open(segmentPath(firstLsn), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        position = channel.size();
+        if (segmentCount == segmentStarts.length) {
+            long[] grown = new long[segmentStarts.length * 2];
+            System.arraycopy(segmentStarts, 0, grown, 0, segmentCount);
+            segmentStarts = grown;
+        }
+        segmentStarts[segmentCount++] = firstLsn;
+    }
+
+    // Chamado com channelLock.
+    private void closeSegment() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            if (syncPolicy != SyncPolicy.NEVER) {
+                channel.force(false);
+            }
+        } finally {
+            channel.close();
+            channel = null;
+            position = 0;
+        }
+    }
+
+    public long getRecordsWritten() {
+        return writer.getCommitted();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getSyncs() {
+        return writer.getForces();
+    }
+
+    /**
+     * Bytes gravados desde o último {@link #checkpoint}.
+     */
+    public long getBytesSinceCheckpoint() {
+        return bytesSinceCheckpoint;
+    }
+
+    public int getSegmentCount() {
+        synchronized (channelLock) {
+            return segmentCount;
+        }
+    }
+
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Total de bytes nos segmentos em disco.
+     */
+    public long size() throws IOException {
+        synchronized (channelLock) {
+            long total = 0;
+            for (int s = 0; s < segmentCount; s++) {
+                boolean open = channel != null && s == segmentCount - 1;
+                total += open ? position : Files.size(segmentPath(segmentStarts[s]));
+            }
+            return total;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.close();
+        } finally {
+            synchronized (channelLock) {
+                closeSegment();
+            }
+        }
+    }
+
+    // Executado só pela thread de escrita: carimba LSN e CRC e junta os registros num único write.
+    private final class ChannelSink implements AsyncJournalWriter.Sink<byte[]> {
+        @Override
+        public void write(byte[] record) throws IOException {
+            int bodyLength = record.length - HEADER_SIZE;
+            ByteBuffer view = ByteBuffer.wrap(record);
+            long lsn = nextLsn;
+            view.putLong(HEADER_SIZE + 1, lsn);
+            crc.reset();
+            crc.update(record, HEADER_SIZE, bodyLength);
+            view.putInt(4, (int) crc.getValue());
+            nextLsn = lsn + 1;
+
+            synchronized (channelLock) {
+                long segmentBytes = position + batch.position();
+                if (channel != null && segmentBytes > 0 && segmentBytes + record.length > segmentSize) {
+                    // Segmento cheio: o registro começa o próximo.
+                    flushBatch();
+                    closeSegment();
+                }
+            }
+            if (batch.remaining() < record.length) {
+                flushBatch();
+                if (batch.capacity() < record.length) {
+                    synchronized (channelLock) {
+                        if (channel == null) {
+                            openSegment(lsn);
+                        }
+                        writeFully(ByteBuffer.wrap(record));
+                        flushedLsn = lsn;
+                    }
+                    return;
+                }
+            }
+            if (batch.position() == 0) {
+                batchFirstLsn = lsn;
+            }
+            batchLastLsn = lsn;
+            batch.put(record);
+        }
+
+        @Override
+        public void commit(boolean force) throws IOException {
+            flushBatch();
+            if (force) {
+                synchronized (channelLock) {
+                    if (channel != null) {
+                        channel.force(false);
+                    }
+                }
+            }
+        }
+
+        private void flushBatch() throws IOException {
+            if (batch.position() == 0) {
+                return;
+            }
+            batch.flip();
+            synchronized (channelLock) {
+                if (channel == null) {
+                    openSegment(batchFirstLsn);
+                }
+                writeFully(batch);
+                flushedLsn = batchLastLsn;
+            }
+            batch.clear();
+        }
+
+        private void writeFully(ByteBuffer data) throws IOException {
+            int length = data.remaining();
+            while (data.hasRemaining()) {
+                position += channel.write(data, position);
+            }
+            bytesWritten += length;
+            bytesSinceCheckpoint += length;
+        }
+    }
+
+    private static boolean decode(ByteBuffer body, Record record) {
+        Op op = Op.fromCode(body.get() & 0xFF);
+        if (op == null) {
+            return false;
+        }
+        record.op = op;
+        record.lsn = body.getLong();
+        record.timestamp = body.getLong();
+        record.arg1 = body.getInt();
+        record.arg2 = body.getInt();
+        int pathLength = body.getInt();
+        if (pathLength < 0 || pathLength > body.remaining() - 4) {
+            return false;
+        }
+        record.path = new String(body.array(), body.position(), pathLength, StandardCharsets.UTF_8);
+        body.position(body.position() + pathLength);
+        int textLength = body.getInt();
+        if (textLength > body.remaining()) {
+            return false;
+        }
+        if (textLength < 0) {
+            record.text = null;
+        } else {
+            record.text = new String(body.array(), body.position(), textLength, StandardCharsets.UTF_8);
+        }
+        return true;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,111 @@
+package br.edu.fs.simulator.disk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Dispositivo de blocos de tamanho fixo, guardado fora do heap num {@link ByteBuffer} direto.
+ */
+public class BlockDevice {
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+    public static final int DEFAULT_BLOCK_COUNT = 16384;
+
+    private final ByteBuffer data;
+    private final int blockSize;
+    private final int blockCount;
+    private final FreeSpaceBitmap bitmap;
+    private final ExtentAllocator allocator;
+
+    public BlockDevice() {
+        this(DEFAULT_BLOCK_COUNT, DEFAULT_BLOCK_SIZE);
+    }
+
+    public BlockDevice(int blockCount, int blockSize) {
+        if (blockSize <= 0 || (blockSize & 1) != 0) {
+            throw new IllegalArgumentException("Illegal block size: " + blockSize);
+        }
+        if ((long) blockCount * blockSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Device too large: " + blockCount + " x " + blockSize);
+        }
+        this.blockSize = blockSize;
+        this.blockCount = blockCount;
+        this.data = ByteBuffer.allocateDirect(blockCount * blockSize);
+        this.bitmap = new FreeSpaceBitmap(blockCount);
+        this.allocator = new ExtentAllocator(bitmap);
+    }
+
+    /**
+     * Dispositivo sobre uma região já existente (por exemplo, mapeada de uma imagem em disco).
+     */
+    public BlockDevice(ByteBuffer data, int blockCount, int blockSize, FreeSpaceBitmap bitmap) {
+        if (data.capacity() < (long) blockCount * blockSize) {
+            throw new IllegalArgumentException("Buffer smaller than device: " + data.capacity());
+        }
+        this.blockSize = blockSize;
+        this.blockCount = blockCount;
+        this.data = data;
+        this.bitmap = bitmap;
+        this.allocator = new ExtentAllocator(bitmap);
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    public FreeSpaceBitmap getBitmap() {
+        return bitmap;
+    }
+
+    public ExtentAllocator getAllocator() {
+        return allocator;
+    }
+
+    public char getChar(int block, int offsetInBlock) {
+        return data.getChar(block * blockSize + offsetInBlock);
+    }
+
+    public void putChar(int block, int offsetInBlock, char c) {
+        data.putChar(block * blockSize + offsetInBlock, c);
+    }
+
+    // Vista dos blocos [block, block + count), para E/S direta com um FileChannel.
+    ByteBuffer region(int block, int count) {
+        return data.slice(block * blockSize, count * blockSize);
+    }
+
+    /**
+     * Copia os blocos em uso (dados e mapa de bits) para {@code target}, que deve ter a mesma
+     * geometria e estar vazio. Trechos livres não são copiados.
+     */
+    public void copyUsedBlocksTo(BlockDevice target) {
+        if (target.blockCount != blockCount || target.blockSize != blockSize) {
+            throw new IllegalArgumentException("Geometry mismatch: " + target.blockCount + " x " + target.blockSize
+                    + " != " + blockCount + " x " + blockSize);
+        }
+        int block = 0;
+        while (block < blockCount) {
+            block += bitmap.freeRunLength(block, blockCount - block);
+            if (block >= blockCount) {
+                break;
+            }
+            int end = bitmap.nextFree(block);
+            if (end < 0) {
+                end = blockCount;
+            }
+            target.data.put(block * blockSize, data, block * blockSize, (end - block) * blockSize);
+            target.bitmap.markUsed(block, end - block);
+            block = end;
+        }
+    }
+
+    public int getUsedBlocks() {
+        return blockCount - bitmap.getFreeCount();
+    }
+
+    public long getCapacityBytes() {
+        return (long) blockCount * blockSize;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,9 @@
+package br.edu.fs.simulator.disk;
+
+public class DiskFullException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public DiskFullException(int requested, int available) {
+        super("No space left on device: requested " + requested + " block(s), " + available + " free");
+    }
+}
\ No newline at end of file
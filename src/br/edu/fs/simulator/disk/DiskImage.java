@@ -0,0 +1,356 @@
+package br.edu.fs.simulator.disk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Imagem binária do sistema de arquivos, acessada por {@link FileChannel} e {@link MappedByteBuffer}.
+ *
+ * Layout:
+ * <pre>
+ * [superbloco 4 KiB][mapa de bits][blocos de dados][tabela de inodes][extents][nomes]
+ * </pre>
+ * A região de dados fica mapeada o tempo todo e serve de {@link BlockDevice}, então o
+ * conteúdo dos arquivos não é copiado na montagem. Os metadados ficam depois dos dados e
+ * são regravados por inteiro a cada {@link #sync}; o superbloco é gravado por último.
+ *
+ * Os snapshots de {@link #writeSnapshot} são compactos: a região de dados guarda só os blocos
+ * em uso, na ordem do mapa de bits, e o arquivo não passa do que está ocupado. Eles não podem
+ * ser montados; são lidos com {@link #openSnapshot} e {@link #copyBlocksTo}.
+ */
+public class DiskImage implements Closeable {
+    private static final int MAGIC = 0x46535349; // "FSSI"
+    private static final int VERSION = 1;
+    private static final int SUPERBLOCK_SIZE = 4096;
+    private static final int INODE_RECORD_SIZE = 44;
+    // Campo de flags do superbloco (offset 52); imagens antigas têm zero ali.
+    private static final int FLAG_PACKED = 1;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int blockSize;
+    private final int blockCount;
+    private final long bitmapOffset;
+    private final long dataOffset;
+    private final long metadataOffset;
+    private final FreeSpaceBitmap bitmap;
+    private final boolean packed;
+    // Nulos numa imagem compacta.
+    private final MappedByteBuffer dataRegion;
+    private final BlockDevice device;
+
+    private long metadataLength;
+    private int inodeCount;
+    private int extentTotal;
+    private int namesLength;
+    private long checkpointLsn;
+
+    private DiskImage(Path path, FileChannel channel, int blockCount, int blockSize, long[] bitmapWords, boolean packed)
+            throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.blockSize = blockSize;
+        this.blockCount = blockCount;
+        this.bitmapOffset = SUPERBLOCK_SIZE;
+        long bitmapBytes = (long) ((blockCount + 63) >>> 6) * 8;
+        this.dataOffset = align(bitmapOffset + bitmapBytes, blockSize);
+        this.bitmap = bitmapWords == null ? new FreeSpaceBitmap(blockCount) : new FreeSpaceBitmap(blockCount, bitmapWords);
+        this.packed = packed;
+        if (packed) {
+            this.metadataOffset = dataOffset + (long) (blockCount - bitmap.getFreeCount()) * blockSize;
+            this.dataRegion = null;
+            this.device = null;
+        } else {
+            this.metadataOffset = dataOffset + (long) blockCount * blockSize;
+            this.dataRegion = channel.map(FileChannel.MapMode.READ_WRITE, dataOffset, (long) blockCount * blockSize);
+            this.device = new BlockDevice(dataRegion, blockCount, blockSize, bitmap);
+        }
+    }
+
+    public static DiskImage format(Path path, int blockCount, int blockSize) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            DiskImage image = new DiskImage(path, channel, blockCount, blockSize, null, false);
+            InodeRecords empty = new InodeRecords(1);
+            empty.add(-1, InodeRecords.TYPE_DIRECTORY, "/", System.currentTimeMillis(), System.currentTimeMillis(), 0);
+            image.sync(empty);
+            return image;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Abre uma imagem para montagem; snapshots compactos são recusados.
+     */
+    public static DiskImage open(Path path) throws IOException {
+        return open(path, false);
+    }
+
+    /**
+     * Abre uma imagem ou um snapshot compacto só para leitura dos blocos e da árvore.
+     */
+    public static DiskImage openSnapshot(Path path) throws IOException {
+        return open(path, true);
+    }
+
+    private static DiskImage open(Path path, boolean allowPacked) throws IOException {
+        if (!Files.exists(path)) {
+            throw new IOException("Image not found: " + path);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer superblock = ByteBuffer.allocate(SUPERBLOCK_SIZE);
+            readFully(channel, superblock, 0);
+            superblock.flip();
+            if (superblock.getInt(0) != MAGIC) {
+                throw new IOException("Not a file system image: " + path);
+            }
+            if (superblock.getInt(4) != VERSION) {
+                throw new IOException("Unsupported image version " + superblock.getInt(4));
+            }
+            int blockSize = superblock.getInt(8);
+            int blockCount = superblock.getInt(12);
+            boolean packed = (superblock.getInt(52) & FLAG_PACKED) != 0;
+            if (packed && !allowPacked) {
+                throw new IOException("Checkpoint snapshot cannot be mounted: " + path);
+            }
+
+            long[] words = new long[(blockCount + 63) >>> 6];
+            MappedByteBuffer bitmapRegion = channel.map(FileChannel.MapMode.READ_ONLY, SUPERBLOCK_SIZE, (long) words.length * 8);
+            bitmapRegion.asLongBuffer().get(words);
+
+            DiskImage image = new DiskImage(path, channel, blockCount, blockSize, words, packed);
+            image.metadataLength = superblock.getLong(16);
+            image.inodeCount = superblock.getInt(24);
+            image.extentTotal = superblock.getInt(28);
+            image.namesLength = superblock.getInt(32);
+            image.checkpointLsn = superblock.getLong(44);
+            return image;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Grava os blocos em uso de {@code source} e a árvore num snapshot compacto em {@code path},
+     * passando por um arquivo temporário: uma queda no meio deixa o snapshot anterior intacto.
+     */
+    public static void writeSnapshot(Path path, BlockDevice source, InodeRecords records, long checkpointLsn) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try (DiskImage snapshot = new DiskImage(temp, channel, source.getBlockCount(), source.getBlockSize(),
+                source.getBitmap().getWords().clone(), true)) {
+            long position = snapshot.dataOffset;
+            int block = 0;
+            while ((block = nextUsedRun(snapshot.bitmap, block)) < snapshot.blockCount) {
+                int end = runEnd(snapshot.bitmap, block);
+                writeFully(channel, source.region(block, end - block), position);
+                position += (long) (end - block) * snapshot.blockSize;
+                block = end;
+            }
+            snapshot.sync(records, checkpointLsn);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Copia os blocos em uso para {@code target}, que deve ter a mesma geometria e estar vazio.
+     */
+    public void copyBlocksTo(BlockDevice target) throws IOException {
+        if (!packed) {
+            device.copyUsedBlocksTo(target);
+            return;
+        }
+        if (target.getBlockCount() != blockCount || target.getBlockSize() != blockSize) {
+            throw new IllegalArgumentException("Geometry mismatch: " + target.getBlockCount() + " x " + target.getBlockSize()
+                    + " != " + blockCount + " x " + blockSize);
+        }
+        long position = dataOffset;
+        int block = 0;
+        while ((block = nextUsedRun(bitmap, block)) < blockCount) {
+            int end = runEnd(bitmap, block);
+            readFully(channel, target.region(block, end - block), position);
+            target.getBitmap().markUsed(block, end - block);
+            position += (long) (end - block) * blockSize;
+            block = end;
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @throws IllegalStateException num snapshot compacto, que não tem a região de dados mapeada
+     */
+    public BlockDevice getDevice() {
+        if (packed) {
+            throw new IllegalStateException("Packed snapshot has no mapped device");
+        }
+        return device;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getInodeCount() {
+        return inodeCount;
+    }
+
+    /**
+     * LSN do último registro do journal já refletido nesta imagem.
+     */
+    public long getCheckpointLsn() {
+        return checkpointLsn;
+    }
+
+    public InodeRecords readInodes() throws IOException {
+        InodeRecords records = new InodeRecords(inodeCount);
+        if (metadataLength == 0) {
+            return records;
+        }
+        MappedByteBuffer meta = channel.map(FileChannel.MapMode.READ_ONLY, metadataOffset, metadataLength);
+        for (int i = 0; i < inodeCount; i++) {
+            int base = i * INODE_RECORD_SIZE;
+            records.setRaw(i, meta.getInt(base), meta.getInt(base + 4), meta.getInt(base + 8), meta.getInt(base + 12),
+                    meta.getLong(base + 16), meta.getLong(base + 24), meta.getInt(base + 32), meta.getInt(base + 36),
+                    meta.getInt(base + 40));
+        }
+        int extentsBase = inodeCount * INODE_RECORD_SIZE;
+        int[] extents = new int[extentTotal * 2];
+        meta.position(extentsBase);
+        meta.asIntBuffer().get(extents);
+        byte[] names = new byte[namesLength];
+        meta.position(extentsBase + extentTotal * 8);
+        meta.get(names);
+        records.setLoaded(inodeCount, names, extents, extentTotal);
+        return records;
+    }
+
+    public void sync(InodeRecords records) throws IOException {
+        sync(records, checkpointLsn);
+    }
+
+    /**
+     * Grava mapa de bits, metadados e superbloco, e força tudo para o disco.
+     * {@code checkpointLsn} é gravado no superbloco junto com os metadados.
+     */
+    public void sync(InodeRecords records, long checkpointLsn) throws IOException {
+        int inodes = records.size();
+        int extents = records.getExtentTotal();
+        int nameBytes = records.getNamesLength();
+        long length = (long) inodes * INODE_RECORD_SIZE + (long) extents * 8 + nameBytes;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Metadata too large: " + length + " bytes");
+        }
+
+        if (dataRegion != null) {
+            dataRegion.force();
+        }
+
+        long[] words = bitmap.getWords();
+        MappedByteBuffer bitmapRegion = channel.map(FileChannel.MapMode.READ_WRITE, bitmapOffset, (long) words.length * 8);
+        bitmapRegion.asLongBuffer().put(words);
+        bitmapRegion.force();
+
+        if (length > 0) {
+            MappedByteBuffer meta = channel.map(FileChannel.MapMode.READ_WRITE, metadataOffset, length);
+            for (int i = 0; i < inodes; i++) {
+                int base = i * INODE_RECORD_SIZE;
+                meta.putInt(base, records.getParent(i));
+                meta.putInt(base + 4, records.getType(i));
+                meta.putInt(base + 8, records.getNameOffset(i));
+                meta.putInt(base + 12, records.getNameLength(i));
+                meta.putLong(base + 16, records.getCreated(i));
+                meta.putLong(base + 24, records.getModified(i));
+                meta.putInt(base + 32, records.getLength(i));
+                meta.putInt(base + 36, records.getFirstExtent(i));
+                meta.putInt(base + 40, records.getExtentCount(i));
+            }
+            meta.position(inodes * INODE_RECORD_SIZE);
+            meta.asIntBuffer().put(records.getExtents(), 0, extents * 2);
+            meta.position(inodes * INODE_RECORD_SIZE + extents * 8);
+            meta.put(records.getNames(), 0, nameBytes);
+            meta.force();
+        }
+        if (channel.size() > metadataOffset + length) {
+            channel.truncate(metadataOffset + length);
+        }
+
+        ByteBuffer superblock = ByteBuffer.allocate(SUPERBLOCK_SIZE);
+        superblock.putInt(0, MAGIC);
+        superblock.putInt(4, VERSION);
+        superblock.putInt(8, blockSize);
+        superblock.putInt(12, blockCount);
+        superblock.putLong(16, length);
+        superblock.putInt(24, inodes);
+        superblock.putInt(28, extents);
+        superblock.putInt(32, nameBytes);
+        superblock.putLong(36, System.currentTimeMillis());
+        superblock.putLong(44, checkpointLsn);
+        superblock.putInt(52, packed ? FLAG_PACKED : 0);
+        writeFully(channel, superblock, 0);
+        channel.force(true);
+
+        this.metadataLength = length;
+        this.inodeCount = inodes;
+        this.extentTotal = extents;
+        this.namesLength = nameBytes;
+        this.checkpointLsn = checkpointLsn;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Primeiro bloco em uso a partir de from, ou blockCount.
+    private static int nextUsedRun(FreeSpaceBitmap bitmap, int from) {
+        int count = bitmap.getBlockCount();
+        return from >= count ? count : from + bitmap.freeRunLength(from, count - from);
+    }
+
+    private static int runEnd(FreeSpaceBitmap bitmap, int from) {
+        int end = bitmap.nextFree(from);
+        return end < 0 ? bitmap.getBlockCount() : end;
+    }
+
+    private static long align(long value, int alignment) {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new IOException("Unexpected end of image");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,102 @@
+package br.edu.fs.simulator.disk;
+
+/**
+ * Alocador de extents sobre o mapa de bits: estende o último extent no lugar
+ * quando possível, depois procura um trecho contíguo (next-fit) e, se não houver,
+ * junta os trechos livres que encontrar. Alocação e liberação são sincronizadas: arquivos
+ * diferentes podem crescer em paralelo sobre o mesmo dispositivo.
+ */
+public class ExtentAllocator {
+    private final FreeSpaceBitmap bitmap;
+    private int nextFit;
+
+    private long allocations;
+    private long allocatedBlocks;
+    private long extentsCreated;
+    private long inPlaceExtensions;
+    private long failedAllocations;
+
+    public ExtentAllocator(FreeSpaceBitmap bitmap) {
+        this.bitmap = bitmap;
+    }
+
+    public synchronized void allocate(int blocks, ExtentList target) {
+        if (blocks <= 0) {
+            return;
+        }
+        if (blocks > bitmap.getFreeCount()) {
+            failedAllocations++;
+            throw new DiskFullException(blocks, bitmap.getFreeCount());
+        }
+        allocations++;
+        allocatedBlocks += blocks;
+
+        int lastEnd = target.lastEnd();
+        if (lastEnd >= 0 && lastEnd < bitmap.getBlockCount()) {
+            int run = bitmap.freeRunLength(lastEnd, blocks);
+            if (run > 0) {
+                bitmap.markUsed(lastEnd, run);
+                target.add(lastEnd, run);
+                blocks -= run;
+                inPlaceExtensions++;
+                nextFit = lastEnd + run;
+            }
+        }
+        if (blocks == 0) {
+            return;
+        }
+
+        int start = bitmap.findRun(nextFit, blocks);
+        if (start >= 0) {
+            take(start, blocks, target);
+            return;
+        }
+        while (blocks > 0) {
+            int free = bitmap.nextFree(nextFit);
+            if (free < 0) {
+                free = bitmap.nextFree(0);
+            }
+            int run = bitmap.freeRunLength(free, blocks);
+            take(free, run, target);
+            blocks -= run;
+        }
+    }
+
+    public synchronized void free(ExtentList extents, int keepBlocks) {
+        extents.truncate(keepBlocks, bitmap);
+    }
+
+    private void take(int start, int length, ExtentList target) {
+        bitmap.markUsed(start, length);
+        target.add(start, length);
+        extentsCreated++;
+        nextFit = start + length >= bitmap.getBlockCount() ? 0 : start + length;
+    }
+
+    /**
+     * Estatísticas dos trechos livres, lidas sem alocações em andamento.
+     */
+    public synchronized int[] freeRunStats() {
+        return bitmap.freeRunStats();
+    }
+
+    public long getAllocations() {
+        return allocations;
+    }
+
+    public long getAllocatedBlocks() {
+        return allocatedBlocks;
+    }
+
+    public long getExtentsCreated() {
+        return extentsCreated;
+    }
+
+    public long getInPlaceExtensions() {
+        return inPlaceExtensions;
+    }
+
+    public long getFailedAllocations() {
+        return failedAllocations;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,154 @@
+package br.edu.fs.simulator.disk;
+
+import br.edu.fs.simulator.util.TextStorage;
+
+/**
+ * Conteúdo de arquivo guardado em extents de um {@link BlockDevice}.
+ * Cada caractere ocupa 2 bytes (UTF-16), então o offset em bytes é o dobro do offset em caracteres.
+ */
+public class ExtentFile implements TextStorage {
+    private final BlockDevice device;
+    private final ExtentList extents;
+    private final int charsPerBlock;
+    private int length;
+
+    public ExtentFile(BlockDevice device) {
+        this.device = device;
+        this.extents = new ExtentList();
+        this.charsPerBlock = device.getBlockSize() / 2;
+    }
+
+    /**
+     * Reabre um arquivo cujos blocos já estão marcados como usados no dispositivo.
+     */
+    public ExtentFile(BlockDevice device, ExtentList extents, int length) {
+        this.device = device;
+        this.extents = extents;
+        this.charsPerBlock = device.getBlockSize() / 2;
+        this.length = length;
+    }
+
+    public ExtentList getExtents() {
+        return extents;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new StringIndexOutOfBoundsException(index);
+        }
+        return device.getChar(extents.physicalBlock(index / charsPerBlock), (index % charsPerBlock) * 2);
+    }
+
+    public String read(int offset, int len) {
+        char[] out = new char[len];
+        copyTo(offset, out, 0, len);
+        return new String(out);
+    }
+
+    public void copyTo(int offset, char[] dest, int destOffset, int len) {
+        if (offset < 0 || len < 0 || offset + len > length) {
+            throw new StringIndexOutOfBoundsException("offset " + offset + ", length " + len + ", size " + length);
+        }
+        int pos = offset;
+        int end = offset + len;
+        while (pos < end) {
+            int logical = pos / charsPerBlock;
+            int block = extents.physicalBlock(logical);
+            int inner = pos % charsPerBlock;
+            int n = Math.min(charsPerBlock - inner, end - pos);
+            for (int i = 0; i < n; i++) {
+                dest[destOffset + (pos - offset) + i] = device.getChar(block, (inner + i) * 2);
+            }
+            pos += n;
+        }
+    }
+
+    public void append(String data) {
+        write(length, data);
+    }
+
+    public void write(int offset, String data) {
+        if (offset < 0 || offset > length) {
+            throw new StringIndexOutOfBoundsException(offset);
+        }
+        int end = offset + data.length();
+        ensureCapacity(end);
+        int pos = offset;
+        while (pos < end) {
+            int block = extents.physicalBlock(pos / charsPerBlock);
+            int inner = pos % charsPerBlock;
+            int n = Math.min(charsPerBlock - inner, end - pos);
+            for (int i = 0; i < n; i++) {
+                device.putChar(block, (inner + i) * 2, data.charAt(pos - offset + i));
+            }
+            pos += n;
+        }
+        if (end > length) {
+            length = end;
+        }
+    }
+
+    // Em disco não há como abrir espaço no meio de um bloco: a cauda é regravada depois dos dados.
+    public void insert(int offset, String data) {
+        if (offset < 0 || offset > length) {
+            throw new StringIndexOutOfBoundsException(offset);
+        }
+        ensureCapacity(length + data.length());
+        String tail = read(offset, length - offset);
+        write(offset, data);
+        write(offset + data.length(), tail);
+    }
+
+    public void truncate(int newLength) {
+        if (newLength < 0 || newLength > length) {
+            throw new StringIndexOutOfBoundsException(newLength);
+        }
+        length = newLength;
+        device.getAllocator().free(extents, blocksFor(newLength));
+    }
+
+    public int indexOf(char ch, int fromIndex) {
+        for (int i = Math.max(fromIndex, 0); i < length; i++) {
+            if (charAt(i) == ch) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int lastIndexOf(char ch, int fromIndex) {
+        for (int i = Math.min(fromIndex, length - 1); i >= 0; i--) {
+            if (charAt(i) == ch) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public void clear() {
+        truncate(0);
+    }
+
+    public void release() {
+        truncate(0);
+    }
+
+    public String toString() {
+        return read(0, length);
+    }
+
+    private void ensureCapacity(int chars) {
+        int needed = blocksFor(chars) - extents.getTotalBlocks();
+        if (needed > 0) {
+            device.getAllocator().allocate(needed, extents);
+        }
+    }
+
+    private int blocksFor(int chars) {
+        return (chars + charsPerBlock - 1) / charsPerBlock;
+    }
+}
\ No newline at end of file
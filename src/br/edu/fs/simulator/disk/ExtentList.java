@@ -0,0 +1,119 @@
+package br.edu.fs.simulator.disk;
+
+/**
+ * Lista de extents (bloco inicial, quantidade) de um arquivo, em ordem lógica.
+ */
+public class ExtentList {
+    private static final int[] EMPTY = new int[0];
+
+    private int[] starts;
+    private int[] lengths;
+    private int[] logicalStarts;
+    private int count;
+    private int totalBlocks;
+
+    public ExtentList() {
+        this.starts = EMPTY;
+        this.lengths = EMPTY;
+        this.logicalStarts = EMPTY;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getTotalBlocks() {
+        return totalBlocks;
+    }
+
+    public int startAt(int index) {
+        return starts[index];
+    }
+
+    public int lengthAt(int index) {
+        return lengths[index];
+    }
+
+    /**
+     * Bloco físico logo após o último extent, ou -1 se a lista estiver vazia.
+     */
+    public int lastEnd() {
+        return count == 0 ? -1 : starts[count - 1] + lengths[count - 1];
+    }
+
+    public void add(int start, int length) {
+        if (count > 0 && starts[count - 1] + lengths[count - 1] == start) {
+            lengths[count - 1] += length;
+        } else {
+            if (count == starts.length) {
+                int newCapacity = Math.max(count * 2, 2);
+                starts = grow(starts, newCapacity);
+                lengths = grow(lengths, newCapacity);
+                logicalStarts = grow(logicalStarts, newCapacity);
+            }
+            starts[count] = start;
+            lengths[count] = length;
+            logicalStarts[count] = totalBlocks;
+            count++;
+        }
+        totalBlocks += length;
+    }
+
+    /**
+     * Traduz um bloco lógico do arquivo para o bloco físico no dispositivo.
+     */
+    public int physicalBlock(int logicalBlock) {
+        int index = extentOf(logicalBlock);
+        return starts[index] + (logicalBlock - logicalStarts[index]);
+    }
+
+    /**
+     * Quantos blocos lógicos contíguos no disco existem a partir de {@code logicalBlock}.
+     */
+    public int contiguousFrom(int logicalBlock) {
+        int index = extentOf(logicalBlock);
+        return lengths[index] - (logicalBlock - logicalStarts[index]);
+    }
+
+    /**
+     * Remove os blocos lógicos a partir de {@code keepBlocks}, devolvendo-os ao bitmap.
+     */
+    public void truncate(int keepBlocks, FreeSpaceBitmap bitmap) {
+        while (totalBlocks > keepBlocks) {
+            int last = count - 1;
+            int excess = totalBlocks - keepBlocks;
+            if (excess >= lengths[last]) {
+                bitmap.markFree(starts[last], lengths[last]);
+                totalBlocks -= lengths[last];
+                count--;
+            } else {
+                bitmap.markFree(starts[last] + lengths[last] - excess, excess);
+                lengths[last] -= excess;
+                totalBlocks -= excess;
+            }
+        }
+    }
+
+    private int extentOf(int logicalBlock) {
+        if (logicalBlock < 0 || logicalBlock >= totalBlocks) {
+            throw new IndexOutOfBoundsException("Block: " + logicalBlock + ", Blocks: " + totalBlocks);
+        }
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (logicalStarts[mid] <= logicalBlock) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private static int[] grow(int[] array, int newCapacity) {
+        int[] result = new int[newCapacity];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,165 @@
+package br.edu.fs.simulator.disk;
+
+/**
+ * Mapa de bits do espaço livre: bit 1 = bloco ocupado.
+ */
+public class FreeSpaceBitmap {
+    private final long[] words;
+    private final int blockCount;
+    private int freeCount;
+
+    public FreeSpaceBitmap(int blockCount) {
+        if (blockCount <= 0) {
+            throw new IllegalArgumentException("Illegal block count: " + blockCount);
+        }
+        this.blockCount = blockCount;
+        this.words = new long[(blockCount + 63) >>> 6];
+        this.freeCount = blockCount;
+        int tail = blockCount & 63;
+        if (tail != 0) {
+            words[words.length - 1] = -1L << tail;
+        }
+    }
+
+    /**
+     * Restaura um mapa de bits salvo (ver {@link #getWords()}).
+     */
+    public FreeSpaceBitmap(int blockCount, long[] words) {
+        if (words.length != (blockCount + 63) >>> 6) {
+            throw new IllegalArgumentException("Bitmap size mismatch: " + words.length + " words for " + blockCount + " blocks");
+        }
+        this.blockCount = blockCount;
+        this.words = words;
+        int used = 0;
+        for (long word : words) {
+            used += Long.bitCount(word);
+        }
+        int tail = blockCount & 63;
+        if (tail != 0) {
+            used -= 64 - tail;
+        }
+        this.freeCount = blockCount - used;
+    }
+
+    long[] getWords() {
+        return words;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    public int getFreeCount() {
+        return freeCount;
+    }
+
+    public boolean isFree(int block) {
+        return (words[block >>> 6] & (1L << block)) == 0;
+    }
+
+    public void markUsed(int start, int length) {
+        for (int b = start; b < start + length; b++) {
+            long bit = 1L << b;
+            if ((words[b >>> 6] & bit) != 0) {
+                throw new IllegalStateException("Block " + b + " already in use");
+            }
+            words[b >>> 6] |= bit;
+        }
+        freeCount -= length;
+    }
+
+    public void markFree(int start, int length) {
+        for (int b = start; b < start + length; b++) {
+            long bit = 1L << b;
+            if ((words[b >>> 6] & bit) == 0) {
+                throw new IllegalStateException("Block " + b + " already free");
+            }
+            words[b >>> 6] &= ~bit;
+        }
+        freeCount += length;
+    }
+
+    /**
+     * Primeiro bloco livre a partir de {@code from}, ou -1.
+     */
+    public int nextFree(int from) {
+        if (from >= blockCount) {
+            return -1;
+        }
+        int index = from >>> 6;
+        long free = ~words[index] & (-1L << from);
+        while (free == 0) {
+            if (++index == words.length) {
+                return -1;
+            }
+            free = ~words[index];
+        }
+        int block = (index << 6) + Long.numberOfTrailingZeros(free);
+        return block < blockCount ? block : -1;
+    }
+
+    /**
+     * Quantidade de blocos livres consecutivos a partir de {@code start}, limitada a {@code max}.
+     */
+    public int freeRunLength(int start, int max) {
+        int length = 0;
+        int b = start;
+        while (length < max && b < blockCount) {
+            if ((b & 63) == 0 && words[b >>> 6] == 0 && max - length >= 64) {
+                length += 64;
+                b += 64;
+                continue;
+            }
+            if ((words[b >>> 6] & (1L << b)) != 0) {
+                break;
+            }
+            length++;
+            b++;
+        }
+        return Math.min(length, max);
+    }
+
+    /**
+     * Primeiro trecho livre com pelo menos {@code length} blocos, começando em
+     * {@code from} e dando a volta no dispositivo. Retorna -1 se não houver.
+     */
+    public int findRun(int from, int length) {
+        int start = findRunBetween(from, blockCount, length);
+        if (start < 0 && from > 0) {
+            start = findRunBetween(0, Math.min(from + length, blockCount), length);
+        }
+        return start;
+    }
+
+    private int findRunBetween(int from, int limit, int length) {
+        int b = from;
+        while (b < limit) {
+            int free = nextFree(b);
+            if (free < 0 || free >= limit) {
+                return -1;
+            }
+            int run = freeRunLength(free, length);
+            if (run >= length) {
+                return free;
+            }
+            b = free + run + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Retorna {número de trechos livres, maior trecho livre}.
+     */
+    public int[] freeRunStats() {
+        int runs = 0;
+        int largest = 0;
+        int b = nextFree(0);
+        while (b >= 0) {
+            int run = freeRunLength(b, blockCount);
+            runs++;
+            largest = Math.max(largest, run);
+            b = nextFree(b + run);
+        }
+        return new int[]{runs, largest};
+    }
+}
\ No newline at end of file
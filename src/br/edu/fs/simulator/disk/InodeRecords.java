@@ -0,0 +1,195 @@
+package br.edu.fs.simulator.disk;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tabela de inodes em vetores primitivos, no formato em que é gravada na imagem.
+ * O inode 0 é a raiz; todo inode aparece depois do seu diretório pai.
+ */
+public class InodeRecords {
+    public static final int TYPE_DIRECTORY = 0;
+    public static final int TYPE_FILE = 1;
+
+    private int count;
+    private int[] parent;
+    private int[] type;
+    private long[] created;
+    private long[] modified;
+    private int[] length;
+    private int[] nameOffset;
+    private int[] nameLength;
+    private int[] firstExtent;
+    private int[] extentCount;
+
+    private byte[] names;
+    private int namesLength;
+
+    private int[] extents;
+    private int extentTotal;
+
+    public InodeRecords(int expectedInodes) {
+        int capacity = Math.max(expectedInodes, 16);
+        this.parent = new int[capacity];
+        this.type = new int[capacity];
+        this.created = new long[capacity];
+        this.modified = new long[capacity];
+        this.length = new int[capacity];
+        this.nameOffset = new int[capacity];
+        this.nameLength = new int[capacity];
+        this.firstExtent = new int[capacity];
+        this.extentCount = new int[capacity];
+        this.names = new byte[capacity * 8];
+        this.extents = new int[capacity * 2];
+    }
+
+    public int add(int parentInode, int inodeType, String name, long createdAt, long modifiedAt, int contentLength) {
+        return add(parentInode, inodeType, name.getBytes(StandardCharsets.UTF_8), createdAt, modifiedAt, contentLength);
+    }
+
+    int add(int parentInode, int inodeType, byte[] encodedName, long createdAt, long modifiedAt, int contentLength) {
+        if (count == parent.length) {
+            int newCapacity = count + (count >> 1);
+            parent = grow(parent, newCapacity);
+            type = grow(type, newCapacity);
+            created = grow(created, newCapacity);
+            modified = grow(modified, newCapacity);
+            length = grow(length, newCapacity);
+            nameOffset = grow(nameOffset, newCapacity);
+            nameLength = grow(nameLength, newCapacity);
+            firstExtent = grow(firstExtent, newCapacity);
+            extentCount = grow(extentCount, newCapacity);
+        }
+        if (namesLength + encodedName.length > names.length) {
+            byte[] newNames = new byte[Math.max(names.length * 2, namesLength + encodedName.length)];
+            System.arraycopy(names, 0, newNames, 0, namesLength);
+            names = newNames;
+        }
+        int inode = count++;
+        parent[inode] = parentInode;
+        type[inode] = inodeType;
+        created[inode] = createdAt;
+        modified[inode] = modifiedAt;
+        length[inode] = contentLength;
+        nameOffset[inode] = namesLength;
+        nameLength[inode] = encodedName.length;
+        System.arraycopy(encodedName, 0, names, namesLength, encodedName.length);
+        namesLength += encodedName.length;
+        firstExtent[inode] = extentTotal;
+        extentCount[inode] = 0;
+        return inode;
+    }
+
+    /**
+     * Anexa um extent ao último inode adicionado.
+     */
+    public void addExtent(int start, int blocks) {
+        if (extentTotal * 2 + 2 > extents.length) {
+            extents = grow(extents, extents.length * 2);
+        }
+        extents[extentTotal * 2] = start;
+        extents[extentTotal * 2 + 1] = blocks;
+        extentTotal++;
+        extentCount[count - 1]++;
+    }
+
+    void setRaw(int inode, int parentInode, int inodeType, int nameOff, int nameLen, long createdAt, long modifiedAt,
+                int contentLength, int first, int extentsOfInode) {
+        parent[inode] = parentInode;
+        type[inode] = inodeType;
+        nameOffset[inode] = nameOff;
+        nameLength[inode] = nameLen;
+        created[inode] = createdAt;
+        modified[inode] = modifiedAt;
+        length[inode] = contentLength;
+        firstExtent[inode] = first;
+        extentCount[inode] = extentsOfInode;
+    }
+
+    void setLoaded(int inodes, byte[] loadedNames, int[] loadedExtents, int loadedExtentTotal) {
+        this.count = inodes;
+        this.names = loadedNames;
+        this.namesLength = loadedNames.length;
+        this.extents = loadedExtents;
+        this.extentTotal = loadedExtentTotal;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getParent(int inode) {
+        return parent[inode];
+    }
+
+    public int getType(int inode) {
+        return type[inode];
+    }
+
+    public String getName(int inode) {
+        return new String(names, nameOffset[inode], nameLength[inode], StandardCharsets.UTF_8);
+    }
+
+    public long getCreated(int inode) {
+        return created[inode];
+    }
+
+    public long getModified(int inode) {
+        return modified[inode];
+    }
+
+    public int getLength(int inode) {
+        return length[inode];
+    }
+
+    public int getExtentCount(int inode) {
+        return extentCount[inode];
+    }
+
+    public int getExtentStart(int inode, int index) {
+        return extents[(firstExtent[inode] + index) * 2];
+    }
+
+    public int getExtentBlocks(int inode, int index) {
+        return extents[(firstExtent[inode] + index) * 2 + 1];
+    }
+
+    int getNameOffset(int inode) {
+        return nameOffset[inode];
+    }
+
+    int getNameLength(int inode) {
+        return nameLength[inode];
+    }
+
+    int getFirstExtent(int inode) {
+        return firstExtent[inode];
+    }
+
+    byte[] getNames() {
+        return names;
+    }
+
+    int getNamesLength() {
+        return namesLength;
+    }
+
+    int[] getExtents() {
+        return extents;
+    }
+
+    int getExtentTotal() {
+        return extentTotal;
+    }
+
+    private static int[] grow(int[] array, int newCapacity) {
+        int[] result = new int[newCapacity];
+        System.arraycopy(array, 0, result, 0, Math.min(array.length, newCapacity));
+        return result;
+    }
+
+    private static long[] grow(long[] array, int newCapacity) {
+        long[] result = new long[newCapacity];
+        System.arraycopy(array, 0, result, 0, Math.min(array.length, newCapacity));
+        return result;
+    }
+}
\ No newline at end of file
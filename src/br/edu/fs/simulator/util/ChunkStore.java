@@ -0,0 +1,256 @@
+package br.edu.fs.simulator.util;
+
+import java.util.Arrays;
+
+/**
+ * Blocos de texto endereçados pelo conteúdo: um bloco igual a outro já guardado não ocupa memória
+ * de novo, só conta mais uma referência. Cada bloco é identificado por um número e procurado por
+ * um hash de 64 bits do seu conteúdo; quando dois hashes coincidem os caracteres são comparados,
+ * então uma colisão nunca junta blocos diferentes.
+ *
+ * Um bloco guardado não muda mais. Quem precisa alterá-lo chama {@link #claim(int)}: se ninguém
+ * mais o usa, o vetor sai do depósito e volta a ser só de quem chamou; senão, é preciso copiá-lo
+ * e soltar a referência. A tabela é sincronizada; os vetores entregues podem ser lidos sem trava.
+ */
+public final class ChunkStore {
+    public static final int NONE = -1;
+
+    private static final long P = 0x9E3779B97F4A7C15L;
+
+    // Colunas por id. Os vetores podem ter mais capacidade que o conteúdo (o fim de um arquivo
+    // cresce por duplicação); só os primeiros lengths[id] caracteres contam.
+    private char[][] chunks = new char[16][];
+    private int[] lengths = new int[16];
+    private long[] hashes = new long[16];
+    private int[] references = new int[16];
+    private int highWater;
+    private int[] freeIds = new int[16];
+    private int freeCount;
+    // Id + 1, ou 0 para vazio; sondagem linear, no máximo metade ocupada.
+    private int[] slots = new int[32];
+    private int entries;
+
+    private long physicalChars;
+    private long logicalChars;
+    private long referenceCount;
+    private long sharedInterns;
+
+    /**
+     * Hash de {@code chunk[0, length)}. Lê quatro caracteres por vez, numa palavra de 64 bits, e
+     * alterna quatro acumuladores para que uma multiplicação não espere a anterior.
+     */
+    private static long hash(char[] chunk, int length) {
+        long h0 = 0;
+        long h1 = 0;
+        long h2 = 0;
+        long h3 = 0;
+        int i = 0;
+        for (; i + 16 <= length; i += 16) {
+            h0 = h0 * P + word(chunk, i);
+            h1 = h1 * P + word(chunk, i + 4);
+            h2 = h2 * P + word(chunk, i + 8);
+            h3 = h3 * P + word(chunk, i + 12);
+        }
+        long h = ((h0 * P + h1) * P + h2) * P + h3;
+        for (; i < length; i++) {
+            h = h * P + chunk[i];
+        }
+        return h * P + length;
+    }
+
+    private static long word(char[] chunk, int i) {
+        return (long) chunk[i] << 48 | (long) chunk[i + 1] << 32 | (long) chunk[i + 2] << 16 | chunk[i + 3];
+    }
+
+    /**
+     * Guarda {@code holder[index][0, length)} e devolve o id do bloco. Se um bloco igual já está
+     * guardado, {@code holder[index]} passa a ser o vetor dele e o de quem chamou é descartado.
+     */
+    public int intern(char[][] holder, int index, int length) {
+        // O hash é calculado fora da trava; só a tabela é compartilhada.
+        return intern(holder, index, length, hash(holder[index], length));
+    }
+
+    private synchronized int intern(char[][] holder, int index, int length, long h) {
+        char[] chunk = holder[index];
+        int mask = slots.length - 1;
+        for (int slot = slotOf(h, mask); slots[slot] != 0; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (hashes[id] == h && lengths[id] == length && Arrays.equals(chunks[id], 0, length, chunk, 0, length)) {
+                references[id]++;
+                referenceCount++;
+                logicalChars += length;
+                sharedInterns++;
+                holder[index] = chunks[id];
+                return id;
+            }
+        }
+        int id = newId();
+        chunks[id] = chunk;
+        lengths[id] = length;
+        hashes[id] = h;
+        references[id] = 1;
+        referenceCount++;
+        logicalChars += length;
+        physicalChars += length;
+        addSlot(id);
+        return id;
+    }
+
+    /**
+     * Conta mais uma referência a um bloco guardado, para quem vai usar o mesmo vetor.
+     */
+    public synchronized void retain(int id) {
+        if (references[id] <= 0) {
+            throw new IllegalStateException("Chunk " + id + " is free");
+        }
+        references[id]++;
+        referenceCount++;
+        logicalChars += lengths[id];
+    }
+
+    /**
+     * Solta uma referência; sem referências, o bloco sai do depósito.
+     */
+    public synchronized void release(int id) {
+        if (references[id] <= 0) {
+            throw new IllegalStateException("Chunk " + id + " has no references");
+        }
+        references[id]--;
+        referenceCount--;
+        logicalChars -= lengths[id];
+        if (references[id] == 0) {
+            remove(id);
+        }
+    }
+
+    /**
+     * Tira o bloco do depósito se quem chama tem a única referência; o vetor passa a ser só dele
+     * e pode ser alterado. Devolve false, sem mudar nada, se o bloco é compartilhado.
+     */
+    public synchronized boolean claim(int id) {
+        if (references[id] != 1) {
+            return false;
+        }
+        references[id] = 0;
+        referenceCount--;
+        logicalChars -= lengths[id];
+        remove(id);
+        return true;
+    }
+
+    /**
+     * Referências ao bloco; 1 quer dizer que só um texto o usa.
+     */
+    public synchronized int getReferences(int id) {
+        return references[id];
+    }
+
+    /**
+     * Blocos distintos guardados.
+     */
+    public synchronized int getChunkCount() {
+        return entries;
+    }
+
+    /**
+     * Referências a blocos, somando todos os textos que os usam.
+     */
+    public synchronized long getReferenceCount() {
+        return referenceCount;
+    }
+
+    /**
+     * Caracteres que os textos enxergam: cada bloco contado uma vez por referência.
+     */
+    public synchronized long getLogicalChars() {
+        return logicalChars;
+    }
+
+    /**
+     * Caracteres de fato guardados: cada bloco uma vez só.
+     */
+    public synchronized long getPhysicalChars() {
+        return physicalChars;
+    }
+
+    /**
+     * Vezes em que um bloco novo já estava guardado e foi reaproveitado.
+     */
+    public synchronized long getSharedInterns() {
+        return sharedInterns;
+    }
+
+    private void remove(int id) {
+        physicalChars -= lengths[id];
+        removeSlot(id);
+        chunks[id] = null;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+    }
+
+    private int newId() {
+        if (freeCount > 0) {
+            return freeIds[--freeCount];
+        }
+        if (highWater == chunks.length) {
+            int capacity = highWater * 2;
+            chunks = Arrays.copyOf(chunks, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            references = Arrays.copyOf(references, capacity);
+        }
+        return highWater++;
+    }
+
+    private static int slotOf(long h, int mask) {
+        long mixed = (h ^ (h >>> 32)) * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> 32) & mask;
+    }
+
+    private void addSlot(int id) {
+        if ((entries + 1) * 2 > slots.length) {
+            int[] old = slots;
+            slots = new int[old.length * 2];
+            for (int entry : old) {
+                if (entry != 0) {
+                    insertSlot(entry - 1);
+                }
+            }
+        }
+        insertSlot(id);
+        entries++;
+    }
+
+    private void insertSlot(int id) {
+        int mask = slots.length - 1;
+        int slot = slotOf(hashes[id], mask);
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = id + 1;
+    }
+
+    // Remoção com deslocamento para trás: quem estava depois da vaga e não está na posição
+    // preferida volta para ela, e a sondagem linear continua sem lápides.
+    private void removeSlot(int id) {
+        int mask = slots.length - 1;
+        int slot = slotOf(hashes[id], mask);
+        while (slots[slot] != id + 1) {
+            slot = (slot + 1) & mask;
+        }
+        int hole = slot;
+        for (int next = (hole + 1) & mask; slots[next] != 0; next = (next + 1) & mask) {
+            int preferred = slotOf(hashes[slots[next] - 1], mask);
+            // Move se a posição preferida não está no trecho circular (hole, next].
+            if (((next - preferred) & mask) >= ((next - hole) & mask)) {
+                slots[hole] = slots[next];
+                hole = next;
+            }
+        }
+        slots[hole] = 0;
+        entries--;
+    }
+}
\ No newline at end of file
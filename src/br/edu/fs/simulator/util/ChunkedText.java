@@ -0,0 +1,454 @@
+package br.edu.fs.simulator.util;
+
+import java.util.Arrays;
+
+/**
+ * Texto armazenado em blocos de no máximo {@code CHUNK_SIZE} caracteres.
+ * Leituras, escritas, inserções e truncamentos tocam apenas os blocos afetados,
+ * sem copiar o conteúdo inteiro. Só o último bloco cresce por duplicação.
+ *
+ * Com um {@link ChunkStore}, {@link #seal()} guarda os blocos no depósito e blocos iguais de
+ * textos diferentes passam a ser um vetor só. Como o texto anexado enche cada bloco até
+ * {@code CHUNK_SIZE}, conteúdos iguais escritos por substituição ou anexos têm os mesmos blocos.
+ * Um bloco guardado é copiado antes de ser alterado, a menos que só este texto o use.
+ */
+public class ChunkedText implements TextStorage {
+    public static final int CHUNK_SIZE = 4096;
+    private static final int MIN_CHUNK_CAPACITY = 16;
+
+    private char[][] chunks;
+    private int[] counts;
+    private int[] starts;
+    private int chunkCount;
+    private int length;
+    // Reconstruído sob demanda na leitura; volatile e sincronizado porque vários leitores podem
+    // chegar aqui ao mesmo tempo.
+    private volatile boolean startsValid;
+    // Só com depósito: id de cada bloco nele, ou NONE se o bloco ainda é só deste texto. Os
+    // blocos fora de [dirtyFrom, dirtyTo) estão todos no depósito.
+    private final ChunkStore store;
+    private int[] ids;
+    private int dirtyFrom = Integer.MAX_VALUE;
+    private int dirtyTo;
+
+    public ChunkedText() {
+        this((ChunkStore) null);
+    }
+
+    /**
+     * Texto que deduplica seus blocos em {@code store} a cada {@link #seal()}; sem depósito
+     * ({@code null}), os blocos são só dele.
+     */
+    public ChunkedText(ChunkStore store) {
+        this.store = store;
+        this.chunks = new char[4][];
+        this.counts = new int[4];
+        this.starts = new int[4];
+        this.ids = store == null ? null : new int[4];
+        this.startsValid = true;
+    }
+
+    public ChunkedText(String text) {
+        this();
+        append(text);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int chunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * Memória estimada que só este texto segura: os vetores de controle e a capacidade dos
+     * blocos que nenhum outro texto usa.
+     */
+    public long memoryBytes() {
+        long bytes = 40 + 3 * (16 + 4L * chunks.length) + (ids == null ? 0 : 16 + 4L * ids.length);
+        for (int i = 0; i < chunkCount; i++) {
+            if (ids == null || ids[i] == ChunkStore.NONE || store.getReferences(ids[i]) == 1) {
+                bytes += 16 + 2L * chunks[i].length;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Guarda no depósito os blocos alterados desde o último seal; os que já existiam lá são
+     * trocados pelo vetor compartilhado. Sem depósito, não faz nada.
+     */
+    public void seal() {
+        if (ids == null) {
+            return;
+        }
+        for (int i = dirtyFrom, to = Math.min(dirtyTo, chunkCount); i < to; i++) {
+            if (ids[i] == ChunkStore.NONE && counts[i] > 0) {
+                ids[i] = store.intern(chunks, i, counts[i]);
+            }
+        }
+        dirtyFrom = Integer.MAX_VALUE;
+        dirtyTo = 0;
+    }
+
+    /**
+     * Os primeiros {@code length} caracteres num texto novo, no mesmo depósito. Os blocos
+     * guardados são compartilhados em vez de copiados; só o último, se for cortado, é copiado.
+     */
+    public ChunkedText copy(int length) {
+        checkRange(0, length);
+        ChunkedText copy = new ChunkedText(store);
+        if (length == 0) {
+            return copy;
+        }
+        int last = locate(length - 1);
+        for (int i = 0; i <= last; i++) {
+            int count = i == last ? length - starts[i] : counts[i];
+            if (ids != null && ids[i] != ChunkStore.NONE && count == counts[i]) {
+                store.retain(ids[i]);
+                copy.addChunk(i, chunks[i], count);
+                copy.ids[i] = ids[i];
+            } else {
+                copy.addChunk(i, Arrays.copyOf(chunks[i], Math.max(count, MIN_CHUNK_CAPACITY)), count);
+            }
+        }
+        copy.length = length;
+        copy.seal();
+        return copy;
+    }
+
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new StringIndexOutOfBoundsException(index);
+        }
+        int chunk = locate(index);
+        return chunks[chunk][index - starts[chunk]];
+    }
+
+    public String read(int offset, int len) {
+        checkRange(offset, len);
+        char[] out = new char[len];
+        copyTo(offset, out, 0, len);
+        return new String(out);
+    }
+
+    /**
+     * Copia {@code len} caracteres a partir de {@code offset} para {@code dest}.
+     */
+    public void copyTo(int offset, char[] dest, int destOffset, int len) {
+        checkRange(offset, len);
+        if (len == 0) {
+            return;
+        }
+        int chunk = locate(offset);
+        int inner = offset - starts[chunk];
+        int copied = 0;
+        while (copied < len) {
+            int n = Math.min(counts[chunk] - inner, len - copied);
+            System.arraycopy(chunks[chunk], inner, dest, destOffset + copied, n);
+            copied += n;
+            chunk++;
+            inner = 0;
+        }
+    }
+
+    public void append(String data) {
+        if (data == null) data = "null";
+        int pos = 0;
+        int len = data.length();
+        while (pos < len) {
+            if (chunkCount == 0 || counts[chunkCount - 1] == CHUNK_SIZE) {
+                addChunk(chunkCount, new char[Math.min(Math.max(len - pos, MIN_CHUNK_CAPACITY), CHUNK_SIZE)], 0);
+            }
+            int last = chunkCount - 1;
+            own(last);
+            int n = Math.min(CHUNK_SIZE - counts[last], len - pos);
+            ensureChunkCapacity(last, counts[last] + n);
+            data.getChars(pos, pos + n, chunks[last], counts[last]);
+            counts[last] += n;
+            pos += n;
+        }
+        length += len;
+    }
+
+    /**
+     * Sobrescreve a partir de {@code offset}; o que passar do fim é anexado.
+     */
+    public void write(int offset, String data) {
+        if (offset < 0 || offset > length) {
+            throw new StringIndexOutOfBoundsException(offset);
+        }
+        int overlap = Math.min(data.length(), length - offset);
+        if (overlap > 0) {
+            int chunk = locate(offset);
+            int inner = offset - starts[chunk];
+            int pos = 0;
+            while (pos < overlap) {
+                int n = Math.min(counts[chunk] - inner, overlap - pos);
+                own(chunk);
+                data.getChars(pos, pos + n, chunks[chunk], inner);
+                pos += n;
+                chunk++;
+                inner = 0;
+            }
+        }
+        if (overlap < data.length()) {
+            append(data.substring(overlap));
+        }
+    }
+
+    public void insert(int offset, String data) {
+        if (offset < 0 || offset > length) {
+            throw new StringIndexOutOfBoundsException(offset);
+        }
+        int len = data.length();
+        if (len == 0) {
+            return;
+        }
+        if (offset == length) {
+            append(data);
+            return;
+        }
+        int chunk = locate(offset);
+        int inner = offset - starts[chunk];
+        own(chunk);
+        if (counts[chunk] + len <= CHUNK_SIZE) {
+            ensureChunkCapacity(chunk, counts[chunk] + len);
+            char[] c = chunks[chunk];
+            System.arraycopy(c, inner, c, inner + len, counts[chunk] - inner);
+            data.getChars(0, len, c, inner);
+            counts[chunk] += len;
+        } else {
+            // Divide o bloco: [0, inner) permanece, os dados entram em blocos novos e a cauda vira outro bloco.
+            int tailLength = counts[chunk] - inner;
+            char[] tail = new char[tailLength];
+            System.arraycopy(chunks[chunk], inner, tail, 0, tailLength);
+            counts[chunk] = inner;
+            int at = chunk + 1;
+            int pos = 0;
+            while (pos < len) {
+                int n = Math.min(CHUNK_SIZE, len - pos);
+                char[] c = new char[n];
+                data.getChars(pos, pos + n, c, 0);
+                addChunk(at++, c, n);
+                pos += n;
+            }
+            addChunk(at, tail, tailLength);
+            if (inner == 0) {
+                removeChunk(chunk);
+            }
+        }
+        length += len;
+        startsValid = false;
+    }
+
+    public void truncate(int newLength) {
+        if (newLength < 0 || newLength > length) {
+            throw new StringIndexOutOfBoundsException(newLength);
+        }
+        if (newLength == length) {
+            return;
+        }
+        if (newLength == 0) {
+            clear();
+            return;
+        }
+        int chunk = locate(newLength - 1);
+        if (counts[chunk] != newLength - starts[chunk]) {
+            own(chunk);
+            counts[chunk] = newLength - starts[chunk];
+        }
+        for (int i = chunk + 1; i < chunkCount; i++) {
+            releaseChunk(i);
+            chunks[i] = null;
+            counts[i] = 0;
+        }
+        chunkCount = chunk + 1;
+        length = newLength;
+    }
+
+    public int indexOf(char ch, int fromIndex) {
+        if (fromIndex < 0) fromIndex = 0;
+        if (fromIndex >= length) return -1;
+        int chunk = locate(fromIndex);
+        int inner = fromIndex - starts[chunk];
+        for (; chunk < chunkCount; chunk++, inner = 0) {
+            char[] c = chunks[chunk];
+            for (int i = inner; i < counts[chunk]; i++) {
+                if (c[i] == ch) {
+                    return starts[chunk] + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    public int lastIndexOf(char ch, int fromIndex) {
+        if (fromIndex >= length) fromIndex = length - 1;
+        if (fromIndex < 0) return -1;
+        int chunk = locate(fromIndex);
+        int inner = fromIndex - starts[chunk];
+        for (; chunk >= 0; chunk--) {
+            char[] c = chunks[chunk];
+            if (inner < 0) inner = counts[chunk] - 1;
+            for (int i = inner; i >= 0; i--) {
+                if (c[i] == ch) {
+                    return starts[chunk] + i;
+                }
+            }
+            inner = -1;
+        }
+        return -1;
+    }
+
+    public void clear() {
+        for (int i = 0; i < chunkCount; i++) {
+            releaseChunk(i);
+        }
+        this.chunks = new char[4][];
+        this.counts = new int[4];
+        this.starts = new int[4];
+        this.ids = store == null ? null : new int[4];
+        this.chunkCount = 0;
+        this.length = 0;
+        this.startsValid = true;
+        this.dirtyFrom = Integer.MAX_VALUE;
+        this.dirtyTo = 0;
+    }
+
+    public void release() {
+        clear();
+    }
+
+    public String toString() {
+        return read(0, length);
+    }
+
+    private void checkRange(int offset, int len) {
+        if (offset < 0 || len < 0 || offset + len > length || offset + len < 0) {
+            throw new StringIndexOutOfBoundsException("offset " + offset + ", length " + len + ", size " + length);
+        }
+    }
+
+    private int locate(int offset) {
+        if (!startsValid) {
+            rebuildStarts();
+        }
+        int low = 0;
+        int high = chunkCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private synchronized void rebuildStarts() {
+        if (startsValid) {
+            return;
+        }
+        int start = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            starts[i] = start;
+            start += counts[i];
+        }
+        startsValid = true;
+    }
+
+    private void addChunk(int index, char[] chunk, int count) {
+        if (chunkCount == chunks.length) {
+            int newCapacity = chunks.length * 2;
+            char[][] newChunks = new char[newCapacity][];
+            System.arraycopy(chunks, 0, newChunks, 0, chunkCount);
+            chunks = newChunks;
+            int[] newCounts = new int[newCapacity];
+            System.arraycopy(counts, 0, newCounts, 0, chunkCount);
+            counts = newCounts;
+            starts = new int[newCapacity];
+            startsValid = false;
+            if (ids != null) {
+                ids = Arrays.copyOf(ids, newCapacity);
+            }
+        }
+        System.arraycopy(chunks, index, chunks, index + 1, chunkCount - index);
+        System.arraycopy(counts, index, counts, index + 1, chunkCount - index);
+        chunks[index] = chunk;
+        counts[index] = count;
+        if (ids != null) {
+            System.arraycopy(ids, index, ids, index + 1, chunkCount - index);
+            ids[index] = ChunkStore.NONE;
+            // Os blocos depois de index andam uma posição, e o trecho sujo junto com eles.
+            if (dirtyTo > index) {
+                dirtyTo++;
+            }
+            markDirty(index);
+        }
+        if (index == chunkCount && startsValid) {
+            starts[index] = index == 0 ? 0 : starts[index - 1] + counts[index - 1];
+        } else {
+            startsValid = false;
+        }
+        chunkCount++;
+    }
+
+    private void removeChunk(int index) {
+        releaseChunk(index);
+        System.arraycopy(chunks, index + 1, chunks, index, chunkCount - index - 1);
+        System.arraycopy(counts, index + 1, counts, index, chunkCount - index - 1);
+        if (ids != null) {
+            System.arraycopy(ids, index + 1, ids, index, chunkCount - index - 1);
+            dirtyFrom = Math.min(dirtyFrom, index);
+        }
+        chunkCount--;
+        chunks[chunkCount] = null;
+        counts[chunkCount] = 0;
+        if (ids != null) {
+            ids[chunkCount] = ChunkStore.NONE;
+        }
+        startsValid = false;
+    }
+
+    // Chamado antes de alterar o bloco i: se ele está no depósito, passa a ser só deste texto,
+    // tirado de lá se ninguém mais o usa ou copiado se é compartilhado.
+    private void own(int i) {
+        if (ids == null) {
+            return;
+        }
+        int id = ids[i];
+        if (id != ChunkStore.NONE) {
+            if (!store.claim(id)) {
+                chunks[i] = Arrays.copyOf(chunks[i], Math.max(counts[i], MIN_CHUNK_CAPACITY));
+                store.release(id);
+            }
+            ids[i] = ChunkStore.NONE;
+        }
+        markDirty(i);
+    }
+
+    private void releaseChunk(int i) {
+        if (ids != null && ids[i] != ChunkStore.NONE) {
+            store.release(ids[i]);
+            ids[i] = ChunkStore.NONE;
+        }
+    }
+
+    private void markDirty(int i) {
+        dirtyFrom = Math.min(dirtyFrom, i);
+        dirtyTo = Math.max(dirtyTo, i + 1);
+    }
+
+    private void ensureChunkCapacity(int index, int minCapacity) {
+        char[] c = chunks[index];
+        if (minCapacity > c.length) {
+            int newCapacity = Math.min(Math.max(c.length * 2, minCapacity), CHUNK_SIZE);
+            char[] grown = new char[newCapacity];
+            System.arraycopy(c, 0, grown, 0, counts[index]);
+            chunks[index] = grown;
+        }
+    }
+}
\ No newline at end of file
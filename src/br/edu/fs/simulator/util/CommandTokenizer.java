@@ -0,0 +1,91 @@
+package br.edu.fs.simulator.util;
+
+/**
+ * Divide linhas de comando em palavras separadas por espaços e tabulações sem usar expressões
+ * regulares: {@code String.split} compila e executa um {@code Pattern} por chamada, o que pesa
+ * em scripts com milhões de linhas.
+ */
+public final class CommandTokenizer {
+
+    private CommandTokenizer() {
+    }
+
+    /**
+     * Divide {@code line} em no máximo {@code limit} palavras (0 = sem limite); a última recebe o
+     * resto da linha sem os separadores iniciais. Separadores no início e no fim são ignorados,
+     * e uma linha em branco produz um array vazio.
+     *
+     * Uma palavra entre aspas simples ou duplas iguais ({@code '*g*'}, {@code "meu arquivo"}) vale
+     * sem as aspas e pode conter espaços. O resto da linha que vai para a última palavra fica
+     * como está, com aspas.
+     */
+    public static String[] split(String line, int limit) {
+        int length = line.length();
+        int count = 0;
+        String[] words = new String[4];
+        int i = skipBlanks(line, 0);
+        while (i < length) {
+            if (count == words.length) {
+                String[] grown = new String[words.length * 2];
+                System.arraycopy(words, 0, grown, 0, count);
+                words = grown;
+            }
+            int end;
+            if (limit > 0 && count == limit - 1) {
+                end = length;
+                while (end > i && isBlank(line.charAt(end - 1))) {
+                    end--;
+                }
+            } else {
+                int close = closingQuote(line, i);
+                if (close >= 0) {
+                    words[count++] = line.substring(i + 1, close);
+                    i = skipBlanks(line, close + 1);
+                    continue;
+                }
+                end = i;
+                while (end < length && !isBlank(line.charAt(end))) {
+                    end++;
+                }
+            }
+            words[count++] = line.substring(i, end);
+            i = skipBlanks(line, end);
+        }
+        if (count == words.length) {
+            return words;
+        }
+        String[] result = new String[count];
+        System.arraycopy(words, 0, result, 0, count);
+        return result;
+    }
+
+    public static String[] split(String line) {
+        return split(line, 0);
+    }
+
+    // Posição da aspa que fecha a palavra que começa em from, ou -1 se ela não começa com aspa ou
+    // se a aspa igual não termina a palavra.
+    private static int closingQuote(String line, int from) {
+        char quote = line.charAt(from);
+        if (quote != '\'' && quote != '"') {
+            return -1;
+        }
+        int close = line.indexOf(quote, from + 1);
+        if (close < 0 || (close + 1 < line.length() && !isBlank(line.charAt(close + 1)))) {
+            return -1;
+        }
+        return close;
+    }
+
+    private static int skipBlanks(String line, int from) {
+        int length = line.length();
+        while (from < length && isBlank(line.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t';
+    }
+}
\ No newline at end of file
@@ -0,0 +1,47 @@
+package br.edu.fs.simulator.util;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * PrintStream que descarta tudo sem nem codificar o texto. Usado no lugar do {@code System.out}
+ * quando só interessa medir as operações (benchmarks, {@code --quiet}).
+ */
+public class DiscardPrintStream extends PrintStream {
+
+    public DiscardPrintStream() {
+        super(OutputStream.nullOutputStream());
+    }
+
+    @Override
+    public void print(String s) {
+    }
+
+    @Override
+    public void print(Object obj) {
+    }
+
+    @Override
+    public void println(String s) {
+    }
+
+    @Override
+    public void println(Object x) {
+    }
+
+    @Override
+    public void println() {
+    }
+
+    @Override
+    public void write(int b) {
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) {
+    }
+
+    @Override
+    public void flush() {
+    }
+}
\ No newline at end of file
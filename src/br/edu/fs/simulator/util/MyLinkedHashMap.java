@@ -0,0 +1,268 @@
+package br.edu.fs.simulator.util;
+
+/**
+ * Mapa com endereçamento aberto (sondagem linear) que preserva a ordem de inserção.
+ * As entradas ficam em vetores densos; a tabela guarda apenas índices para eles.
+ * Remoções deixam buracos que são compactados de forma amortizada, e a tabela
+ * encolhe quando o mapa esvazia.
+ */
+public class MyLinkedHashMap<K, V> {
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final int MIN_TABLE_CAPACITY = 16;
+
+    private Object[] keys;
+    private Object[] values;
+    private int[] hashes;
+    private int used;
+    private int size;
+
+    private int[] table;
+    private int mask;
+
+    public MyLinkedHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MyLinkedHashMap(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal Capacity: " + initialCapacity);
+        }
+        int capacity = Math.max(initialCapacity, 1);
+        this.keys = new Object[capacity];
+        this.values = new Object[capacity];
+        this.hashes = new int[capacity];
+        this.table = new int[tableCapacityFor(capacity)];
+        this.mask = table.length - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(K key) {
+        return findSlot(key, hash(key)) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        int slot = findSlot(key, hash(key));
+        return slot < 0 ? null : (V) values[table[slot] - 1];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        int h = hash(key);
+        int slot = findSlot(key, h);
+        if (slot >= 0) {
+            int index = table[slot] - 1;
+            V old = (V) values[index];
+            values[index] = value;
+            return old;
+        }
+        insert(key, value, h);
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V putIfAbsent(K key, V value) {
+        int h = hash(key);
+        int slot = findSlot(key, h);
+        if (slot >= 0) {
+            return (V) values[table[slot] - 1];
+        }
+        insert(key, value, h);
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(K key) {
+        int slot = findSlot(key, hash(key));
+        if (slot < 0) {
+            return null;
+        }
+        int index = table[slot] - 1;
+        V old = (V) values[index];
+        keys[index] = null;
+        values[index] = null;
+        deleteSlot(slot);
+        size--;
+
+        if (index == used - 1) {
+            used--;
+        }
+        if (size < (table.length >> 3) && table.length > MIN_TABLE_CAPACITY) {
+            rebuild(tableCapacityFor(size));
+        } else if (used - size > (used >> 1)) {
+            rebuild(table.length);
+        }
+        return old;
+    }
+
+    /**
+     * Retorna a chave na posição {@code index} da ordem de inserção.
+     */
+    @SuppressWarnings("unchecked")
+    public K keyAt(int index) {
+        checkIndex(index);
+        return (K) keys[index];
+    }
+
+    /**
+     * Retorna o valor na posição {@code index} da ordem de inserção.
+     */
+    @SuppressWarnings("unchecked")
+    public V valueAt(int index) {
+        checkIndex(index);
+        return (V) values[index];
+    }
+
+    // Posições da tabela de índices, para os testes conferirem o encolhimento.
+    int tableCapacity() {
+        return table.length;
+    }
+
+    public void clear() {
+        this.keys = new Object[DEFAULT_CAPACITY];
+        this.values = new Object[DEFAULT_CAPACITY];
+        this.hashes = new int[DEFAULT_CAPACITY];
+        this.table = new int[MIN_TABLE_CAPACITY];
+        this.mask = table.length - 1;
+        this.used = 0;
+        this.size = 0;
+    }
+
+    private void checkIndex(int index) {
+        if (index >= size || index < 0) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (used != size) {
+            rebuild(table.length);
+        }
+    }
+
+    private void insert(K key, V value, int h) {
+        if (key == null) {
+            throw new NullPointerException("key");
+        }
+        if (used == keys.length) {
+            if (used - size > 0) {
+                rebuild(table.length);
+            }
+            if (used == keys.length) {
+                int newCapacity = keys.length + (keys.length >> 1) + 1;
+                keys = copyOf(keys, newCapacity);
+                values = copyOf(values, newCapacity);
+                int[] newHashes = new int[newCapacity];
+                System.arraycopy(hashes, 0, newHashes, 0, used);
+                hashes = newHashes;
+            }
+        }
+        if ((size + 1) * 2 > table.length) {
+            rebuild(table.length << 1);
+        }
+        int index = used++;
+        keys[index] = key;
+        values[index] = value;
+        hashes[index] = h;
+        int slot = h & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = index + 1;
+        size++;
+    }
+
+    private int findSlot(Object key, int h) {
+        if (key == null) {
+            return -1;
+        }
+        int slot = h & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            int index = entry - 1;
+            if (hashes[index] == h && key.equals(keys[index])) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Remoção com deslocamento para trás: mantém as cadeias de sondagem sem lápides.
+    private void deleteSlot(int slot) {
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            int entry = table[next];
+            if (entry == 0) {
+                break;
+            }
+            int ideal = hashes[entry - 1] & mask;
+            boolean movable = hole <= next
+                    ? (ideal <= hole || ideal > next)
+                    : (ideal <= hole && ideal > next);
+            if (movable) {
+                table[hole] = entry;
+                hole = next;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    private void rebuild(int tableCapacity) {
+        int denseCapacity = Math.max(size + (size >> 1), DEFAULT_CAPACITY);
+        Object[] newKeys = new Object[denseCapacity];
+        Object[] newValues = new Object[denseCapacity];
+        int[] newHashes = new int[denseCapacity];
+        int count = 0;
+        for (int i = 0; i < used; i++) {
+            if (keys[i] != null) {
+                newKeys[count] = keys[i];
+                newValues[count] = values[i];
+                newHashes[count] = hashes[i];
+                count++;
+            }
+        }
+        keys = newKeys;
+        values = newValues;
+        hashes = newHashes;
+        used = count;
+
+        table = new int[Math.max(tableCapacity, tableCapacityFor(count))];
+        mask = table.length - 1;
+        for (int i = 0; i < count; i++) {
+            int slot = hashes[i] & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+    }
+
+    private static Object[] copyOf(Object[] source, int newCapacity) {
+        Object[] result = new Object[newCapacity];
+        System.arraycopy(source, 0, result, 0, Math.min(source.length, newCapacity));
+        return result;
+    }
+
+    private static int tableCapacityFor(int entries) {
+        int capacity = MIN_TABLE_CAPACITY;
+        while (capacity < entries * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(Object key) {
+        if (key == null) {
+            return 0;
+        }
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,102 @@
+package br.edu.fs.simulator.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fila circular limitada e sem travas para vários produtores e um único consumidor.
+ * Cada posição tem um número de sequência que diz se ela está livre para o produtor da
+ * volta atual ou já publicada para o consumidor (esquema de Vyukov).
+ */
+public class RingBuffer<E> {
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    public RingBuffer(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Illegal Capacity: " + capacity);
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Publica o elemento; retorna {@code false} se a fila estiver cheia.
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException("element");
+        }
+        long pos = tail.get();
+        while (true) {
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots[index] = element;
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Retira o próximo elemento publicado. Só pode ser chamado pela thread consumidora.
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long pos = head;
+        int index = (int) pos & mask;
+        if (sequences.get(index) != pos + 1) {
+            return null;
+        }
+        E element = (E) slots[index];
+        slots[index] = null;
+        sequences.set(index, pos + slots.length);
+        head = pos + 1;
+        return element;
+    }
+
+    /**
+     * Total de posições já reservadas por produtores desde a criação.
+     */
+    public long producedCount() {
+        return tail.get();
+    }
+
+    /**
+     * Total de elementos já retirados pelo consumidor.
+     */
+    public long consumedCount() {
+        return head;
+    }
+
+    public int size() {
+        return (int) Math.max(0, Math.min(tail.get() - head, slots.length));
+    }
+
+    public boolean isEmpty() {
+        return tail.get() == head;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+}
\ No newline at end of file
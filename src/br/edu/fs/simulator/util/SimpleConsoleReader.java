@@ -3,6 +3,7 @@ package br.edu.fs.simulator.util;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.IOException;
+import java.io.Reader;
 
 public class SimpleConsoleReader {
     private BufferedReader reader;
@@ -11,6 +12,13 @@ public class SimpleConsoleReader {
         reader = new BufferedReader(new InputStreamReader(System.in));
     }
 
+    /**
+     * Lê de {@code in} com um buffer de {@code bufferSize} caracteres (scripts longos).
+     */
+    public SimpleConsoleReader(Reader in, int bufferSize) {
+        reader = new BufferedReader(in, bufferSize);
+    }
+
     public String readLine() {
         try {
             return reader.readLine();
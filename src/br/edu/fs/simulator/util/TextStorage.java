@@ -0,0 +1,33 @@
+package br.edu.fs.simulator.util;
+
+/**
+ * Armazenamento do conteúdo de um arquivo, endereçado por offset de caractere.
+ */
+public interface TextStorage {
+    int length();
+
+    char charAt(int index);
+
+    String read(int offset, int len);
+
+    void copyTo(int offset, char[] dest, int destOffset, int len);
+
+    void append(String data);
+
+    void write(int offset, String data);
+
+    void insert(int offset, String data);
+
+    void truncate(int newLength);
+
+    int indexOf(char ch, int fromIndex);
+
+    int lastIndexOf(char ch, int fromIndex);
+
+    void clear();
+
+    /**
+     * Libera os recursos do armazenamento (por exemplo, blocos em disco).
+     */
+    void release();
+}
\ No newline at end of file
@@ -0,0 +1,62 @@
+package br.edu.fs.simulator.util;
+
+/**
+ * Um {@link TextStorage} visto como {@link CharSequence}, para usar com {@code java.util.regex} sem
+ * montar o conteúdo numa String. Os caracteres vêm de uma janela de alguns KiB que é relida quando
+ * o acesso sai dela; como as expressões avançam pelo texto e só voltam um pouco, quase todo acesso
+ * cai na janela.
+ */
+public final class TextStorageChars implements CharSequence {
+    private static final int WINDOW = 4096;
+
+    private final TextStorage content;
+    private final int start;
+    private final int length;
+    private final char[] window;
+    private int windowStart;
+    private int windowLength;
+
+    public TextStorageChars(TextStorage content) {
+        this(content, 0, content.length());
+    }
+
+    private TextStorageChars(TextStorage content, int start, int length) {
+        this.content = content;
+        this.start = start;
+        this.length = length;
+        this.window = new char[Math.max(1, Math.min(WINDOW, length))];
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + length);
+        }
+        int position = start + index;
+        if (position < windowStart || position >= windowStart + windowLength) {
+            // Um pouco antes do acesso, para os recuos curtos do casamento não trocarem a janela.
+            windowStart = Math.max(start, position - window.length / 8);
+            windowLength = Math.min(window.length, start + length - windowStart);
+            content.copyTo(windowStart, window, 0, windowLength);
+        }
+        return window[position - windowStart];
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        if (from < 0 || to > length || from > to) {
+            throw new IndexOutOfBoundsException("Range: [" + from + ", " + to + "), Length: " + length);
+        }
+        return new TextStorageChars(content, start + from, to - from);
+    }
+
+    @Override
+    public String toString() {
+        return content.read(start, length);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,89 @@
+package br.edu.fs.simulator.util;
+
+import java.util.Random;
+
+/**
+ * Sorteia postos de 1 a {@code n} com probabilidade proporcional a {@code 1 / k^s} (distribuição
+ * de Zipf), em tempo constante e sem tabela, pelo método de rejeição-inversão de Hörmann e
+ * Derflinger. Com {@code s = 0} o sorteio é uniforme. Criar um sorteador também é O(1), então
+ * quem tem uma população crescente pode trocar de sorteador a cada novo {@code n}.
+ */
+public class ZipfSampler {
+    private final int n;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralN;
+    private final double threshold;
+
+    public ZipfSampler(int n, double exponent) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Illegal population: " + n);
+        }
+        if (exponent < 0) {
+            throw new IllegalArgumentException("Illegal exponent: " + exponent);
+        }
+        this.n = n;
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral(1.5) - 1;
+        this.hIntegralN = hIntegral(n + 0.5);
+        this.threshold = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    public int getPopulation() {
+        return n;
+    }
+
+    /**
+     * Devolve um posto entre 1 (o mais popular) e {@code n}.
+     */
+    public int sample(Random random) {
+        if (exponent == 0) {
+            return 1 + random.nextInt(n);
+        }
+        while (true) {
+            double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+            double x = hIntegralInverse(u);
+            int k = (int) (x + 0.5);
+            if (k < 1) {
+                k = 1;
+            } else if (k > n) {
+                k = n;
+            }
+            if (k - x <= threshold || u >= hIntegral(k + 0.5) - h(k)) {
+                return k;
+            }
+        }
+    }
+
+    // Integral de h, H(x) = (x^(1-s) - 1) / (1-s), estável perto de s = 1.
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return expm1OverX((1 - exponent) * logX) * logX;
+    }
+
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    private double hIntegralInverse(double x) {
+        double t = x * (1 - exponent);
+        if (t < -1) {
+            t = -1;
+        }
+        return Math.exp(log1pOverX(t) * x);
+    }
+
+    private static double log1pOverX(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.log1p(x) / x;
+        }
+        return 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+
+    private static double expm1OverX(double x) {
+        if (Math.abs(x) > 1e-8) {
+            return Math.expm1(x) / x;
+        }
+        return 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,119 @@
+package br.edu.fs.simulator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Com a thread de escrita parada no disco, a fila enche: no modo BLOCK o produtor espera, no
+ * modo DROP a entrada é descartada e contada. Nada do que foi aceito se perde.
+ */
+class AsyncJournalWriterTest {
+    // Capacidade da fila; a thread de escrita segura mais uma entrada enquanto está parada.
+    private static final int CAPACITY = 4;
+
+    // Guarda as entradas; a primeira escrita fica presa até open().
+    private static final class GatedSink implements AsyncJournalWriter.Sink<Integer> {
+        final List<Integer> written = new ArrayList<>();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+
+        @Override
+        public void write(Integer entry) throws IOException {
+            entered.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (written) {
+                written.add(entry);
+            }
+        }
+
+        @Override
+        public void commit(boolean force) {
+        }
+
+        void awaitStalled() throws InterruptedException {
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+        }
+
+        void open() {
+            gate.countDown();
+        }
+    }
+
+    @Test
+    void dropModeDiscardsWhenFull() throws Exception {
+        GatedSink sink = new GatedSink();
+        AsyncJournalWriter<Integer> writer = new AsyncJournalWriter<>("teste", sink, CAPACITY, 1, 1,
+                AsyncJournalWriter.Backpressure.DROP, false);
+        try {
+            assertTrue(writer.submit(0));
+            sink.awaitStalled();
+            for (int i = 1; i <= CAPACITY; i++) {
+                assertTrue(writer.submit(i));
+            }
+            assertFalse(writer.submit(100));
+            assertFalse(writer.submit(101));
+            assertEquals(2, writer.getDropped());
+            assertEquals(CAPACITY, writer.getQueued());
+
+            sink.open();
+            writer.sync();
+            assertEquals(List.of(0, 1, 2, 3, 4), sink.written);
+            assertTrue(writer.submit(5));
+            writer.sync();
+            assertEquals(6, writer.getCommitted());
+        } finally {
+            sink.open();
+            writer.close();
+        }
+    }
+
+    @Test
+    void blockModeWaitsForSpace() throws Exception {
+        GatedSink sink = new GatedSink();
+        AsyncJournalWriter<Integer> writer = new AsyncJournalWriter<>("teste", sink, CAPACITY, 1, 1,
+                AsyncJournalWriter.Backpressure.BLOCK, false);
+        int total = 3 * CAPACITY;
+        try {
+            assertTrue(writer.submit(0));
+            sink.awaitStalled();
+            CountDownLatch done = new CountDownLatch(1);
+            Thread producer = new Thread(() -> {
+                for (int i = 1; i < total; i++) {
+                    writer.submit(i);
+                }
+                done.countDown();
+            });
+            producer.start();
+
+            assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+            assertTrue(writer.getBlocked() > 0);
+            assertEquals(CAPACITY, writer.getQueued());
+
+            sink.open();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            producer.join();
+            writer.sync();
+            assertEquals(0, writer.getDropped());
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < total; i++) {
+                expected.add(i);
+            }
+            assertEquals(expected, sink.written);
+        } finally {
+            sink.open();
+            writer.close();
+        }
+    }
+}
\ No newline at end of file
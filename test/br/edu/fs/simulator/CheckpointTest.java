@@ -0,0 +1,78 @@
+package br.edu.fs.simulator;
+
+import br.edu.fs.simulator.disk.BlockDevice;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * O checkpoint guarda só os blocos em uso e devolve a árvore inteira na próxima inicialização.
+ */
+class CheckpointTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void checkpointKeepsOnlyUsedBlocks() throws IOException {
+        FileSystemManager fs = FileSystemManager.persistent(dir);
+        FileSystemManager.Session session = fs.newSession();
+        // Arquivos removidos no meio deixam buracos entre os blocos ocupados.
+        for (int i = 0; i < 20; i++) {
+            check(fs.createFile(session, "f" + i));
+            check(fs.writeFile(session, "f" + i, ("conteúdo " + i + " ").repeat(300 + i), FileSystemManager.WRITE_REPLACE, 0));
+        }
+        for (int i = 0; i < 20; i += 3) {
+            check(fs.delete(session, "f" + i, false));
+        }
+        check(fs.checkpoint(session));
+        fs.shutdown();
+
+        long size = Files.size(dir.resolve(FileSystemManager.DEFAULT_WAL_FILE + ".ckpt"));
+        long capacity = (long) BlockDevice.DEFAULT_BLOCK_COUNT * BlockDevice.DEFAULT_BLOCK_SIZE;
+        assertTrue(size < capacity / 64, "checkpoint: " + size + " bytes");
+
+        FileSystemManager reopened = FileSystemManager.persistent(dir);
+        try {
+            FileSystemManager.Session s = reopened.newSession();
+            for (int i = 0; i < 20; i++) {
+                StringBuilder out = new StringBuilder();
+                FsStatus status = reopened.readFile(s, "f" + i, out);
+                if (i % 3 == 0) {
+                    assertEquals(FsStatus.NOT_FOUND, status);
+                } else {
+                    check(status);
+                    assertEquals(("conteúdo " + i + " ").repeat(300 + i), out.toString());
+                }
+            }
+            assertEquals(0, reopened.checkConsistency());
+        } finally {
+            reopened.shutdown();
+        }
+    }
+
+    @Test
+    void checkpointCannotBeMounted() throws IOException {
+        FileSystemManager fs = FileSystemManager.persistent(dir);
+        FileSystemManager.Session session = fs.newSession();
+        check(fs.createFile(session, "f"));
+        check(fs.checkpoint(session));
+        fs.shutdown();
+
+        FileSystemManager other = new FileSystemManager(null, null, null);
+        try {
+            FileSystemManager.Session s = other.newSession();
+            assertEquals(FsStatus.IO_ERROR, other.mount(s, dir.resolve(FileSystemManager.DEFAULT_WAL_FILE + ".ckpt").toString()));
+        } finally {
+            other.shutdown();
+        }
+    }
+
+    private static void check(FsStatus status) {
+        assertEquals(FsStatus.OK, status);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,104 @@
+package br.edu.fs.simulator;
+
+import br.edu.fs.simulator.disk.BlockDevice;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Várias sessões trabalham ao mesmo tempo, cada uma na própria subárvore e num diretório
+ * compartilhado: criar, escrever, ler, listar, renomear, copiar, mover, buscar e remover. No
+ * fim os totais agregados dos diretórios têm que bater com a árvore.
+ */
+class ConcurrencyStressTest {
+    private static final int ITERATIONS = 2_000;
+
+    private FileSystemManager fs;
+
+    @BeforeEach
+    void setUp() {
+        fs = new FileSystemManager(new BlockDevice(), null, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fs.shutdown();
+    }
+
+    @Test
+    void mixedOperationsKeepTheTreeConsistent() throws InterruptedException {
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        check(fs.createDirectory(fs.newSession(), "shared"));
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            String dir = "t" + t;
+            workers[t] = new Thread(() -> {
+                try {
+                    FileSystemManager.Session session = fs.newSession();
+                    StringBuilder text = new StringBuilder();
+                    DirectoryListing listing = new DirectoryListing();
+                    FindQuery query = new FindQuery();
+                    query.name("*r");
+                    check(fs.createDirectory(session, dir));
+                    check(fs.changeDirectory(session, dir));
+                    check(fs.createDirectory(session, "sub"));
+                    ready.countDown();
+                    start.await();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        String name = "f" + (i & 15);
+                        String shared = "/shared/" + dir + "-" + name;
+                        check(fs.createFile(session, name));
+                        check(fs.writeFile(session, name, "conteudo " + i, FileSystemManager.WRITE_APPEND, 0));
+                        text.setLength(0);
+                        check(fs.readFile(session, name, text));
+                        assertEquals("conteudo " + i, text.toString());
+                        check(fs.listDirectory(session, ".", listing));
+                        check(fs.rename(session, name, name + "r"));
+                        check(fs.copy(session, name + "r", shared, false));
+                        check(fs.move(session, name + "r", "sub"));
+                        check(fs.listDirectory(session, "/shared", listing));
+                        if ((i & 63) == 0) {
+                            check(fs.find(session, "/", query, (found, type, size) -> { }));
+                        }
+                        check(fs.delete(session, shared));
+                        check(fs.delete(session, "sub/" + name + "r"));
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                    ready.countDown();
+                }
+            }, "stress-" + t);
+            workers[t].start();
+        }
+        ready.await();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        if (failure.get() != null) {
+            fail("Worker failed", failure.get());
+        }
+        assertEquals(0, fs.checkConsistency());
+        FileSystemManager.Session session = fs.newSession();
+        DirectoryListing listing = new DirectoryListing();
+        check(fs.listDirectory(session, "/shared", listing));
+        assertEquals(0, listing.size());
+        for (int t = 0; t < threads; t++) {
+            check(fs.listDirectory(session, "/t" + t + "/sub", listing));
+            assertEquals(0, listing.size());
+        }
+    }
+
+    private static void check(FsStatus status) {
+        assertEquals(FsStatus.OK, status);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,72 @@
+package br.edu.fs.simulator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * write, truncate, cat, head, tail e rename aceitam caminhos, resolvidos como nos demais comandos.
+ */
+class FilePathCommandsTest {
+    private FileSystemManager fs;
+    private FileSystemManager.Session session;
+
+    @BeforeEach
+    void setUp() {
+        fs = new FileSystemManager(null, null, null);
+        session = fs.newSession();
+        check(fs.createDirectory(session, "docs"));
+        check(fs.changeDirectory(session, "docs"));
+        check(fs.createFile(session, "notas.txt"));
+        check(fs.changeDirectory(session, "/"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        fs.shutdown();
+    }
+
+    @Test
+    void writeAndReadThroughPaths() {
+        check(fs.writeFile(session, "/docs/notas.txt", "um\ndois\ntres", FileSystemManager.WRITE_REPLACE, 0));
+        check(fs.writeFile(session, "docs//notas.txt", "\nquatro", FileSystemManager.WRITE_APPEND, 0));
+        assertEquals("um\ndois\ntres\nquatro", read("docs/notas.txt"));
+
+        StringBuilder head = new StringBuilder();
+        check(fs.headFile(session, "/docs/notas.txt", 1, head));
+        assertEquals("um", head.toString().strip());
+        StringBuilder tail = new StringBuilder();
+        check(fs.tailFile(session, "./docs/notas.txt", 1, tail));
+        assertEquals("quatro", tail.toString().strip());
+
+        check(fs.truncateFile(session, "/docs/notas.txt", 2));
+        assertEquals("um", read("/docs/notas.txt"));
+    }
+
+    @Test
+    void renameThroughPath() {
+        check(fs.rename(session, "/docs/notas.txt", "lembretes.txt"));
+        assertEquals(FsStatus.NOT_FOUND, fs.readFile(session, "/docs/notas.txt", new StringBuilder()));
+        check(fs.readFile(session, "/docs/lembretes.txt", new StringBuilder()));
+        assertEquals(FsStatus.INVALID_NAME, fs.rename(session, "/docs/lembretes.txt", "/outro.txt"));
+    }
+
+    @Test
+    void missingParentIsNotFound() {
+        assertEquals(FsStatus.NOT_FOUND, fs.writeFile(session, "/nada/notas.txt", "x", FileSystemManager.WRITE_REPLACE, 0));
+        assertEquals(FsStatus.NOT_FOUND, fs.readFile(session, "nada/notas.txt", new StringBuilder()));
+        assertEquals(FsStatus.NOT_FOUND, fs.rename(session, "/nada/notas.txt", "x"));
+    }
+
+    private String read(String path) {
+        StringBuilder out = new StringBuilder();
+        check(fs.readFile(session, path, out));
+        return out.toString();
+    }
+
+    private static void check(FsStatus status) {
+        assertEquals(FsStatus.OK, status);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,56 @@
+package br.edu.fs.simulator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Erros do journal voltam para quem chamou, em vez de irem para o console.
+ */
+class JournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void nullOperationIsRejected() {
+        Journal journal = new Journal();
+        assertFalse(journal.logOperation(null, "detalhes"));
+        assertFalse(journal.logOperation("CMD", null));
+        assertEquals(0, journal.size());
+        assertTrue(journal.logOperation("CMD", "detalhes"));
+        assertEquals(1, journal.size());
+    }
+
+    @Test
+    void flushReportsWhatLeftMemory() throws IOException {
+        Journal journal = new Journal();
+        Path file = dir.resolve("journal.log");
+        assertEquals(0, journal.flushToFile(file.toString()));
+        journal.logOperation("A", "primeira");
+        journal.logOperation("B", "segunda");
+        assertEquals(2, journal.flushToFile(file.toString()));
+        assertEquals(2, journal.size());
+        assertEquals(journal.size(), journal.firstRetained());
+        String text = Files.readString(file, StandardCharsets.UTF_8);
+        assertTrue(text.contains("primeira") && text.contains("segunda"), text);
+        assertEquals(0, journal.flushToFile(file.toString()));
+    }
+
+    @Test
+    void flushFailureIsThrownAndKeepsEntries() {
+        Journal journal = new Journal();
+        journal.logOperation("A", "primeira");
+        // Um diretório não pode ser aberto como arquivo.
+        assertThrows(IOException.class, () -> journal.flushToFile(dir.toString()));
+        assertEquals(0, journal.firstRetained());
+        assertThrows(IllegalArgumentException.class, () -> journal.flushToFile(" "));
+    }
+}
\ No newline at end of file
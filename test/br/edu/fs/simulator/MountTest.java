@@ -0,0 +1,67 @@
+package br.edu.fs.simulator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Depois do unmount, nada do que se faz no sistema pode chegar ao arquivo da imagem.
+ */
+class MountTest {
+    @TempDir
+    Path dir;
+
+    private FileSystemManager fs;
+    private FileSystemManager.Session session;
+
+    @BeforeEach
+    void setUp() {
+        fs = new FileSystemManager(null, null, null);
+        session = fs.newSession();
+    }
+
+    @AfterEach
+    void tearDown() {
+        fs.shutdown();
+    }
+
+    @Test
+    void writesAfterUnmountDoNotReachTheImage() {
+        String image = dir.resolve("disco.img").toString();
+        check(fs.mount(session, image));
+        check(fs.createFile(session, "f"));
+        check(fs.writeFile(session, "f", "AAAAAAAA", FileSystemManager.WRITE_REPLACE, 0));
+        check(fs.sync(session));
+        check(fs.unmount(session));
+
+        assertEquals(FsStatus.NOT_FOUND, fs.writeFile(session, "f", "BBBBBBBB", FileSystemManager.WRITE_REPLACE, 0));
+        check(fs.createFile(session, "f"));
+        check(fs.writeFile(session, "f", "BBBBBBBB", FileSystemManager.WRITE_REPLACE, 0));
+
+        check(fs.mount(session, image));
+        StringBuilder out = new StringBuilder();
+        check(fs.readFile(session, "f", out));
+        assertEquals("AAAAAAAA", out.toString());
+        assertEquals(0, fs.checkConsistency());
+    }
+
+    @Test
+    void unmountLeavesAnEmptyTree() {
+        check(fs.mount(session, dir.resolve("vazio.img").toString()));
+        check(fs.createDirectory(session, "a"));
+        check(fs.changeDirectory(session, "a"));
+        check(fs.unmount(session));
+        assertEquals("/", fs.getCurrentPath(session));
+        assertEquals(FsStatus.NOT_FOUND, fs.changeDirectory(session, "/a"));
+        assertEquals(FsStatus.NOT_MOUNTED, fs.unmount(session));
+    }
+
+    private static void check(FsStatus status) {
+        assertEquals(FsStatus.OK, status);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,117 @@
+package br.edu.fs.simulator;
+
+import br.edu.fs.simulator.util.ChunkedText;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Nós soltos ficam na tabela compartilhada até ganharem filhos ou serem coletados, e removeChild
+ * libera a subárvore, invalidando quem ainda aponta para ela.
+ */
+class NodeTableTest {
+
+    @Test
+    void detachedNodesShareOneTableUntilTheyGetChildren() {
+        FileNode loose = new FileNode("solto.txt", null);
+        DirectoryNode root = new DirectoryNode("/", null);
+        assertSame(Node.DETACHED, loose.table);
+        assertSame(Node.DETACHED, root.table);
+
+        int detached = Node.DETACHED.size();
+        DirectoryNode docs = new DirectoryNode("docs", root);
+        root.addChild(docs);
+        assertNotSame(Node.DETACHED, root.table);
+        assertSame(root.table, docs.table);
+        assertEquals(detached - 1, Node.DETACHED.size());
+
+        docs.addChild(loose);
+        assertSame(root.table, loose.table);
+        assertEquals(detached - 2, Node.DETACHED.size());
+        assertEquals("/docs/solto.txt", loose.getPath());
+    }
+
+    @Test
+    void detachedDirectorySearchFindsNothing() {
+        assertTrue(new DirectoryNode("d", null).search("texto").isEmpty());
+    }
+
+    @Test
+    void removeChildFreesTheSubtree() {
+        DirectoryNode root = new DirectoryNode("/", null);
+        DirectoryNode docs = new DirectoryNode("docs", root);
+        root.addChild(docs);
+        DirectoryNode deep = new DirectoryNode("fundo", docs);
+        docs.addChild(deep);
+        FileNode file = new FileNode("a.txt", deep);
+        deep.addChild(file);
+        InodeTable table = root.table;
+        // Conteúdo no depósito de blocos, como o FileSystemManager grava.
+        ChunkedText content = new ChunkedText(table.getChunkStore());
+        content.append("x".repeat(2 * ChunkedText.CHUNK_SIZE));
+        content.seal();
+        table.setPayload(file.inode, content);
+        assertEquals(4, table.size());
+        assertTrue(table.getChunkStore().getChunkCount() > 0);
+
+        assertTrue(root.removeChild("docs"));
+        assertEquals(1, table.size());
+        assertEquals(0, table.getChunkStore().getChunkCount());
+        assertEquals(null, root.findChild("docs"));
+    }
+
+    @Test
+    void abandonedDetachedNodesAreReclaimed() throws InterruptedException {
+        FileNode kept = new FileNode("guardado.txt", null);
+        int before = Node.detachedCount();
+        // Cada alocação já recolhe o que a coleta enfileirou, então o tamanho durante o laço varia.
+        int peak = 0;
+        for (int i = 0; i < 200_000; i++) {
+            new FileNode("solto" + i + ".txt", null);
+            peak = Math.max(peak, Node.DETACHED.size());
+        }
+        assertTrue(peak > before + 1_000, "peak: " + peak);
+        int count = Node.DETACHED.size();
+        for (int attempt = 0; attempt < 100 && count > before + 1_000; attempt++) {
+            System.gc();
+            Thread.sleep(20);
+            count = Node.detachedCount();
+        }
+        assertTrue(count <= before + 1_000, "detached rows: " + count);
+        assertEquals("guardado.txt", kept.getName());
+    }
+
+    @Test
+    void removedNodesFailInsteadOfReadingAReusedRow() {
+        DirectoryNode root = new DirectoryNode("/", null);
+        DirectoryNode docs = new DirectoryNode("docs", root);
+        root.addChild(docs);
+        FileNode file = new FileNode("a.txt", docs);
+        docs.addChild(file);
+        FileNode other = new FileNode("b.txt", root);
+        root.addChild(other);
+        Node viaLookup = root.findChild("docs");
+
+        assertTrue(root.removeChild("docs"));
+        assertThrows(IllegalStateException.class, docs::getName);
+        assertThrows(IllegalStateException.class, viaLookup::getPath);
+        assertThrows(IllegalStateException.class, file::getContent);
+        assertThrows(IllegalStateException.class, () -> file.setContent("x"));
+        assertThrows(IllegalStateException.class, () -> docs.addChild(new FileNode("c.txt", null)));
+
+        // As linhas liberadas voltam a ser usadas, e os objetos antigos continuam inválidos.
+        DirectoryNode reused = new DirectoryNode("novo", root);
+        root.addChild(reused);
+        FileNode reusedFile = new FileNode("novo.txt", reused);
+        reused.addChild(reusedFile);
+        assertThrows(IllegalStateException.class, docs::getName);
+        assertThrows(IllegalStateException.class, file::getName);
+        assertEquals("/novo/novo.txt", reusedFile.getPath());
+        assertEquals("b.txt", other.getName());
+        assertThrows(IllegalStateException.class, () -> root.addChild(file));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,85 @@
+package br.edu.fs.simulator;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PathCacheTest {
+    private static final String NOT_FOUND = "(não existe)";
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        PathCache<String> cache = new PathCache<>(NOT_FOUND, 3);
+        cache.put("/a", "A");
+        cache.put("/b", "B");
+        cache.put("/c", "C");
+        // Lido agora, /a deixa de ser o mais antigo.
+        assertEquals("A", cache.get("/a"));
+        cache.put("/d", "D");
+
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get("/b"));
+        assertEquals("A", cache.get("/a"));
+        assertEquals("C", cache.get("/c"));
+        assertEquals("D", cache.get("/d"));
+
+        // Regravar um caminho existente também o torna o mais recente, sem despejar nada.
+        cache.put("/a", "A2");
+        cache.put("/e", "E");
+        assertEquals(2, cache.getEvictions());
+        assertNull(cache.get("/c"));
+        assertEquals("A2", cache.get("/a"));
+    }
+
+    @Test
+    void negativeEntriesAreCountedApart() {
+        PathCache<String> cache = new PathCache<>(NOT_FOUND, 4);
+        assertNull(cache.get("/x"));
+        cache.put("/x", NOT_FOUND);
+        assertSame(NOT_FOUND, cache.get("/x"));
+        cache.put("/y", "Y");
+        assertEquals("Y", cache.get("/y"));
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getNegativeHits());
+        assertEquals(1, cache.getHits());
+
+        // O mkdir de /x troca a entrada negativa pelo diretório.
+        cache.invalidate("/x");
+        assertNull(cache.get("/x"));
+        cache.put("/x", "X");
+        assertEquals("X", cache.get("/x"));
+    }
+
+    @Test
+    void subtreeInvalidationKeepsSiblingsWithTheSamePrefix() {
+        PathCache<String> cache = new PathCache<>(NOT_FOUND, 8);
+        cache.put("/a", "A");
+        cache.put("/a/b", "AB");
+        cache.put("/a/b/c", NOT_FOUND);
+        cache.put("/ab", "AB2");
+        cache.put("/", "R");
+        cache.invalidateSubtree("/a");
+
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.getInvalidations());
+        assertEquals("AB2", cache.get("/ab"));
+        assertEquals("R", cache.get("/"));
+    }
+
+    @Test
+    void lookupThatRacedWithAnInvalidationIsNotStored() {
+        PathCache<String> cache = new PathCache<>(NOT_FOUND, 4);
+        long version = cache.version();
+        cache.invalidateSubtree("/a");
+        cache.put("/a/b", NOT_FOUND, version);
+        assertNull(cache.get("/a/b"));
+
+        version = cache.version();
+        cache.put("/a/b", "AB", version);
+        assertEquals("AB", cache.get("/a/b"));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,113 @@
+package br.edu.fs.simulator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Caminhos escritos de formas diferentes ("//a", "/x/", "/a/../b") têm que chegar ao mesmo
+ * diretório, também depois de ele ser criado ou renomeado com a primeira forma já no cache.
+ */
+class PathResolutionTest {
+    private FileSystemManager fs;
+    private FileSystemManager.Session session;
+
+    @BeforeEach
+    void setUp() {
+        fs = new FileSystemManager(null, null, null);
+        session = fs.newSession();
+    }
+
+    @AfterEach
+    void tearDown() {
+        fs.shutdown();
+    }
+
+    @Test
+    void canonicalPathCollapsesSlashesAndDots() {
+        assertEquals("/", FileSystemManager.canonicalPath("/"));
+        assertEquals("/", FileSystemManager.canonicalPath("//"));
+        assertEquals("/", FileSystemManager.canonicalPath("/.."));
+        assertEquals("/", FileSystemManager.canonicalPath("/a/.."));
+        assertEquals("/a", FileSystemManager.canonicalPath("//a/"));
+        assertEquals("/b", FileSystemManager.canonicalPath("/a/../b"));
+        assertEquals("/a/b", FileSystemManager.canonicalPath("/a/./b/."));
+        assertEquals("/c", FileSystemManager.canonicalPath("/../a/b/../../c"));
+        assertEquals("/a/...", FileSystemManager.canonicalPath("/a/.../"));
+        String canonical = "/a/b";
+        assertSame(canonical, FileSystemManager.canonicalPath(canonical));
+    }
+
+    @Test
+    void trailingSlashMissBeforeMkdirDoesNotStick() {
+        assertEquals(FsStatus.NOT_FOUND, fs.listDirectory(session, "/x/", new DirectoryListing()));
+        assertEquals(FsStatus.NOT_FOUND, fs.changeDirectory(session, "x/"));
+        check(fs.createDirectory(session, "x"));
+        check(fs.listDirectory(session, "/x/", new DirectoryListing()));
+        check(fs.changeDirectory(session, "x/"));
+        assertEquals("/x", fs.getCurrentPath(session));
+    }
+
+    @Test
+    void doubleSlashHitBeforeRenameDoesNotStick() {
+        check(fs.createDirectory(session, "a"));
+        check(fs.listDirectory(session, "//a", new DirectoryListing()));
+        check(fs.rename(session, "a", "z"));
+        assertEquals(FsStatus.NOT_FOUND, fs.changeDirectory(session, "//a"));
+        check(fs.changeDirectory(session, "//z"));
+        assertEquals("/z", fs.getCurrentPath(session));
+    }
+
+    @Test
+    void dotDotResolvesAgainstTheCurrentTree() {
+        check(fs.createDirectory(session, "a"));
+        assertEquals(FsStatus.NOT_FOUND, fs.listDirectory(session, "/a/../b", new DirectoryListing()));
+        check(fs.createDirectory(session, "b"));
+        check(fs.changeDirectory(session, "/a/../b"));
+        assertEquals("/b", fs.getCurrentPath(session));
+        check(fs.changeDirectory(session, "../a/./"));
+        assertEquals("/a", fs.getCurrentPath(session));
+        check(fs.changeDirectory(session, "/"));
+        check(fs.rename(session, "b", "c"));
+        assertEquals(FsStatus.NOT_FOUND, fs.changeDirectory(session, "/a/../b"));
+        check(fs.changeDirectory(session, "/a/../c"));
+    }
+
+    @Test
+    void dotNamesAreRejected() {
+        assertEquals(FsStatus.INVALID_NAME, fs.createDirectory(session, "."));
+        assertEquals(FsStatus.INVALID_NAME, fs.createDirectory(session, ".."));
+        assertEquals(FsStatus.INVALID_NAME, fs.createFile(session, ".."));
+    }
+
+    @Test
+    void renameInOneManagerKeepsOtherManagersPathsCached() {
+        FileSystemManager other = new FileSystemManager(null, null, null);
+        try {
+            FileSystemManager.Session otherSession = other.newSession();
+            check(other.createDirectory(otherSession, "d"));
+            check(other.changeDirectory(otherSession, "d"));
+            assertEquals("/d", other.getCurrentPath(otherSession));
+            long epoch = other.getInodeTable().getPathEpoch();
+
+            check(fs.createDirectory(session, "a"));
+            check(fs.createDirectory(session, "b"));
+            check(fs.rename(session, "a", "z"));
+            check(fs.move(session, "z", "b"));
+            assertEquals(epoch, other.getInodeTable().getPathEpoch());
+            assertEquals("/d", other.getCurrentPath(otherSession));
+
+            check(fs.changeDirectory(session, "/b/z"));
+            assertEquals("/b/z", fs.getCurrentPath(session));
+        } finally {
+            other.shutdown();
+        }
+    }
+
+    private static void check(FsStatus status) {
+        assertEquals(FsStatus.OK, status);
+    }
+}
\ No newline at end of file
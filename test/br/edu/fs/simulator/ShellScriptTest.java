@@ -0,0 +1,46 @@
+package br.edu.fs.simulator;
+
+import br.edu.fs.simulator.util.SimpleConsoleReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Modo de script do shell: saída dos comandos no stream do shell, resumo por comando à parte.
+ */
+class ShellScriptTest {
+    @Test
+    void summaryCountsCommandsAndSkipsBlankLines() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ByteArrayOutputStream summary = new ByteArrayOutputStream();
+        FileSystemSimulatorShell shell = new FileSystemSimulatorShell(new PrintStream(output, true, StandardCharsets.UTF_8));
+        String script = "mkdir a\n\n   \nMKDIR b\n  cd a  \npwd\nexit\nmkdir c\n";
+        shell.runScript(new SimpleConsoleReader(new StringReader(script), 64), new PrintStream(summary, true, StandardCharsets.UTF_8));
+
+        String out = output.toString(StandardCharsets.UTF_8);
+        assertTrue(out.contains("/a"), out);
+        assertFalse(out.contains("'c'"), out);
+        String text = summary.toString(StandardCharsets.UTF_8);
+        assertTrue(text.startsWith("4 comando(s)"), text);
+        assertTrue(text.matches("(?s).*mkdir\\s+2\\n.*cd\\s+1\\n.*pwd\\s+1\\n.*"), text);
+    }
+
+    @Test
+    void findAcceptsQuotedGlobs() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        FileSystemSimulatorShell shell = new FileSystemSimulatorShell(new PrintStream(output, true, StandardCharsets.UTF_8));
+        String script = "mkdir logs\ncd logs\ncreate a.log\ncd /\ncreate notas\nfind / -name '*g*'\nfind / -name \"*g*\" -type d\n";
+        shell.runScript(new SimpleConsoleReader(new StringReader(script), 64), null);
+
+        String out = output.toString(StandardCharsets.UTF_8);
+        assertTrue(out.contains("/logs/a.log\n"), out);
+        assertTrue(out.contains("2 resultado(s)"), out);
+        assertTrue(out.contains("1 resultado(s)"), out);
+        assertFalse(out.contains("/notas\n"), out);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,175 @@
+package br.edu.fs.simulator;
+
+import br.edu.fs.simulator.disk.BlockDevice;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * O snapshot é uma versão da tabela de inodes: lê-lo, compará-lo e restaurá-lo não pode ver
+ * nada do que mudou depois, e a árvore restaurada tem que ser igual à do snapshot.
+ */
+class SnapshotTest {
+    private FileSystemManager fs;
+    private FileSystemManager.Session session;
+
+    private void open(boolean blockDevice) {
+        fs = new FileSystemManager(blockDevice ? new BlockDevice() : null, null, null);
+        session = fs.newSession();
+        check(fs.createDirectory(session, "proj"));
+        check(fs.createDirectory(session, "velho"));
+        createFile("proj", "a.txt", "um");
+        createFile("proj", "b.txt", "dois");
+        createFile("velho", "x.txt", "tres");
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void snapshotKeepsItsVersion(boolean blockDevice) {
+        open(blockDevice);
+        try {
+            check(fs.createSnapshot(session, "s1"));
+            changeTree();
+
+            assertEquals("um", readSnapshot("s1", "/proj/a.txt"));
+            assertEquals(List.of("proj", "velho"), listSnapshot("s1", "/"));
+            assertEquals(List.of("a.txt", "b.txt"), listSnapshot("s1", "proj"));
+            assertEquals(FsStatus.NOT_FOUND, fs.readSnapshotFile(session, "s1", "/novo/n1.txt", new StringBuilder()));
+            assertEquals(FsStatus.IS_DIRECTORY, fs.readSnapshotFile(session, "s1", "/proj", new StringBuilder()));
+            assertEquals("um mais", read("/proj/a.txt"));
+        } finally {
+            fs.shutdown();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void diffReportsEachChange(boolean blockDevice) {
+        open(blockDevice);
+        try {
+            check(fs.createSnapshot(session, "s1"));
+            changeTree();
+            check(fs.createSnapshot(session, "s2"));
+
+            SnapshotDiff diff = new SnapshotDiff();
+            check(fs.diffSnapshots(session, "s1", "s2", diff));
+            // De subárvores criadas ou removidas inteiras só aparece a raiz.
+            assertEquals(List.of(
+                    "ADDED /novo",
+                    "MODIFIED /proj/a.txt",
+                    "MOVED /proj/c.txt <- /proj/b.txt",
+                    "REMOVED /velho"), entries(diff));
+            assertEquals(3, diff.count(SnapshotDiff.Change.ADDED));
+            assertEquals(2, diff.count(SnapshotDiff.Change.REMOVED));
+            assertEquals(1, diff.count(SnapshotDiff.Change.MOVED));
+            assertEquals(1, diff.count(SnapshotDiff.Change.MODIFIED));
+
+            // Contra a árvore atual: nada mudou desde s2.
+            check(fs.diffSnapshots(session, "s2", null, diff));
+            assertEquals(0, diff.size());
+            check(fs.delete(session, "novo/n2.txt"));
+            check(fs.diffSnapshots(session, "s2", null, diff));
+            assertEquals(List.of("REMOVED /novo/n2.txt"), entries(diff));
+
+            assertEquals(FsStatus.NOT_FOUND, fs.diffSnapshots(session, "s1", "nenhum", diff));
+        } finally {
+            fs.shutdown();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void restoreBringsBackTheTree(boolean blockDevice) {
+        open(blockDevice);
+        try {
+            long nodes = fs.getNodeCount();
+            long bytes = fs.getTotalBytes();
+            check(fs.createSnapshot(session, "s1"));
+            changeTree();
+            check(fs.createSnapshot(session, "s2"));
+
+            check(fs.restoreSnapshot(session, "s1"));
+            assertEquals(0, fs.checkConsistency());
+            assertEquals(nodes, fs.getNodeCount());
+            assertEquals(bytes, fs.getTotalBytes());
+            assertEquals("um", read("/proj/a.txt"));
+            assertEquals("dois", read("/proj/b.txt"));
+            assertEquals("tres", read("/velho/x.txt"));
+            assertEquals(FsStatus.NOT_FOUND, fs.listDirectory(session, "/novo", new DirectoryListing()));
+            SnapshotDiff diff = new SnapshotDiff();
+            check(fs.diffSnapshots(session, "s1", null, diff));
+            assertEquals(0, diff.size());
+
+            // O snapshot continua lá, e a árvore restaurada muda sem mexer nele.
+            check(fs.writeFile(session, "/proj/a.txt", "outro", FileSystemManager.WRITE_REPLACE, 0));
+            assertEquals("um", readSnapshot("s1", "/proj/a.txt"));
+
+            check(fs.restoreSnapshot(session, "s2"));
+            assertEquals(0, fs.checkConsistency());
+            assertEquals("um mais", read("/proj/a.txt"));
+            assertEquals("dois", read("/proj/c.txt"));
+            assertEquals(List.of("n1.txt", "n2.txt"), listSnapshot("s2", "/novo"));
+            assertEquals(FsStatus.NOT_FOUND, fs.restoreSnapshot(session, "nenhum"));
+        } finally {
+            fs.shutdown();
+        }
+    }
+
+    // Um arquivo modificado, um renomeado, uma subárvore removida e outra criada.
+    private void changeTree() {
+        check(fs.writeFile(session, "/proj/a.txt", " mais", FileSystemManager.WRITE_APPEND, 0));
+        check(fs.rename(session, "/proj/b.txt", "c.txt"));
+        check(fs.delete(session, "/velho", true));
+        check(fs.createDirectory(session, "novo"));
+        createFile("novo", "n1.txt", "n1");
+        createFile("novo", "n2.txt", "n2");
+    }
+
+    private void createFile(String dir, String name, String text) {
+        check(fs.changeDirectory(session, "/" + dir));
+        check(fs.createFile(session, name));
+        check(fs.writeFile(session, name, text, FileSystemManager.WRITE_REPLACE, 0));
+        check(fs.changeDirectory(session, "/"));
+    }
+
+    private String read(String path) {
+        StringBuilder out = new StringBuilder();
+        check(fs.readFile(session, path, out));
+        return out.toString();
+    }
+
+    private String readSnapshot(String snapshot, String path) {
+        StringBuilder out = new StringBuilder();
+        check(fs.readSnapshotFile(session, snapshot, path, out));
+        return out.toString();
+    }
+
+    private List<String> listSnapshot(String snapshot, String path) {
+        DirectoryListing listing = new DirectoryListing();
+        check(fs.listSnapshotDirectory(session, snapshot, path, listing));
+        List<String> names = new ArrayList<>();
+        while (listing.next()) {
+            names.add(listing.name());
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    private static List<String> entries(SnapshotDiff diff) {
+        List<String> entries = new ArrayList<>();
+        while (diff.next()) {
+            String entry = diff.change() + " " + diff.path();
+            entries.add(diff.oldPath() == null ? entry : entry + " <- " + diff.oldPath());
+        }
+        return entries;
+    }
+
+    private static void check(FsStatus status) {
+        assertEquals(FsStatus.OK, status);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,104 @@
+package br.edu.fs.simulator;
+
+import br.edu.fs.simulator.disk.BlockDevice;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A busca responde pelo índice de termos, então ele tem que acompanhar cada escrita, anexo,
+ * cópia, renomeação e remoção, sem sobrar termo de arquivo que já não existe.
+ */
+class TextIndexTest {
+    private FileSystemManager fs;
+    private FileSystemManager.Session session;
+
+    private void open(boolean blockDevice) {
+        fs = new FileSystemManager(blockDevice ? new BlockDevice() : null, null, null);
+        session = fs.newSession();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void searchFollowsWritesAndRemoval(boolean blockDevice) {
+        open(blockDevice);
+        try {
+            check(fs.createDirectory(session, "docs"));
+            check(fs.changeDirectory(session, "docs"));
+            check(fs.createFile(session, "a.txt"));
+            check(fs.createFile(session, "b.txt"));
+            check(fs.changeDirectory(session, "/"));
+
+            check(fs.writeFile(session, "docs/a.txt", "Alfa beta", FileSystemManager.WRITE_REPLACE, 0));
+            check(fs.writeFile(session, "docs/b.txt", "beta gama", FileSystemManager.WRITE_REPLACE, 0));
+            assertArrayEquals(new String[] {"/docs/a.txt", "/docs/b.txt"}, search("BETA"));
+            assertArrayEquals(new String[] {"/docs/a.txt"}, search("alfa beta"));
+
+            // Reescrita: o termo que saiu some, o que entrou aparece.
+            check(fs.writeFile(session, "docs/a.txt", "delta", FileSystemManager.WRITE_REPLACE, 0));
+            assertArrayEquals(new String[0], search("alfa"));
+            assertArrayEquals(new String[] {"/docs/b.txt"}, search("beta"));
+            assertArrayEquals(new String[] {"/docs/a.txt"}, search("delta"));
+
+            // Anexo que emenda a última palavra: "delta" vira "deltaepsilon".
+            check(fs.writeFile(session, "docs/a.txt", "epsilon zeta", FileSystemManager.WRITE_APPEND, 0));
+            assertArrayEquals(new String[0], search("delta"));
+            assertArrayEquals(new String[] {"/docs/a.txt"}, search("deltaepsilon zeta"));
+
+            check(fs.copy(session, "docs/b.txt", "docs/c.txt", false));
+            assertArrayEquals(new String[] {"/docs/b.txt", "/docs/c.txt"}, search("gama"));
+
+            check(fs.rename(session, "docs", "textos"));
+            assertArrayEquals(new String[] {"/textos/b.txt", "/textos/c.txt"}, search("gama"));
+
+            check(fs.delete(session, "textos/b.txt"));
+            assertArrayEquals(new String[] {"/textos/c.txt"}, search("gama"));
+            check(fs.truncateFile(session, "textos/c.txt", 0));
+            assertArrayEquals(new String[0], search("gama"));
+
+            check(fs.delete(session, "textos", true));
+            assertArrayEquals(new String[0], search("zeta"));
+            TextIndex index = fs.getTextIndex();
+            assertEquals(0, index.getPostingCount());
+            assertEquals(0, index.getIndexedFileCount());
+            assertEquals(0, fs.checkConsistency());
+        } finally {
+            fs.shutdown();
+        }
+    }
+
+    @Test
+    void filesOverTheBudgetAreScanned() {
+        open(false);
+        try {
+            fs.setTextIndexBudget(0);
+            check(fs.createFile(session, "grande.txt"));
+            check(fs.writeFile(session, "grande.txt", "fora do indice", FileSystemManager.WRITE_REPLACE, 0));
+            assertEquals(1, fs.getTextIndex().getUnindexedCount());
+            assertArrayEquals(new String[] {"/grande.txt"}, search("indice"));
+            assertEquals(1L, session.getLastNodeCount());
+
+            check(fs.delete(session, "grande.txt"));
+            assertArrayEquals(new String[0], search("indice"));
+            assertEquals(0, fs.getTextIndex().getUnindexedCount());
+        } finally {
+            fs.shutdown();
+        }
+    }
+
+    private String[] search(String query) {
+        List<String> found = new ArrayList<>();
+        check(fs.search(session, query, (path, type, size) -> found.add(path)));
+        return found.toArray(new String[0]);
+    }
+
+    private static void check(FsStatus status) {
+        assertEquals(FsStatus.OK, status);
+    }
+}
\ No newline at end of file
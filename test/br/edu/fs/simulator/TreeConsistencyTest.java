@@ -0,0 +1,149 @@
+package br.edu.fs.simulator;
+
+import br.edu.fs.simulator.disk.BlockDevice;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Os totais agregados dos diretórios (bytes, arquivos, subdiretórios) têm que continuar batendo
+ * com a árvore depois de cada operação que muda a estrutura, no heap e no dispositivo de blocos,
+ * e também quando cópia e remoção rodam em paralelo.
+ */
+class TreeConsistencyTest {
+    // Acima do limite a partir do qual cópia e remoção dividem a subárvore entre tarefas.
+    private static final int LARGE_TREE_FILES = 6_000;
+
+    private FileSystemManager fs;
+    private FileSystemManager.Session session;
+
+    private void open(boolean blockDevice) {
+        fs = new FileSystemManager(blockDevice ? new BlockDevice() : null, null, null);
+        session = fs.newSession();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void structuralOperationsKeepTotals(boolean blockDevice) {
+        open(blockDevice);
+        try {
+            buildTree("a", 3, 4);
+            long nodes = fs.getNodeCount();
+            long bytes = fs.getTotalBytes();
+            assertConsistent();
+
+            check(fs.rename(session, "a", "b"));
+            assertConsistent();
+            check(fs.createDirectory(session, "dest"));
+            check(fs.move(session, "b/d0", "dest"));
+            check(fs.move(session, "b/f1", "dest/g1"));
+            assertConsistent();
+            assertEquals(nodes + 1, fs.getNodeCount());
+            assertEquals(bytes, fs.getTotalBytes());
+
+            check(fs.copy(session, "b", "copia", true));
+            check(fs.copy(session, "dest/g1", "copia/g1", false));
+            assertConsistent();
+
+            check(fs.writeFile(session, "dest/g1", "mais texto", FileSystemManager.WRITE_APPEND, 0));
+            check(fs.truncateFile(session, "copia/g1", 3));
+            check(fs.writeFile(session, "copia/f2", "X", FileSystemManager.WRITE_AT_OFFSET, 2));
+            assertConsistent();
+
+            check(fs.delete(session, "copia/d1", true));
+            check(fs.delete(session, "dest/g1"));
+            check(fs.delete(session, "b", true));
+            assertConsistent();
+        } finally {
+            fs.shutdown();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void snapshotRestoreKeepsTotals(boolean blockDevice) {
+        open(blockDevice);
+        try {
+            buildTree("a", 2, 5);
+            long nodes = fs.getNodeCount();
+            long bytes = fs.getTotalBytes();
+            check(fs.createSnapshot(session, "s1"));
+
+            check(fs.delete(session, "a/d0", true));
+            check(fs.rename(session, "a", "z"));
+            check(fs.writeFile(session, "z/f1", "novo", FileSystemManager.WRITE_REPLACE, 0));
+            check(fs.copy(session, "z", "w", true));
+            assertConsistent();
+
+            check(fs.restoreSnapshot(session, "s1"));
+            assertConsistent();
+            assertEquals(nodes, fs.getNodeCount());
+            assertEquals(bytes, fs.getTotalBytes());
+
+            // A árvore restaurada continua sendo alterada normalmente.
+            check(fs.move(session, "a/d1", "d1"));
+            check(fs.delete(session, "a", true));
+            assertConsistent();
+        } finally {
+            fs.shutdown();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void parallelCopyAndDeleteKeepTotals(boolean blockDevice) {
+        open(blockDevice);
+        try {
+            fs.setTreeParallelism(4);
+            check(fs.createDirectory(session, "big"));
+            for (int d = 0; d < 6; d++) {
+                check(fs.changeDirectory(session, "/big"));
+                check(fs.createDirectory(session, "d" + d));
+                check(fs.changeDirectory(session, "d" + d));
+                for (int i = 0; i < LARGE_TREE_FILES / 6; i++) {
+                    createFile("f" + i, "x".repeat(i & 31));
+                }
+            }
+            check(fs.changeDirectory(session, "/"));
+            long bytes = fs.getTotalBytes();
+            check(fs.copy(session, "big", "big2", true));
+            assertConsistent();
+            assertEquals(2 * bytes, fs.getTotalBytes());
+            check(fs.delete(session, "big", true));
+            assertConsistent();
+            assertEquals(bytes, fs.getTotalBytes());
+        } finally {
+            fs.shutdown();
+        }
+    }
+
+    // Diretório com arquivos f0..f(width-1) e subdiretórios d0..d(width-1), até a profundidade
+    // dada, criado no diretório atual da sessão.
+    private void buildTree(String name, int depth, int width) {
+        check(fs.createDirectory(session, name));
+        check(fs.changeDirectory(session, name));
+        for (int i = 0; i < width; i++) {
+            createFile("f" + i, fs.getCurrentPath(session) + " arquivo " + i);
+        }
+        if (depth > 1) {
+            for (int i = 0; i < width; i++) {
+                buildTree("d" + i, depth - 1, width);
+            }
+        }
+        check(fs.changeDirectory(session, ".."));
+    }
+
+    private void createFile(String name, String text) {
+        check(fs.createFile(session, name));
+        check(fs.writeFile(session, name, text, FileSystemManager.WRITE_REPLACE, 0));
+    }
+
+    private void assertConsistent() {
+        assertEquals(0, fs.checkConsistency());
+    }
+
+    private static void check(FsStatus status) {
+        assertEquals(FsStatus.OK, status);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,212 @@
+package br.edu.fs.simulator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Replay do journal binário depois de uma queda: registros íntegros voltam na ordem, e o primeiro
+ * registro rasgado ou com CRC errado encerra o log ali.
+ */
+class WriteAheadLogTest {
+    // Cabeçalho (tamanho, CRC) e parte fixa do corpo de cada registro.
+    private static final int HEADER_SIZE = 8;
+    private static final int FIXED_BODY_SIZE = 33;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordsAreReplayedInOrder() throws IOException {
+        Path path = dir.resolve("journal.wal");
+        write(path, 5);
+
+        List<String> replayed = new ArrayList<>();
+        try (WriteAheadLog wal = WriteAheadLog.open(path, WriteAheadLog.SyncPolicy.ALWAYS)) {
+            WriteAheadLog.RecoveryStats stats = wal.replay(2, record -> replayed.add(record.lsn + " " + record.op + " "
+                    + record.path + " " + record.arg1 + " " + record.text));
+            assertEquals(3, stats.applied);
+            assertEquals(2, stats.skipped);
+            assertEquals(0, stats.discardedBytes);
+            assertEquals(5, wal.getLastLsn());
+        }
+        assertEquals(List.of("3 WRITE /arquivo2 2 texto 2", "4 WRITE /arquivo3 3 texto 3", "5 WRITE /arquivo4 4 texto 4"), replayed);
+    }
+
+    @Test
+    void corruptedRecordEndsTheLog() throws IOException {
+        Path path = dir.resolve("journal.wal");
+        write(path, 5);
+        Path segment = onlySegment();
+        long size = Files.size(segment);
+        // Troca um byte do texto do terceiro registro: o CRC deixa de bater.
+        long third = 2 * recordSize(0);
+        flipByte(segment, third + recordSize(2) - 1);
+
+        List<Long> replayed = new ArrayList<>();
+        try (WriteAheadLog wal = WriteAheadLog.open(path, WriteAheadLog.SyncPolicy.ALWAYS)) {
+            WriteAheadLog.RecoveryStats stats = wal.replay(0, record -> replayed.add(record.lsn));
+            assertEquals(2, stats.applied);
+            assertEquals(size - third, stats.discardedBytes);
+            assertEquals(third, Files.size(segment));
+
+            // O log continua depois do último registro íntegro.
+            assertEquals(2, wal.getLastLsn());
+            wal.append(WriteAheadLog.Op.MKDIR, "/novo", 0, 0, null);
+            wal.sync();
+            assertEquals(3, wal.getLastLsn());
+        }
+        assertEquals(List.of(1L, 2L), replayed);
+        assertEquals(List.of(1L, 2L, 3L), replayAll(dir.resolve("journal.wal")));
+    }
+
+    @Test
+    void tornTailIsDiscarded() throws IOException {
+        Path path = dir.resolve("journal.wal");
+        write(path, 4);
+        Path segment = onlySegment();
+        long size = Files.size(segment);
+        // A queda cortou o último registro no meio.
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 5);
+        }
+
+        try (WriteAheadLog wal = WriteAheadLog.open(path, WriteAheadLog.SyncPolicy.ALWAYS)) {
+            WriteAheadLog.RecoveryStats stats = wal.replay(0, record -> true);
+            assertEquals(3, stats.applied);
+            assertEquals(recordSize(3) - 5, stats.discardedBytes);
+            assertEquals(3 * recordSize(0), stats.validBytes);
+        }
+        assertEquals(3 * recordSize(0), Files.size(segment));
+    }
+
+    @Test
+    void headerCutShortIsDiscarded() throws IOException {
+        Path path = dir.resolve("journal.wal");
+        write(path, 2);
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0}), channel.size());
+        }
+        assertEquals(List.of(1L, 2L), replayAll(path));
+        assertEquals(2 * recordSize(0), Files.size(segment));
+    }
+
+    @Test
+    void checkpointDeletesCoveredSegments() throws IOException {
+        Path path = dir.resolve("journal.wal");
+        // Três registros por segmento.
+        long segmentSize = 3 * recordSize(0);
+        try (WriteAheadLog wal = WriteAheadLog.open(path, WriteAheadLog.SyncPolicy.ALWAYS, segmentSize)) {
+            wal.replay(0, record -> true);
+            for (int i = 0; i < 9; i++) {
+                wal.append(WriteAheadLog.Op.WRITE, "/arquivo" + i, i, 0, "texto " + i);
+            }
+            wal.sync();
+            assertEquals(3, segments().size());
+
+            // Só o primeiro segmento está todo no checkpoint; o segundo ainda tem os LSNs 5 e 6.
+            wal.checkpoint(4);
+            assertEquals(List.of(path.resolveSibling("journal.wal.0000000000000004"), path.resolveSibling("journal.wal.0000000000000007")),
+                    segments());
+
+            wal.checkpoint(9);
+            assertEquals(List.of(), segments());
+            // O próximo registro abre um segmento novo, com o LSN seguinte.
+            wal.append(WriteAheadLog.Op.MKDIR, "/depois", 0, 0, null);
+            wal.sync();
+            assertEquals(List.of(path.resolveSibling("journal.wal.0000000000000010")), segments());
+        }
+
+        List<Long> replayed = new ArrayList<>();
+        try (WriteAheadLog wal = WriteAheadLog.open(path, WriteAheadLog.SyncPolicy.ALWAYS, segmentSize)) {
+            WriteAheadLog.RecoveryStats stats = wal.replay(9, record -> replayed.add(record.lsn));
+            assertEquals(1, stats.segments);
+            assertEquals(0, stats.skipped);
+        }
+        assertEquals(List.of(10L), replayed);
+    }
+
+    @Test
+    void managerCheckpointLeavesNoOldSegments() throws IOException {
+        FileSystemManager fs = FileSystemManager.persistent(dir);
+        try {
+            FileSystemManager.Session session = fs.newSession();
+            for (int i = 0; i < 50; i++) {
+                assertEquals(FsStatus.OK, fs.createFile(session, "f" + i));
+            }
+            assertEquals(FsStatus.OK, fs.syncJournal(session));
+            assertEquals(1, segments().size());
+            assertEquals(FsStatus.OK, fs.checkpoint(session));
+            assertEquals(List.of(), segments());
+            assertEquals(FsStatus.OK, fs.createDirectory(session, "d"));
+            assertEquals(FsStatus.OK, fs.syncJournal(session));
+            assertEquals(1, segments().size());
+        } finally {
+            fs.shutdown();
+        }
+        // O shutdown grava um checkpoint com o que faltava: nada fica para reaplicar.
+        assertEquals(List.of(), segments());
+        assertTrue(Files.exists(dir.resolve("journal.wal.ckpt")));
+    }
+
+    // Registros WRITE "/arquivo<i>" com o texto "texto <i>", todos do mesmo tamanho enquanto i < 10.
+    private static void write(Path path, int count) throws IOException {
+        try (WriteAheadLog wal = WriteAheadLog.open(path, WriteAheadLog.SyncPolicy.ALWAYS)) {
+            wal.replay(0, record -> true);
+            for (int i = 0; i < count; i++) {
+                wal.append(WriteAheadLog.Op.WRITE, "/arquivo" + i, i, 0, "texto " + i);
+            }
+            wal.sync();
+        }
+    }
+
+    private static long recordSize(int i) {
+        return HEADER_SIZE + FIXED_BODY_SIZE + ("/arquivo" + i).length() + ("texto " + i).length();
+    }
+
+    private static List<Long> replayAll(Path path) throws IOException {
+        List<Long> lsns = new ArrayList<>();
+        try (WriteAheadLog wal = WriteAheadLog.open(path, WriteAheadLog.SyncPolicy.ALWAYS)) {
+            wal.replay(0, record -> lsns.add(record.lsn));
+        }
+        return lsns;
+    }
+
+    private Path onlySegment() throws IOException {
+        List<Path> segments = segments();
+        assertEquals(1, segments.size());
+        return segments.get(0);
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "journal.wal.[0-9]*")) {
+            files.forEach(segments::add);
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private static void flipByte(Path file, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, position);
+            b.put(0, (byte) (b.get(0) ^ 0x40));
+            b.rewind();
+            channel.write(b, position);
+        }
+        assertTrue(Files.size(file) > position);
+    }
+}
\ No newline at end of file
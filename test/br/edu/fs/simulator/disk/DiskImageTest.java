@@ -0,0 +1,151 @@
+package br.edu.fs.simulator.disk;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * O que é gravado numa imagem (blocos, mapa de bits, inodes com nomes e extents, LSN) volta igual
+ * depois de fechar e abrir de novo, tanto na imagem montável quanto no snapshot compacto.
+ */
+class DiskImageTest {
+    private static final int BLOCKS = 256;
+    private static final int BLOCK_SIZE = 512;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void imageRoundTrip() throws IOException {
+        Path path = dir.resolve("disco.img");
+        InodeRecords records;
+        try (DiskImage image = DiskImage.format(path, BLOCKS, BLOCK_SIZE)) {
+            BlockDevice device = image.getDevice();
+            records = fill(device);
+            image.sync(records, 42);
+        }
+
+        try (DiskImage image = DiskImage.open(path)) {
+            assertEquals(42, image.getCheckpointLsn());
+            assertEquals(records.size(), image.getInodeCount());
+            assertRecords(records, image.readInodes());
+            assertBlocks(image.getDevice());
+        }
+    }
+
+    @Test
+    void syncShrinksMetadataThatGotSmaller() throws IOException {
+        Path path = dir.resolve("disco.img");
+        try (DiskImage image = DiskImage.format(path, BLOCKS, BLOCK_SIZE)) {
+            image.sync(fill(image.getDevice()));
+            long full = Files.size(path);
+            InodeRecords root = new InodeRecords(1);
+            root.add(-1, InodeRecords.TYPE_DIRECTORY, "/", 1, 2, 0);
+            image.sync(root);
+            assertTrue(Files.size(path) < full);
+        }
+        try (DiskImage image = DiskImage.open(path)) {
+            assertEquals(1, image.readInodes().size());
+        }
+    }
+
+    @Test
+    void packedSnapshotRoundTrip() throws IOException {
+        BlockDevice source = new BlockDevice(BLOCKS, BLOCK_SIZE);
+        InodeRecords records = fill(source);
+        Path path = dir.resolve("journal.wal.ckpt");
+        DiskImage.writeSnapshot(path, source, records, 7);
+        assertTrue(Files.size(path) < (long) BLOCKS * BLOCK_SIZE / 4, "snapshot: " + Files.size(path));
+
+        try (DiskImage snapshot = DiskImage.openSnapshot(path)) {
+            assertEquals(7, snapshot.getCheckpointLsn());
+            assertEquals(BLOCKS, snapshot.getBlockCount());
+            assertEquals(BLOCK_SIZE, snapshot.getBlockSize());
+            assertRecords(records, snapshot.readInodes());
+            BlockDevice target = new BlockDevice(BLOCKS, BLOCK_SIZE);
+            snapshot.copyBlocksTo(target);
+            assertBlocks(target);
+            assertThrows(IllegalStateException.class, snapshot::getDevice);
+        }
+        assertThrows(IOException.class, () -> DiskImage.open(path));
+    }
+
+    @Test
+    void notAnImageIsRejected() throws IOException {
+        Path path = dir.resolve("texto.img");
+        Files.write(path, new byte[8192]);
+        assertThrows(IOException.class, () -> DiskImage.open(path));
+        assertThrows(IOException.class, () -> DiskImage.open(dir.resolve("nao-existe.img")));
+    }
+
+    // Dois arquivos em extents separados por blocos livres, e um diretório no meio.
+    private static InodeRecords fill(BlockDevice device) {
+        ExtentList first = new ExtentList();
+        ExtentList gap = new ExtentList();
+        ExtentList second = new ExtentList();
+        device.getAllocator().allocate(3, first);
+        device.getAllocator().allocate(5, gap);
+        device.getAllocator().allocate(2, second);
+        device.getAllocator().allocate(1, first);
+        device.getAllocator().free(gap, 0);
+        writeBlocks(device, first, 'a');
+        writeBlocks(device, second, 'k');
+
+        InodeRecords records = new InodeRecords(4);
+        records.add(-1, InodeRecords.TYPE_DIRECTORY, "/", 10, 11, 0);
+        records.add(0, InodeRecords.TYPE_DIRECTORY, "documentos", 12, 13, 0);
+        records.add(1, InodeRecords.TYPE_FILE, "relatório.txt", 14, 15, first.getTotalBlocks() * BLOCK_SIZE / 2);
+        for (int i = 0; i < first.size(); i++) {
+            records.addExtent(first.startAt(i), first.lengthAt(i));
+        }
+        records.add(0, InodeRecords.TYPE_FILE, "b", 16, 17, second.getTotalBlocks() * BLOCK_SIZE / 2);
+        records.addExtent(second.startAt(0), second.lengthAt(0));
+        return records;
+    }
+
+    private static void writeBlocks(BlockDevice device, ExtentList extents, char first) {
+        for (int i = 0; i < extents.getTotalBlocks(); i++) {
+            int block = extents.physicalBlock(i);
+            for (int offset = 0; offset < BLOCK_SIZE; offset += 2) {
+                device.putChar(block, offset, (char) (first + (block + offset) % 13));
+            }
+        }
+    }
+
+    private static void assertBlocks(BlockDevice device) {
+        assertEquals(BLOCKS - 6, device.getBitmap().getFreeCount());
+        int[] used = {0, 1, 2, 8, 9, 10};
+        char[] first = {'a', 'a', 'a', 'k', 'k', 'a'};
+        for (int i = 0; i < used.length; i++) {
+            int block = used[i];
+            assertFalse(device.getBitmap().isFree(block), "block " + block);
+            for (int offset = 0; offset < BLOCK_SIZE; offset += 2) {
+                assertEquals((char) (first[i] + (block + offset) % 13), device.getChar(block, offset));
+            }
+        }
+    }
+
+    private static void assertRecords(InodeRecords expected, InodeRecords actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getParent(i), actual.getParent(i));
+            assertEquals(expected.getType(i), actual.getType(i));
+            assertEquals(expected.getName(i), actual.getName(i));
+            assertEquals(expected.getCreated(i), actual.getCreated(i));
+            assertEquals(expected.getModified(i), actual.getModified(i));
+            assertEquals(expected.getLength(i), actual.getLength(i));
+            assertEquals(expected.getExtentCount(i), actual.getExtentCount(i));
+            for (int e = 0; e < expected.getExtentCount(i); e++) {
+                assertEquals(expected.getExtentStart(i, e), actual.getExtentStart(i, e));
+                assertEquals(expected.getExtentBlocks(i, e), actual.getExtentBlocks(i, e));
+            }
+        }
+    }
+}
\ No newline at end of file
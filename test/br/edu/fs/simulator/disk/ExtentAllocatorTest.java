@@ -0,0 +1,88 @@
+package br.edu.fs.simulator.disk;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ExtentAllocatorTest {
+    @Test
+    void growthExtendsTheLastExtentInPlace() {
+        FreeSpaceBitmap bitmap = new FreeSpaceBitmap(256);
+        ExtentAllocator allocator = new ExtentAllocator(bitmap);
+        ExtentList file = new ExtentList();
+        allocator.allocate(4, file);
+        allocator.allocate(4, file);
+        allocator.allocate(8, file);
+
+        assertEquals(1, file.size());
+        assertEquals(16, file.getTotalBlocks());
+        assertEquals(2, allocator.getInPlaceExtensions());
+        assertEquals(16, file.contiguousFrom(0));
+    }
+
+    @Test
+    void blockedGrowthMovesToTheNextFitRun() {
+        FreeSpaceBitmap bitmap = new FreeSpaceBitmap(256);
+        ExtentAllocator allocator = new ExtentAllocator(bitmap);
+        ExtentList a = new ExtentList();
+        ExtentList b = new ExtentList();
+        allocator.allocate(4, a);
+        allocator.allocate(4, b);
+        allocator.allocate(4, a);
+
+        assertEquals(2, a.size());
+        assertEquals(0, a.startAt(0));
+        assertEquals(8, a.startAt(1));
+        assertEquals(0, a.physicalBlock(0));
+        assertEquals(9, a.physicalBlock(5));
+        assertEquals(4, a.contiguousFrom(0));
+    }
+
+    @Test
+    void fragmentedSpaceIsGatheredFromSeveralRuns() {
+        FreeSpaceBitmap bitmap = new FreeSpaceBitmap(64);
+        ExtentAllocator allocator = new ExtentAllocator(bitmap);
+        ExtentList[] holes = new ExtentList[8];
+        ExtentList fill = new ExtentList();
+        for (int i = 0; i < holes.length; i++) {
+            holes[i] = new ExtentList();
+            allocator.allocate(4, holes[i]);
+            allocator.allocate(4, fill);
+        }
+        for (ExtentList hole : holes) {
+            allocator.free(hole, 0);
+        }
+        assertEquals(32, bitmap.getFreeCount());
+
+        // Nenhum trecho livre tem 10 blocos: a alocação junta três trechos.
+        ExtentList file = new ExtentList();
+        allocator.allocate(10, file);
+        assertEquals(10, file.getTotalBlocks());
+        assertEquals(3, file.size());
+        assertEquals(22, bitmap.getFreeCount());
+        for (int i = 0; i < 10; i++) {
+            assertFalse(bitmap.isFree(file.physicalBlock(i)));
+        }
+    }
+
+    @Test
+    void truncateReturnsBlocksAndFullDiskFailsCleanly() {
+        FreeSpaceBitmap bitmap = new FreeSpaceBitmap(32);
+        ExtentAllocator allocator = new ExtentAllocator(bitmap);
+        ExtentList file = new ExtentList();
+        allocator.allocate(20, file);
+        allocator.free(file, 5);
+        assertEquals(5, file.getTotalBlocks());
+        assertEquals(27, bitmap.getFreeCount());
+
+        ExtentList other = new ExtentList();
+        assertThrows(DiskFullException.class, () -> allocator.allocate(28, other));
+        assertEquals(0, other.getTotalBlocks());
+        assertEquals(27, bitmap.getFreeCount());
+        assertEquals(1, allocator.getFailedAllocations());
+        allocator.allocate(27, other);
+        assertEquals(0, bitmap.getFreeCount());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package br.edu.fs.simulator.disk;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FreeSpaceBitmapTest {
+    @Test
+    void runsCrossWordBoundaries() {
+        // 200 blocos: três palavras cheias e uma parcial.
+        FreeSpaceBitmap bitmap = new FreeSpaceBitmap(200);
+        assertEquals(200, bitmap.getFreeCount());
+        bitmap.markUsed(60, 10);
+        bitmap.markUsed(130, 1);
+
+        assertEquals(190 - 1, bitmap.getFreeCount());
+        assertFalse(bitmap.isFree(64));
+        assertTrue(bitmap.isFree(70));
+        assertEquals(70, bitmap.nextFree(60));
+        assertEquals(60, bitmap.freeRunLength(0, 1000));
+        assertEquals(60, bitmap.freeRunLength(70, 1000));
+        assertEquals(69, bitmap.freeRunLength(131, 1000));
+        assertEquals(5, bitmap.freeRunLength(70, 5));
+        assertEquals(0, bitmap.freeRunLength(60, 5));
+        assertArrayEquals(new int[] {3, 69}, bitmap.freeRunStats());
+    }
+
+    @Test
+    void lastWordIsNeverFree() {
+        FreeSpaceBitmap bitmap = new FreeSpaceBitmap(70);
+        bitmap.markUsed(0, 70);
+        assertEquals(0, bitmap.getFreeCount());
+        assertEquals(-1, bitmap.nextFree(0));
+        assertEquals(-1, bitmap.findRun(0, 1));
+        bitmap.markFree(69, 1);
+        assertEquals(69, bitmap.nextFree(0));
+        assertEquals(1, bitmap.freeRunLength(69, 10));
+    }
+
+    @Test
+    void findRunWrapsAround() {
+        FreeSpaceBitmap bitmap = new FreeSpaceBitmap(128);
+        bitmap.markUsed(10, 118);
+        assertEquals(0, bitmap.findRun(50, 10));
+        assertEquals(-1, bitmap.findRun(50, 11));
+        bitmap.markFree(100, 20);
+        assertEquals(100, bitmap.findRun(50, 11));
+        assertEquals(105, bitmap.findRun(105, 11));
+        assertEquals(100, bitmap.findRun(115, 11));
+    }
+
+    @Test
+    void savedWordsRestoreTheFreeCount() {
+        FreeSpaceBitmap bitmap = new FreeSpaceBitmap(100);
+        bitmap.markUsed(3, 40);
+        FreeSpaceBitmap restored = new FreeSpaceBitmap(100, bitmap.getWords().clone());
+        assertEquals(60, restored.getFreeCount());
+        assertEquals(43, restored.nextFree(3));
+        assertThrows(IllegalArgumentException.class, () -> new FreeSpaceBitmap(200, bitmap.getWords()));
+    }
+
+    @Test
+    void doubleAllocationAndDoubleFreeAreRejected() {
+        FreeSpaceBitmap bitmap = new FreeSpaceBitmap(64);
+        bitmap.markUsed(5, 3);
+        assertThrows(IllegalStateException.class, () -> bitmap.markUsed(7, 1));
+        assertThrows(IllegalStateException.class, () -> bitmap.markFree(8, 1));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,146 @@
+package br.edu.fs.simulator.util;
+
+import org.junit.jupiter.api.Test;
+
+import static br.edu.fs.simulator.util.ChunkedText.CHUNK_SIZE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Contagem de referências do depósito e a cópia na escrita dos textos que o usam: um bloco
+ * compartilhado nunca é alterado, e o último a soltá-lo o tira do depósito.
+ */
+class ChunkStoreTest {
+    @Test
+    void equalChunksShareOneArray() {
+        ChunkStore store = new ChunkStore();
+        char[][] holder = {"bloco".toCharArray(), "bloco".toCharArray(), "outro".toCharArray()};
+        int a = store.intern(holder, 0, 5);
+        int b = store.intern(holder, 1, 5);
+        int c = store.intern(holder, 2, 5);
+        assertEquals(a, b);
+        assertSame(holder[0], holder[1]);
+        assertEquals(2, store.getReferences(a));
+        assertEquals(1, store.getReferences(c));
+        assertEquals(2, store.getChunkCount());
+        assertEquals(15, store.getLogicalChars());
+        assertEquals(10, store.getPhysicalChars());
+        assertEquals(1, store.getSharedInterns());
+
+        // Só o comprimento pedido conta: o resto do vetor não entra no hash nem na comparação.
+        char[][] prefix = {"blocoXYZ".toCharArray()};
+        assertEquals(a, store.intern(prefix, 0, 5));
+        assertEquals(3, store.getReferences(a));
+    }
+
+    @Test
+    void lastReleaseRemovesTheChunk() {
+        ChunkStore store = new ChunkStore();
+        char[][] holder = {"abc".toCharArray()};
+        int id = store.intern(holder, 0, 3);
+        store.retain(id);
+        assertFalse(store.claim(id));
+        assertEquals(2, store.getReferences(id));
+
+        store.release(id);
+        assertEquals(1, store.getChunkCount());
+        store.release(id);
+        assertEquals(0, store.getChunkCount());
+        assertEquals(0, store.getReferenceCount());
+        assertEquals(0, store.getPhysicalChars());
+        assertThrows(IllegalStateException.class, () -> store.release(id));
+        assertThrows(IllegalStateException.class, () -> store.retain(id));
+
+        // Um bloco igual guardado de novo não reaproveita o que saiu.
+        char[][] again = {"abc".toCharArray()};
+        char[] chunk = again[0];
+        store.intern(again, 0, 3);
+        assertSame(chunk, again[0]);
+        assertEquals(0, store.getSharedInterns());
+    }
+
+    @Test
+    void claimTakesAnUnsharedChunk() {
+        ChunkStore store = new ChunkStore();
+        char[][] holder = {"só meu".toCharArray()};
+        int id = store.intern(holder, 0, 6);
+        assertTrue(store.claim(id));
+        assertEquals(0, store.getChunkCount());
+        // Fora do depósito, um bloco igual é guardado como novo.
+        char[][] other = {"só meu".toCharArray()};
+        store.intern(other, 0, 6);
+        assertNotSame(holder[0], other[0]);
+    }
+
+    @Test
+    void copiesShareChunksUntilWritten() {
+        ChunkStore store = new ChunkStore();
+        String data = text(3 * CHUNK_SIZE, 'a');
+        ChunkedText original = new ChunkedText(store);
+        original.append(data);
+        original.seal();
+        assertEquals(3, store.getChunkCount());
+
+        ChunkedText copy = original.copy(original.length());
+        assertEquals(3, store.getChunkCount());
+        assertEquals(6, store.getReferenceCount());
+
+        // Escrever no bloco do meio copia só ele; a cópia não enxerga nada do original e vice-versa.
+        copy.write(CHUNK_SIZE + 10, "mudou");
+        copy.seal();
+        assertEquals(data, original.toString());
+        assertEquals(data.substring(0, CHUNK_SIZE + 10) + "mudou" + data.substring(CHUNK_SIZE + 15), copy.toString());
+        assertEquals(4, store.getChunkCount());
+        assertEquals(6, store.getReferenceCount());
+
+        // Cópia cortada no meio de um bloco: o último é copiado, os anteriores compartilhados.
+        ChunkedText prefix = original.copy(CHUNK_SIZE + 7);
+        assertEquals(data.substring(0, CHUNK_SIZE + 7), prefix.toString());
+        assertEquals(5, store.getChunkCount());
+
+        original.release();
+        copy.release();
+        prefix.release();
+        assertEquals(0, store.getChunkCount());
+        assertEquals(0, store.getReferenceCount());
+    }
+
+    @Test
+    void equalTextsAreDeduplicated() {
+        ChunkStore store = new ChunkStore();
+        String data = text(2 * CHUNK_SIZE + 100, 'k');
+        ChunkedText first = new ChunkedText(store);
+        ChunkedText second = new ChunkedText(store);
+        first.append(data);
+        first.seal();
+        // Anexos em pedaços enchem os blocos do mesmo jeito que uma escrita só.
+        second.append(data.substring(0, 1000));
+        second.append(data.substring(1000));
+        second.seal();
+        assertEquals(3, store.getChunkCount());
+        assertEquals(2 * data.length(), store.getLogicalChars());
+        assertEquals(data.length(), store.getPhysicalChars());
+
+        // Com a referência única, o último bloco é tirado do depósito em vez de copiado.
+        second.append("fim");
+        second.seal();
+        first.truncate(CHUNK_SIZE);
+        assertEquals(data, second.toString().substring(0, data.length()));
+        assertEquals(data.substring(0, CHUNK_SIZE), first.toString());
+        first.release();
+        second.release();
+        assertEquals(0, store.getChunkCount());
+    }
+
+    private static String text(int length, char first) {
+        char[] c = new char[length];
+        for (int i = 0; i < length; i++) {
+            c[i] = (char) (first + i % 23);
+        }
+        return new String(c);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,133 @@
+package br.edu.fs.simulator.util;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static br.edu.fs.simulator.util.ChunkedText.CHUNK_SIZE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Operações que começam, terminam ou atravessam a fronteira entre blocos, conferidas contra um
+ * StringBuilder.
+ */
+class ChunkedTextTest {
+    @Test
+    void appendFillsChunksUpToTheLimit() {
+        ChunkedText text = new ChunkedText();
+        String data = text(3 * CHUNK_SIZE + 17, 'a');
+        text.append(data.substring(0, 10));
+        text.append(data.substring(10));
+        assertEquals(4, text.chunkCount());
+        assertEquals(data, text.toString());
+        assertEquals(data.substring(CHUNK_SIZE - 5, CHUNK_SIZE + 5), text.read(CHUNK_SIZE - 5, 10));
+        assertEquals(data.substring(CHUNK_SIZE, 3 * CHUNK_SIZE + 1), text.read(CHUNK_SIZE, 2 * CHUNK_SIZE + 1));
+        assertEquals(data.charAt(2 * CHUNK_SIZE), text.charAt(2 * CHUNK_SIZE));
+    }
+
+    @Test
+    void insertAtAndAcrossBoundaries() {
+        StringBuilder model = new StringBuilder(text(2 * CHUNK_SIZE, 'a'));
+        ChunkedText text = new ChunkedText(model.toString());
+
+        insert(text, model, CHUNK_SIZE, "fronteira");
+        insert(text, model, 0, "início");
+        // Maior que um bloco: o bloco é dividido e os dados ocupam blocos novos.
+        insert(text, model, CHUNK_SIZE / 2, text(CHUNK_SIZE + 3, 'k'));
+        insert(text, model, text.length(), "fim");
+        insert(text, model, 1, "");
+        assertEquals(model.length(), text.length());
+        assertEquals(model.substring(CHUNK_SIZE - 7, CHUNK_SIZE + 20), text.read(CHUNK_SIZE - 7, 27));
+    }
+
+    @Test
+    void truncateAroundABoundary() {
+        String data = text(3 * CHUNK_SIZE, 'a');
+        ChunkedText text = new ChunkedText(data);
+        int[] lengths = {2 * CHUNK_SIZE + 1, 2 * CHUNK_SIZE, 2 * CHUNK_SIZE - 1, CHUNK_SIZE, 1};
+        for (int length : lengths) {
+            text.truncate(length);
+            assertEquals(data.substring(0, length), text.toString());
+        }
+        assertEquals(1, text.chunkCount());
+        // O bloco cortado volta a crescer sem trazer de volta o que foi truncado.
+        text.append("xyz");
+        assertEquals(data.charAt(0) + "xyz", text.toString());
+        text.truncate(0);
+        assertEquals(0, text.chunkCount());
+        assertThrows(StringIndexOutOfBoundsException.class, () -> text.truncate(1));
+    }
+
+    @Test
+    void writeOverBoundaryAndPastTheEnd() {
+        StringBuilder model = new StringBuilder(text(CHUNK_SIZE + 10, 'a'));
+        ChunkedText text = new ChunkedText(model.toString());
+        write(text, model, CHUNK_SIZE - 3, "123456");
+        write(text, model, model.length() - 2, text(CHUNK_SIZE, 'z'));
+        assertThrows(StringIndexOutOfBoundsException.class, () -> text.write(text.length() + 1, "x"));
+    }
+
+    @Test
+    void randomOperationsMatchAStringBuilder() {
+        Random random = new Random(42);
+        StringBuilder model = new StringBuilder();
+        ChunkedText text = new ChunkedText();
+        for (int step = 0; step < 2_000; step++) {
+            int length = model.length();
+            String data = text(random.nextInt(3) == 0 ? random.nextInt(2 * CHUNK_SIZE) : random.nextInt(40), (char) ('a' + step % 26));
+            switch (random.nextInt(5)) {
+                case 0 -> {
+                    text.append(data);
+                    model.append(data);
+                }
+                case 1 -> insert(text, model, random.nextInt(length + 1), data);
+                case 2 -> write(text, model, random.nextInt(length + 1), data);
+                case 3 -> {
+                    int newLength = length == 0 ? 0 : random.nextInt(length + 1);
+                    text.truncate(newLength);
+                    model.setLength(newLength);
+                }
+                default -> {
+                    if (length > 0) {
+                        int offset = random.nextInt(length);
+                        int len = random.nextInt(length - offset + 1);
+                        assertEquals(model.substring(offset, offset + len), text.read(offset, len));
+                        char ch = model.charAt(offset);
+                        assertEquals(model.indexOf(String.valueOf(ch), offset / 2), text.indexOf(ch, offset / 2));
+                        assertEquals(model.lastIndexOf(String.valueOf(ch), offset + len), text.lastIndexOf(ch, offset + len));
+                    }
+                }
+            }
+            assertEquals(model.length(), text.length());
+            // Mantém o texto num tamanho em que as operações continuam atravessando blocos.
+            if (model.length() > 12 * CHUNK_SIZE) {
+                text.truncate(CHUNK_SIZE + 1);
+                model.setLength(CHUNK_SIZE + 1);
+            }
+        }
+        assertEquals(model.toString(), text.toString());
+    }
+
+    private static void insert(ChunkedText text, StringBuilder model, int offset, String data) {
+        text.insert(offset, data);
+        model.insert(offset, data);
+        assertEquals(model.toString(), text.toString());
+    }
+
+    private static void write(ChunkedText text, StringBuilder model, int offset, String data) {
+        text.write(offset, data);
+        int overlap = Math.min(data.length(), model.length() - offset);
+        model.replace(offset, offset + overlap, data.substring(0, overlap));
+        model.append(data, overlap, data.length());
+        assertEquals(model.toString(), text.toString());
+    }
+
+    // Texto de tamanho dado, variando a partir de first para que deslocamentos errados apareçam.
+    private static String text(int length, char first) {
+        char[] c = new char[length];
+        for (int i = 0; i < length; i++) {
+            c[i] = (char) (first + i % 23);
+        }
+        return new String(c);
+    }
+}
\ No newline at end of file
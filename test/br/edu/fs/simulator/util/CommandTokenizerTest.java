@@ -0,0 +1,36 @@
+package br.edu.fs.simulator.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class CommandTokenizerTest {
+    @Test
+    void splitsOnBlanks() {
+        assertArrayEquals(new String[] {"find", "/", "-name", "*g*"}, CommandTokenizer.split("  find\t/  -name *g*  "));
+        assertArrayEquals(new String[0], CommandTokenizer.split(" \t "));
+        assertArrayEquals(new String[] {"write", "f  texto  livre"}, CommandTokenizer.split("write   f  texto  livre ", 2));
+    }
+
+    @Test
+    void matchingQuotesAreStripped() {
+        assertArrayEquals(new String[] {"-name", "*g*"}, CommandTokenizer.split("-name '*g*'"));
+        assertArrayEquals(new String[] {"-name", "*g*"}, CommandTokenizer.split("-name \"*g*\""));
+        assertArrayEquals(new String[] {"meu arquivo", "x"}, CommandTokenizer.split("'meu arquivo' x"));
+        assertArrayEquals(new String[] {"", "x"}, CommandTokenizer.split("\"\" x"));
+    }
+
+    @Test
+    void unmatchedQuotesAreKept() {
+        assertArrayEquals(new String[] {"'*g*\"", "x"}, CommandTokenizer.split("'*g*\" x"));
+        assertArrayEquals(new String[] {"'abc"}, CommandTokenizer.split("'abc"));
+        assertArrayEquals(new String[] {"'a'b"}, CommandTokenizer.split("'a'b"));
+        assertArrayEquals(new String[] {"it's"}, CommandTokenizer.split("it's"));
+    }
+
+    @Test
+    void restOfTheLineKeepsItsQuotes() {
+        assertArrayEquals(new String[] {"f", "'texto'"}, CommandTokenizer.split("f 'texto'", 2));
+        assertArrayEquals(new String[] {"f", "'a b' c"}, CommandTokenizer.split("'f' 'a b' c", 2));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,163 @@
+package br.edu.fs.simulator.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Remoção com deslocamento para trás em cadeias que dão a volta no fim da tabela, e o
+ * encolhimento da tabela depois de muitas remoções, conferidos contra um LinkedHashMap.
+ */
+class MyLinkedHashMapTest {
+    @Test
+    void backwardShiftAcrossTheEndOfTheTable() {
+        MyLinkedHashMap<Key, String> map = new MyLinkedHashMap<>();
+        assertEquals(16, map.tableCapacity());
+        // Posições 14, 15, 0 e 1 para a e as três colisões em 15; e e f são empurrados para 2 e 3.
+        Key a = new Key(1, 14);
+        Key b = new Key(2, 15);
+        Key c = new Key(3, 15);
+        Key d = new Key(4, 15);
+        Key e = new Key(5, 0);
+        Key f = new Key(6, 1);
+        for (Key key : new Key[] {a, b, c, d, e, f}) {
+            map.put(key, "v" + key.id);
+        }
+
+        // Poucas remoções, para que nenhuma reconstrua a tabela e esconda uma cadeia quebrada.
+        assertEquals("v2", map.remove(b));
+        assertFound(map, a, c, d, e, f);
+        assertNull(map.get(b));
+        assertEquals("v4", map.remove(d));
+        assertFound(map, a, c, e, f);
+        assertEquals("v1", map.remove(a));
+        assertFound(map, c, e, f);
+        assertFalse(map.containsKey(a));
+        assertFalse(map.containsKey(d));
+
+        Key g = new Key(7, 15);
+        map.put(g, "v7");
+        assertFound(map, c, e, f, g);
+        assertEquals(List.of(c, e, f, g), keys(map));
+    }
+
+    @Test
+    void removeHeavySequenceMatchesLinkedHashMap() {
+        Random random = new Random(42);
+        MyLinkedHashMap<Key, Integer> map = new MyLinkedHashMap<>();
+        Map<Key, Integer> model = new LinkedHashMap<>();
+        for (int op = 0; op < 20_000; op++) {
+            // Poucos hashes, todos no fim da tabela qualquer que seja o tamanho dela.
+            int id = random.nextInt(48);
+            Key key = new Key(id, 0xFFFF - id % 6);
+            if (random.nextInt(10) < 6) {
+                assertEquals(model.remove(key), map.remove(key));
+            } else {
+                assertEquals(model.put(key, op), map.put(key, op));
+            }
+            assertEquals(model.size(), map.size());
+            if (op % 97 == 0) {
+                for (int other = 0; other < 48; other++) {
+                    Key probe = new Key(other, 0xFFFF - other % 6);
+                    assertEquals(model.get(probe), map.get(probe));
+                }
+                assertEquals(new ArrayList<>(model.keySet()), keys(map));
+            }
+        }
+    }
+
+    @Test
+    void tableShrinksAfterRemovals() {
+        MyLinkedHashMap<Integer, Integer> map = new MyLinkedHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            map.put(i, i * 10);
+        }
+        assertTrue(map.tableCapacity() >= 2000);
+
+        for (int i = 0; i < 997; i++) {
+            assertEquals(i * 10, map.remove(i));
+            if (i % 100 == 0) {
+                assertEquals(999 - i, map.size());
+                assertEquals(9990, map.get(999));
+                assertTrue(map.tableCapacity() <= 16 * Math.max(map.size(), 16));
+            }
+        }
+        assertEquals(16, map.tableCapacity());
+        assertEquals(List.of(997, 998, 999), keys(map));
+        assertEquals(9980, map.get(998));
+
+        // Removendo a última entrada da ordem, o vetor denso encolhe sem deixar buraco.
+        assertEquals(9990, map.remove(999));
+        map.put(1000, 1);
+        assertEquals(List.of(997, 998, 1000), keys(map));
+        map.remove(997);
+        map.remove(998);
+        map.remove(1000);
+        assertTrue(map.isEmpty());
+        assertEquals(16, map.tableCapacity());
+    }
+
+    @Test
+    void reinsertedKeyMovesToTheEnd() {
+        MyLinkedHashMap<String, Integer> map = new MyLinkedHashMap<>();
+        map.put("a", 1);
+        map.put("b", 2);
+        map.put("c", 3);
+        assertEquals(2, map.put("b", 20));
+        assertEquals(List.of("a", "b", "c"), keys(map));
+        map.remove("a");
+        map.put("a", 10);
+        assertEquals(3, map.putIfAbsent("c", 30));
+        assertEquals(List.of("b", "c", "a"), keys(map));
+        assertEquals(20, map.valueAt(0));
+    }
+
+    private static void assertFound(MyLinkedHashMap<Key, String> map, Key... present) {
+        for (Key key : present) {
+            assertEquals("v" + key.id, map.get(key));
+        }
+        assertEquals(present.length, map.size());
+    }
+
+    private static <K> List<K> keys(MyLinkedHashMap<K, ?> map) {
+        List<K> keys = new ArrayList<>();
+        for (int i = 0; i < map.size(); i++) {
+            keys.add(map.keyAt(i));
+        }
+        return keys;
+    }
+
+    // Chave com hash escolhido, para montar colisões em posições conhecidas da tabela.
+    private static final class Key {
+        final int id;
+        final int hash;
+
+        Key(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return "k" + id;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,88 @@
+package br.edu.fs.simulator.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RingBufferTest {
+    @Test
+    void fullRingRefusesUntilTheConsumerCatchesUp() {
+        RingBuffer<Integer> ring = new RingBuffer<>(5);
+        assertEquals(8, ring.capacity());
+        for (int i = 0; i < 8; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(8));
+        assertEquals(8, ring.size());
+        assertEquals(0, ring.poll());
+        assertTrue(ring.offer(8));
+        assertFalse(ring.offer(9));
+    }
+
+    @Test
+    void orderSurvivesManyLaps() {
+        RingBuffer<Integer> ring = new RingBuffer<>(4);
+        int next = 0;
+        int expected = 0;
+        for (int lap = 0; lap < 1_000; lap++) {
+            // Enche parcialmente e esvazia parcialmente: o início da fila anda pelas posições.
+            for (int i = 0; i < 3 && ring.offer(next); i++) {
+                next++;
+            }
+            for (int i = 0; i < 2; i++) {
+                Integer value = ring.poll();
+                if (value != null) {
+                    assertEquals(expected++, value);
+                }
+            }
+        }
+        for (Integer value = ring.poll(); value != null; value = ring.poll()) {
+            assertEquals(expected++, value);
+        }
+        assertEquals(next, expected);
+        assertTrue(ring.isEmpty());
+        assertNull(ring.poll());
+        assertEquals(ring.producedCount(), ring.consumedCount());
+    }
+
+    @Test
+    void concurrentProducersKeepTheirOwnOrder() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 20_000;
+        RingBuffer<long[]> ring = new RingBuffer<>(64);
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            int id = p;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    long[] entry = {id, i};
+                    while (!ring.offer(entry)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        int[] next = new int[producers];
+        int received = 0;
+        while (received < producers * perProducer) {
+            long[] entry = ring.poll();
+            if (entry == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(next[(int) entry[0]]++, entry[1]);
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(ring.isEmpty());
+        for (int count : next) {
+            assertEquals(perProducer, count);
+        }
+    }
+}
\ No newline at end of file